@@ -133,6 +133,7 @@ UserModel.getUsernameByEmail = SELECT username FROM jforum_users WHERE user_emai
 UserModel.validateActivationKeyHash = SELECT COUNT(1) AS valid FROM jforum_users WHERE user_actkey = ? AND user_id = ?
 UserModel.writeUserActive = UPDATE jforum_users SET user_active = 1, user_actkey = NULL WHERE user_id = ?
 UserModel.updateUsername = UPDATE jforum_users SET username = ? WHERE user_id = ?
+UserModel.selectSummaries = SELECT user_id, username, rank_id, user_avatar, user_allowavatar, user_posts, user_karma FROM jforum_users WHERE user_id IN (:ids:)
 UserModel.getUsername = SELECT username FROM jforum_users WHERE user_id = ?
 
 # #############
@@ -356,6 +357,17 @@ TopicModel.selectAllByForumByLimit = SELECT t.*, p.user_id AS last_user_id, p.po
 	ORDER BY t.topic_type DESC, t.topic_last_post_id DESC \
 	LIMIT ?, ?
 
+TopicModel.selectAllByForumAfter = SELECT t.*, p.user_id AS last_user_id, p.post_time, (SELECT SUM(p.attach) \
+        FROM jforum_posts p \
+        WHERE p.topic_id = t.topic_id \
+        AND p.need_moderate = 0) AS attach \
+	FROM jforum_topics t, jforum_posts p \
+	WHERE (t.forum_id = ? OR t.topic_moved_id = ?) \
+	AND p.post_id = t.topic_last_post_id \
+	AND p.need_moderate = 0 \
+	AND (t.topic_type < ? OR (t.topic_type = ? AND t.topic_last_post_id < ?)) \
+	ORDER BY t.topic_type DESC, t.topic_last_post_id DESC
+
 TopicModel.topicPosters = SELECT user_id, username, user_karma, user_avatar, user_allowavatar, user_regdate, user_posts, user_icq, \
 	user_from, user_email, rank_id, user_sig, user_attachsig, user_viewemail, user_msnm, user_yim, user_website, user_sig, user_aim \
 	FROM jforum_users \
@@ -371,6 +383,7 @@ TopicModel.deleteByForum = SELECT topic_id FROM jforum_topics where forum_id = ?
 TopicModel.delete = DELETE FROM jforum_topics WHERE topic_id = ?
 TopicModel.deletePosts = DELETE FROM jforum_posts WHERE topic_id = ?
 TopicModel.incrementTotalViews = UPDATE jforum_topics SET topic_views = topic_views + 1 WHERE topic_id = ?
+TopicModel.incrementTotalViewsBy = UPDATE jforum_topics SET topic_views = topic_views + ? WHERE topic_id = ?
 TopicModel.incrementTotalReplies = UPDATE jforum_topics SET topic_replies = topic_replies + 1 WHERE topic_id = ?
 TopicModel.decrementTotalReplies = UPDATE jforum_topics SET topic_replies = topic_replies - 1 WHERE topic_id = ?
 TopicModel.setLastPostId = UPDATE jforum_topics SET topic_last_post_id = ? WHERE topic_id = ?
@@ -430,8 +443,6 @@ TopicModel.selectHottestTopicsByLimit = SELECT t.*, p.user_id AS last_user_id, p
     ORDER BY topic_views DESC \
     LIMIT ?
     
-TopicModel.getUserInformation = SELECT user_id, username FROM jforum_users WHERE user_id IN (#ID#)
-
 TopicModel.selectByUserByLimit = SELECT t.*, p.user_id AS last_user_id, p.post_time, (SELECT SUM(p.attach) \
         FROM jforum_posts p \
         WHERE p.topic_id = t.topic_id \
@@ -683,6 +694,7 @@ AttachmentModel.selectAttachmentById = SELECT a.attach_id, a.user_id, a.post_id,
 	AND a.attach_id = d.attach_id
 	
 AttachmentModel.updateAttachment = UPDATE jforum_attach_desc SET description = ?, download_count = ? WHERE attach_id = ?
+AttachmentModel.incrementDownloadCount = UPDATE jforum_attach_desc SET download_count = download_count + ? WHERE attach_id = ?
 AttachmentModel.removeAttachment = DELETE FROM jforum_attach WHERE attach_id = ?
 AttachmentModel.removeAttachmentInfo = DELETE FROM jforum_attach_desc WHERE attach_id = ?
 AttachmentModel.countPostAttachments = SELECT COUNT(1) FROM jforum_attach WHERE post_id = ?
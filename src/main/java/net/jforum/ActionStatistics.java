@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 11:48:15 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.jforum.util.LatencyCounter;
+
+/**
+ * Invocation, failure and latency counters of a single action of a module.
+ * Besides the average and max latency, calls are counted in a histogram
+ * whose buckets are bounded by {@link #getBucketLimits()}. 
+ * 
+ * @version $Id$
+ * @see CommandRegistry#getStatistics()
+ */
+public class ActionStatistics extends LatencyCounter
+{
+	/** Upper limits of the histogram buckets, in milliseconds. The last bucket has no limit */
+	private static final long[] BUCKET_LIMITS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_LIMITS.length + 1);
+	
+	void called(final long nanos, final boolean failed)
+	{
+		this.record(nanos, failed);
+		
+		final long millis = nanos / 1000000;
+		int bucket = 0;
+		
+		while (bucket < BUCKET_LIMITS.length && millis >= BUCKET_LIMITS[bucket]) {
+			bucket++;
+		}
+		
+		this.buckets.incrementAndGet(bucket);
+	}
+	
+	/**
+	 * @return The upper limit, exclusive and in milliseconds, of each bucket 
+	 * of {@link #getHistogram()} but the last one
+	 */
+	public static long[] getBucketLimits()
+	{
+		return BUCKET_LIMITS.clone();
+	}
+	
+	/**
+	 * @return The number of calls that took less than each of the 
+	 * {@link #getBucketLimits()}, and more than the previous one. 
+	 * The last entry counts the calls slower than all limits
+	 */
+	public long[] getHistogram()
+	{
+		final long[] histogram = new long[this.buckets.length()];
+		
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = this.buckets.get(i);
+		}
+		
+		return histogram;
+	}
+	
+	/**
+	 * @see net.jforum.util.LatencyCounter#toString()
+	 */
+	public String toString()
+	{
+		final StringBuilder sb = new StringBuilder(160)
+			.append(super.toString())
+			.append(", histogram=[");
+		
+		final long[] histogram = this.getHistogram();
+		
+		for (int i = 0; i < histogram.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			
+			sb.append(i < BUCKET_LIMITS.length ? "<" + BUCKET_LIMITS[i] : ">=" + BUCKET_LIMITS[i - 1])
+				.append("ms=").append(histogram[i]);
+		}
+		
+		return sb.append(']').toString();
+	}
+}
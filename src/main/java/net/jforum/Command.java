@@ -65,9 +65,6 @@ import freemarker.template.Template;
  */
 public abstract class Command 
 {
-	private static final Class<?>[] NO_ARGS_CLASS = new Class[0];
-	private static final Object[] NO_ARGS_OBJECT = new Object[0];
-	
 	private transient boolean ignoreAction;
 	
 	protected transient String templateName;
@@ -110,16 +107,7 @@ public abstract class Command
 		final String action = this.request.getAction();
 
 		if (!this.ignoreAction) {
-			try {
-				this.getClass().getMethod(action, NO_ARGS_CLASS).invoke(this, NO_ARGS_OBJECT);
-			}
-			catch (NoSuchMethodException e) {		
-				this.list();		
-			}
-			catch (Exception e)
-            {
-                throw new ForumException(e);
-			}
+			CommandRegistry.dispatch(this, action);
 		}
 		
 		if (JForumExecutionContext.getRedirectTo() != null) {
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 11:52:37 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.jforum.exceptions.ForumException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Creates the {@link Command} of each module and dispatches its actions,
+ * without looking up classes and methods by name on every request.
+ * <p>
+ * For each module class, the constructor and the public methods without 
+ * arguments, which are the actions it may be asked for, are looked up only
+ * once. It is done for all mapped modules when the modules mapping is 
+ * loaded, and for any other class the first time it is used. 
+ * Commands keep the state of the request they are processing, so a new 
+ * instance is still created for every request.
+ * </p>
+ * 
+ * @version $Id$
+ * @see net.jforum.repository.ModulesRepository
+ */
+public final class CommandRegistry
+{
+	private static final Logger LOGGER = Logger.getLogger(CommandRegistry.class);
+	private static final Object[] NO_ARGS_OBJECT = new Object[0];
+	private static final String LIST = "list";
+	
+	private static volatile ConcurrentMap<String, CommandType> types = new ConcurrentHashMap<String, CommandType>();
+	
+	private CommandRegistry() {}
+	
+	/**
+	 * A module class, with its constructor and actions
+	 */
+	private static final class CommandType
+	{
+		private final String name;
+		private final Constructor<? extends Command> constructor;
+		private final Map<String, Method> actions = new HashMap<String, Method>();
+		private final ConcurrentMap<String, ActionStatistics> statistics = new ConcurrentHashMap<String, ActionStatistics>();
+		
+		CommandType(final String name, final Class<? extends Command> commandClass) throws NoSuchMethodException
+		{
+			this.name = name;
+			this.constructor = commandClass.getConstructor();
+			
+			final Method[] methods = commandClass.getMethods();
+			
+			for (int i = 0; i < methods.length; i++) {
+				final Method method = methods[i];
+				
+				if (method.getParameterTypes().length == 0 && !Modifier.isStatic(method.getModifiers())
+						&& method.getDeclaringClass() != Object.class) {
+					method.setAccessible(true);
+					this.actions.put(method.getName(), method);
+				}
+			}
+		}
+		
+		ActionStatistics statisticsFor(final String action)
+		{
+			ActionStatistics s = this.statistics.get(action);
+			
+			if (s == null) {
+				final ActionStatistics newStatistics = new ActionStatistics();
+				s = this.statistics.putIfAbsent(action, newStatistics);
+				
+				if (s == null) {
+					s = newStatistics;
+				}
+			}
+			
+			return s;
+		}
+	}
+	
+	/**
+	 * Registers all mapped modules, replacing any module registered before.
+	 * The statistics of the modules still mapped to the same class are kept.
+	 * 
+	 * @param modules The modules mapping, with module names as keys and class names as values
+	 */
+	public static synchronized void init(final Properties modules)
+	{
+		final Map<String, CommandType> previous = types;
+		final ConcurrentMap<String, CommandType> m = new ConcurrentHashMap<String, CommandType>();
+		
+		for (Iterator<Map.Entry<Object, Object>> iter = modules.entrySet().iterator(); iter.hasNext(); ) {
+			final Map.Entry<Object, Object> entry = iter.next();
+			final String className = ((String)entry.getValue()).trim();
+			
+			try {
+				final CommandType type = newType((String)entry.getKey(), className);
+				final CommandType old = previous.get(className);
+				
+				if (old != null) {
+					type.statistics.putAll(old.statistics);
+				}
+				
+				m.put(className, type);
+			}
+			catch (Exception e) {
+				LOGGER.warn("Could not register module " + entry.getKey() + " (" + className + "): " + e);
+			}
+		}
+		
+		types = m;
+	}
+	
+	/**
+	 * Creates the command to process a request
+	 * 
+	 * @param moduleClass The class name of the module
+	 * @return A new command instance
+	 */
+	public static Command newCommand(final String moduleClass)
+	{
+		try {
+			return typeOf(moduleClass).constructor.newInstance();
+		}
+		catch (InvocationTargetException e) {
+			throw new ForumException(e.getCause());
+		}
+		catch (Exception e) {
+			throw new ForumException(e);
+		}
+	}
+	
+	/**
+	 * Runs an action of a command. Actions the command does not have 
+	 * run {@link Command#list()} instead.
+	 * 
+	 * @param command The command
+	 * @param action The action name
+	 */
+	static void dispatch(final Command command, final String action)
+	{
+		final CommandType type;
+		
+		try {
+			type = typeOf(command.getClass().getName());
+		}
+		catch (Exception e) {
+			throw new ForumException(e);
+		}
+		
+		final Method method = action == null ? null : type.actions.get(action);
+		final ActionStatistics statistics = type.statisticsFor(method == null ? LIST : action);
+		final long start = System.nanoTime();
+		boolean failed = true;
+		
+		try {
+			if (method == null) {
+				command.list();
+			}
+			else {
+				method.invoke(command, NO_ARGS_OBJECT);
+			}
+			
+			failed = false;
+		}
+		catch (IllegalAccessException e) {
+			throw new ForumException(e);
+		}
+		catch (InvocationTargetException e) {
+			throw new ForumException(e);
+		}
+		finally {
+			statistics.called(System.nanoTime() - start, failed);
+		}
+	}
+	
+	/**
+	 * @return The statistics of every action called so far, keyed by 
+	 * module name and action, like "posts.list"
+	 */
+	public static Map<String, ActionStatistics> getStatistics()
+	{
+		final Map<String, ActionStatistics> m = new HashMap<String, ActionStatistics>();
+		
+		for (Iterator<CommandType> iter = types.values().iterator(); iter.hasNext(); ) {
+			final CommandType type = iter.next();
+			
+			for (Iterator<Map.Entry<String, ActionStatistics>> iter2 = type.statistics.entrySet().iterator(); iter2.hasNext(); ) {
+				final Map.Entry<String, ActionStatistics> entry = iter2.next();
+				m.put(type.name + "." + entry.getKey(), entry.getValue());
+			}
+		}
+		
+		return m;
+	}
+	
+	private static CommandType typeOf(final String className) throws ClassNotFoundException, NoSuchMethodException
+	{
+		final ConcurrentMap<String, CommandType> m = types;
+		CommandType type = m.get(className);
+		
+		if (type == null) {
+			final CommandType newType = newType(className, className);
+			type = m.putIfAbsent(className, newType);
+			
+			if (type == null) {
+				type = newType;
+			}
+		}
+		
+		return type;
+	}
+	
+	private static CommandType newType(final String name, final String className) throws ClassNotFoundException, NoSuchMethodException
+	{
+		return new CommandType(name, Class.forName(className).asSubclass(Command.class));
+	}
+}
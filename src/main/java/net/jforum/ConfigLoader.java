@@ -56,6 +56,7 @@ import net.jforum.dao.DataAccessDriver;
 import net.jforum.exceptions.CacheEngineStartupException;
 import net.jforum.exceptions.ForumException;
 import net.jforum.search.SearchFacade;
+import net.jforum.sso.Authenticators;
 import net.jforum.sso.LoginAuthenticator;
 import net.jforum.summary.SummaryScheduler;
 import net.jforum.util.FileMonitor;
@@ -122,14 +123,8 @@ public final class ConfigLoader
 	{
 		final String className = SystemGlobals.getValue(ConfigKeys.LOGIN_AUTHENTICATOR);
 
-		try {
-			final LoginAuthenticator authenticator = (LoginAuthenticator) Class.forName(className).newInstance();
-			SystemGlobals.setObjectValue(ConfigKeys.LOGIN_AUTHENTICATOR_INSTANCE, authenticator);
-		}
-		catch (Exception e) {
-			throw new ForumException("Error while trying to create a login.authenticator instance ("
-				+ className + "): " + e, e);
-		}
+		final LoginAuthenticator authenticator = Authenticators.createLoginAuthenticator(className);
+		SystemGlobals.setObjectValue(ConfigKeys.LOGIN_AUTHENTICATOR_INSTANCE, authenticator);
 	}
 	
 	/**
@@ -58,7 +58,9 @@ import net.jforum.entities.UserSession;
 import net.jforum.exceptions.DatabaseException;
 import net.jforum.exceptions.ForumException;
 import net.jforum.repository.SecurityRepository;
+import net.jforum.repository.SessionFlushRepository;
 import net.jforum.security.SecurityConstants;
+import net.jforum.sso.Authenticators;
 import net.jforum.sso.SSO;
 import net.jforum.sso.SSOUtils;
 import net.jforum.util.I18n;
@@ -195,8 +197,13 @@ public class ControllerUtils
 
 		UserSession tmpUs;
 		if (sessionId == null) {
-			final UserSessionDAO userSessionDao = DataAccessDriver.getInstance().newUserSessionDAO();
-			tmpUs = userSessionDao.selectById(userSession, JForumExecutionContext.getConnection());	
+			// The last session may be still waiting to be written
+			tmpUs = SessionFlushRepository.get(userSession);
+			
+			if (tmpUs == null) {
+				final UserSessionDAO userSessionDao = DataAccessDriver.getInstance().newUserSessionDAO();
+				tmpUs = userSessionDao.selectById(userSession, JForumExecutionContext.getConnection());
+			}
 		}
 		else {			
 			SessionFacade.storeSessionData(sessionId, JForumExecutionContext.getConnection());
@@ -227,7 +234,7 @@ public class ControllerUtils
 	protected void checkSSO(final UserSession userSession)
 	{
 		try {
-			final SSO sso = (SSO) Class.forName(SystemGlobals.getValue(ConfigKeys.SSO_IMPLEMENTATION)).newInstance();
+			final SSO sso = Authenticators.getSSO();
 			final String username = sso.authenticateUser(JForumExecutionContext.getRequest());
 
 			if (username == null || username.trim().equals("")) {
@@ -297,17 +304,8 @@ public class ControllerUtils
 			SessionFacade.add(userSession);
 		}
 		else if (ConfigKeys.TYPE_SSO.equals(SystemGlobals.getValue(ConfigKeys.AUTHENTICATION_TYPE))) {
-			SSO sso;
-			
-			try {
-				sso = (SSO) Class.forName(SystemGlobals.getValue(ConfigKeys.SSO_IMPLEMENTATION)).newInstance();
-			}
-			catch (Exception e) {
-				throw new ForumException(e);
-			}
-
 			// If SSO, then check if the session is valid
-			if (!sso.isSessionValid(userSession, request)) {
+			if (!Authenticators.isSessionValid(userSession, request)) {
 				SessionFacade.remove(userSession.getSessionId());
 				refreshSession();
 			}
@@ -43,6 +43,7 @@
 package net.jforum;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
@@ -73,15 +74,23 @@ import net.jforum.entities.UserSession;
 import net.jforum.exceptions.ExceptionWriter;
 import net.jforum.exceptions.ForumStartupException;
 import net.jforum.repository.BBCodeRepository;
+import net.jforum.repository.AttachmentDownloadsRepository;
 import net.jforum.repository.BanlistRepository;
+import net.jforum.repository.BoardStatsRepository;
 import net.jforum.repository.ModulesRepository;
+import net.jforum.repository.PageCacheRepository;
 import net.jforum.repository.RankingRepository;
 import net.jforum.repository.SecurityRepository;
+import net.jforum.repository.SessionFlushRepository;
 import net.jforum.repository.SmiliesRepository;
+import net.jforum.repository.TopicViewsRepository;
+import net.jforum.search.SearchFacade;
 import net.jforum.summary.SummaryScheduler;
 import net.jforum.util.FileMonitor;
 import net.jforum.util.I18n;
 import net.jforum.util.bbcode.BBCodeHandler;
+import net.jforum.util.image.ThumbnailService;
+import net.jforum.util.mail.MailDispatcher;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
 
@@ -140,6 +149,10 @@ public class JForum extends JForumBaseServlet
 			RankingRepository.loadRanks();
 			SmiliesRepository.loadSmilies();
 			BanlistRepository.loadBanlist();
+			TopicViewsRepository.start();
+			AttachmentDownloadsRepository.start();
+			BoardStatsRepository.start();
+			SessionFlushRepository.start();
 		}
 		catch (Exception e) {
 			LOGGER.error(e.getMessage(), e);
@@ -159,6 +172,8 @@ public class JForum extends JForumBaseServlet
 		JForumContext forumContext = null;
 		RequestContext request = null;
 		ResponseContext response = null;
+		String pageKey = null;
+		boolean renderingPage = false;
 		final String encoding = SystemGlobals.getValue(ConfigKeys.ENCODING);
 
 		try {
@@ -185,6 +200,28 @@ public class JForum extends JForumBaseServlet
 			final ControllerUtils utils = new ControllerUtils();
 			utils.refreshSession();
 			
+			// Pages shared by anonymous users are sent right away, as they 
+			// don't depend on the permissions or on the template context
+			pageKey = this.cachedPageKey(req, request);
+			
+			if (pageKey != null) {
+				PageCacheRepository.Page page = PageCacheRepository.get(pageKey);
+				
+				if (page == null) {
+					renderingPage = PageCacheRepository.startRendering(pageKey);
+					
+					if (!renderingPage) {
+						// Some other request was rendering it
+						page = PageCacheRepository.get(pageKey);
+					}
+				}
+				
+				if (page != null) {
+					this.writePage(req, response, page);
+					return;
+				}
+			}
+			
 			context.put("logged", SessionFacade.isLogged());
 			
 			// Process security data
@@ -225,7 +262,12 @@ public class JForum extends JForumBaseServlet
 					context.put("request", req);
 					context.put("response", response);
 					
-					out = this.processCommand(out, request, response, encoding, context, moduleClass);
+					if (renderingPage) {
+						out = this.processCachedCommand(out, req, forumContext, encoding, context, moduleClass, pageKey);
+					}
+					else {
+						out = this.processCommand(out, request, response, encoding, context, moduleClass);
+					}
 				}
 			}
 		}
@@ -233,16 +275,36 @@ public class JForum extends JForumBaseServlet
 			this.handleException(out, response, encoding, e, request);
 		}
 		finally {
+			if (renderingPage) {
+				PageCacheRepository.endRendering(pageKey);
+			}
+			
 			this.handleFinally(out, forumContext, response);
 		}		
 	}
+	
+	/**
+	 * Gets the key of the page asked for, if it may be shared by all anonymous users.
+	 * 
+	 * @return The key, or <code>null</code> if the page can't be cached
+	 */
+	private String cachedPageKey(final HttpServletRequest req, final RequestContext request)
+	{
+		if (SessionFacade.isLogged() || !"GET".equals(req.getMethod()) 
+				|| this.shouldBan(request.getRemoteAddr())) {
+			return null;
+		}
+		
+		return PageCacheRepository.key(request.getModule(), request.getAction(), req.getRequestURI(), 
+			req.getQueryString(), I18n.getUserLanguage());
+	}
 
 	private Writer processCommand(final Writer out, final RequestContext request, final ResponseContext response, 
 			final String encoding, final SimpleHash context, final String moduleClass) throws Exception 
 	{
 		Writer outWriter = out;
 		// Here we go, baby
-		final Command command = this.retrieveCommand(moduleClass);
+		final Command command = CommandRegistry.newCommand(moduleClass);
 		final Template template = command.process(request, response, context);
 
 		if (JForumExecutionContext.getRedirectTo() == null) {
@@ -267,6 +329,70 @@ public class JForum extends JForumBaseServlet
 		return outWriter;
 	}
 
+	/**
+	 * Processes a command whose page may be shared by all anonymous users,
+	 * and stores the page rendered.
+	 */
+	private Writer processCachedCommand(final Writer out, final HttpServletRequest req, final JForumContext forumContext, 
+			final String encoding, final SimpleHash context, final String moduleClass, final String pageKey) throws Exception
+	{
+		final RequestContext request = forumContext.getRequest();
+		final ResponseContext response = forumContext.getResponse();
+		
+		final int version = PageCacheRepository.version();
+		final Command command = CommandRegistry.newCommand(moduleClass);
+		final Template template = command.process(request, response, context);
+		
+		if (JForumExecutionContext.getRedirectTo() != null || JForumExecutionContext.isCustomContent()) {
+			return out;
+		}
+		
+		String contentType = JForumExecutionContext.getContentType();
+		
+		if (contentType == null) {
+			contentType = "text/html; charset=" + encoding;
+		}
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(32768);
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(bytes, encoding));
+		template.process(JForumExecutionContext.getTemplateContext(), writer);
+		writer.flush();
+		
+		final byte[] content = bytes.toByteArray();
+		
+		// Links with the session id in the URL can't be sent to anybody else
+		if (forumContext.isEncodingDisabled() || req.isRequestedSessionIdFromCookie()) {
+			PageCacheRepository.add(pageKey, contentType, content, version);
+		}
+		
+		response.setContentType(contentType);
+		response.setContentLength(content.length);
+		response.getOutputStream().write(content);
+		
+		return out;
+	}
+	
+	private void writePage(final HttpServletRequest req, final ResponseContext response, 
+			final PageCacheRepository.Page page) throws IOException
+	{
+		byte[] content = page.getContent();
+		
+		if (page.getGzippedContent() != null) {
+			final String acceptEncoding = req.getHeader("Accept-Encoding");
+			
+			if (acceptEncoding != null && acceptEncoding.indexOf("gzip") != -1) {
+				content = page.getGzippedContent();
+				response.setHeader("Content-Encoding", "gzip");
+			}
+			
+			response.setHeader("Vary", "Accept-Encoding");
+		}
+		
+		response.setContentType(page.getContentType());
+		response.setContentLength(content.length);
+		response.getOutputStream().write(content);
+	}
+
 	private void checkDatabaseStatus()
 	{
 		if (!DBConnection.getImplementation().isDatabaseUp()) {
@@ -356,11 +482,6 @@ public class JForum extends JForumBaseServlet
 		return BanlistRepository.shouldBan(banlist);
 	}
 
-	private Command retrieveCommand(final String moduleClass) throws InstantiationException, IllegalAccessException, ClassNotFoundException
-	{
-		return (Command)Class.forName(moduleClass).newInstance();
-	}
-	
 	/** 
 	 * @see javax.servlet.GenericServlet#destroy()
 	 */
@@ -378,6 +499,14 @@ public class JForum extends JForumBaseServlet
 			LOGGER.error(e.getMessage(), e);
 		}		
 		
+		// send the queued emails
+		LOGGER.debug("Stop mail dispatcher ...");
+		MailDispatcher.stop(30000);
+		
+		// finish the thumbnails being created
+		LOGGER.debug("Stop thumbnail service ...");
+		ThumbnailService.stop(10000);
+		
 		// stop FileMonitor threads
 		LOGGER.debug("Close file monitors ...");
 		closeFileMonitor();
@@ -390,6 +519,23 @@ public class JForum extends JForumBaseServlet
 			session.invalidate();
 			LOGGER.debug("Current sessions: " + SessionFacade.size());
 		}
+		
+		// write the data of the sessions just invalidated
+		LOGGER.debug("Store pending user sessions ...");
+		SessionFlushRepository.stop();
+
+		// write the pending topic views
+		LOGGER.debug("Store pending topic views ...");
+		TopicViewsRepository.stop();
+		BoardStatsRepository.stop();
+
+		// write the pending attachment downloads
+		LOGGER.debug("Store pending attachment downloads ...");
+		AttachmentDownloadsRepository.stop();
+		
+		// commit the search index and release its lock
+		LOGGER.debug("Stop search indexer ...");
+		SearchFacade.stop();
 
 		// stop database and release all connections
 		try {
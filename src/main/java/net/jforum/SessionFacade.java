@@ -44,23 +44,35 @@ package net.jforum;
 
 import java.sql.Connection;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.jforum.cache.CacheEngine;
 import net.jforum.cache.Cacheable;
 import net.jforum.dao.DataAccessDriver;
+import net.jforum.entities.ReadState;
 import net.jforum.entities.UserSession;
 import net.jforum.repository.SecurityRepository;
+import net.jforum.repository.SessionFlushRepository;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
 
 import org.apache.log4j.Logger;
 
 /**
+ * Registry of the sessions of the users currently online. 
+ * <p>
+ * Sessions are kept in concurrent maps split in many segments by session id, 
+ * with indexes by user id and username, so no lookup needs to scan all 
+ * sessions or to wait for a global lock. The number of guest and logged 
+ * users are kept in counters, and the list of logged users shown in the 
+ * forum index is an immutable snapshot, rebuilt at most every 
+ * {@link ConfigKeys#SESSIONS_ONLINE_SNAPSHOT_INTERVAL} seconds.
+ * 
  * @author Rafael Steil
  * @version $Id$
  */
@@ -68,28 +80,44 @@ public class SessionFacade implements Cacheable
 {
 	private static final Logger LOGGER = Logger.getLogger(SessionFacade.class);
 	
-	private static final String FQN = "sessions";
-	private static final String FQN_LOGGED = FQN + "/logged";
-	private static final String FQN_COUNT = FQN + "/count";
-	private static final String FQN_USER_ID = FQN + "/userId";
-	private static final String ANONYMOUS_COUNT = "anonymousCount";
-	private static final String LOGGED_COUNT = "loggedCount";
+	private static final int SEGMENTS = 64;
+	
+	private static final ConcurrentMap<String, Registration> SESSIONS = 
+		new ConcurrentHashMap<String, Registration>(1024, 0.75f, SEGMENTS);
+	private static final ConcurrentMap<String, UserSession> LOGGED = 
+		new ConcurrentHashMap<String, UserSession>(256, 0.75f, SEGMENTS);
+	private static final ConcurrentMap<Integer, String> USER_IDS = 
+		new ConcurrentHashMap<Integer, String>(256, 0.75f, SEGMENTS);
+	private static final ConcurrentMap<String, String> USERNAMES = 
+		new ConcurrentHashMap<String, String>(256, 0.75f, SEGMENTS);
+	
+	/** Registering or removing a session is atomic per session id */
+	private static final Object[] LOCKS = new Object[SEGMENTS];
+	
+	static {
+		for (int i = 0; i < LOCKS.length; i++) {
+			LOCKS[i] = new Object();
+		}
+	}
+	
+	private static final AtomicInteger ANONYMOUS_COUNT = new AtomicInteger();
+	private static final AtomicInteger LOGGED_COUNT = new AtomicInteger();
 	
-	private static CacheEngine cache;
+	private static volatile OnlineSnapshot onlineSnapshot = new OnlineSnapshot(
+		Collections.<UserSession>emptyList(), 0, 0);
 	
-	private static final Object MUTEX_FQN = new Object();
+	/** Changes every time a logged session is added or removed */
+	private static final AtomicInteger LOGGED_VERSION = new AtomicInteger();
 
 	/**
+	 * Sessions are not stored in the cache engine anymore. A new engine 
+	 * still starts an empty registry, like it used to.
+	 * 
 	 * @see net.jforum.cache.Cacheable#setCacheEngine(net.jforum.cache.CacheEngine)
 	 */
 	public void setCacheEngine(final CacheEngine engine)
 	{
-		SessionFacade.setEngine(engine);
-	}
-	
-	private static void setEngine(final CacheEngine engine) 
-	{
-		cache = engine;
+		SessionFacade.clear();
 	}
 	
 	/**
@@ -114,9 +142,8 @@ public class SessionFacade implements Cacheable
 	 * </p>
 	 * 
 	 * <p>
-	 * Please note that, in order to keep the number of guest and logged users correct, 
-	 * it's caller's responsibility to {@link #remove(String)} the record before adding it
-	 * again if the current session is currently represented as "guest". 
+	 * If there is already a session registered with the same id, it is replaced,
+	 * and the number of guest and logged users is adjusted accordingly.  
 	 * </p>
 	 *  
 	 * @param userSession the UserSession to add
@@ -128,39 +155,84 @@ public class SessionFacade implements Cacheable
 			userSession.setSessionId(sessionId);
 		}
 		
-		synchronized (MUTEX_FQN) {
-			cache.add(FQN, userSession.getSessionId(), userSession);
+		final Registration registration;
+		
+		if (JForumExecutionContext.getForumContext().isBot()) {
+			registration = new Registration(userSession, Registration.BOT);
+		}
+		else if (userSession.getUserId() == SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID)) {
+			// TODO: check the anonymous IP constraint
+			registration = new Registration(userSession, Registration.ANONYMOUS);
+		}
+		else {
+			registration = new Registration(userSession, Registration.LOGGED);
+		}
+		
+		final String id = userSession.getSessionId();
+		
+		synchronized (lockFor(id)) {
+			final Registration previous = SESSIONS.put(id, registration);
 			
-			if (!JForumExecutionContext.getForumContext().isBot()) {
-				if (userSession.getUserId() == SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID)) {
-					// TODO: check the anonymous IP constraint
-					changeUserCount(ANONYMOUS_COUNT, true);
-				}
-				else {
-					changeUserCount(LOGGED_COUNT, true);
-					cache.add(FQN_LOGGED, userSession.getSessionId(), userSession);
-					cache.add(FQN_USER_ID, Integer.toString(userSession.getUserId()), userSession.getSessionId());
-				}
+			if (previous != null) {
+				unregister(previous);
 			}
+			
+			register(registration);
 		}
 	}
 	
-	private static void changeUserCount(final String cacheEntryName, final boolean increment)
+	private static Object lockFor(final String sessionId)
 	{
-		Integer count = (Integer)cache.get(FQN_COUNT, cacheEntryName);
-		
-		if (count == null) {
-			count = Integer.valueOf(0);
+		return LOCKS[sessionId.hashCode() & (SEGMENTS - 1)];
+	}
+	
+	private static void register(final Registration registration)
+	{
+		if (registration.kind == Registration.ANONYMOUS) {
+			ANONYMOUS_COUNT.incrementAndGet();
 		}
-		
-		if (increment) {
-			count = Integer.valueOf(count.intValue() + 1);
+		else if (registration.kind == Registration.LOGGED) {
+			final String sessionId = registration.userSession.getSessionId();
+			
+			LOGGED_COUNT.incrementAndGet();
+			LOGGED.put(sessionId, registration.userSession);
+			USER_IDS.put(Integer.valueOf(registration.userId), sessionId);
+			
+			if (registration.username != null) {
+				USERNAMES.put(registration.username, sessionId);
+			}
+			
+			LOGGED_VERSION.incrementAndGet();
 		}
-		else if (count.intValue() > 0) {
-			count = Integer.valueOf(count.intValue() - 1);
+	}
+	
+	private static void unregister(final Registration registration)
+	{
+		if (registration.kind == Registration.ANONYMOUS) {
+			decrement(ANONYMOUS_COUNT);
 		}
+		else if (registration.kind == Registration.LOGGED) {
+			final String sessionId = registration.userSession.getSessionId();
+			
+			decrement(LOGGED_COUNT);
+			LOGGED.remove(sessionId, registration.userSession);
+			USER_IDS.remove(Integer.valueOf(registration.userId), sessionId);
+			
+			if (registration.username != null) {
+				USERNAMES.remove(registration.username, sessionId);
+			}
+			
+			LOGGED_VERSION.incrementAndGet();
+		}
+	}
+	
+	private static void decrement(final AtomicInteger counter)
+	{
+		int value;
 		
-		cache.add(FQN_COUNT, cacheEntryName, count);
+		do {
+			value = counter.get();
+		} while (value > 0 && !counter.compareAndSet(value, value - 1));
 	}
 	
 	/**
@@ -202,28 +274,18 @@ public class SessionFacade implements Cacheable
 	 */
 	public static void remove(final String sessionId)
 	{
-		if (cache == null) {
-			LOGGER.warn("Got a null cache instance. #" + sessionId);
+		if (sessionId == null) {
 			return;
 		}
 		
 		LOGGER.debug("Removing session " + sessionId);
 		
-		synchronized (MUTEX_FQN) {
-			final UserSession userSession = getUserSession(sessionId);
-
-			if (userSession != null) {
-				if (userSession.getUserId() == SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID)) {
-					changeUserCount(ANONYMOUS_COUNT, false);
-				}
-				else {					
-					changeUserCount(LOGGED_COUNT, false);
-					cache.remove(FQN_LOGGED, sessionId);
-					cache.remove(FQN_USER_ID, Integer.toString(userSession.getUserId()));
-				}
-			}
+		synchronized (lockFor(sessionId)) {
+			final Registration registration = SESSIONS.remove(sessionId);
 			
-			cache.remove(FQN, sessionId);
+			if (registration != null) {
+				unregister(registration);
+			}
 		}
 	}
 	
@@ -235,30 +297,49 @@ public class SessionFacade implements Cacheable
 	 */
 	public static List<UserSession> getAllSessions()
 	{
-		synchronized (MUTEX_FQN) {
-			Collection<Object> values = cache.getValues(FQN);
-			ArrayList<UserSession> list = new ArrayList<UserSession>();
-			for (Iterator<?> iter = values.iterator(); iter.hasNext(); ) {
-				list.add((UserSession)iter.next());
-			}
-			return list;
+		final List<UserSession> list = new ArrayList<UserSession>(SESSIONS.size());
+		
+		for (final Iterator<Registration> iter = SESSIONS.values().iterator(); iter.hasNext(); ) {
+			list.add(iter.next().userSession);
 		}
+		
+		return list;
 	}
 	
 	/**
 	 * Gets the {@link UserSession} instance of all logged users
 	 * @return A list with the user sessions
+	 * @see #getOnlineSnapshot()
 	 */
 	public static List<UserSession> getLoggedSessions()
 	{
-		synchronized (MUTEX_FQN) {
-			Collection<Object> values = cache.getValues(FQN_LOGGED);
-			ArrayList<UserSession> list = new ArrayList<UserSession>();
-			for (Iterator<?> iter = values.iterator(); iter.hasNext(); ) {
-				list.add((UserSession)iter.next());
-			}			
-			return list;
+		return new ArrayList<UserSession>(LOGGED.values());
+	}
+	
+	/**
+	 * Gets the users currently online, as shown in the forum index. 
+	 * The snapshot is shared by all requests, and is only rebuilt when 
+	 * logged users come or go, at most every 
+	 * {@link ConfigKeys#SESSIONS_ONLINE_SNAPSHOT_INTERVAL} seconds.
+	 * 
+	 * @return OnlineSnapshot
+	 */
+	public static OnlineSnapshot getOnlineSnapshot()
+	{
+		final OnlineSnapshot current = onlineSnapshot;
+		final int version = LOGGED_VERSION.get();
+		final long now = System.currentTimeMillis();
+		
+		if (current.version == version 
+			|| now - current.createdAt < SystemGlobals.getIntValue(ConfigKeys.SESSIONS_ONLINE_SNAPSHOT_INTERVAL) * 1000L) {
+			return current;
 		}
+		
+		final OnlineSnapshot snapshot = new OnlineSnapshot(
+			Collections.unmodifiableList(new ArrayList<UserSession>(LOGGED.values())), version, now);
+		onlineSnapshot = snapshot;
+		
+		return snapshot;
 	}
 	
 	/**
@@ -267,9 +348,7 @@ public class SessionFacade implements Cacheable
 	 */
 	public static int registeredSize()
 	{
-		final Integer count = (Integer)cache.get(FQN_COUNT, LOGGED_COUNT);
-
-		return (count == null ? 0 : count.intValue());
+		return LOGGED_COUNT.get();
 	}
 	
 	/**
@@ -278,20 +357,18 @@ public class SessionFacade implements Cacheable
 	 */
 	public static int anonymousSize()
 	{
-		final Integer count = (Integer)cache.get(FQN_COUNT, ANONYMOUS_COUNT);
-
-		return (count == null ? 0 : count.intValue());
+		return ANONYMOUS_COUNT.get();
 	}
 	
 	public static void clear()
 	{
-		synchronized (MUTEX_FQN) {
-			cache.add(FQN, new HashMap<String, UserSession>());
-			cache.add(FQN_COUNT, LOGGED_COUNT, Integer.valueOf(0));
-			cache.add(FQN_COUNT, ANONYMOUS_COUNT, Integer.valueOf(0));
-			cache.remove(FQN_LOGGED);
-			cache.remove(FQN_USER_ID);
-		}
+		SESSIONS.clear();
+		LOGGED.clear();
+		USER_IDS.clear();
+		USERNAMES.clear();
+		ANONYMOUS_COUNT.set(0);
+		LOGGED_COUNT.set(0);
+		LOGGED_VERSION.incrementAndGet();
 	}
 	
 	/**
@@ -312,13 +389,12 @@ public class SessionFacade implements Cacheable
 	 */
 	public static UserSession getUserSession(final String sessionId)
 	{
-		UserSession userSession = null;
-		if (cache == null) {
-			LOGGER.warn("Got a null cache in getUserSession. #" + sessionId);			
-		} else {
-			userSession = (UserSession)cache.get(FQN, sessionId);
+		if (sessionId == null) {
+			return null;
 		}
-		return userSession;
+		
+		final Registration registration = SESSIONS.get(sessionId);
+		return registration == null ? null : registration.userSession;
 	}
 
 	/**
@@ -340,26 +416,7 @@ public class SessionFacade implements Cacheable
 	 */
 	public static String isUserInSession(final String username)
 	{
-		String sessionId = null;
-		
-		final int aid = SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID);
-		
-		synchronized (MUTEX_FQN) {
-			for (final Iterator<?> iter = cache.getValues(FQN).iterator(); iter.hasNext(); ) {
-				final UserSession userSession = (UserSession)iter.next();
-				final String thisUsername = userSession.getUsername();
-				
-				if (thisUsername == null) {
-					continue;
-				}
-				
-				if (userSession.getUserId() != aid && thisUsername.equals(username)) {
-					sessionId = userSession.getSessionId();
-				}
-			}
-		}
-		
-		return sessionId;
+		return username == null ? null : USERNAMES.get(username);
 	}
 	
 	/**
@@ -372,7 +429,7 @@ public class SessionFacade implements Cacheable
 	 */
 	public static String isUserInSession(final int userId)
 	{
-		return (String)cache.get(FQN_USER_ID, Integer.toString(userId));
+		return USER_IDS.get(Integer.valueOf(userId));
 	}
 	
 	/**
@@ -405,59 +462,38 @@ public class SessionFacade implements Cacheable
 	}
 	
 	/**
-	 * Returns a map containing information about read time of a set of topics.
-	 * @return a map where the key is the topicId represented as an Integer, and the
-	 * value is a Long representing the read time of such topic. 
+	 * Returns what the user has read in the forums during the session.
+	 * @return the read state, created if the session has none yet
 	 */
-	public static Map<Integer, Long> getTopicsReadTime()
+	public static ReadState getReadState()
 	{
-		Map<Integer, Long> tracking = (Map<Integer, Long>)getAttribute(ConfigKeys.TOPICS_READ_TIME);
+		ReadState state = (ReadState)getAttribute(ConfigKeys.TOPICS_READ_STATE);
 		
-		if (tracking == null) {
-			tracking = new HashMap<Integer, Long>();
-			setAttribute(ConfigKeys.TOPICS_READ_TIME, tracking);
+		if (state == null) {
+			state = new ReadState();
+			setAttribute(ConfigKeys.TOPICS_READ_STATE, state);
 		}
 		
-		return tracking;
-	}
-	
-	/**
-	 * Returns a map with "all topics read" flags for some forum 
-	 * @return a map where the key is the forum id represented as an Integer, 
-	 * and the value is a Long representing the read time to be used in the verifications.
-	 */
-	public static Map<Integer, Long> getTopicsReadTimeByForum()
-	{
-		return (Map<Integer, Long>)getAttribute(ConfigKeys.TOPICS_READ_TIME_BY_FORUM);
+		return state;
 	}
 
 	/**
 	 * Persists user session information.
-	 * This method will get a <code>Connection</code> making a call to
-	 * <code>DBConnection.getImplementation().getConnection()</code>, and
-	 * then releasing the connection after the method is processed.   
+	 * The session is queued, and written later together with other expired sessions.
 	 * 
 	 * @param sessionId The session which we're going to persist information
+	 * @see SessionFlushRepository
 	 * @see #storeSessionData(String, Connection)
 	 */
 	public static void storeSessionData(final String sessionId)
 	{
-		Connection conn = null;
-		try {
-			if (DBConnection.getImplementation().isDatabaseUp()) {
-				conn = DBConnection.getImplementation().getConnection();
-				SessionFacade.storeSessionData(sessionId, conn);
-			}
-		}
-		finally {
-			if (conn != null) {
-				try {
-					DBConnection.getImplementation().releaseConnection(conn);
-				}
-				catch (Exception e) {
-					LOGGER.warn("Error while releasing a connection: " + e);
-				}
+		final UserSession userSession = SessionFacade.getUserSession(sessionId);
+		if (userSession != null) {
+			if (userSession.getUserId() != SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID)) {
+				SessionFlushRepository.add(userSession);
 			}
+			
+			SecurityRepository.remove(userSession.getUserId());
 		}
 	}
 
@@ -475,6 +511,7 @@ public class SessionFacade implements Cacheable
 		if (userSession != null) {
 			try {
 				if (userSession.getUserId() != SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID)) {
+					SessionFlushRepository.discard(userSession.getUserId());
 					DataAccessDriver.getInstance().newUserSessionDAO().update(userSession, conn);
 				}
 				
@@ -485,4 +522,54 @@ public class SessionFacade implements Cacheable
 			}
 		}
 	}
+	
+	/**
+	 * A registered session, with the user data it was registered with,
+	 * so it is removed from the same indexes and counters even if the 
+	 * <code>UserSession</code> changes in the meantime. 
+	 */
+	private static class Registration
+	{
+		static final int ANONYMOUS = 0;
+		static final int LOGGED = 1;
+		static final int BOT = 2;
+		
+		final UserSession userSession;
+		final int kind;
+		final int userId;
+		final String username;
+		
+		Registration(final UserSession userSession, final int kind)
+		{
+			this.userSession = userSession;
+			this.kind = kind;
+			this.userId = userSession.getUserId();
+			this.username = userSession.getUsername();
+		}
+	}
+	
+	/**
+	 * The logged users at some point in time
+	 */
+	public static class OnlineSnapshot
+	{
+		private final List<UserSession> loggedSessions;
+		private final int version;
+		private final long createdAt;
+		
+		OnlineSnapshot(final List<UserSession> loggedSessions, final int version, final long createdAt)
+		{
+			this.loggedSessions = loggedSessions;
+			this.version = version;
+			this.createdAt = createdAt;
+		}
+		
+		/**
+		 * @return An unmodifiable list with the sessions of the logged users
+		 */
+		public List<UserSession> getLoggedSessions()
+		{
+			return this.loggedSessions;
+		}
+	}
 }
@@ -43,7 +43,6 @@
 package net.jforum.api.integration.mail.pop;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 
 import net.jforum.JForumExecutionContext;
@@ -54,6 +53,7 @@ import net.jforum.context.standard.StandardRequestContext;
 import net.jforum.context.standard.StandardSessionContext;
 import net.jforum.dao.DataAccessDriver;
 import net.jforum.dao.ForumDAO;
+import net.jforum.entities.ReadState;
 import net.jforum.entities.Topic;
 import net.jforum.entities.User;
 import net.jforum.entities.UserSession;
@@ -85,7 +85,7 @@ public class POPPostAction
 			
 			JForumExecutionContext.set(executionContext);
 			
-			SessionFacade.setAttribute(ConfigKeys.TOPICS_READ_TIME, new HashMap<Integer, Long>());
+			SessionFacade.setAttribute(ConfigKeys.TOPICS_READ_STATE, new ReadState());
 			
 			for (final Iterator<POPMessage> iter = parser.getMessages().iterator(); iter.hasNext(); ) {
 				final POPMessage message = (POPMessage)iter.next();
@@ -36,37 +36,86 @@
  * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
  * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
  * 
- * Created on 17/03/2007 20:36:18
+ * Created on Oct 18, 2026 5:12:40 PM
  * The JForum Project
  * http://www.jforum.net
  */
-package net.jforum.util.concurrent;
-
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
-import org.apache.log4j.Logger;
+package net.jforum.cache;
 
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * @author Rafael Steil
- * @author Andowson Chang
+ * Hit, miss and eviction counters of a single cache region.
+ * 
  * @version $Id$
  */
-public final class Executor
+public class CacheStatistics
 {
-	private static final Logger LOGGER = Logger.getLogger(Executor.class);
-	private static ThreadPoolExecutor poolExecutor = new ThreadPoolExecutor(2, 10, 1000 * 60 * 10, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(5));
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+	
+	void hit()
+	{
+		this.hits.incrementAndGet();
+	}
+	
+	void miss()
+	{
+		this.misses.incrementAndGet();
+	}
+	
+	void evicted()
+	{
+		this.evictions.incrementAndGet();
+	}
+	
+	void expired()
+	{
+		this.expirations.incrementAndGet();
+	}
+	
+	public long getHits()
+	{
+		return this.hits.get();
+	}
+	
+	public long getMisses()
+	{
+		return this.misses.get();
+	}
 	
-	public static void execute(final Runnable runnable) {
-		try {
-			poolExecutor.execute(runnable);
-		}
-		catch (Exception e) {
-			LOGGER.error("Exception while running task: " + e, e);
-		}
+	public long getEvictions()
+	{
+		return this.evictions.get();
 	}
 	
-	private Executor() {}
+	public long getExpirations()
+	{
+		return this.expirations.get();
+	}
+	
+	/**
+	 * @return The ratio of hits over all lookups, or 0 if there were no lookups yet
+	 */
+	public double getHitRatio()
+	{
+		final long h = this.getHits();
+		final long total = h + this.getMisses();
+		return total == 0 ? 0 : (double)h / total;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString()
+	{
+		return new StringBuilder(64)
+			.append("hits=").append(this.getHits())
+			.append(", misses=").append(this.getMisses())
+			.append(", evictions=").append(this.getEvictions())
+			.append(", expirations=").append(this.getExpirations())
+			.toString();
+	}
 }
@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 5:20:12 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Thread safe, in-process cache engine.
+ * <p>
+ * Every fqn is kept in its own region, backed by a {@link ConcurrentHashMap},
+ * so lookups never block and writers only contend on the same lock stripe.
+ * Regions may be bounded by a maximum number of entries and a time to live, 
+ * configured through {@link ConfigKeys#CACHE_CONCURRENT_REGIONS}. When a bounded
+ * region overflows, the least recently used entries are evicted in a single pass
+ * until the region is back to 15/16 of its capacity, so the cost of the scan 
+ * is amortized over many insertions. 
+ * </p>
+ * <p>
+ * Hit, miss, eviction and expiration counters are kept per fqn and can be 
+ * retrieved with {@link #getStatistics()}.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class ConcurrentCacheEngine implements CacheEngine
+{
+	private static final Logger LOGGER = Logger.getLogger(ConcurrentCacheEngine.class);
+	
+	private transient ConcurrentMap<String, Region> regions;
+	private transient Map<String, long[]> regionSettings;
+	private transient int defaultMaxEntries;
+	private transient long defaultTimeToLive;
+	
+	/**
+	 * @see net.jforum.cache.CacheEngine#init()
+	 */
+	public void init()
+	{
+		this.regions = new ConcurrentHashMap<String, Region>();
+		this.regionSettings = new HashMap<String, long[]>();
+		this.defaultMaxEntries = this.intValue(ConfigKeys.CACHE_CONCURRENT_MAX_ENTRIES);
+		this.defaultTimeToLive = this.intValue(ConfigKeys.CACHE_CONCURRENT_TTL) * 1000L;
+		
+		final String settings = SystemGlobals.getValue(ConfigKeys.CACHE_CONCURRENT_REGIONS);
+		if (settings != null && settings.trim().length() > 0) {
+			final String[] parts = settings.split(",");
+			
+			for (int i = 0; i < parts.length; i++) {
+				this.configureRegion(parts[i].trim());
+			}
+		}
+	}
+	
+	/**
+	 * Parses a region definition in the form <code>fqn:maxEntries[:ttlSeconds]</code>
+	 * @param definition The definition to parse
+	 */
+	private void configureRegion(final String definition)
+	{
+		if (definition.length() == 0) {
+			return;
+		}
+		
+		final String[] values = definition.split(":");
+		
+		try {
+			final long maxEntries = Long.parseLong(values[1].trim());
+			final long ttl = values.length > 2 ? Long.parseLong(values[2].trim()) * 1000L : this.defaultTimeToLive;
+			
+			this.regionSettings.put(values[0].trim(), new long[] { maxEntries, ttl });
+		}
+		catch (Exception e) {
+			LOGGER.warn("Ignoring invalid cache region definition: " + definition);
+		}
+	}
+	
+	private int intValue(final String key)
+	{
+		final String value = SystemGlobals.getValue(key);
+		
+		if (value == null || value.trim().length() == 0) {
+			return 0;
+		}
+		
+		return Integer.parseInt(value.trim());
+	}
+	
+	/**
+	 * @see net.jforum.cache.CacheEngine#stop()
+	 */
+	public void stop()
+	{
+		if (this.regions != null) {
+			this.regions.clear();
+		}
+	}
+	
+	/**
+	 * @see net.jforum.cache.CacheEngine#add(java.lang.String, java.lang.Object)
+	 */
+	public void add(final String key, final Object value)
+	{
+		this.add(DUMMY_FQN, key, value);
+	}
+	
+	/**
+	 * @see net.jforum.cache.CacheEngine#add(java.lang.String, java.lang.String, java.lang.Object)
+	 */
+	public void add(final String fqn, final String key, final Object value)
+	{
+		this.regionFor(fqn).put(key, value);
+	}
+	
+	/**
+	 * @see net.jforum.cache.CacheEngine#get(java.lang.String, java.lang.String)
+	 */
+	public Object get(final String fqn, final String key)
+	{
+		final Region region = this.regions.get(fqn);
+		return region == null ? null : region.get(key);
+	}
+	
+	/**
+	 * Returns a snapshot of all non expired entries of the region.
+	 * 
+	 * @see net.jforum.cache.CacheEngine#get(java.lang.String)
+	 */
+	public Object get(final String fqn)
+	{
+		final Region region = this.regions.get(fqn);
+		return region == null ? null : region.snapshot();
+	}
+	
+	/**
+	 * @see net.jforum.cache.CacheEngine#getValues(java.lang.String)
+	 */
+	public Collection<Object> getValues(final String fqn)
+	{
+		final Region region = this.regions.get(fqn);
+		
+		if (region == null) {
+			return new ArrayList<Object>();
+		}
+		
+		return new ArrayList<Object>(region.snapshot().values());
+	}
+	
+	/**
+	 * @see net.jforum.cache.CacheEngine#remove(java.lang.String, java.lang.String)
+	 */
+	public void remove(final String fqn, final String key)
+	{
+		final Region region = this.regions.get(fqn);
+		
+		if (region != null) {
+			region.entries.remove(key);
+		}
+	}
+	
+	/**
+	 * @see net.jforum.cache.CacheEngine#remove(java.lang.String)
+	 */
+	public void remove(final String fqn)
+	{
+		this.regions.remove(fqn);
+	}
+	
+	/**
+	 * @return The statistics of every region currently in the cache, keyed by fqn
+	 */
+	public Map<String, CacheStatistics> getStatistics()
+	{
+		final Map<String, CacheStatistics> m = new HashMap<String, CacheStatistics>();
+		
+		for (final Iterator<Map.Entry<String, Region>> iter = this.regions.entrySet().iterator(); iter.hasNext(); ) {
+			final Map.Entry<String, Region> entry = iter.next();
+			m.put(entry.getKey(), entry.getValue().statistics);
+		}
+		
+		return m;
+	}
+	
+	/**
+	 * @param fqn The region to get the statistics for
+	 * @return The statistics, or <code>null</code> if the region does not exist
+	 */
+	public CacheStatistics getStatistics(final String fqn)
+	{
+		final Region region = this.regions.get(fqn);
+		return region == null ? null : region.statistics;
+	}
+	
+	/**
+	 * @param fqn The region
+	 * @return The number of entries currently held by the region, including
+	 * the ones that have expired but were not purged yet
+	 */
+	public int size(final String fqn)
+	{
+		final Region region = this.regions.get(fqn);
+		return region == null ? 0 : region.entries.size();
+	}
+	
+	private Region regionFor(final String fqn)
+	{
+		Region region = this.regions.get(fqn);
+		
+		if (region == null) {
+			final long[] settings = this.regionSettings.get(fqn);
+			
+			region = settings == null
+				? new Region(this.defaultMaxEntries, this.defaultTimeToLive)
+				: new Region((int)settings[0], settings[1]);
+			
+			final Region existing = this.regions.putIfAbsent(fqn, region);
+			
+			if (existing != null) {
+				region = existing;
+			}
+		}
+		
+		return region;
+	}
+	
+	private static final class Entry
+	{
+		final String key;
+		final Object value;
+		final long expiresAt;
+		volatile long lastAccess;
+		
+		Entry(final String key, final Object value, final long expiresAt, final long now)
+		{
+			this.key = key;
+			this.value = value;
+			this.expiresAt = expiresAt;
+			this.lastAccess = now;
+		}
+		
+		boolean isExpired(final long now)
+		{
+			return this.expiresAt > 0 && now >= this.expiresAt;
+		}
+	}
+	
+	private static final Comparator<Entry> LEAST_RECENTLY_USED = new Comparator<Entry>() {
+		public int compare(final Entry e1, final Entry e2)
+		{
+			return e1.lastAccess < e2.lastAccess ? -1 : (e1.lastAccess == e2.lastAccess ? 0 : 1);
+		}
+	};
+	
+	private static final class Region
+	{
+		final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+		final CacheStatistics statistics = new CacheStatistics();
+		final ReentrantLock evictionLock = new ReentrantLock();
+		final int maxEntries;
+		final long timeToLive;
+		
+		Region(final int maxEntries, final long timeToLive)
+		{
+			this.maxEntries = maxEntries;
+			this.timeToLive = timeToLive;
+		}
+		
+		private boolean isBounded()
+		{
+			return this.maxEntries > 0 || this.timeToLive > 0;
+		}
+		
+		Object get(final String key)
+		{
+			final Entry entry = this.entries.get(key);
+			
+			if (entry == null) {
+				this.statistics.miss();
+				return null;
+			}
+			
+			if (this.isBounded()) {
+				final long now = System.currentTimeMillis();
+				
+				if (entry.isExpired(now)) {
+					if (this.entries.remove(key, entry)) {
+						this.statistics.expired();
+					}
+					
+					this.statistics.miss();
+					return null;
+				}
+				
+				entry.lastAccess = now;
+			}
+			
+			this.statistics.hit();
+			return entry.value;
+		}
+		
+		void put(final String key, final Object value)
+		{
+			final long now = this.isBounded() ? System.currentTimeMillis() : 0;
+			final long expiresAt = this.timeToLive > 0 ? now + this.timeToLive : 0;
+			
+			this.entries.put(key, new Entry(key, value, expiresAt, now));
+			
+			if (this.maxEntries > 0 && this.entries.size() > this.maxEntries) {
+				this.evict();
+			}
+		}
+		
+		Map<String, Object> snapshot()
+		{
+			final Map<String, Object> m = new HashMap<String, Object>();
+			final long now = this.timeToLive > 0 ? System.currentTimeMillis() : 0;
+			
+			for (final Iterator<Entry> iter = this.entries.values().iterator(); iter.hasNext(); ) {
+				final Entry entry = iter.next();
+				
+				if (!entry.isExpired(now)) {
+					m.put(entry.key, entry.value);
+				}
+			}
+			
+			return m;
+		}
+		
+		/**
+		 * Removes expired entries and then the least recently used ones, 
+		 * until the region is at 15/16 of its capacity. Only one thread
+		 * evicts at a time; others simply go on with their insertion. 
+		 */
+		private void evict()
+		{
+			if (!this.evictionLock.tryLock()) {
+				return;
+			}
+			
+			try {
+				final long now = System.currentTimeMillis();
+				final List<Entry> candidates = new ArrayList<Entry>(this.entries.size());
+				
+				for (final Iterator<Entry> iter = this.entries.values().iterator(); iter.hasNext(); ) {
+					final Entry entry = iter.next();
+					
+					if (entry.isExpired(now)) {
+						if (this.entries.remove(entry.key, entry)) {
+							this.statistics.expired();
+						}
+					}
+					else {
+						candidates.add(entry);
+					}
+				}
+				
+				final int target = this.maxEntries - (this.maxEntries >> 4);
+				int excess = this.entries.size() - target;
+				
+				if (excess <= 0) {
+					return;
+				}
+				
+				final Entry[] sorted = candidates.toArray(new Entry[candidates.size()]);
+				Arrays.sort(sorted, LEAST_RECENTLY_USED);
+				
+				for (int i = 0; i < sorted.length && excess > 0; i++) {
+					if (this.entries.remove(sorted[i].key, sorted[i])) {
+						this.statistics.evicted();
+						excess--;
+					}
+				}
+				
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("Region evicted down to " + this.entries.size() + " entries: " + this.statistics);
+				}
+			}
+			finally {
+				this.evictionLock.unlock();
+			}
+		}
+	}
+}
@@ -112,6 +112,20 @@ public interface RequestContext
 	 */
 	String getHeader(String name);
 
+	/**
+	 * Returns the value of the specified request header as a <code>long</code> value that
+	 * represents a <code>Date</code> object, in milliseconds since the epoch. If the request
+	 * did not have a header of the specified name, this method returns -1.
+	 * 
+	 * @param name
+	 *            a <code>String</code> specifying the name of the header
+	 * 
+	 * @return a <code>long</code> value representing the date specified in the header, or -1
+	 *         if the named header was not included with the request
+	 * @exception IllegalArgumentException If the header value can't be converted to a date
+	 */
+	long getDateHeader(String name);
+
 	/**
 	 * Returns an array containing all of the <code>Cookie</code> objects the client sent with
 	 * this request. This method returns <code>null</code> if no cookies were sent.
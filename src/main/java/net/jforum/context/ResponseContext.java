@@ -85,6 +85,26 @@ public interface ResponseContext
 	 */
 	void setHeader(String name, String value);
 
+	/**
+	 * Sets a response header with the given name and date value. The date is specified in terms
+	 * of milliseconds since the epoch. If the header had already been set, the new value 
+	 * overwrites the previous one.
+	 * 
+	 * @param name the name of the header to set
+	 * @param date the assigned date value
+	 */
+	void setDateHeader(String name, long date);
+
+	/**
+	 * Sets the status code for this response, for the cases when there is no error, 
+	 * like 206 (Partial Content) or 304 (Not Modified). 
+	 * Use <code>sendError</code> to report an error.
+	 * 
+	 * @param statusCode the status code
+	 * @see #sendError
+	 */
+	void setStatus(int statusCode);
+
 	/**
 	 * Adds the specified cookie to the response. This method can be called multiple times to set
 	 * more than one cookie.
@@ -130,6 +130,11 @@ public class StandardRequestContext implements RequestContext
 		return null;
 	}
 
+	public long getDateHeader(final String name)
+	{
+		return -1;
+	}
+
 	/**
 	 * @see net.jforum.context.RequestContext#getIntParameter(java.lang.String)
 	 */
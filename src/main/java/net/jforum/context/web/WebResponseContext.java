@@ -82,6 +82,16 @@ public class WebResponseContext implements ResponseContext
 		response.setHeader(name, value);
 	}
 
+	public void setDateHeader(final String name, final long date)
+	{
+		response.setDateHeader(name, date);
+	}
+
+	public void setStatus(final int statusCode)
+	{
+		response.setStatus(statusCode);
+	}
+
 	public void addCookie(final Cookie cookie)
 	{
 		response.addCookie(cookie);
@@ -72,6 +72,13 @@ public interface AttachmentDAO
 	 */
 	void updateAttachment(Attachment attachment);
 	
+	/**
+	 * Increments the download count of a set of attachments, in a single batch
+	 * 
+	 * @param downloads The number of downloads to add, keyed by attachment ID
+	 */
+	void incrementDownloadCount(Map<Integer, Integer> downloads);
+	
 	/**
 	 * Remove an attachment.
 	 * 
@@ -109,6 +109,18 @@ public interface TopicDAO
      * @param count int
 	 */
 	List<Topic> selectAllByForumByLimit(int forumId, int startFrom, int count) ;
+	
+	/**
+	 * Selects the topics listed after some topic of a forum, in the same order 
+	 * as {@link #selectAllByForumByLimit(int, int, int)}. Unlike it, the database 
+	 * does not have to skip all previous topics, so deep pages are as fast as the first ones.
+	 * 
+	 * @param forumId The forum id to select the topics
+	 * @param last The last topic of the previous page. Its type and last post id must be set
+	 * @param count The maximum number of topics to return
+	 * @return <code>ArrayList</code> with the topics found. Each entry is a <code>net.jforum.Topic</code> object
+	 */
+	List<Topic> selectAllByForumAfter(int forumId, Topic last, int count) ;
 
     /**
      * Selects all topics associated to a specific user and belonging to
@@ -171,6 +183,13 @@ public interface TopicDAO
 	 */
 	void incrementTotalViews(int topicId) ;
 	
+	/**
+	 * Increments the number of times a set of topics was saw, in a single batch
+	 * 
+	 * @param views The number of views to add, keyed by topic ID
+	 */
+	void incrementTotalViews(Map<Integer, Integer> views) ;
+	
 	/**
 	 * Increments the number of replies the topic has
 	 * 
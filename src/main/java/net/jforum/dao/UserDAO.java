@@ -42,7 +42,9 @@
  */
 package net.jforum.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import net.jforum.entities.User;
 
@@ -383,4 +385,13 @@ public interface UserDAO
 	 * @return the user instance if a match is found, or null otherwise
 	 */
 	User findByEmail(String email) ;
+	
+	/**
+	 * Selects the summary of some users, as shown in listings. Only the id, username, 
+	 * rank, avatar, total of posts and karma of each user are set.
+	 * 
+	 * @param userIds The ids of the users to select
+	 * @return The users found, by id
+	 */
+	Map<Integer, User> selectSummaries(Collection<Integer> userIds) ;
 }
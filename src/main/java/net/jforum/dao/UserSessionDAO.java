@@ -43,6 +43,7 @@
 package net.jforum.dao;
 
 import java.sql.Connection;
+import java.util.List;
 
 import net.jforum.entities.UserSession;
 
@@ -81,6 +82,16 @@ public interface UserSessionDAO
 	 */
 	void update(UserSession userSession, Connection conn) ;
 	
+	/**
+	 * Updates many <code>UserSession</code>s at once, adding the ones 
+	 * not yet stored. There must be at most one session per user in the list.
+	 * 
+	 * @param sessions The sessions to update
+	 * @param conn The {@link java.sql.Connection} object to use.
+	 * @see #update(UserSession, Connection)
+	 */
+	void update(List<UserSession> sessions, Connection conn) ;
+	
 	/**
 	 * Gets a <code>UserSession</code> from the database.
 	 * The object passed as argument should at least have the user id 
@@ -49,6 +49,7 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -700,6 +701,38 @@ public class GenericAttachmentDAO extends AutoKeys implements net.jforum.dao.Att
 		}
 	}
 
+	/**
+	 * @see net.jforum.dao.AttachmentDAO#incrementDownloadCount(java.util.Map)
+	 */
+	public void incrementDownloadCount(final Map<Integer, Integer> downloads)
+	{
+		if (downloads.isEmpty()) {
+			return;
+		}
+		
+		PreparedStatement pstmt = null;
+		try {
+			pstmt = JForumExecutionContext.getConnection().prepareStatement(
+					SystemGlobals.getSql("AttachmentModel.incrementDownloadCount"));
+			
+			for (final Iterator<Map.Entry<Integer, Integer>> iter = downloads.entrySet().iterator(); iter.hasNext(); ) {
+				final Map.Entry<Integer, Integer> entry = iter.next();
+				
+				pstmt.setInt(1, entry.getValue().intValue());
+				pstmt.setInt(2, entry.getKey().intValue());
+				pstmt.addBatch();
+			}
+			
+			pstmt.executeBatch();
+		}
+		catch (SQLException e) {
+			throw new DatabaseException(e);
+		}
+		finally {
+			DbUtils.close(pstmt);
+		}
+	}
+
 	/**
 	 * @see net.jforum.dao.AttachmentDAO#selectAttachments(int)
 	 */
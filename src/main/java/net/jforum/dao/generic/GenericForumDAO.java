@@ -767,6 +767,8 @@ public class GenericForumDAO extends AutoKeys implements net.jforum.dao.ForumDAO
 				resultSet.close();
 				stmt.close();
 
+				forumStats.setFirstPostTime(firstTime == null ? null : new Date(firstTime.getTime()));
+
 				Date today = new Date();
 
 				postPerDay = firstTime == null ? 0 : (double)forumStats.getPosts() / this.daysUntilToday(today, firstTime);
@@ -787,6 +789,8 @@ public class GenericForumDAO extends AutoKeys implements net.jforum.dao.ForumDAO
 					}
 				}
 
+				forumStats.setFirstUserTime(firstTime == null ? null : new Date(firstTime.getTime()));
+
 				userPerDay = firstTime == null ? 0 : (double)forumStats.getUsers() / this.daysUntilToday(today, firstTime);
 			}
 
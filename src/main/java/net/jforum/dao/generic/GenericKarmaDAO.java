@@ -57,6 +57,7 @@ import net.jforum.entities.Karma;
 import net.jforum.entities.KarmaStatus;
 import net.jforum.entities.User;
 import net.jforum.exceptions.DatabaseException;
+import net.jforum.repository.UserSummaryRepository;
 import net.jforum.util.DbUtils;
 import net.jforum.util.preferences.SystemGlobals;
 
@@ -160,6 +161,7 @@ public class GenericKarmaDAO implements net.jforum.dao.KarmaDAO
 			pstmt.setDouble(1, karmaPoints);
 			pstmt.setInt(2, userId);
 			pstmt.executeUpdate();
+			UserSummaryRepository.remove(userId);
 		}
 		catch (SQLException e) {
 			throw new DatabaseException(e);
@@ -63,6 +63,7 @@ import net.jforum.entities.Post;
 import net.jforum.entities.PostComments;
 import net.jforum.exceptions.DatabaseException;
 import net.jforum.repository.ForumRepository;
+import net.jforum.repository.RenderedPostRepository;
 import net.jforum.search.SearchFacade;
 import net.jforum.util.DbUtils;
 import net.jforum.util.preferences.ConfigKeys;
@@ -209,6 +210,7 @@ public class GenericPostDAO extends AutoKeys implements net.jforum.dao.PostDAO
 				pstmtPost.executeUpdate();
 				
 				SearchFacade.delete(post);
+				RenderedPostRepository.remove(post.getId());
 				userDAO.decrementPosts(post.getUserId());
 			}
 		}
@@ -262,6 +264,7 @@ public class GenericPostDAO extends AutoKeys implements net.jforum.dao.PostDAO
 	{
 		this.updatePostsTable(post);
 		this.updatePostsTextTable(post);
+		RenderedPostRepository.remove(post.getId());
 
 		SearchFacade.update(post);
 	}
@@ -68,6 +68,7 @@ import net.jforum.entities.Topic;
 import net.jforum.entities.User;
 import net.jforum.exceptions.DatabaseException;
 import net.jforum.repository.ForumRepository;
+import net.jforum.repository.UserSummaryRepository;
 import net.jforum.search.SearchArgs;
 import net.jforum.search.SearchResult;
 import net.jforum.util.DbUtils;
@@ -379,6 +380,38 @@ public class GenericTopicDAO extends AutoKeys implements TopicDAO
 			DbUtils.close(pstmt);
 		}
 	}
+	
+	/**
+	 * @see net.jforum.dao.TopicDAO#incrementTotalViews(java.util.Map)
+	 */
+	public void incrementTotalViews(Map<Integer, Integer> views)
+	{
+		if (views.isEmpty()) {
+			return;
+		}
+		
+		PreparedStatement pstmt = null;
+		try {
+			pstmt = JForumExecutionContext.getConnection().prepareStatement(
+				SystemGlobals.getSql("TopicModel.incrementTotalViewsBy"));
+			
+			for (Iterator<Map.Entry<Integer, Integer>> iter = views.entrySet().iterator(); iter.hasNext(); ) {
+				Map.Entry<Integer, Integer> entry = iter.next();
+				
+				pstmt.setInt(1, entry.getValue().intValue());
+				pstmt.setInt(2, entry.getKey().intValue());
+				pstmt.addBatch();
+			}
+			
+			pstmt.executeBatch();
+		}
+		catch (SQLException e) {
+			throw new DatabaseException(e);
+		}
+		finally {
+			DbUtils.close(pstmt);
+		}
+	}
 
 	/**
 	 * @see net.jforum.dao.TopicDAO#incrementTotalReplies(int)
@@ -475,6 +508,36 @@ public class GenericTopicDAO extends AutoKeys implements TopicDAO
 		}
 	}
 
+	/**
+	 * @see net.jforum.dao.TopicDAO#selectAllByForumAfter(int, net.jforum.entities.Topic, int)
+	 */
+	public List<Topic> selectAllByForumAfter(int forumId, Topic last, int count)
+	{
+		String sql = SystemGlobals.getSql("TopicModel.selectAllByForumAfter");
+
+		PreparedStatement pstmt = null;
+
+		try {
+			pstmt = JForumExecutionContext.getConnection().prepareStatement(sql);
+			pstmt.setInt(1, forumId);
+			pstmt.setInt(2, forumId);
+			pstmt.setInt(3, last.getType());
+			pstmt.setInt(4, last.getType());
+			pstmt.setInt(5, last.getLastPostId());
+			
+			// Not part of the query, so it works the same with every database
+			pstmt.setMaxRows(count);
+
+			return this.fillTopicsData(pstmt);
+		}
+		catch (SQLException e) {
+			throw new DatabaseException(e);
+		}
+		finally {
+			DbUtils.close(pstmt);
+		}
+	}
+
 	/**
 	 * @see net.jforum.dao.TopicDAO#selectByUserByLimit(int, int, int)
 	 */
@@ -878,16 +941,12 @@ public class GenericTopicDAO extends AutoKeys implements TopicDAO
 	{
 		List<Topic> l = new ArrayList<Topic>();
 		ResultSet rs = null;
-		PreparedStatement pstmt2 = null;
 		
 		try {
 			rs = pstmt.executeQuery();
 
 			SimpleDateFormat df = new SimpleDateFormat(SystemGlobals.getValue(ConfigKeys.DATE_TIME_FORMAT), Locale.getDefault());
 
-			StringBuffer sbFirst = new StringBuffer(128);
-			StringBuffer sbLast = new StringBuffer(128);
-
 			while (rs.next()) {
 				Topic topic = this.getBaseTopicData(rs);
 
@@ -907,35 +966,9 @@ public class GenericTopicDAO extends AutoKeys implements TopicDAO
 				topic.setLastPostDate(new Date(rs.getTimestamp("post_time").getTime()));
 
 				l.add(topic);
-
-				sbFirst.append(rs.getInt(USER_ID)).append(',');
-				sbLast.append(rs.getInt("last_user_id")).append(',');
 			}
 
-			rs.close();
-
-			// Users
-			if (sbFirst.length() > 0) {
-				sbLast.delete(sbLast.length() - 1, sbLast.length());
-
-				String sql = SystemGlobals.getSql("TopicModel.getUserInformation");
-				sql = sql.replaceAll("#ID#", sbFirst.toString() + sbLast.toString());
-
-				Map<Integer, String> users = new HashMap<Integer, String>();
-
-				pstmt2 = JForumExecutionContext.getConnection().prepareStatement(sql);
-				rs = pstmt2.executeQuery();
-
-				while (rs.next()) {
-					users.put(Integer.valueOf(rs.getInt(USER_ID)), rs.getString("username"));
-				}
-
-				for (Iterator<Topic> iter = l.iterator(); iter.hasNext();) {
-					Topic topic = (Topic) iter.next();
-					topic.getPostedBy().setUsername(users.get(Integer.valueOf(topic.getPostedBy().getId())));
-					topic.getLastPostBy().setUsername(users.get(Integer.valueOf(topic.getLastPostBy().getId())));
-				}
-			}
+			this.fillPosterNames(l);
 
 			return l;
 		}
@@ -944,9 +977,38 @@ public class GenericTopicDAO extends AutoKeys implements TopicDAO
 		}
 		finally {
 			DbUtils.close(rs);
-			DbUtils.close(pstmt2);
 		}
 	}
+	
+	/**
+	 * Sets the username of who started and who last posted in some topics
+	 * 
+	 * @param topics The topics, with the ids of both users set 
+	 */
+	protected void fillPosterNames(List<Topic> topics)
+	{
+		List<Integer> ids = new ArrayList<Integer>(topics.size() * 2);
+		
+		for (Iterator<Topic> iter = topics.iterator(); iter.hasNext();) {
+			Topic topic = iter.next();
+			ids.add(Integer.valueOf(topic.getPostedBy().getId()));
+			ids.add(Integer.valueOf(topic.getLastPostBy().getId()));
+		}
+		
+		Map<Integer, User> users = UserSummaryRepository.getUsers(ids);
+
+		for (Iterator<Topic> iter = topics.iterator(); iter.hasNext();) {
+			Topic topic = iter.next();
+			topic.getPostedBy().setUsername(this.username(users, topic.getPostedBy().getId()));
+			topic.getLastPostBy().setUsername(this.username(users, topic.getLastPostBy().getId()));
+		}
+	}
+	
+	private String username(Map<Integer, User> users, int userId)
+	{
+		User user = users.get(Integer.valueOf(userId));
+		return (user == null ? null : user.getUsername());
+	}
 
 	/**
 	 * @see net.jforum.dao.TopicDAO#selectRecentTopics(int)
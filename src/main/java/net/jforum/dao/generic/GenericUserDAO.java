@@ -47,9 +47,12 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import net.jforum.JForumExecutionContext;
 import net.jforum.dao.DataAccessDriver;
@@ -59,6 +62,7 @@ import net.jforum.entities.KarmaStatus;
 import net.jforum.entities.User;
 import net.jforum.exceptions.DatabaseException;
 import net.jforum.exceptions.ForumException;
+import net.jforum.repository.UserSummaryRepository;
 import net.jforum.sso.LoginAuthenticator;
 import net.jforum.util.DbUtils;
 import net.jforum.util.preferences.ConfigKeys;
@@ -313,6 +317,7 @@ public class GenericUserDAO extends AutoKeys implements UserDAO
 			pstmt.setInt(32, user.getId());
 
 			pstmt.executeUpdate();
+			UserSummaryRepository.remove(user.getId());
 		}
 		catch (SQLException e) {
 			throw new DatabaseException(e);
@@ -394,6 +399,7 @@ public class GenericUserDAO extends AutoKeys implements UserDAO
 			pstmt.setInt(1, userId);
 
 			pstmt.executeUpdate();
+			UserSummaryRepository.remove(userId);
 		}
 		catch (SQLException e) {
 			throw new DatabaseException(e);
@@ -415,6 +421,7 @@ public class GenericUserDAO extends AutoKeys implements UserDAO
 			pstmt.setInt(1, userId);
 
 			pstmt.executeUpdate();
+			UserSummaryRepository.remove(userId);
 		}
 		catch (SQLException e) {
 			throw new DatabaseException(e);
@@ -436,6 +443,7 @@ public class GenericUserDAO extends AutoKeys implements UserDAO
 			pstmt.setInt(2, userId);
 
 			pstmt.executeUpdate();
+			UserSummaryRepository.remove(userId);
 		}
 		catch (SQLException e) {
 			throw new DatabaseException(e);
@@ -986,6 +994,7 @@ public class GenericUserDAO extends AutoKeys implements UserDAO
 			pstmt.setString(1, username);
 			pstmt.setInt(2, userId);
 			pstmt.executeUpdate();
+			UserSummaryRepository.remove(userId);
 		}
 		catch (SQLException e) {
 			throw new DatabaseException(e);
@@ -1133,4 +1142,55 @@ public class GenericUserDAO extends AutoKeys implements UserDAO
 		
 		return user;
 	}
+	
+	/**
+	 * @see net.jforum.dao.UserDAO#selectSummaries(java.util.Collection)
+	 */
+	public Map<Integer, User> selectSummaries(Collection<Integer> userIds)
+	{
+		Map<Integer, User> users = new HashMap<Integer, User>();
+		
+		if (userIds.isEmpty()) {
+			return users;
+		}
+		
+		StringBuffer ids = new StringBuffer(userIds.size() * 6);
+		
+		for (Iterator<Integer> iter = userIds.iterator(); iter.hasNext(); ) {
+			ids.append(iter.next().intValue()).append(',');
+		}
+		
+		ids.deleteCharAt(ids.length() - 1);
+		
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		
+		try {
+			pstmt = JForumExecutionContext.getConnection().prepareStatement(
+					SystemGlobals.getSql("UserModel.selectSummaries").replaceAll(":ids:", ids.toString()));
+			rs = pstmt.executeQuery();
+			
+			while (rs.next()) {
+				User user = new User();
+				
+				user.setId(rs.getInt("user_id"));
+				user.setUsername(rs.getString("username"));
+				user.setRankId(rs.getInt("rank_id"));
+				user.setAvatar(rs.getString("user_avatar"));
+				user.setAvatarEnabled(rs.getInt("user_allowavatar") == 1);
+				user.setTotalPosts(rs.getInt("user_posts"));
+				user.setKarma(new KarmaStatus(user.getId(), rs.getDouble("user_karma")));
+				
+				users.put(Integer.valueOf(user.getId()), user);
+			}
+		}
+		catch (SQLException e) {
+			throw new DatabaseException(e);
+		}
+		finally {
+			DbUtils.close(rs, pstmt);
+		}
+		
+		return users;
+	}
 }
@@ -46,7 +46,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import net.jforum.entities.UserSession;
 import net.jforum.exceptions.DatabaseException;
@@ -121,6 +125,87 @@ public class GenericUserSessionDAO implements net.jforum.dao.UserSessionDAO
 		}
 	}
 
+	/**
+	 * @see net.jforum.dao.UserSessionDAO#update(java.util.List, java.sql.Connection)
+	 */
+	public void update(List<UserSession> sessions, Connection conn)
+	{
+		if (sessions.isEmpty()) {
+			return;
+		}
+
+		List<UserSession> missing = new ArrayList<UserSession>();
+		List<UserSession> unknown = new ArrayList<UserSession>();
+
+		PreparedStatement pstmt = null;
+		try {
+			pstmt = conn.prepareStatement(SystemGlobals.getSql("UserSessionModel.update"));
+
+			for (Iterator<UserSession> iter = sessions.iterator(); iter.hasNext(); ) {
+				UserSession us = iter.next();
+
+				pstmt.setTimestamp(1, new Timestamp(us.getStartTime().getTime()));
+				pstmt.setLong(2, us.getSessionTime());
+				pstmt.setString(3, us.getSessionId());
+				pstmt.setString(4, us.getIp());
+				pstmt.setInt(5, us.getUserId());
+				pstmt.addBatch();
+			}
+
+			int[] counts = pstmt.executeBatch();
+
+			for (int i = 0; i < sessions.size(); i++) {
+				if (i >= counts.length || counts[i] == Statement.SUCCESS_NO_INFO) {
+					unknown.add(sessions.get(i));
+				}
+				else if (counts[i] == 0) {
+					missing.add(sessions.get(i));
+				}
+			}
+		}
+		catch (SQLException e) {
+			throw new DatabaseException(e);
+		}
+		finally {
+			DbUtils.close(pstmt);
+		}
+
+		// Some drivers, like Oracle's, do not tell which rows were updated
+		for (Iterator<UserSession> iter = unknown.iterator(); iter.hasNext(); ) {
+			UserSession us = iter.next();
+
+			if (this.selectById(us, conn) == null) {
+				missing.add(us);
+			}
+		}
+
+		if (missing.isEmpty()) {
+			return;
+		}
+
+		try {
+			pstmt = conn.prepareStatement(SystemGlobals.getSql("UserSessionModel.add"));
+
+			for (Iterator<UserSession> iter = missing.iterator(); iter.hasNext(); ) {
+				UserSession us = iter.next();
+
+				pstmt.setString(1, us.getSessionId());
+				pstmt.setInt(2, us.getUserId());
+				pstmt.setTimestamp(3, new Timestamp(us.getStartTime().getTime()));
+				pstmt.setString(4, us.getIp());
+				pstmt.addBatch();
+			}
+
+			pstmt.executeBatch();
+		}
+		catch (SQLException e) {
+			throw new DatabaseException(e);
+		}
+		finally {
+			DbUtils.close(pstmt);
+		}
+	}
+
 	/**
 	 * @see net.jforum.dao.UserSessionDAO#selectById(net.jforum.entities.UserSession,
 	 *      java.sql.Connection)
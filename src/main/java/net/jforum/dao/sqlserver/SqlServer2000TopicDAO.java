@@ -48,11 +48,8 @@ import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 import net.jforum.JForumExecutionContext;
 import net.jforum.dao.generic.GenericTopicDAO;
@@ -185,8 +182,6 @@ public class SqlServer2000TopicDAO extends GenericTopicDAO
 		 */
 	private List<Topic> fillTopicsDataByLimit(PreparedStatement pstmt, int startFrom) {
 		List<Topic> l = new ArrayList<Topic>();
-		PreparedStatement pstmt2 = null;
-
 		ResultSet rs = null;
 		try {
 			rs = pstmt.executeQuery();
@@ -194,9 +189,6 @@ public class SqlServer2000TopicDAO extends GenericTopicDAO
 
 			SimpleDateFormat df = new SimpleDateFormat(SystemGlobals.getValue(ConfigKeys.DATE_TIME_FORMAT), Locale.getDefault());
 
-			StringBuffer sbFirst = new StringBuffer(128);
-			StringBuffer sbLast = new StringBuffer(128);
-
 			while (rs.next()) {
 				Topic topic = this.getBaseTopicData(rs);
 
@@ -216,44 +208,15 @@ public class SqlServer2000TopicDAO extends GenericTopicDAO
 				topic.setLastPostDate(new Date(rs.getTimestamp("post_time").getTime()));
 
 				l.add(topic);
-
-				sbFirst.append(rs.getInt("user_id")).append(',');
-				sbLast.append(rs.getInt("last_user_id")).append(',');
 			}
 
-			rs.close();
-
-			// Users
-			if (sbFirst.length() > 0) {
-				sbLast.delete(sbLast.length() - 1, sbLast.length());
-
-				String sql = SystemGlobals
-						.getSql("TopicModel.getUserInformation");
-				sql = sql.replaceAll("#ID#", sbFirst.toString()
-						+ sbLast.toString());
-
-				Map<Integer, String> users = new HashMap<Integer, String>();
-
-				pstmt2 = JForumExecutionContext.getConnection().prepareStatement(sql);
-				rs = pstmt2.executeQuery();
-
-				while (rs.next()) {
-					users.put(Integer.valueOf(rs.getInt("user_id")), rs.getString("username"));
-				}
-
-				for (Iterator<Topic> iter = l.iterator(); iter.hasNext();) {
-					Topic topic = (Topic) iter.next();
-					topic.getPostedBy().setUsername(users.get(Integer.valueOf(topic.getPostedBy().getId())));
-					topic.getLastPostBy().setUsername(users.get(Integer.valueOf(topic.getLastPostBy().getId())));
-				}
-			}
+			this.fillPosterNames(l);
 
 			return l;
 		} catch (SQLException e) {
 			throw new DatabaseException(e);
 		} finally {
 			DbUtils.close(rs);
-			DbUtils.close(pstmt2);
 		}
 	}
 }
@@ -44,6 +44,7 @@ package net.jforum.entities;
 
 import java.io.File;
 
+import net.jforum.util.image.ThumbnailService;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
 
@@ -152,6 +153,9 @@ public class Attachment
 		    + "/" + this.info.getPhysicalFilename();
 		String realPath = SystemGlobals.getValue(ConfigKeys.ATTACHMENTS_STORE_DIR)
 		    + "/" + this.info.getPhysicalFilename();
+		if (ThumbnailService.isPending(realPath)) {
+			return SystemGlobals.getValue(ConfigKeys.ATTACHMENTS_IMAGES_THUMB_PLACEHOLDER);
+		}
 		if (new File(realPath + "_thumb").exists()) {
 			return urlPath + "_thumb";
 		} 
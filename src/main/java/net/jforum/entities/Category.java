@@ -45,6 +45,7 @@ package net.jforum.entities;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -83,6 +84,7 @@ public class Category implements Serializable, Comparable<Category>
 	private String name;
 	private Map<Integer, Forum> forumsIdMap = new HashMap<Integer, Forum>();
 	private Set<Forum> forums = new TreeSet<Forum>(new ForumOrderComparator());
+	private List<Forum> accessibleForums;
 		
 	public Category() {}
 	
@@ -108,6 +110,28 @@ public class Category implements Serializable, Comparable<Category>
 		}
 	}
 	
+	/**
+	 * Creates a read only copy of a category, with only the forums 
+	 * some user can access. These forums are returned by {@link #getForums()} 
+	 * as they are, with no further permission checks.
+	 * 
+	 * @param category The category to copy
+	 * @param accessibleForums The forums to keep, in display order
+	 */
+	public Category(Category category, List<Forum> accessibleForums) {
+		this.name = category.getName();
+		this.id = category.getId();
+		this.order = category.getOrder();
+		this.moderated = category.isModerated();
+		this.accessibleForums = Collections.unmodifiableList(accessibleForums);
+		
+		for (Iterator<Forum> iter = accessibleForums.iterator(); iter.hasNext(); ) {
+			Forum forum = iter.next();
+			this.forumsIdMap.put(Integer.valueOf(forum.getId()), forum);
+			this.forums.add(forum);
+		}
+	}
+	
 	public void setModerated(boolean status)
 	{
 		this.moderated = status;
@@ -274,7 +298,7 @@ public class Category implements Serializable, Comparable<Category>
 	public Forum getForum(int userId, int forumId)
 	{
 		PermissionControl pc = SecurityRepository.get(userId);
-		if (pc.canAccess(SecurityConstants.PERM_FORUM, Integer.toString(forumId))) {
+		if (pc.canAccess(SecurityConstants.PERM_FORUM, forumId)) {
 			return this.forumsIdMap.get(Integer.valueOf(forumId));
 		}
 		
@@ -302,6 +326,10 @@ public class Category implements Serializable, Comparable<Category>
 	 */
 	public Collection<Forum> getForums()
 	{
+		if (this.accessibleForums != null) {
+			return this.accessibleForums;
+		}
+		
 		if (this.forums.size() == 0) {
 			return this.forums;
 		}
@@ -318,12 +346,23 @@ public class Category implements Serializable, Comparable<Category>
 	 */
 	public Collection<Forum> getForums(int userId) 
 	{
-		PermissionControl pc = SecurityRepository.get(userId);
+		return this.getForums(SecurityRepository.get(userId));
+	}
+	
+	/**
+	 * Gets the forums of this category accessible with some permissions.
+	 * 
+	 * @param pc The permissions to check
+	 * @return The forums accessible, in display order
+	 * @see #getForums(int)
+	 */
+	public List<Forum> getForums(PermissionControl pc)
+	{
 		List<Forum> forums = new ArrayList<Forum>();
 
 		for (Iterator<Forum> iter = this.forums.iterator(); iter.hasNext(); ) {
 			Forum forum = iter.next();
-			if (pc.canAccess(SecurityConstants.PERM_FORUM, Integer.toString(forum.getId()))) {
+			if (pc.canAccess(SecurityConstants.PERM_FORUM, forum.getId())) {
 				forums.add(forum);
 			}
 		}
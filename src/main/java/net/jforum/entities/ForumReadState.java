@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 10:32:05 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.entities;
+
+import java.io.Serializable;
+
+/**
+ * Topics of a forum read by some user. 
+ * <p>
+ * All topics with no posts after the forum's high-water mark are read. Above 
+ * the mark, only the topics the user actually read are kept, in sorted 
+ * primitive arrays, with the time they were read. Reads at or below the mark 
+ * say nothing new, so they are dropped as the mark rises.
+ * </p>
+ * 
+ * This class is not thread safe. 
+ * 
+ * @version $Id$
+ * @see ReadState
+ */
+public class ForumReadState implements Serializable
+{
+	private static final long serialVersionUID = 2113649874409853231L;
+	
+	private static final int INITIAL_CAPACITY = 8;
+	
+	private long mark;
+	private int size;
+	private int[] topicIds = new int[0];
+	private long[] readTimes = new long[0];
+	
+	/**
+	 * @return The time, in milliseconds, before which all topics of the forum are read
+	 */
+	public long getMark()
+	{
+		return this.mark;
+	}
+	
+	/**
+	 * @return The number of topics read above the mark
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+	
+	/**
+	 * Raises the high-water mark, dropping the topics read before it.
+	 * 
+	 * @param time The new mark, in milliseconds. Ignored if lower than the current one
+	 */
+	public void raiseMark(final long time)
+	{
+		if (time <= this.mark) {
+			return;
+		}
+		
+		this.mark = time;
+		
+		int kept = 0;
+		
+		for (int i = 0; i < this.size; i++) {
+			if (this.readTimes[i] > time) {
+				this.topicIds[kept] = this.topicIds[i];
+				this.readTimes[kept] = this.readTimes[i];
+				kept++;
+			}
+		}
+		
+		this.size = kept;
+	}
+	
+	/**
+	 * Registers that a topic was read
+	 * 
+	 * @param topicId The topic id
+	 * @param time The time, in milliseconds, the topic was read
+	 */
+	public void markTopic(final int topicId, final long time)
+	{
+		if (time <= this.mark) {
+			return;
+		}
+		
+		int index = this.indexOf(topicId);
+		
+		if (index >= 0) {
+			this.readTimes[index] = Math.max(this.readTimes[index], time);
+			return;
+		}
+		
+		index = -(index + 1);
+		
+		if (this.size == this.topicIds.length) {
+			final int capacity = Math.max(INITIAL_CAPACITY, this.size + (this.size >> 1));
+			final int[] ids = new int[capacity];
+			final long[] times = new long[capacity];
+			
+			System.arraycopy(this.topicIds, 0, ids, 0, this.size);
+			System.arraycopy(this.readTimes, 0, times, 0, this.size);
+			
+			this.topicIds = ids;
+			this.readTimes = times;
+		}
+		
+		System.arraycopy(this.topicIds, index, this.topicIds, index + 1, this.size - index);
+		System.arraycopy(this.readTimes, index, this.readTimes, index + 1, this.size - index);
+		
+		this.topicIds[index] = topicId;
+		this.readTimes[index] = time;
+		this.size++;
+	}
+	
+	/**
+	 * Checks if the user read a topic of this forum. 
+	 * 
+	 * @param topicId The topic id
+	 * @param lastPostTime The time, in milliseconds, of the last post of the topic
+	 * @return <code>true</code> if there are no posts after the user read the topic
+	 */
+	public boolean isRead(final int topicId, final long lastPostTime)
+	{
+		if (lastPostTime < this.mark) {
+			return true;
+		}
+		
+		final int index = this.indexOf(topicId);
+		return index >= 0 && this.readTimes[index] > lastPostTime;
+	}
+	
+	private int indexOf(final int topicId)
+	{
+		int low = 0;
+		int high = this.size - 1;
+		
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int value = this.topicIds[middle];
+			
+			if (value < topicId) {
+				low = middle + 1;
+			}
+			else if (value > topicId) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		
+		return -(low + 1);
+	}
+}
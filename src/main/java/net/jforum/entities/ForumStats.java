@@ -42,6 +42,8 @@
  */
 package net.jforum.entities;
 
+import java.util.Date;
+
 /**
  * @author Rafael Steil
  * @version $Id$
@@ -54,6 +56,8 @@ public class ForumStats
 	private double postsPerDay;
 	private double topicsPerDay;
 	private double usersPerDay;
+	private Date firstPostTime;
+	private Date firstUserTime;
 	
 	/**
 	 * @return Returns the posts.
@@ -150,4 +154,36 @@ public class ForumStats
 	{
 		this.usersPerDay = usersPerDay;
 	}
+	
+	/**
+	 * @return Returns the time of the first post, or <code>null</code> if there are no posts.
+	 */
+	public Date getFirstPostTime()
+	{
+		return this.firstPostTime;
+	}
+	
+	/**
+	 * @param firstPostTime The firstPostTime to set.
+	 */
+	public void setFirstPostTime(final Date firstPostTime)
+	{
+		this.firstPostTime = firstPostTime;
+	}
+	
+	/**
+	 * @return Returns the registration time of the first user, or <code>null</code> if there are no users.
+	 */
+	public Date getFirstUserTime()
+	{
+		return this.firstUserTime;
+	}
+	
+	/**
+	 * @param firstUserTime The firstUserTime to set.
+	 */
+	public void setFirstUserTime(final Date firstUserTime)
+	{
+		this.firstUserTime = firstUserTime;
+	}
 }
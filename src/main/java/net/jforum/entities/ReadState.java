@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 10:32:05 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.entities;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What a user has read in the forums during the session, kept as one 
+ * {@link ForumReadState} per forum.
+ * <p>
+ * The high-water mark of a forum is the last time the user marked all its 
+ * topics as read, or the user's last visit, whichever is later. As everything 
+ * posted before the last visit is taken as read, topics read in previous 
+ * visits don't need to be remembered nor stored. 
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class ReadState implements Serializable
+{
+	private static final long serialVersionUID = -3389212472398012468L;
+	
+	private final Map<Integer, ForumReadState> forums = new HashMap<Integer, ForumReadState>();
+	
+	/**
+	 * Checks if the user read a topic.
+	 * 
+	 * @param forumId The forum of the topic
+	 * @param topicId The topic id
+	 * @param lastPostTime The time, in milliseconds, of the last post of the topic
+	 * @param lastVisit The time, in milliseconds, of the user's last visit 
+	 * @return <code>true</code> if there are no posts the user did not read
+	 */
+	public synchronized boolean isRead(final int forumId, final int topicId, final long lastPostTime, final long lastVisit)
+	{
+		if (lastPostTime <= lastVisit) {
+			return true;
+		}
+		
+		final ForumReadState forum = this.forums.get(Integer.valueOf(forumId));
+		return forum != null && forum.isRead(topicId, lastPostTime);
+	}
+	
+	/**
+	 * Registers that a topic was read
+	 * 
+	 * @param forumId The forum of the topic
+	 * @param topicId The topic id
+	 * @param time The time, in milliseconds, the topic was read
+	 * @param lastVisit The time, in milliseconds, of the user's last visit
+	 */
+	public synchronized void markTopic(final int forumId, final int topicId, final long time, final long lastVisit)
+	{
+		if (time <= lastVisit) {
+			return;
+		}
+		
+		this.forum(forumId, lastVisit).markTopic(topicId, time);
+	}
+	
+	/**
+	 * Marks all topics of a forum as read
+	 * 
+	 * @param forumId The forum id
+	 * @param time The time, in milliseconds, the topics were read
+	 */
+	public synchronized void markForum(final int forumId, final long time)
+	{
+		this.forum(forumId, time);
+	}
+	
+	private ForumReadState forum(final int forumId, final long mark)
+	{
+		final Integer key = Integer.valueOf(forumId);
+		ForumReadState forum = this.forums.get(key);
+		
+		if (forum == null) {
+			forum = new ForumReadState();
+			this.forums.put(key, forum);
+		}
+		
+		forum.raiseMark(mark);
+		
+		return forum;
+	}
+}
@@ -86,6 +86,7 @@ public class UserSession implements Serializable
 	private boolean autoLogin;
 	
 	private transient ImageCaptcha imageCaptcha = null;
+	private transient long ssoValidUntil;
 
 	public UserSession() {
 		// Empty Constructor
@@ -251,6 +252,26 @@ public class UserSession implements Serializable
 		return this.sessionTime;
 	}
 
+	/**
+	 * Gets until when the SSO validation of this session can be trusted
+	 * without asking the SSO implementation again.
+	 * 
+	 * @return The time, in milliseconds, or 0 if the session was not validated yet
+	 * @see net.jforum.sso.Authenticators#isSessionValid(UserSession, net.jforum.context.RequestContext)
+	 */
+	public long getSsoValidUntil()
+	{
+		return this.ssoValidUntil;
+	}
+
+	/**
+	 * @param ssoValidUntil The time, in milliseconds, until the SSO validation can be trusted
+	 */
+	public void setSsoValidUntil(final long ssoValidUntil)
+	{
+		this.ssoValidUntil = ssoValidUntil;
+	}
+
 	/**
 	 * Gets user's id
 	 * 
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 8:21:37 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.repository;
+
+import java.util.Map;
+
+import net.jforum.dao.DataAccessDriver;
+import net.jforum.util.preferences.ConfigKeys;
+
+/**
+ * Accumulates attachment downloads in memory and writes them to the database
+ * in a single batch every {@link ConfigKeys#ATTACHMENTS_DOWNLOADS_FLUSH_INTERVAL} seconds,
+ * so a download doesn't need to wait for an UPDATE before the file is sent.
+ * When the interval is 0 (zero), downloads are written right away.
+ * 
+ * @version $Id$
+ * @see TopicViewsRepository
+ */
+public final class AttachmentDownloadsRepository
+{
+	private static final BatchedCounters DOWNLOADS = new BatchedCounters("attachment downloads", 
+		ConfigKeys.ATTACHMENTS_DOWNLOADS_FLUSH_INTERVAL) {
+		protected void write(final Map<Integer, Integer> downloads)
+		{
+			DataAccessDriver.getInstance().newAttachmentDAO().incrementDownloadCount(downloads);
+		}
+	};
+	
+	private AttachmentDownloadsRepository() {}
+	
+	/**
+	 * Starts writing the downloads periodically, if enabled
+	 */
+	public static void start()
+	{
+		DOWNLOADS.start();
+	}
+	
+	/**
+	 * Stops the periodic flush and writes all pending downloads
+	 */
+	public static void stop()
+	{
+		DOWNLOADS.stop();
+	}
+	
+	/**
+	 * Registers a new download of an attachment
+	 * 
+	 * @param attachId The attachment id
+	 */
+	public static void increment(final int attachId)
+	{
+		DOWNLOADS.increment(attachId);
+	}
+	
+	/**
+	 * Gets the number of downloads of an attachment not yet written to the database
+	 * 
+	 * @param attachId The attachment id
+	 * @return The number of pending downloads
+	 */
+	public static int pending(final int attachId)
+	{
+		return DOWNLOADS.pending(attachId);
+	}
+	
+	/**
+	 * Writes all pending downloads to the database. If the write fails, 
+	 * the downloads are kept to be written in the next run. 
+	 */
+	public static void flush()
+	{
+		DOWNLOADS.flush();
+	}
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 9:48:05 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.repository;
+
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import net.jforum.entities.Banlist;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * An immutable view of the banlist, built to check a request without 
+ * going through every entry. 
+ * <p>
+ * User ids, emails and addresses are kept in hash sets. IP entries ending
+ * in wildcards, like <code>192.168.*.*</code>, and CIDR blocks, like 
+ * <code>10.0.0.0/8</code> or <code>2001:db8::/32</code>, are kept as prefixes 
+ * in a binary trie, so an address is checked in as many steps as it has bits. 
+ * Anything else, like a wildcard in the middle of the address, is compared 
+ * with {@link Banlist#matches(Banlist)}. 
+ * </p>
+ * 
+ * @version $Id$
+ */
+final class BanlistIndex implements Serializable
+{
+	private static final long serialVersionUID = 6183217493516094710L;
+	
+	private final Set<Integer> userIds = new HashSet<Integer>();
+	private final Set<String> emails = new HashSet<String>();
+	private final Set<String> ips = new HashSet<String>();
+	private final Set<String> addresses = new HashSet<String>();
+	private final BitTrie ipv4 = new BitTrie();
+	private final BitTrie ipv6 = new BitTrie();
+	private final List<Banlist> others = new ArrayList<Banlist>();
+	private final int size;
+	
+	BanlistIndex(final Collection<Banlist> entries)
+	{
+		for (final Iterator<Banlist> iter = entries.iterator(); iter.hasNext(); ) {
+			this.index(iter.next());
+		}
+		
+		this.size = entries.size();
+	}
+	
+	private void index(final Banlist ban)
+	{
+		if (ban.getUserId() > 0) {
+			this.userIds.add(Integer.valueOf(ban.getUserId()));
+		}
+		
+		if (StringUtils.isNotEmpty(ban.getEmail())) {
+			this.emails.add(ban.getEmail());
+		}
+		
+		final String ip = ban.getIp();
+		
+		if (StringUtils.isEmpty(ip)) {
+			return;
+		}
+		
+		this.ips.add(ip.toLowerCase());
+		
+		final int slash = ip.indexOf('/');
+		
+		if (slash > 0) {
+			if (!this.indexCidr(ip.substring(0, slash), ip.substring(slash + 1))) {
+				this.others.add(ban);
+			}
+		}
+		else if (ip.indexOf('*') > -1) {
+			if (!this.indexWildcard(ip)) {
+				this.others.add(ban);
+			}
+		}
+		else {
+			final byte[] address = parseAddress(ip);
+			
+			if (address != null) {
+				this.addresses.add(key(address));
+			}
+			else if (ip.indexOf('.') > -1) {
+				// Dotted values that are not valid addresses still 
+				// have to be compared token by token 
+				this.others.add(ban);
+			}
+		}
+	}
+	
+	private boolean indexCidr(final String ip, final String length)
+	{
+		final byte[] address = parseAddress(ip);
+		
+		if (address == null || length.length() == 0 || length.length() > 3 || !StringUtils.isNumeric(length)) {
+			return false;
+		}
+		
+		final int bits = Integer.parseInt(length);
+		
+		if (bits < 1 || bits > address.length * 8) {
+			return false;
+		}
+		
+		this.trie(address).add(address, bits);
+		return true;
+	}
+	
+	/**
+	 * Only IPv4 values whose wildcards are all at the end can be kept 
+	 * as a prefix. Like in {@link Banlist#matches(Banlist)}, a token 
+	 * starting with '*' matches anything, and only stars match nothing.
+	 */
+	private boolean indexWildcard(final String ip)
+	{
+		final StringTokenizer tokenizer = new StringTokenizer(ip, ".");
+		
+		if (tokenizer.countTokens() != 4) {
+			return false;
+		}
+		
+		final byte[] address = new byte[4];
+		int octets = 0;
+		
+		while (tokenizer.hasMoreTokens()) {
+			final String token = tokenizer.nextToken();
+			
+			if (token.charAt(0) == '*') {
+				break;
+			}
+			
+			final int value = parseOctet(token);
+			
+			if (value < 0) {
+				return false;
+			}
+			
+			address[octets++] = (byte)value;
+		}
+		
+		while (tokenizer.hasMoreTokens()) {
+			if (tokenizer.nextToken().charAt(0) != '*') {
+				return false;
+			}
+		}
+		
+		if (octets == 0) {
+			return false;
+		}
+		
+		this.ipv4.add(address, octets * 8);
+		return true;
+	}
+	
+	private BitTrie trie(final byte[] address)
+	{
+		return address.length == 4 ? this.ipv4 : this.ipv6;
+	}
+	
+	/**
+	 * Checks if some entry matches the user id, email or IP of a request
+	 * 
+	 * @param ban The values of the request
+	 * @return <code>true</code> if it should be banned
+	 */
+	boolean matches(final Banlist ban)
+	{
+		if (ban.getUserId() > 0 && this.userIds.contains(Integer.valueOf(ban.getUserId()))) {
+			return true;
+		}
+		
+		if (StringUtils.isNotEmpty(ban.getEmail()) && this.emails.contains(ban.getEmail())) {
+			return true;
+		}
+		
+		final String ip = ban.getIp();
+		
+		if (StringUtils.isEmpty(ip)) {
+			return false;
+		}
+		
+		if (this.ips.contains(ip.toLowerCase())) {
+			return true;
+		}
+		
+		final byte[] address = parseAddress(ip);
+		
+		if (address != null && (this.addresses.contains(key(address)) || this.trie(address).matches(address))) {
+			return true;
+		}
+		
+		for (final Iterator<Banlist> iter = this.others.iterator(); iter.hasNext(); ) {
+			if (iter.next().matches(ban)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @return The number of entries in the index
+	 */
+	int size()
+	{
+		return this.size;
+	}
+	
+	/**
+	 * Parses an IPv4 or IPv6 address, never doing a DNS lookup
+	 * 
+	 * @param ip The address
+	 * @return The address bytes, or <code>null</code> if it is not a valid address
+	 */
+	static byte[] parseAddress(final String ip)
+	{
+		if (ip.indexOf(':') == -1) {
+			return parseIpv4(ip);
+		}
+		
+		for (int i = 0; i < ip.length(); i++) {
+			final char c = ip.charAt(i);
+			
+			// InetAddress would resolve anything that does not look like an address
+			if (c != ':' && c != '.' && Character.digit(c, 16) == -1) {
+				return null;
+			}
+		}
+		
+		try {
+			return InetAddress.getByName(ip).getAddress();
+		}
+		catch (UnknownHostException e) {
+			return null;
+		}
+	}
+	
+	private static byte[] parseIpv4(final String ip)
+	{
+		final byte[] address = new byte[4];
+		int start = 0;
+		
+		for (int i = 0; i < 4; i++) {
+			int end = ip.indexOf('.', start);
+			
+			if ((end == -1) != (i == 3)) {
+				return null;
+			}
+			
+			if (end == -1) {
+				end = ip.length();
+			}
+			
+			final int value = parseOctet(ip.substring(start, end));
+			
+			if (value < 0) {
+				return null;
+			}
+			
+			address[i] = (byte)value;
+			start = end + 1;
+		}
+		
+		return address;
+	}
+	
+	/**
+	 * @return the value of the octet, or -1 if it is not written 
+	 * the way it would be in an address, like "01" or "256"
+	 */
+	private static int parseOctet(final String token)
+	{
+		final int length = token.length();
+		
+		if (length == 0 || length > 3 || (length > 1 && token.charAt(0) == '0')) {
+			return -1;
+		}
+		
+		int value = 0;
+		
+		for (int i = 0; i < length; i++) {
+			final char c = token.charAt(i);
+			
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			
+			value = value * 10 + (c - '0');
+		}
+		
+		return value > 255 ? -1 : value;
+	}
+	
+	private static String key(final byte[] address)
+	{
+		final char[] chars = new char[address.length];
+		
+		for (int i = 0; i < address.length; i++) {
+			chars[i] = (char)(address[i] & 0xff);
+		}
+		
+		return new String(chars);
+	}
+	
+	/**
+	 * A binary trie of address prefixes, stored in arrays of node indexes
+	 */
+	private static final class BitTrie implements Serializable
+	{
+		private static final long serialVersionUID = -2705368307133744862L;
+		
+		private int[] zero = new int[16];
+		private int[] one = new int[16];
+		private final BitSet terminal = new BitSet();
+		private int nodes = 1;
+		
+		void add(final byte[] address, final int bits)
+		{
+			int node = 0;
+			
+			for (int i = 0; i < bits; i++) {
+				if (this.terminal.get(node)) {
+					// A shorter prefix already covers it
+					return;
+				}
+				
+				final boolean set = bit(address, i);
+				int child = set ? this.one[node] : this.zero[node];
+				
+				if (child == 0) {
+					this.grow();
+					child = this.nodes++;
+					
+					if (set) {
+						this.one[node] = child;
+					}
+					else {
+						this.zero[node] = child;
+					}
+				}
+				
+				node = child;
+			}
+			
+			this.terminal.set(node);
+		}
+		
+		boolean matches(final byte[] address)
+		{
+			if (this.nodes == 1) {
+				return false;
+			}
+			
+			int node = 0;
+			
+			for (int i = 0; i < address.length * 8; i++) {
+				node = bit(address, i) ? this.one[node] : this.zero[node];
+				
+				if (node == 0) {
+					return false;
+				}
+				
+				if (this.terminal.get(node)) {
+					return true;
+				}
+			}
+			
+			return false;
+		}
+		
+		private void grow()
+		{
+			if (this.nodes == this.zero.length) {
+				this.zero = Arrays.copyOf(this.zero, this.nodes * 2);
+				this.one = Arrays.copyOf(this.one, this.nodes * 2);
+			}
+		}
+		
+		private static boolean bit(final byte[] address, final int index)
+		{
+			return (address[index >> 3] & (0x80 >>> (index & 7))) != 0;
+		}
+	}
+}
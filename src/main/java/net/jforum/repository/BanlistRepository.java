@@ -55,6 +55,9 @@ import net.jforum.dao.DataAccessDriver;
 import net.jforum.entities.Banlist;
 
 /**
+ * Keeps the banlist in memory. Requests are checked against a 
+ * {@link BanlistIndex}, which is rebuilt whenever the banlist changes. 
+ * 
  * @author Rafael Steil
  * @version $Id$
  */
@@ -64,6 +67,8 @@ public class BanlistRepository implements Cacheable
 	private static CacheEngine cache;
 	private static final String FQN = "banlist";
 	private static final String BANLIST = "banlistCollection";
+	private static final String INDEX = "banlistIndex";
+	private static final Object MUTEX = new Object();
 	private static boolean empty = false;
 	
 	/**
@@ -80,47 +85,65 @@ public class BanlistRepository implements Cacheable
 	}
 	
 	public static boolean shouldBan(Banlist ban) {
-		boolean status = false;
+		return index().matches(ban);
+	}
+	
+	private static BanlistIndex index()
+	{
+		BanlistIndex index = (BanlistIndex)cache.get(FQN, INDEX);
+		
+		if (index == null) {
+			synchronized (MUTEX) {
+				index = (BanlistIndex)cache.get(FQN, INDEX);
 				
-		Map<Integer, Banlist> map = banlist();
-		if (map.isEmpty() && !empty) {
-			loadBanlist();
-			map = banlist();
-		}
-		for (Banlist current: map.values()) {			
-			if (current.matches(ban)) {
-				status = true;
-				break;
+				if (index == null) {
+					Map<Integer, Banlist> map = banlist();
+					
+					if (map.isEmpty() && !empty) {
+						loadBanlist();
+						map = banlist();
+					}
+					
+					index = rebuild(map);
+				}
 			}
 		}
 		
-		return status;
+		return index;
 	}
-
-	public static void add(Banlist ban)
+	
+	/**
+	 * Stores the banlist along with a new index, replacing the 
+	 * current one at once. Must be called while holding MUTEX. 
+	 */
+	private static BanlistIndex rebuild(Map<Integer, Banlist> map)
 	{
-		Map<Integer, Banlist> map = banlist();
-		map.put(Integer.valueOf(ban.getId()), ban);
+		BanlistIndex index = new BanlistIndex(map.values());
 		
 		cache.add(FQN, BANLIST, map);
-		if (empty) {
-			empty = false;
+		cache.add(FQN, INDEX, index);
+		empty = map.isEmpty();
+		
+		return index;
+	}
+
+	public static void add(Banlist ban)
+	{
+		synchronized (MUTEX) {
+			Map<Integer, Banlist> map = new HashMap<Integer, Banlist>(banlist());
+			map.put(Integer.valueOf(ban.getId()), ban);
+			
+			rebuild(map);
 		}
 	}
 	
 	public static void remove(int banlistId)
 	{
-		Map<Integer, Banlist> map = banlist();
-		
-		Integer key = Integer.valueOf(banlistId);
-		
-		if (map.containsKey(key)) {
-			map.remove(key);
-		}
-		
-		cache.add(FQN, BANLIST, map);
-		if (map.isEmpty()) {
-			empty = true;
+		synchronized (MUTEX) {
+			Map<Integer, Banlist> map = new HashMap<Integer, Banlist>(banlist());
+			map.remove(Integer.valueOf(banlistId));
+			
+			rebuild(map);
 		}
 	}
 	
@@ -140,13 +163,16 @@ public class BanlistRepository implements Cacheable
 		BanlistDAO dao = DataAccessDriver.getInstance().newBanlistDAO();
 		List<Banlist> list = dao.selectAll();
 		
-		if (list.size() == 0) {
-			empty = true;
-		} else {
-			for (Banlist ban: list) {
-				BanlistRepository.add(ban);			
-			}
+		Map<Integer, Banlist> map = new HashMap<Integer, Banlist>();
+		
+		for (Banlist ban: list) {
+			map.put(Integer.valueOf(ban.getId()), ban);
 		}
+		
+		synchronized (MUTEX) {
+			rebuild(map);
+		}
+		
 		LOGGER.debug("Loading banlist from DAO");
 	}
 }
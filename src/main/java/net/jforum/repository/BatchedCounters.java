@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 11:12:03 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.repository;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Counters by id kept in memory and added to the ones in the database
+ * in a single batch by a {@link FlushTimer}, instead of issuing one UPDATE 
+ * per increment. When the flush is not running, increments are written 
+ * right away. 
+ * 
+ * @version $Id$
+ */
+abstract class BatchedCounters
+{
+	private static final Logger LOGGER = Logger.getLogger(BatchedCounters.class);
+	
+	/** Marks a counter that was removed from the map and must not be used anymore */
+	private static final int RETIRED = Integer.MIN_VALUE;
+	
+	private final ConcurrentMap<Integer, AtomicInteger> pending = new ConcurrentHashMap<Integer, AtomicInteger>();
+	private final Object mutexFlush = new Object();
+	private final String name;
+	private final FlushTimer timer;
+	
+	/**
+	 * @param name What is counted, to name the flush thread and to be logged
+	 * @param intervalKey The key of the flush interval, in seconds
+	 */
+	BatchedCounters(final String name, final String intervalKey)
+	{
+		this.name = name;
+		this.timer = new FlushTimer(name, intervalKey, new Runnable() {
+			public void run()
+			{
+				BatchedCounters.this.flush();
+			}
+		});
+	}
+	
+	/**
+	 * Adds some counters to the ones in the database
+	 * 
+	 * @param counts The value to add, by id
+	 */
+	protected abstract void write(Map<Integer, Integer> counts);
+	
+	void start()
+	{
+		this.timer.start();
+	}
+	
+	void stop()
+	{
+		this.timer.stop();
+	}
+	
+	void increment(final int id)
+	{
+		if (this.timer.isRunning()) {
+			this.add(Integer.valueOf(id), 1);
+		}
+		else {
+			this.write(Collections.singletonMap(Integer.valueOf(id), Integer.valueOf(1)));
+		}
+	}
+	
+	/**
+	 * @param id The id of the counter
+	 * @return How much was counted and not yet written to the database
+	 */
+	int pending(final int id)
+	{
+		final AtomicInteger counter = this.pending.get(Integer.valueOf(id));
+		
+		if (counter == null) {
+			return 0;
+		}
+		
+		final int value = counter.get();
+		return value == RETIRED ? 0 : value;
+	}
+	
+	private void add(final Integer id, final int delta)
+	{
+		while (true) {
+			AtomicInteger counter = this.pending.get(id);
+			
+			if (counter == null) {
+				final AtomicInteger newCounter = new AtomicInteger();
+				counter = this.pending.putIfAbsent(id, newCounter);
+				
+				if (counter == null) {
+					counter = newCounter;
+				}
+			}
+			
+			final int value = counter.get();
+			
+			if (value == RETIRED) {
+				this.pending.remove(id, counter);
+			}
+			else if (counter.compareAndSet(value, value + delta)) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Writes all pending counters to the database. If the write fails, 
+	 * they are kept to be written in the next run. 
+	 */
+	void flush()
+	{
+		synchronized (this.mutexFlush) {
+			final Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+			
+			for (final Iterator<Map.Entry<Integer, AtomicInteger>> iter = this.pending.entrySet().iterator(); iter.hasNext(); ) {
+				final Map.Entry<Integer, AtomicInteger> entry = iter.next();
+				final AtomicInteger counter = entry.getValue();
+				final int value = counter.getAndSet(0);
+				
+				if (value > 0) {
+					counts.put(entry.getKey(), Integer.valueOf(value));
+				}
+				else if (counter.compareAndSet(0, RETIRED)) {
+					this.pending.remove(entry.getKey(), counter);
+				}
+			}
+			
+			if (counts.isEmpty()) {
+				return;
+			}
+			
+			final boolean written = this.timer.write(new Runnable() {
+				public void run()
+				{
+					BatchedCounters.this.write(counts);
+				}
+			});
+			
+			if (!written) {
+				this.restore(counts);
+			}
+			else if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Stored " + this.name + " of " + counts.size() + " ids");
+			}
+		}
+	}
+	
+	private void restore(final Map<Integer, Integer> counts)
+	{
+		for (final Iterator<Map.Entry<Integer, Integer>> iter = counts.entrySet().iterator(); iter.hasNext(); ) {
+			final Map.Entry<Integer, Integer> entry = iter.next();
+			this.add(entry.getKey(), entry.getValue().intValue());
+		}
+	}
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 7:52:10 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.repository;
+
+import java.util.Date;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.jforum.DBConnection;
+import net.jforum.JForumExecutionContext;
+import net.jforum.dao.DataAccessDriver;
+import net.jforum.entities.ForumStats;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps the board statistics in memory, so the pages showing them 
+ * don't need to count users, topics and posts every time.
+ * The statistics are loaded once, kept up to date as users register and
+ * messages are posted or removed, and reconciled against the database
+ * every {@link ConfigKeys#BOARD_STATS_RECONCILE_INTERVAL} seconds.
+ * Readers always get a consistent, immutable snapshot.
+ * 
+ * @version $Id$
+ */
+public final class BoardStatsRepository
+{
+	private static final Logger LOGGER = Logger.getLogger(BoardStatsRepository.class);
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+	
+	private static final AtomicReference<Snapshot> SNAPSHOT = new AtomicReference<Snapshot>();
+	private static final AtomicBoolean RECONCILE_PENDING = new AtomicBoolean();
+	private static final Object MUTEX_LOAD = new Object();
+	private static volatile Timer timer;
+	
+	private BoardStatsRepository() {}
+	
+	/**
+	 * Loads the statistics and starts the periodic reconciliation
+	 */
+	public static synchronized void start()
+	{
+		load();
+		
+		if (timer != null) {
+			return;
+		}
+		
+		timer = new Timer("Timer-BoardStats", true);
+		
+		final int interval = SystemGlobals.getIntValue(ConfigKeys.BOARD_STATS_RECONCILE_INTERVAL);
+		
+		if (interval > 0) {
+			timer.schedule(new TimerTask() {
+				public void run()
+				{
+					reconcile();
+				}
+			}, interval * 1000L, interval * 1000L);
+		}
+	}
+	
+	/**
+	 * Stops the periodic reconciliation
+	 */
+	public static synchronized void stop()
+	{
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+	}
+	
+	/**
+	 * Gets the statistics of the board. 
+	 * A new instance is returned on each call, with the 
+	 * per day averages calculated up to the current date.
+	 * 
+	 * @return ForumStats
+	 */
+	public static ForumStats getBoardStatus()
+	{
+		return snapshot().toForumStats(new Date());
+	}
+	
+	/**
+	 * @return The number of approved messages in the board
+	 */
+	public static int getTotalMessages()
+	{
+		return snapshot().posts;
+	}
+	
+	/**
+	 * @return The number of topics in the board
+	 */
+	public static int getTotalTopics()
+	{
+		return snapshot().topics;
+	}
+	
+	/**
+	 * @return The number of registered users
+	 */
+	public static int getTotalUsers()
+	{
+		return snapshot().users;
+	}
+	
+	public static void incrementTotalMessages()
+	{
+		update(0, 0, 1);
+	}
+	
+	public static void decrementTotalMessages()
+	{
+		update(0, 0, -1);
+	}
+	
+	public static void incrementTotalTopics()
+	{
+		update(0, 1, 0);
+	}
+	
+	public static void decrementTotalTopics()
+	{
+		update(0, -1, 0);
+	}
+	
+	public static void incrementTotalUsers()
+	{
+		update(1, 0, 0);
+	}
+	
+	/**
+	 * Reloads the statistics from the database right away
+	 */
+	public static void reload()
+	{
+		load();
+	}
+	
+	/**
+	 * Asks for the statistics to be reloaded from the database in background. 
+	 * Used after changes that can't be tracked incrementally, like removing 
+	 * topics together with all their messages. Several requests made before 
+	 * the reload starts are served by a single query.
+	 */
+	public static void requestReconcile()
+	{
+		final Timer t = timer;
+		
+		if (t == null) {
+			SNAPSHOT.set(null);
+			return;
+		}
+		
+		if (!RECONCILE_PENDING.compareAndSet(false, true)) {
+			return;
+		}
+		
+		try {
+			t.schedule(new TimerTask() {
+				public void run()
+				{
+					reconcile();
+				}
+			}, 0);
+		}
+		catch (IllegalStateException e) {
+			// The timer was stopped in the meantime
+			RECONCILE_PENDING.set(false);
+			SNAPSHOT.set(null);
+		}
+	}
+	
+	private static Snapshot snapshot()
+	{
+		final Snapshot snapshot = SNAPSHOT.get();
+		return snapshot != null ? snapshot : load();
+	}
+	
+	private static Snapshot load()
+	{
+		synchronized (MUTEX_LOAD) {
+			final Snapshot before = SNAPSHOT.get();
+			return install(before, DataAccessDriver.getInstance().newForumDAO().getBoardStatus());
+		}
+	}
+	
+	/**
+	 * Replaces the statistics with the ones just loaded from the database.
+	 * Changes counted after <code>before</code> was read, while the 
+	 * database was being queried, are applied again over the loaded values.
+	 * 
+	 * @param before The statistics in use when the load started
+	 * @param stats The statistics loaded from the database
+	 * @return The statistics now in use
+	 */
+	static Snapshot install(final Snapshot before, final ForumStats stats)
+	{
+		final Snapshot loaded = new Snapshot(stats);
+		
+		while (true) {
+			final Snapshot current = SNAPSHOT.get();
+			final Snapshot snapshot = before == null || current == null || current == before
+				? loaded
+				: loaded.add(current.users - before.users, current.topics - before.topics, current.posts - before.posts);
+			
+			if (SNAPSHOT.compareAndSet(current, snapshot)) {
+				return snapshot;
+			}
+		}
+	}
+	
+	/**
+	 * @return The statistics in use, or <code>null</code> if not loaded
+	 */
+	static Snapshot current()
+	{
+		return SNAPSHOT.get();
+	}
+	
+	private static void reconcile()
+	{
+		RECONCILE_PENDING.set(false);
+		
+		if (!DBConnection.getImplementation().isDatabaseUp()) {
+			return;
+		}
+		
+		try {
+			load();
+			
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Reloaded board statistics");
+			}
+		}
+		catch (Exception e) {
+			LOGGER.warn("Error while reloading board statistics: " + e, e);
+			
+			if (JForumExecutionContext.exists()) {
+				JForumExecutionContext.enableRollback();
+			}
+		}
+		finally {
+			JForumExecutionContext.finish();
+		}
+	}
+	
+	private static void update(final int users, final int topics, final int posts)
+	{
+		while (true) {
+			final Snapshot current = SNAPSHOT.get();
+			
+			// Not loaded yet, the next read will get fresh values from the database
+			if (current == null) {
+				return;
+			}
+			
+			if (SNAPSHOT.compareAndSet(current, current.add(users, topics, posts))) {
+				return;
+			}
+		}
+	}
+	
+	static final class Snapshot
+	{
+		final int users;
+		final int topics;
+		final int posts;
+		final long firstPostTime;
+		final long firstUserTime;
+		
+		Snapshot(final ForumStats stats)
+		{
+			this(stats.getUsers(), stats.getTopics(), stats.getPosts(), 
+				stats.getFirstPostTime() == null ? 0 : stats.getFirstPostTime().getTime(), 
+				stats.getFirstUserTime() == null ? 0 : stats.getFirstUserTime().getTime());
+		}
+		
+		Snapshot(final int users, final int topics, final int posts, final long firstPostTime, final long firstUserTime)
+		{
+			this.users = users;
+			this.topics = topics;
+			this.posts = posts;
+			this.firstPostTime = firstPostTime;
+			this.firstUserTime = firstUserTime;
+		}
+		
+		Snapshot add(final int users, final int topics, final int posts)
+		{
+			final long now = System.currentTimeMillis();
+			
+			return new Snapshot(Math.max(0, this.users + users), 
+				Math.max(0, this.topics + topics), 
+				Math.max(0, this.posts + posts), 
+				this.firstPostTime == 0 && posts > 0 ? now : this.firstPostTime, 
+				this.firstUserTime == 0 && users > 0 ? now : this.firstUserTime);
+		}
+		
+		ForumStats toForumStats(final Date today)
+		{
+			final ForumStats stats = new ForumStats();
+			
+			stats.setUsers(this.users);
+			stats.setTopics(this.topics);
+			stats.setPosts(this.posts);
+			stats.setFirstPostTime(this.firstPostTime == 0 ? null : new Date(this.firstPostTime));
+			stats.setFirstUserTime(this.firstUserTime == 0 ? null : new Date(this.firstUserTime));
+			
+			double postsPerDay = 0;
+			double topicsPerDay = 0;
+			double usersPerDay = 0;
+			
+			if (this.firstPostTime != 0) {
+				final int days = daysUntil(today, this.firstPostTime);
+				
+				postsPerDay = (double)this.posts / days;
+				topicsPerDay = (double)this.topics / days;
+				
+				if (this.posts > 0 && postsPerDay < 1) {
+					postsPerDay = 1;
+				}
+			}
+			
+			if (this.firstUserTime != 0) {
+				usersPerDay = (double)this.users / daysUntil(today, this.firstUserTime);
+			}
+			
+			stats.setPostsPerDay(postsPerDay);
+			stats.setTopicsPerDay(topicsPerDay);
+			stats.setUsersPerDay(usersPerDay);
+			
+			return stats;
+		}
+		
+		private static int daysUntil(final Date today, final long from)
+		{
+			final int days = (int)((today.getTime() - from) / DAY);
+			return days == 0 ? 1 : days;
+		}
+	}
+}
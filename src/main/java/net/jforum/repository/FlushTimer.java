@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 11:05:48 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.repository;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+import net.jforum.DBConnection;
+import net.jforum.JForumExecutionContext;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs the flush of a repository that keeps data in memory to write it 
+ * to the database later, every some seconds, in a daemon timer thread. 
+ * 
+ * @version $Id$
+ */
+final class FlushTimer
+{
+	private static final Logger LOGGER = Logger.getLogger(FlushTimer.class);
+	
+	private final String name;
+	private final String intervalKey;
+	private final Runnable flush;
+	private volatile Timer timer;
+	
+	/**
+	 * @param name What is written, like "topic views", to name the thread and to be logged
+	 * @param intervalKey The key of the flush interval, in seconds
+	 * @param flush Writes all data kept in memory
+	 */
+	FlushTimer(final String name, final String intervalKey, final Runnable flush)
+	{
+		this.name = name;
+		this.intervalKey = intervalKey;
+		this.flush = flush;
+	}
+	
+	/**
+	 * Starts the periodic flush, unless the interval is 0 (zero)
+	 */
+	synchronized void start()
+	{
+		final int interval = SystemGlobals.getIntValue(this.intervalKey);
+		
+		if (interval <= 0 || this.timer != null) {
+			return;
+		}
+		
+		this.timer = new Timer("Flush " + this.name, true);
+		this.timer.schedule(new TimerTask() {
+			public void run()
+			{
+				FlushTimer.this.flush.run();
+			}
+		}, interval * 1000L, interval * 1000L);
+	}
+	
+	/**
+	 * Stops the periodic flush and runs it one last time
+	 */
+	synchronized void stop()
+	{
+		if (this.timer != null) {
+			this.timer.cancel();
+			this.timer = null;
+		}
+		
+		this.flush.run();
+	}
+	
+	/**
+	 * @return Whether the flush is running. If not, the data should be written right away
+	 */
+	boolean isRunning()
+	{
+		return this.timer != null;
+	}
+	
+	/**
+	 * Runs a write with the connection of the current execution context, 
+	 * commits it and releases the connection. 
+	 * 
+	 * @param write Writes some of the data kept in memory
+	 * @return Whether the data was written. If not, it should be kept for the next run
+	 */
+	boolean write(final Runnable write)
+	{
+		if (!DBConnection.getImplementation().isDatabaseUp()) {
+			return false;
+		}
+		
+		try {
+			write.run();
+			
+			// finish() only logs a failed commit, which would lose the data
+			if (SystemGlobals.getBoolValue(ConfigKeys.DATABASE_USE_TRANSACTIONS)) {
+				JForumExecutionContext.getConnection().commit();
+			}
+			
+			return true;
+		}
+		catch (Exception e) {
+			LOGGER.warn("Error while storing " + this.name + ": " + e, e);
+			
+			if (JForumExecutionContext.exists()) {
+				JForumExecutionContext.enableRollback();
+			}
+			
+			return false;
+		}
+		finally {
+			JForumExecutionContext.finish();
+		}
+	}
+}
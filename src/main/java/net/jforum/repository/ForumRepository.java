@@ -45,6 +45,7 @@ package net.jforum.repository;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -52,6 +53,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import net.jforum.ForumStartup;
 import net.jforum.SessionFacade;
@@ -73,6 +77,7 @@ import net.jforum.entities.Topic;
 import net.jforum.entities.User;
 import net.jforum.exceptions.CategoryNotFoundException;
 import net.jforum.exceptions.DatabaseException;
+import net.jforum.security.CompiledRoles;
 import net.jforum.security.PermissionControl;
 import net.jforum.security.SecurityConstants;
 import net.jforum.util.CategoryOrderComparator;
@@ -99,14 +104,22 @@ public class ForumRepository implements Cacheable
 	private static final String CATEGORIES_SET = "categoriesSet";
 	private static final String RELATION = "relationForums";
 	private static final String FQN_MODERATORS = FQN + "/moderators";
-	private static final String TOTAL_MESSAGES = "totalMessages";
 	private static final String MOST_USERS_ONLINE = "mostUsersEverOnline";
 	private static final String LOADED = "loaded";
 	private static final String LAST_USER = "lastUser";
-	private static final String TOTAL_USERS = "totalUsers";
 	
 	private static final Object MUTEX_FQN_MODERATORS = new Object();
 	
+	/** Most permission sets a forum has, beyond which the trees are not kept */
+	private static final int MAX_CATEGORY_TREES = 256;
+	
+	/** 
+	 * Category trees already built, by permission set. The whole map 
+	 * is replaced every time a category or forum changes.
+	 */
+	private static final AtomicReference<ConcurrentMap<CompiledRoles, List<Category>>> CATEGORY_TREES = 
+		new AtomicReference<ConcurrentMap<CompiledRoles, List<Category>>>(new ConcurrentHashMap<CompiledRoles, List<Category>>());
+	
 	/**
 	 * @see net.jforum.cache.Cacheable#setCacheEngine(net.jforum.cache.CacheEngine)
 	 */
@@ -140,6 +153,8 @@ public class ForumRepository implements Cacheable
 			instance.loadUsersInfo();			
 			cache.add(FQN, LOADED, "1");
 		}
+		
+		categoryTreeChanged();
 	}
 	
 	/**
@@ -233,7 +248,7 @@ public class ForumRepository implements Cacheable
 	 */
 	public static boolean isCategoryAccessible(final PermissionControl permissionControl, final int categoryId)
 	{
-		return permissionControl.canAccess(SecurityConstants.PERM_CATEGORY, Integer.toString(categoryId));
+		return permissionControl.canAccess(SecurityConstants.PERM_CATEGORY, categoryId);
 	}
 	
 	/**
@@ -244,7 +259,11 @@ public class ForumRepository implements Cacheable
 	 */
 	public static List<Category> getAllCategories(int userId)
 	{
-		final PermissionControl permissionControl = SecurityRepository.get(userId);
+		return getAllCategories(SecurityRepository.get(userId));
+	}
+	
+	private static List<Category> getAllCategories(final PermissionControl permissionControl)
+	{
 		final List<Category> list = new ArrayList<Category>();
 
         if (cache.get(FQN, CATEGORIES_SET) == null) {
@@ -270,6 +289,8 @@ public class ForumRepository implements Cacheable
 					if (categoriesSet == null) {
 						throw new CategoryNotFoundException("Could not find all categories. There must be a problem with the cache");
 					}
+					
+					categoryTreeChanged();
 				}
 			}
 		}
@@ -299,6 +320,72 @@ public class ForumRepository implements Cacheable
 		return getAllCategories(SessionFacade.getUserSession().getUserId());
 	}
 	
+	/**
+	 * Gets the categories and forums a user can access, ready to be listed.
+	 * The same tree is shared by all users with the same permissions, and is 
+	 * only built again after some category or forum changes, so it must not 
+	 * be modified. Its forums have their last post info, and are never marked
+	 * as unread.
+	 * 
+	 * @param userId The user id
+	 * @return An immutable list of read only categories
+	 * @see Category#Category(Category, List)
+	 */
+	public static List<Category> getCategoryTree(final int userId)
+	{
+		final PermissionControl permissionControl = SecurityRepository.get(userId);
+		final CompiledRoles key = permissionControl.getCompiledRoles();
+		final ConcurrentMap<CompiledRoles, List<Category>> trees = CATEGORY_TREES.get();
+		
+		List<Category> tree = trees.get(key);
+		
+		if (tree == null) {
+			tree = buildCategoryTree(permissionControl);
+			
+			if (trees.size() < MAX_CATEGORY_TREES) {
+				trees.putIfAbsent(key, tree);
+			}
+			else {
+				// Permissions changed so many times that most keys are gone for good
+				CATEGORY_TREES.compareAndSet(trees, new ConcurrentHashMap<CompiledRoles, List<Category>>());
+			}
+		}
+		
+		return tree;
+	}
+	
+	private static synchronized List<Category> buildCategoryTree(final PermissionControl permissionControl)
+	{
+		final List<Category> categories = getAllCategories(permissionControl);
+		final List<Category> tree = new ArrayList<Category>(categories.size());
+		
+		for (final Iterator<Category> iter = categories.iterator(); iter.hasNext(); ) {
+			final Category category = iter.next();
+			final List<Forum> forums = category.getForums(permissionControl);
+			
+			for (int i = 0; i < forums.size(); i++) {
+				final Forum forum = new Forum(forums.get(i));
+				forum.setLastPostInfo(getLastPostInfo(forums.get(i)));
+				forum.setUnread(false);
+				forums.set(i, forum);
+			}
+			
+			tree.add(new Category(category, forums));
+		}
+		
+		return Collections.unmodifiableList(tree);
+	}
+	
+	/**
+	 * Drops the category trees built so far, so they are built again with the 
+	 * current categories and forums. 
+	 */
+	private static void categoryTreeChanged()
+	{
+		CATEGORY_TREES.set(new ConcurrentHashMap<CompiledRoles, List<Category>>());
+		PageCacheRepository.clear();
+	}
+	
 	private static Category findCategoryByOrder(final int order)
 	{
 		for (final Iterator<Category> iter = ((Set<Category>)cache.get(FQN, CATEGORIES_SET)).iterator(); iter.hasNext(); ) {
@@ -343,6 +430,8 @@ public class ForumRepository implements Cacheable
 		}
 		
 		cache.add(FQN, CATEGORIES_SET, tmpSet);
+		
+		categoryTreeChanged();
 	}
 	
 	/**
@@ -357,6 +446,8 @@ public class ForumRepository implements Cacheable
 		set.remove(category);
 		set.add(category);
 		cache.add(FQN, CATEGORIES_SET, set);
+		
+		categoryTreeChanged();
 	}
 	
 	public static synchronized void refreshForum(final Forum forum)
@@ -387,6 +478,8 @@ public class ForumRepository implements Cacheable
 		}
 		
 		cache.add(FQN, RELATION, map);
+		
+		categoryTreeChanged();
 	}
 	
 	/**
@@ -418,6 +511,8 @@ public class ForumRepository implements Cacheable
 		}
 		
 		cache.add(FQN, RELATION, relation);
+		
+		categoryTreeChanged();
 	}
 	
 	/**
@@ -498,6 +593,8 @@ public class ForumRepository implements Cacheable
 		
 		Set<Category> set = (Set<Category>)cache.get(FQN, CATEGORIES_SET);
 		cache.add(FQN, CATEGORIES_SET, set);
+		
+		categoryTreeChanged();
 	}
 	
 	/**
@@ -523,6 +620,8 @@ public class ForumRepository implements Cacheable
 		
 		Set<Category> set = (Set<Category>)cache.get(FQN, CATEGORIES_SET);
 		cache.add(FQN, CATEGORIES_SET, set);
+		
+		categoryTreeChanged();
 	}
 	
 	/**
@@ -551,7 +650,7 @@ public class ForumRepository implements Cacheable
 			cache.add(FQN, CATEGORIES_SET, set);
 		}
 		
-		getTotalMessages(true);
+		categoryTreeChanged();
 	}
 	
 	public static synchronized void updateForumStats(Topic topic, User user, Post post)
@@ -563,12 +662,11 @@ public class ForumRepository implements Cacheable
 
 			SimpleDateFormat df = new SimpleDateFormat(SystemGlobals.getValue(ConfigKeys.DATE_TIME_FORMAT), Locale.getDefault());
 		
-			LastPostInfo lpi = forum.getLastPostInfo();
-			
-			if (lpi == null) {
-				lpi = new LastPostInfo();
-			}
+			// A new instance, as the current one may be shared by some category tree
+			LastPostInfo lpi = new LastPostInfo();
 			
+			lpi.setHasInfo(true);
+			lpi.setTitle(topic.getTitle());
 			lpi.setPostId(post.getId());
 			lpi.setPostDate(df.format(post.getTime()));
 			lpi.setPostTimeMillis(post.getTime().getTime());
@@ -666,20 +764,12 @@ public class ForumRepository implements Cacheable
 	
 	public static Integer totalUsers()
 	{
-		Integer i = (Integer)cache.get(FQN, TOTAL_USERS);
-
-		if (i == null) {
-			i = DataAccessDriver.getInstance().newUserDAO().getTotalUsers();
-			cache.add(FQN, TOTAL_USERS, i);
-		}
-		return i;
+		return Integer.valueOf(BoardStatsRepository.getTotalUsers());
 	}
 	
 	public static void incrementTotalUsers()
 	{
-		Integer i = totalUsers();
-		
-		cache.add(FQN, TOTAL_USERS, Integer.valueOf(i.intValue() + 1));
+		BoardStatsRepository.incrementTotalUsers();
 	}
 	
 	/**
@@ -695,30 +785,25 @@ public class ForumRepository implements Cacheable
 	/**
 	 * Gets the number of messages in the entire board.
 	 * 
-	 * @param fromDb If <code>true</code>, a query to the database will
-	 * be made, to retrieve the desired information. If <code>false</code>, the
+	 * @param fromDb If <code>true</code>, the board statistics will be 
+	 * reloaded from the database before returning. If <code>false</code>, the
 	 * data will be fetched from the cache.
 	 * @return The number of messages posted in the board.
 	 * @see #getTotalMessages()
+	 * @see BoardStatsRepository
 	 */
 	public static int getTotalMessages(boolean fromDb) 
 	{
-		Integer i = (Integer)cache.get(FQN, TOTAL_MESSAGES);
-		
-		int total = i != null ? i.intValue() : 0;
-		
-		if (fromDb || total == 0) {
-			total = DataAccessDriver.getInstance().newForumDAO().getTotalMessages();
-			cache.add(FQN, TOTAL_MESSAGES, Integer.valueOf(total));
+		if (fromDb) {
+			BoardStatsRepository.reload();
 		}
 		
-		return total;
+		return BoardStatsRepository.getTotalMessages();
 	}
 	
-	public static synchronized void incrementTotalMessages()
+	public static void incrementTotalMessages()
 	{
-		int total = getTotalMessages(false);
-		cache.add(FQN, TOTAL_MESSAGES, Integer.valueOf(total + 1));
+		BoardStatsRepository.incrementTotalMessages();
 	}
 	
 	/**
@@ -825,7 +910,6 @@ public class ForumRepository implements Cacheable
 	{
 		UserDAO udao = DataAccessDriver.getInstance().newUserDAO();
 		cache.add(FQN, LAST_USER, udao.getLastUserInfo());
-		cache.add(FQN, TOTAL_USERS, Integer.valueOf(udao.getTotalUsers()));
 	}
 
 	/**
@@ -46,6 +46,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 
+import net.jforum.CommandRegistry;
 import net.jforum.ConfigLoader;
 import net.jforum.JForumExecutionContext;
 
@@ -73,7 +74,9 @@ public class ModulesRepository
 	 */
 	public static void init(final String baseDir)
 	{
-		cache.put(ENTRIES, ConfigLoader.loadModulesMapping(baseDir));
+		final Properties modules = ConfigLoader.loadModulesMapping(baseDir);
+		CommandRegistry.init(modules);
+		cache.put(ENTRIES, modules);
 	}
 	
 	public static int size()
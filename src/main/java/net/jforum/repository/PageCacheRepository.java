@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 19, 2026 12:14:52 AM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import net.jforum.cache.CacheEngine;
+import net.jforum.cache.Cacheable;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps whole pages rendered for anonymous users, so other anonymous users 
+ * asking for the same page get it without running the action again.
+ * <p>
+ * Only the actions listed in {@link ConfigKeys#PAGE_CACHE_ACTIONS} are kept, 
+ * for {@link ConfigKeys#PAGE_CACHE_TTL} seconds. All pages are dropped when
+ * a forum, topic or post changes. When a page is missing, only one request 
+ * renders it, while the others asking for it wait for that one to finish. 
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class PageCacheRepository implements Cacheable
+{
+	private static final Logger LOGGER = Logger.getLogger(PageCacheRepository.class);
+	private static final String FQN = "pages";
+	
+	private static final ConcurrentMap<String, CountDownLatch> RENDERING = new ConcurrentHashMap<String, CountDownLatch>();
+	private static final AtomicInteger VERSION = new AtomicInteger();
+	
+	private static CacheEngine cache;
+	
+	private static volatile CachedActions actions = new CachedActions(null, Collections.<String>emptySet());
+	
+	/**
+	 * The parsed list of actions, along with the value it came from
+	 */
+	private static final class CachedActions
+	{
+		final String value;
+		final Set<String> names;
+		
+		CachedActions(final String value, final Set<String> names)
+		{
+			this.value = value;
+			this.names = names;
+		}
+	}
+	
+	/**
+	 * A rendered page
+	 */
+	public static class Page implements Serializable
+	{
+		private static final long serialVersionUID = 4721390045512217106L;
+		
+		private final String contentType;
+		private final byte[] content;
+		private final byte[] gzippedContent;
+		private final long expires;
+		
+		Page(final String contentType, final byte[] content, final byte[] gzippedContent, final long expires)
+		{
+			this.contentType = contentType;
+			this.content = content;
+			this.gzippedContent = gzippedContent;
+			this.expires = expires;
+		}
+		
+		public String getContentType()
+		{
+			return this.contentType;
+		}
+		
+		/**
+		 * @return The page, not compressed. It must not be changed
+		 */
+		public byte[] getContent()
+		{
+			return this.content;
+		}
+		
+		/**
+		 * @return The page compressed with gzip, or <code>null</code> if it was not kept. 
+		 * It must not be changed
+		 */
+		public byte[] getGzippedContent()
+		{
+			return this.gzippedContent;
+		}
+	}
+	
+	/**
+	 * @see net.jforum.cache.Cacheable#setCacheEngine(net.jforum.cache.CacheEngine)
+	 */
+	public void setCacheEngine(final CacheEngine engine)
+	{
+		PageCacheRepository.setEngine(engine);
+	}
+	
+	private static void setEngine(final CacheEngine engine) 
+	{
+		cache = engine;
+	}
+	
+	/**
+	 * Gets the key of a page, if it can be cached.
+	 * 
+	 * @param module The module name
+	 * @param action The action name
+	 * @param uri The requested URI, with all the parameters in the path
+	 * @param queryString The query string, if any
+	 * @param language The language of the user
+	 * @return The key, or <code>null</code> if the action is not cached
+	 */
+	public static String key(final String module, final String action, final String uri, 
+		final String queryString, final String language)
+	{
+		if (!SystemGlobals.getBoolValue(ConfigKeys.PAGE_CACHE_ENABLED) 
+				|| !cachedActions().contains(module + "." + action)) {
+			return null;
+		}
+		
+		final StringBuilder sb = new StringBuilder(uri.length() + 32)
+			.append(language).append(' ').append(uri);
+		
+		if (queryString != null && queryString.length() > 0) {
+			sb.append('?').append(queryString);
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Parses {@link ConfigKeys#PAGE_CACHE_ACTIONS} again only when it changed. 
+	 * Two threads may both parse a new value, which is harmless. 
+	 */
+	private static Set<String> cachedActions()
+	{
+		final String value = SystemGlobals.getValue(ConfigKeys.PAGE_CACHE_ACTIONS);
+		CachedActions current = actions;
+		
+		if (value != null && !value.equals(current.value)) {
+			final Set<String> s = new HashSet<String>();
+			final String[] parts = value.split(",");
+			
+			for (int i = 0; i < parts.length; i++) {
+				if (parts[i].trim().length() > 0) {
+					s.add(parts[i].trim());
+				}
+			}
+			
+			current = new CachedActions(value, Collections.unmodifiableSet(s));
+			actions = current;
+		}
+		
+		return current.names;
+	}
+	
+	/**
+	 * Gets a page, if it is cached and did not expire
+	 * 
+	 * @param key The page key
+	 * @return The page, or <code>null</code> if it is not cached
+	 */
+	public static Page get(final String key)
+	{
+		final Page page = (Page)cache.get(FQN, key);
+		return (page == null || page.expires < System.currentTimeMillis() ? null : page);
+	}
+	
+	/**
+	 * Asks to render a page missing from the cache. If no other request 
+	 * is rendering it, the caller must render it, and then call 
+	 * {@link #endRendering(String)}. Otherwise, this method waits for the
+	 * other request to finish, so the caller may {@link #get(String)} the page again.
+	 * 
+	 * @param key The page key
+	 * @return <code>true</code> if the caller has to render the page
+	 */
+	public static boolean startRendering(final String key)
+	{
+		final CountDownLatch latch = new CountDownLatch(1);
+		final CountDownLatch current = RENDERING.putIfAbsent(key, latch);
+		
+		if (current == null) {
+			return true;
+		}
+		
+		try {
+			current.await(SystemGlobals.getIntValue(ConfigKeys.PAGE_CACHE_RENDER_WAIT), TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Lets the requests waiting for a page go on, after it was rendered 
+	 * 
+	 * @param key The page key
+	 * @see #startRendering(String)
+	 */
+	public static void endRendering(final String key)
+	{
+		final CountDownLatch latch = RENDERING.remove(key);
+		
+		if (latch != null) {
+			latch.countDown();
+		}
+	}
+	
+	/**
+	 * The current version of the cached pages. Callers must read it before 
+	 * rendering a page and pass it to {@link #add(String, String, byte[], int)}, 
+	 * so a page rendered before some change is never stored.
+	 * 
+	 * @return the version
+	 */
+	public static int version()
+	{
+		return VERSION.get();
+	}
+	
+	/**
+	 * Stores a rendered page
+	 * 
+	 * @param key The page key
+	 * @param contentType The content type of the page
+	 * @param content The page
+	 * @param renderVersion The value of {@link #version()} before the rendering started
+	 */
+	public static void add(final String key, final String contentType, final byte[] content, final int renderVersion)
+	{
+		byte[] gzippedContent = null;
+		
+		if (SystemGlobals.getBoolValue(ConfigKeys.PAGE_CACHE_GZIP)) {
+			try {
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 4 + 64);
+				final GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+				gzip.write(content);
+				gzip.close();
+				gzippedContent = bytes.toByteArray();
+			}
+			catch (IOException e) {
+				LOGGER.warn("Could not compress page " + key + ": " + e);
+			}
+		}
+		
+		final long expires = System.currentTimeMillis() + SystemGlobals.getIntValue(ConfigKeys.PAGE_CACHE_TTL) * 1000L;
+		
+		if (renderVersion == VERSION.get()) {
+			cache.add(FQN, key, new Page(contentType, content, gzippedContent, expires));
+			
+			// Something changed while the page was being stored
+			if (renderVersion != VERSION.get()) {
+				cache.remove(FQN, key);
+			}
+		}
+	}
+	
+	/**
+	 * Drops all cached pages, after some forum, topic or post changed
+	 */
+	public static void clear()
+	{
+		VERSION.incrementAndGet();
+		
+		if (cache != null) {
+			cache.remove(FQN);
+		}
+	}
+}
@@ -42,24 +42,32 @@
  */
 package net.jforum.repository;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.jforum.cache.CacheEngine;
 import net.jforum.cache.Cacheable;
 import net.jforum.dao.DataAccessDriver;
 import net.jforum.dao.PostDAO;
 import net.jforum.entities.Post;
+import net.jforum.entities.Topic;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
 import net.jforum.view.forum.common.PostCommon;
 
 /**
  * Repository for the post in the top n topics for each forum.
+ * Posts are kept by page, and each page is only loaded and 
+ * prepared for display when it is first requested.
  * 
  * @author Sean Mitchell
  * @author Rafael Steil
@@ -72,6 +80,102 @@ public class PostRepository implements Cacheable
 
 	private static final Object MUTEX_FQN = new Object();	
 	
+	/**
+	 * The pages of some topic already loaded. 
+	 * Pages are never changed, but replaced by new lists.
+	 */
+	static class TopicPages implements Serializable
+	{
+		private static final long serialVersionUID = 2841913946187403785L;
+		
+		private final int pageSize;
+		private final ConcurrentMap<Integer, List<Post>> pages = new ConcurrentHashMap<Integer, List<Post>>();
+		
+		public TopicPages(final int pageSize)
+		{
+			this.pageSize = pageSize;
+		}
+		
+		public int size()
+		{
+			int size = 0;
+			
+			for (Iterator<List<Post>> iter = this.pages.values().iterator(); iter.hasNext(); ) {
+				size += iter.next().size();
+			}
+			
+			return size;
+		}
+		
+		/**
+		 * @param post The post to search for
+		 * @return The index of the page with the post, or -1 if it is not in any loaded page
+		 */
+		public int pageOf(final Post post)
+		{
+			for (Iterator<Map.Entry<Integer, List<Post>>> iter = this.pages.entrySet().iterator(); iter.hasNext(); ) {
+				Map.Entry<Integer, List<Post>> entry = iter.next();
+				
+				if (entry.getValue().contains(post)) {
+					return entry.getKey().intValue();
+				}
+			}
+			
+			return -1;
+		}
+		
+		/**
+		 * Keeps a page, unless another thread loaded it first
+		 * @param page The index of the page
+		 * @param posts The posts of the page
+		 * @return The posts kept for the page
+		 */
+		public List<Post> putPage(final int page, final List<Post> posts)
+		{
+			List<Post> current = this.pages.putIfAbsent(Integer.valueOf(page), posts);
+			return current == null ? posts : current;
+		}
+		
+		/**
+		 * Drops the pages changed by a new post. Posts are sorted by time, 
+		 * and a post approved by a moderator keeps the time it was sent, so 
+		 * it may belong to some earlier page instead of the last one. 
+		 * @param post The new post
+		 */
+		public void append(final Post post)
+		{
+			int first = Integer.MAX_VALUE;
+			
+			for (Iterator<Map.Entry<Integer, List<Post>>> iter = this.pages.entrySet().iterator(); iter.hasNext(); ) {
+				Map.Entry<Integer, List<Post>> entry = iter.next();
+				List<Post> posts = entry.getValue();
+				Date last = posts.get(posts.size() - 1).getTime();
+				
+				if (posts.size() < this.pageSize 
+					|| (last != null && post.getTime() != null && last.after(post.getTime()))) {
+					first = Math.min(first, entry.getKey().intValue());
+				}
+			}
+			
+			if (first != Integer.MAX_VALUE) {
+				this.removeFrom(first);
+			}
+		}
+		
+		/**
+		 * Drops all loaded pages starting at some page
+		 * @param page The first page to drop
+		 */
+		public void removeFrom(final int page)
+		{
+			for (Iterator<Integer> iter = this.pages.keySet().iterator(); iter.hasNext(); ) {
+				if (iter.next().intValue() >= page) {
+					iter.remove();
+				}
+			}
+		}
+	}
+	
 	/**
 	 * @see net.jforum.cache.Cacheable#setCacheEngine(net.jforum.cache.CacheEngine)
 	 */
@@ -87,92 +191,148 @@ public class PostRepository implements Cacheable
 	
 	public static int size()
 	{
-		Map<String, List<Post>> map = (Map<String, List<Post>>)cache.get(FQN);
+		Map<String, TopicPages> map = (Map<String, TopicPages>)cache.get(FQN);
 		return (map != null ? map.size() : 0);
 	}
 	
 	public static int size(int topicId)
 	{
-		List<Post> posts = (List<Post>)cache.get(FQN, Integer.toString(topicId));
-		return (posts == null ? 0 : posts.size());
+		TopicPages topicPages = (TopicPages)cache.get(FQN, Integer.toString(topicId));
+		return (topicPages == null ? 0 : topicPages.size());
 	}
 	
 	public static Collection<String> cachedTopics()
 	{
-		Map<String, List<Post>> map = (Map<String, List<Post>>)cache.get(FQN);
+		Map<String, TopicPages> map = (Map<String, TopicPages>)cache.get(FQN);
 		if (map == null) {
 			return new ArrayList<String>();
 		}
 		
 		return map.keySet();
 	}
-		
+	
 	public static List<Post> selectAllByTopicByLimit(int topicId, int start, int count)  
 	{
-		String tid = Integer.toString(topicId);
+		TopicPages topicPages = getTopicPages(topicId, count);
+		int page = (start < 0 ? 0 : start / count);
 		
-		List<Post> posts = (List<Post>)cache.get(FQN, tid);
-		if (posts == null || posts.isEmpty()) {
-			PostDAO pm = DataAccessDriver.getInstance().newPostDAO();
-			posts = pm.selectAllByTopic(topicId);
+		List<Post> posts = loadPage(topicPages, topicId, page);
+		
+		if (posts.isEmpty() && page > 0) {
+			// Asked past the last page, like after some posts were removed
+			Topic topic = DataAccessDriver.getInstance().newTopicDAO().selectRaw(topicId);
+			int lastPage = topic.getTotalReplies() / count;
 			
-			for (Iterator<Post> iter = posts.iterator(); iter.hasNext(); ) {
-				PostCommon.preparePostForDisplay(iter.next());
+			if (lastPage < page) {
+				posts = loadPage(topicPages, topicId, lastPage);
 			}
+		}
+		
+		int offset = start - page * count;
+		
+		if (offset <= 0 || offset >= posts.size()) {
+			return posts;
+		}
+		
+		return posts.subList(offset, posts.size());
+	}
 	
-			Map<String, List<Post>> topics = (Map<String, List<Post>>)cache.get(FQN);
+	private static TopicPages getTopicPages(final int topicId, final int pageSize)
+	{
+		String tid = Integer.toString(topicId);
+		TopicPages topicPages = (TopicPages)cache.get(FQN, tid);
+		
+		if (topicPages != null && topicPages.pageSize == pageSize) {
+			return topicPages;
+		}
+		
+		synchronized (MUTEX_FQN) {
+			topicPages = (TopicPages)cache.get(FQN, tid);
+			
+			if (topicPages != null && topicPages.pageSize == pageSize) {
+				return topicPages;
+			}
+			
+			topicPages = new TopicPages(pageSize);
+			
+			Map<String, TopicPages> topics = (Map<String, TopicPages>)cache.get(FQN);
 			final int CACHE_SIZE = SystemGlobals.getIntValue(ConfigKeys.POSTS_CACHE_SIZE);
 			if (topics == null || topics.isEmpty() || topics.size() < CACHE_SIZE) {								
-				cache.add(FQN, tid, posts);
+				cache.add(FQN, tid, topicPages);
 			}
 			else {
 				if (!(topics instanceof LinkedHashMap<?, ?>)) {
-					topics = new LinkedHashMap<String, List<Post>>(topics) {
+					topics = new LinkedHashMap<String, TopicPages>(topics) {
 						private static final long serialVersionUID = -4868402767486935543L;
 
-						protected boolean removeEldestEntry(java.util.Map.Entry<String, List<Post>> eldest) {
+						protected boolean removeEldestEntry(java.util.Map.Entry<String, TopicPages> eldest) {
 							return this.size() > CACHE_SIZE;
 						}
 					};
 				}
 				
-				topics.put(tid, posts);
+				topics.put(tid, topicPages);
 				cache.add(FQN, topics);
 			}
+			
+			return topicPages;
 		}
+	}
+	
+	private static List<Post> loadPage(final TopicPages topicPages, final int topicId, final int page)
+	{
+		final Integer key = Integer.valueOf(page);
+		List<Post> posts = topicPages.pages.get(key);
 		
-		int size = posts.size();
-		
-		while (size < start) {
-			start -= count;
-		}
-		if (start < 0) {
-			start = 0;
+		if (posts == null) {
+			PostDAO pm = DataAccessDriver.getInstance().newPostDAO();
+			posts = pm.selectAllByTopicByLimit(topicId, page * topicPages.pageSize, topicPages.pageSize);
+			
+			for (Iterator<Post> iter = posts.iterator(); iter.hasNext(); ) {
+				PostCommon.preparePostForDisplay(iter.next());
+			}
+			
+			posts = Collections.unmodifiableList(posts);
+			
+			if (!posts.isEmpty()) {
+				posts = topicPages.putPage(page, posts);
+			}
 		}
 		
-		return posts.subList(start, (size < start + count) ? size : start + count);
-   }
+		return posts;
+	}
 	
 	public static void remove(int topicId, Post post)
 	{
+		PageCacheRepository.clear();
+		
 		synchronized (MUTEX_FQN) {
-			String tid = Integer.toString(topicId);			
-			List<Post> posts = (List<Post>)cache.get(FQN, tid);			
-			if (posts != null) {
-				posts.remove(post);				
-				cache.add(FQN, tid, posts);
+			TopicPages topicPages = (TopicPages)cache.get(FQN, Integer.toString(topicId));
+			if (topicPages != null) {
+				int page = topicPages.pageOf(post);
+				
+				// Every page after the removed post moves back by one
+				topicPages.removeFrom(page == -1 ? 0 : page);
 			}
 		}
 	}
 	
 	public static void update(int topicId, Post post)
 	{
+		RenderedPostRepository.remove(post.getId());
+		PageCacheRepository.clear();
+		
 		synchronized (MUTEX_FQN) {
-			String tid = Integer.toString(topicId);
-			List<Post> posts = (List<Post>)cache.get(FQN, tid);
-			if (posts != null && posts.contains(post)) {
-				posts.set(posts.indexOf(post), post);
-				cache.add(FQN, tid, posts);
+			TopicPages topicPages = (TopicPages)cache.get(FQN, Integer.toString(topicId));
+			if (topicPages != null) {
+				int page = topicPages.pageOf(post);
+				
+				if (page != -1) {
+					Integer key = Integer.valueOf(page);
+					List<Post> posts = new ArrayList<Post>(topicPages.pages.get(key));
+					posts.set(posts.indexOf(post), post);
+					topicPages.pages.put(key, Collections.unmodifiableList(posts));
+				}
 			}
 		}
 	}
@@ -180,11 +340,9 @@ public class PostRepository implements Cacheable
 	public static void append(int topicId, Post post)
 	{
 		synchronized (MUTEX_FQN) {
-			String tid = Integer.toString(topicId);
-			List<Post> posts = (List<Post>)cache.get(FQN, tid);
-			if (posts != null && !posts.contains(post)) {
-				posts.add(post);
-				cache.add(FQN, tid, posts);
+			TopicPages topicPages = (TopicPages)cache.get(FQN, Integer.toString(topicId));
+			if (topicPages != null) {
+				topicPages.append(post);
 			}
 		}
 	}
@@ -194,4 +352,3 @@ public class PostRepository implements Cacheable
 		cache.remove(FQN, Integer.toString(topicId));
 	}
 }
-
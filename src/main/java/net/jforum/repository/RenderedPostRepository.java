@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 9:12:40 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.repository;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.jforum.entities.Post;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+/**
+ * Keeps the HTML of posts already prepared for display, so a topic page 
+ * does not run smilies, BBCode and HTML filtering again for every view. 
+ * <p>
+ * Entries are keyed by post id and are evicted in LRU order once the 
+ * text they hold goes over {@link ConfigKeys#POSTS_RENDERED_CACHE_BYTES}. 
+ * An entry also keeps the raw text and flags it was rendered from, and is 
+ * only used when they are equal to the ones of the post being displayed. 
+ * Changing the smilies, the BBCode configuration or the board settings
+ * bumps a global version, discarding everything rendered before it.
+ * </p>
+ * <p>
+ * Reads and writes take no lock. When the cache goes over its limit, a 
+ * single thread evicts the least recently used entries until it is back 
+ * to 15/16 of the limit, while the others go on.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public final class RenderedPostRepository
+{
+	/** Rough cost of an entry and its map node, besides the text */
+	private static final int ENTRY_OVERHEAD = 96;
+	
+	private static final ConcurrentMap<Integer, Rendered> ENTRIES = 
+		new ConcurrentHashMap<Integer, Rendered>(256, 0.75f, 64);
+	private static final AtomicLong BYTES = new AtomicLong();
+	private static final AtomicInteger VERSION = new AtomicInteger();
+	private static final ReentrantLock EVICTION_LOCK = new ReentrantLock();
+	
+	private static final Comparator<Rendered> LEAST_RECENTLY_USED = new Comparator<Rendered>() {
+		public int compare(final Rendered r1, final Rendered r2)
+		{
+			return r1.lastAccess < r2.lastAccess ? -1 : (r1.lastAccess == r2.lastAccess ? 0 : 1);
+		}
+	};
+	
+	private RenderedPostRepository() {}
+	
+	/**
+	 * The current rendering version. Callers must read it before rendering
+	 * a post and pass it to {@link #add(Post, String, String, boolean, int)}, 
+	 * so a text rendered with an old configuration is never stored. 
+	 * 
+	 * @return the version
+	 */
+	public static int version()
+	{
+		return VERSION.get();
+	}
+	
+	/**
+	 * Gets the rendered HTML of a post
+	 * 
+	 * @param post The post, with its raw text
+	 * @return The cached rendering, or <code>null</code> if there is none matching the post
+	 */
+	public static Rendered get(final Post post)
+	{
+		if (post.getId() <= 0 || post.getText() == null) {
+			return null;
+		}
+		
+		final Rendered rendered = ENTRIES.get(Integer.valueOf(post.getId()));
+		
+		if (rendered == null || !rendered.matches(post)) {
+			return null;
+		}
+		
+		rendered.lastAccess = System.currentTimeMillis();
+		return rendered;
+	}
+	
+	/**
+	 * Stores the rendered HTML of a post
+	 * 
+	 * @param post The post. Its id and flags are used
+	 * @param source The raw text the post was rendered from
+	 * @param text The rendered text
+	 * @param hasCodeBlock Whether the text has a highlighted code block
+	 * @param renderVersion The value of {@link #version()} before the rendering started
+	 */
+	public static void add(final Post post, final String source, final String text, 
+		final boolean hasCodeBlock, final int renderVersion)
+	{
+		final long limit = SystemGlobals.getIntValue(ConfigKeys.POSTS_RENDERED_CACHE_BYTES);
+		
+		if (post.getId() <= 0 || source == null || text == null || limit <= 0) {
+			return;
+		}
+		
+		final Rendered rendered = new Rendered(post, source, text, hasCodeBlock);
+		
+		// An invalidation may have happened while the post was rendered
+		if (rendered.size > limit || renderVersion != VERSION.get()) {
+			return;
+		}
+		
+		final Integer key = Integer.valueOf(post.getId());
+		final Rendered previous = ENTRIES.put(key, rendered);
+		
+		BYTES.addAndGet(previous == null ? rendered.size : rendered.size - previous.size);
+		
+		// Or while it was being stored
+		if (renderVersion != VERSION.get()) {
+			if (ENTRIES.remove(key, rendered)) {
+				BYTES.addAndGet(-rendered.size);
+			}
+			
+			return;
+		}
+		
+		if (BYTES.get() > limit) {
+			evict(limit);
+		}
+	}
+	
+	/**
+	 * Removes the least recently used entries, until the cache is at 
+	 * 15/16 of its limit. Only one thread evicts at a time.
+	 * 
+	 * @param limit The maximum number of bytes
+	 */
+	private static void evict(final long limit)
+	{
+		if (!EVICTION_LOCK.tryLock()) {
+			return;
+		}
+		
+		try {
+			final long target = limit - (limit >> 4);
+			final Rendered[] sorted = ENTRIES.values().toArray(new Rendered[0]);
+			Arrays.sort(sorted, LEAST_RECENTLY_USED);
+			
+			for (int i = 0; i < sorted.length && BYTES.get() > target; i++) {
+				if (ENTRIES.remove(Integer.valueOf(sorted[i].postId), sorted[i])) {
+					BYTES.addAndGet(-sorted[i].size);
+				}
+			}
+		}
+		finally {
+			EVICTION_LOCK.unlock();
+		}
+	}
+	
+	/**
+	 * Discards the rendering of a single post, after it was edited or deleted
+	 * 
+	 * @param postId The post id
+	 */
+	public static void remove(final int postId)
+	{
+		final Rendered previous = ENTRIES.remove(Integer.valueOf(postId));
+		
+		if (previous != null) {
+			BYTES.addAndGet(-previous.size);
+		}
+	}
+	
+	/**
+	 * Discards all renderings. Must be called whenever something used 
+	 * to render posts, like smilies or BBCodes, changes. 
+	 */
+	public static void clear()
+	{
+		VERSION.incrementAndGet();
+		
+		for (final Iterator<Map.Entry<Integer, Rendered>> iter = ENTRIES.entrySet().iterator(); iter.hasNext(); ) {
+			final Map.Entry<Integer, Rendered> entry = iter.next();
+			
+			if (ENTRIES.remove(entry.getKey(), entry.getValue())) {
+				BYTES.addAndGet(-entry.getValue().size);
+			}
+		}
+	}
+	
+	/**
+	 * @return The number of posts in the cache
+	 */
+	public static int size()
+	{
+		return ENTRIES.size();
+	}
+	
+	/**
+	 * @return The approximate number of bytes used by the cached posts
+	 */
+	public static long getBytes()
+	{
+		return BYTES.get();
+	}
+	
+	/**
+	 * A post as prepared by {@link net.jforum.view.forum.common.PostCommon#preparePostForDisplay(Post)}
+	 */
+	public static final class Rendered
+	{
+		private final int postId;
+		private final String source;
+		private final String text;
+		private final boolean html;
+		private final boolean bbCode;
+		private final boolean smilies;
+		private final boolean codeBlock;
+		private final long size;
+		private volatile long lastAccess;
+		
+		Rendered(final Post post, final String source, final String text, final boolean codeBlock)
+		{
+			this.postId = post.getId();
+			this.source = source;
+			this.text = text;
+			this.html = post.isHtmlEnabled();
+			this.bbCode = post.isBbCodeEnabled();
+			this.smilies = post.isSmiliesEnabled();
+			this.codeBlock = codeBlock;
+			this.size = 2L * (source.length() + text.length()) + ENTRY_OVERHEAD;
+			this.lastAccess = System.currentTimeMillis();
+		}
+		
+		boolean matches(final Post post)
+		{
+			return this.html == post.isHtmlEnabled()
+				&& this.bbCode == post.isBbCodeEnabled()
+				&& this.smilies == post.isSmiliesEnabled()
+				&& this.source.equals(post.getText());
+		}
+		
+		public String getText()
+		{
+			return this.text;
+		}
+		
+		public boolean hasCodeBlock()
+		{
+			return this.codeBlock;
+		}
+	}
+}
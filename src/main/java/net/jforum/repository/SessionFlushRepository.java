@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 9:47:12 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.repository;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.jforum.DBConnection;
+import net.jforum.JForumExecutionContext;
+import net.jforum.dao.DataAccessDriver;
+import net.jforum.entities.UserSession;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Queues the data of expired user sessions and writes it to the database 
+ * every {@link ConfigKeys#SESSIONS_FLUSH_INTERVAL} seconds, in JDBC batches 
+ * of {@link ConfigKeys#SESSIONS_FLUSH_BATCH_SIZE}. As the database keeps a 
+ * single session per user, queued sessions are coalesced by user id, and only 
+ * the latest one is written. When the interval is 0 (zero), sessions are 
+ * written right away.
+ * 
+ * @version $Id$
+ * @see AttachmentDownloadsRepository
+ */
+public final class SessionFlushRepository
+{
+	private static final Logger LOGGER = Logger.getLogger(SessionFlushRepository.class);
+	
+	private static final ConcurrentMap<Integer, Pending> PENDING = new ConcurrentHashMap<Integer, Pending>();
+	private static final Object MUTEX_FLUSH = new Object();
+	private static final FlushTimer TIMER = new FlushTimer("user sessions", ConfigKeys.SESSIONS_FLUSH_INTERVAL, new Runnable() {
+		public void run()
+		{
+			flush();
+		}
+	});
+	private static volatile long lastFlushLag;
+	
+	private SessionFlushRepository() {}
+	
+	/**
+	 * Starts writing the queued sessions periodically, if enabled
+	 */
+	public static void start()
+	{
+		TIMER.start();
+	}
+	
+	/**
+	 * Stops the periodic flush and writes all queued sessions
+	 */
+	public static synchronized void stop()
+	{
+		TIMER.stop();
+		
+		if (!PENDING.isEmpty()) {
+			LOGGER.warn("Could not store the data of " + PENDING.size() + " user sessions");
+		}
+	}
+	
+	/**
+	 * Queues the data of a user session to be written to the database. 
+	 * A session of the same user still in the queue is replaced. 
+	 * 
+	 * @param userSession The session to store
+	 */
+	public static void add(final UserSession userSession)
+	{
+		if (!TIMER.isRunning()) {
+			store(userSession);
+			return;
+		}
+		
+		final Integer userId = Integer.valueOf(userSession.getUserId());
+		final UserSession copy = new UserSession(userSession);
+		
+		while (true) {
+			final Pending current = PENDING.get(userId);
+			
+			if (current == null) {
+				if (PENDING.putIfAbsent(userId, new Pending(copy, System.currentTimeMillis())) == null) {
+					return;
+				}
+			}
+			else if (PENDING.replace(userId, current, new Pending(copy, current.queuedAt))) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Drops the queued session of a user, if any. To be used when the session 
+	 * of the user is written right away, so older data does not overwrite it later.
+	 * 
+	 * @param userId The user id
+	 */
+	public static void discard(final int userId)
+	{
+		PENDING.remove(Integer.valueOf(userId));
+	}
+	
+	/**
+	 * Gets the queued session of a user, the same way 
+	 * {@link net.jforum.dao.UserSessionDAO#selectById(UserSession, Connection)} 
+	 * would after the queue is written. 
+	 * 
+	 * @param userSession The session with the id of the user
+	 * @return A copy of <code>userSession</code> with the start and session time 
+	 * of the queued session, or <code>null</code> if there is none
+	 */
+	public static UserSession get(final UserSession userSession)
+	{
+		final Pending pending = PENDING.get(Integer.valueOf(userSession.getUserId()));
+		
+		if (pending == null) {
+			return null;
+		}
+		
+		final UserSession queued = new UserSession(userSession);
+		queued.setSessionTime(pending.userSession.getSessionTime());
+		queued.setStartTime(pending.userSession.getStartTime());
+		
+		return queued;
+	}
+	
+	/**
+	 * @return The number of sessions waiting to be written
+	 */
+	public static int size()
+	{
+		return PENDING.size();
+	}
+	
+	/**
+	 * @return The time, in milliseconds, the oldest queued session is waiting to be written
+	 */
+	public static long getLag()
+	{
+		long oldest = Long.MAX_VALUE;
+		
+		for (final Iterator<Pending> iter = PENDING.values().iterator(); iter.hasNext(); ) {
+			oldest = Math.min(oldest, iter.next().queuedAt);
+		}
+		
+		return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+	}
+	
+	/**
+	 * @return The time, in milliseconds, the oldest session written 
+	 * by the last flush waited in the queue
+	 */
+	public static long getLastFlushLag()
+	{
+		return lastFlushLag;
+	}
+	
+	/**
+	 * Writes all queued sessions to the database. If a batch fails, 
+	 * its sessions are kept to be written in the next run. 
+	 */
+	public static void flush()
+	{
+		synchronized (MUTEX_FLUSH) {
+			final int batchSize = Math.max(1, SystemGlobals.getIntValue(ConfigKeys.SESSIONS_FLUSH_BATCH_SIZE));
+			final List<Pending> batch = new ArrayList<Pending>(Math.min(batchSize, PENDING.size()));
+			
+			final Iterator<Map.Entry<Integer, Pending>> iter = PENDING.entrySet().iterator();
+			long oldest = Long.MAX_VALUE;
+			int stored = 0;
+			
+			while (iter.hasNext()) {
+				final Map.Entry<Integer, Pending> entry = iter.next();
+				
+				if (PENDING.remove(entry.getKey(), entry.getValue())) {
+					batch.add(entry.getValue());
+				}
+				
+				if (batch.size() == batchSize || (!iter.hasNext() && !batch.isEmpty())) {
+					final long batchOldest = write(batch);
+					
+					if (batchOldest < 0) {
+						break;
+					}
+					
+					oldest = Math.min(oldest, batchOldest);
+					stored += batch.size();
+					batch.clear();
+				}
+			}
+			
+			if (stored == 0) {
+				return;
+			}
+			
+			lastFlushLag = System.currentTimeMillis() - oldest;
+			
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Stored " + stored + " user sessions, lag " + lastFlushLag + "ms");
+			}
+			
+			final int interval = SystemGlobals.getIntValue(ConfigKeys.SESSIONS_FLUSH_INTERVAL);
+			
+			if (interval > 0 && lastFlushLag > interval * 3000L) {
+				LOGGER.warn("User sessions are being stored " + lastFlushLag + "ms after they expire");
+			}
+		}
+	}
+	
+	/**
+	 * Writes a batch of sessions
+	 * 
+	 * @return The time the oldest session of the batch was queued, or -1 if it was not written
+	 */
+	private static long write(final List<Pending> batch)
+	{
+		final List<UserSession> sessions = new ArrayList<UserSession>(batch.size());
+		long oldest = Long.MAX_VALUE;
+		
+		for (final Iterator<Pending> iter = batch.iterator(); iter.hasNext(); ) {
+			final Pending pending = iter.next();
+			sessions.add(pending.userSession);
+			oldest = Math.min(oldest, pending.queuedAt);
+		}
+		
+		final boolean written = TIMER.write(new Runnable() {
+			public void run()
+			{
+				DataAccessDriver.getInstance().newUserSessionDAO().update(sessions, JForumExecutionContext.getConnection());
+			}
+		});
+		
+		if (!written) {
+			restore(batch);
+			return -1;
+		}
+		
+		return oldest;
+	}
+	
+	/**
+	 * Puts back the sessions of a batch not written. A newer session 
+	 * of the same user queued in the meantime is kept.
+	 */
+	private static void restore(final List<Pending> batch)
+	{
+		for (final Iterator<Pending> iter = batch.iterator(); iter.hasNext(); ) {
+			final Pending pending = iter.next();
+			PENDING.putIfAbsent(Integer.valueOf(pending.userSession.getUserId()), pending);
+		}
+	}
+	
+	private static void store(final UserSession userSession)
+	{
+		if (!DBConnection.getImplementation().isDatabaseUp()) {
+			return;
+		}
+		
+		Connection conn = null;
+		try {
+			conn = DBConnection.getImplementation().getConnection();
+			DataAccessDriver.getInstance().newUserSessionDAO().update(userSession, conn);
+		}
+		catch (Exception e) {
+			LOGGER.warn("Error storing user session data: " + e, e);
+		}
+		finally {
+			if (conn != null) {
+				try {
+					DBConnection.getImplementation().releaseConnection(conn);
+				}
+				catch (Exception e) {
+					LOGGER.warn("Error while releasing a connection: " + e);
+				}
+			}
+		}
+	}
+	
+	private static class Pending
+	{
+		final UserSession userSession;
+		final long queuedAt;
+		
+		Pending(final UserSession userSession, final long queuedAt)
+		{
+			this.userSession = userSession;
+			this.queuedAt = queuedAt;
+		}
+	}
+}
@@ -82,6 +82,7 @@ public class SmiliesRepository implements Cacheable
 		try {
 			cache.add(FQN, ENTRIES, DataAccessDriver.getInstance().newSmilieDAO().selectAll());
 			contexted = false;
+			RenderedPostRepository.clear();
 		}
 		catch (Exception e) {
 			throw new SmiliesLoadException("Error while loading smilies: " + e);
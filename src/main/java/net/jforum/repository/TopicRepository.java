@@ -45,11 +45,11 @@ package net.jforum.repository;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.jforum.cache.CacheEngine;
 import net.jforum.cache.Cacheable;
@@ -62,6 +62,13 @@ import net.jforum.util.preferences.SystemGlobals;
 
 /**
  * Repository for the last n topics for each forum.
+ * <p>
+ * Every list is cached as an immutable {@link TopicSnapshot}. Readers never
+ * lock; writers copy the current snapshot, change the copy and publish it 
+ * back to the cache. Writers of the recent and hottest lists serialize on 
+ * their own monitor, and writers of a forum list only on the monitor of
+ * that forum, so posting in one forum does not stall the others. 
+ * </p>
  * 
  * @author Rafael Steil
  * @author James Yong
@@ -80,7 +87,18 @@ public class TopicRepository implements Cacheable {
 
 	private static final Object MUTEX_RECENT = new Object();
 	private static final Object MUTEX_HOTTEST = new Object();
-	private static final Object MUTEX_FQN_FORUM = new Object();
+	private static final Object MUTEX_RELATION = new Object();
+	private static final ConcurrentMap<Integer, Object> FORUM_MUTEXES = new ConcurrentHashMap<Integer, Object>();
+	
+	/** Most page boundaries kept for each forum */
+	private static final int MAX_PAGE_BOUNDARIES = 1000;
+	
+	/** 
+	 * By forum, the last topic of the pages already listed past the cached topics, 
+	 * by the start index of the page that follows it 
+	 */
+	private static final ConcurrentMap<Integer, ConcurrentMap<Integer, Topic>> PAGE_BOUNDARIES = 
+		new ConcurrentHashMap<Integer, ConcurrentMap<Integer, Topic>>();
 	
 	private static int maxRecentTopics = SystemGlobals.getIntValue(ConfigKeys.RECENT_TOPICS);
 	private static int maxHottestTopics = SystemGlobals.getIntValue(ConfigKeys.HOTTEST_TOPICS);
@@ -108,53 +126,71 @@ public class TopicRepository implements Cacheable {
 	 */
 	public static void pushTopic(Topic topic) {
 		if (SystemGlobals.getBoolValue(ConfigKeys.TOPIC_CACHE_ENABLED)) {
-			int limit = SystemGlobals.getIntValue(ConfigKeys.RECENT_TOPICS);
-
-			LinkedList<Topic> latestList = (LinkedList<Topic>) cache.get(FQN, RECENT);
-			if (latestList == null || latestList.isEmpty()) {
-				latestList = new LinkedList<Topic>(loadMostRecentTopics());
-			}
-
-			latestList.remove(topic);
-			latestList.addFirst(topic);
-
-			while (latestList.size() > limit) {
-				latestList.removeLast();
-			}
 			synchronized (MUTEX_RECENT) {
-				cache.add(FQN, RECENT, latestList);
+				int limit = SystemGlobals.getIntValue(ConfigKeys.RECENT_TOPICS);
+				
+				TopicSnapshot latest = (TopicSnapshot) cache.get(FQN, RECENT);
+				List<Topic> latestList = latest == null || latest.isEmpty() 
+					? new ArrayList<Topic>(loadMostRecentTopics())
+					: latest.copy();
+
+				latestList.remove(topic);
+				latestList.add(0, topic);
+
+				while (latestList.size() > limit) {
+					latestList.remove(latestList.size() - 1);
+				}
+				
+				cache.add(FQN, RECENT, new TopicSnapshot(latestList));
 			}
 
-			limit = SystemGlobals.getIntValue(ConfigKeys.HOTTEST_TOPICS);
-
-			LinkedList<Topic> hottestList = (LinkedList<Topic>) cache.get(FQN, HOTTEST);
-			if (hottestList == null || hottestList.isEmpty()) {
-				hottestList = new LinkedList<Topic>(loadHottestTopics());
-			}
+			synchronized (MUTEX_HOTTEST) {
+				int limit = SystemGlobals.getIntValue(ConfigKeys.HOTTEST_TOPICS);
+				
+				TopicSnapshot hottest = (TopicSnapshot) cache.get(FQN, HOTTEST);
+				List<Topic> hottestList = hottest == null || hottest.isEmpty()
+					? new ArrayList<Topic>(loadHottestTopics())
+					: hottest.copy();
 
-			if (!hottestList.contains(topic)) {
-				hottestList.addLast(topic);
-			} else {
 				int index = hottestList.indexOf(topic);
-				hottestList.remove(index);
-				while (index > 0) {
-					Topic preTopic = (Topic) hottestList.get(index - 1);
-					if (preTopic.getTotalViews() < topic.getTotalViews()) {
-						index--;
-					} else {
-						break;
-					}
+				
+				if (index == -1) {
+					hottestList.add(topic);
+				} else {
+					hottestList.remove(index);
+					hottestList.add(hottestPosition(hottestList, topic, index), topic);
 				}
-				hottestList.add(index, topic);
-			}
 
-			while (hottestList.size() > limit) {
-				hottestList.removeLast();
+				while (hottestList.size() > limit) {
+					hottestList.remove(hottestList.size() - 1);
+				}
+				
+				cache.add(FQN, HOTTEST, new TopicSnapshot(hottestList));
 			}
-			synchronized (MUTEX_HOTTEST) {
-				cache.add(FQN, HOTTEST, hottestList);
+		}
+	}
+	
+	/**
+	 * Finds the new position of a topic in the hottest list, moving it up
+	 * from its current position while it has more views than its predecessor
+	 * 
+	 * @param hottestList The hottest topics, without the topic being moved
+	 * @param topic The topic being moved
+	 * @param index The current position of the topic
+	 * @return The new position
+	 */
+	private static int hottestPosition(List<Topic> hottestList, Topic topic, int index) {
+		while (index > 0) {
+			Topic preTopic = hottestList.get(index - 1);
+			
+			if (preTopic.getTotalViews() < topic.getTotalViews()) {
+				index--;
+			} else {
+				break;
 			}
 		}
+		
+		return index;
 	}
 
 	/**
@@ -162,16 +198,16 @@ public class TopicRepository implements Cacheable {
 	 * 
 	 */
 	public static List<Topic> getRecentTopics() {
-		List<Topic> latestList = (List<Topic>) cache.get(FQN, RECENT);
+		TopicSnapshot latest = (TopicSnapshot) cache.get(FQN, RECENT);
 		int limit = SystemGlobals.getIntValue(ConfigKeys.RECENT_TOPICS);		
 
-		if (limit != maxRecentTopics || latestList == null || latestList.isEmpty()
+		if (limit != maxRecentTopics || latest == null || latest.isEmpty()
 				|| !SystemGlobals.getBoolValue(ConfigKeys.TOPIC_CACHE_ENABLED)) {
-			latestList = loadMostRecentTopics();
 			maxRecentTopics = limit;
+			return new ArrayList<Topic>(loadMostRecentTopics());
 		}
 
-		return new ArrayList<Topic>(latestList);
+		return new ArrayList<Topic>(latest.getTopics());
 	}
 
 	/**
@@ -179,16 +215,16 @@ public class TopicRepository implements Cacheable {
 	 * 
 	 */
 	public static List<Topic> getHottestTopics() {
-		List<Topic> hottestList = (List<Topic>) cache.get(FQN, HOTTEST);
+		TopicSnapshot hottest = (TopicSnapshot) cache.get(FQN, HOTTEST);
 		int limit = SystemGlobals.getIntValue(ConfigKeys.HOTTEST_TOPICS);
 
-		if (limit != maxHottestTopics || hottestList == null || hottestList.isEmpty()
+		if (limit != maxHottestTopics || hottest == null || hottest.isEmpty()
 				|| !SystemGlobals.getBoolValue(ConfigKeys.TOPIC_CACHE_ENABLED)) {
-			hottestList = loadHottestTopics();
 			maxHottestTopics = limit;
+			return new ArrayList<Topic>(loadHottestTopics());
 		}
 
-		return new ArrayList<Topic>(hottestList);
+		return new ArrayList<Topic>(hottest.getTopics());
 	}
 
 	/**
@@ -200,7 +236,7 @@ public class TopicRepository implements Cacheable {
 
 		List<Topic> latestList = tm.selectRecentTopics(limit);
 		synchronized (MUTEX_RECENT) {
-			cache.add(FQN, RECENT, new LinkedList<Topic>(latestList));
+			cache.add(FQN, RECENT, new TopicSnapshot(latestList));
 		}
 
 		return latestList;
@@ -215,11 +251,126 @@ public class TopicRepository implements Cacheable {
 
 		List<Topic> hottestList = tm.selectHottestTopics(limit);
 		synchronized (MUTEX_HOTTEST) {
-			cache.add(FQN, HOTTEST, new LinkedList<Topic>(hottestList));
+			cache.add(FQN, HOTTEST, new TopicSnapshot(hottestList));
 		}
 
 		return hottestList;
 	}
+	
+	/**
+	 * Gets the monitor guarding the writes to the topic list of a forum
+	 * 
+	 * @param forumId The forum id
+	 * @return The monitor
+	 */
+	private static Object forumMutex(int forumId) {
+		Integer key = Integer.valueOf(forumId);
+		Object mutex = FORUM_MUTEXES.get(key);
+		
+		if (mutex == null) {
+			Object newMutex = new Object();
+			mutex = FORUM_MUTEXES.putIfAbsent(key, newMutex);
+			
+			if (mutex == null) {
+				mutex = newMutex;
+			}
+		}
+		
+		return mutex;
+	}
+	
+	/**
+	 * Gets the topic id to forum id relation, creating it if necessary
+	 * 
+	 * @return The relation map. It is safe for concurrent use
+	 */
+	private static Map<Integer, Integer> relation() {
+		Map<Integer, Integer> m = (Map<Integer, Integer>) cache.get(FQN, RELATION);
+		
+		if (m == null) {
+			synchronized (MUTEX_RELATION) {
+				m = (Map<Integer, Integer>) cache.get(FQN, RELATION);
+				
+				if (m == null) {
+					m = new ConcurrentHashMap<Integer, Integer>();
+					cache.add(FQN, RELATION, m);
+				}
+			}
+		}
+		
+		return m;
+	}
+
+	/**
+	 * Loads the first topics of a forum into the cache, unless some other 
+	 * thread already did it. Only the forum being loaded is locked.
+	 * 
+	 * @param forumId The forum id
+	 * @return The cached topics of the forum, no more than <code>ConfigKeys.TOPIC_CACHE_SIZE</code>
+	 */
+	public static List<Topic> loadTopics(int forumId) {
+		synchronized (forumMutex(forumId)) {
+			List<Topic> topics = getTopics(forumId);
+			
+			if (topics.isEmpty() || !isLoaded(forumId)) {
+				TopicDAO tm = DataAccessDriver.getInstance().newTopicDAO();
+				topics = tm.selectAllByForumByLimit(forumId, 0, SystemGlobals.getIntValue(ConfigKeys.TOPIC_CACHE_SIZE));
+				addAll(forumId, topics);
+			}
+			
+			return topics;
+		}
+	}
+	
+	/**
+	 * Gets the last topic of the page before some other page of a forum,
+	 * if that page was listed since the forum last changed
+	 * 
+	 * @param forumId The forum id
+	 * @param start The start index of the page
+	 * @return The last topic of the previous page, or <code>null</code> if it is not known
+	 */
+	public static Topic getPageBoundary(int forumId, int start) {
+		Map<Integer, Topic> boundaries = PAGE_BOUNDARIES.get(Integer.valueOf(forumId));
+		return (boundaries == null ? null : boundaries.get(Integer.valueOf(start)));
+	}
+	
+	/**
+	 * Remembers the last topic of a page listed past the cached topics, 
+	 * so the next page can be selected after it 
+	 * 
+	 * @param forumId The forum id
+	 * @param start The start index of the next page
+	 * @param last The last topic of the page
+	 */
+	public static void setPageBoundary(int forumId, int start, Topic last) {
+		Integer key = Integer.valueOf(forumId);
+		ConcurrentMap<Integer, Topic> boundaries = PAGE_BOUNDARIES.get(key);
+		
+		if (boundaries == null) {
+			ConcurrentMap<Integer, Topic> newBoundaries = new ConcurrentHashMap<Integer, Topic>();
+			boundaries = PAGE_BOUNDARIES.putIfAbsent(key, newBoundaries);
+			
+			if (boundaries == null) {
+				boundaries = newBoundaries;
+			}
+		}
+		
+		if (boundaries.size() >= MAX_PAGE_BOUNDARIES) {
+			boundaries.clear();
+		}
+		
+		boundaries.put(Integer.valueOf(start), last);
+	}
+	
+	/**
+	 * Forgets the page boundaries of a forum, as its topics changed order
+	 * 
+	 * @param forumId The forum id
+	 */
+	private static void clearPageBoundaries(int forumId) {
+		PAGE_BOUNDARIES.remove(Integer.valueOf(forumId));
+	}
 
 	/**
 	 * Add topics to the cache
@@ -231,26 +382,21 @@ public class TopicRepository implements Cacheable {
 	 */
 	public static void addAll(int forumId, List<Topic> topics) {
 		if (SystemGlobals.getBoolValue(ConfigKeys.TOPIC_CACHE_ENABLED)) {
-			synchronized (MUTEX_FQN_FORUM) {
-				cache.add(FQN_FORUM, Integer.toString(forumId),
-						new LinkedList<Topic>(topics));
-
-				Map<Integer, Integer> m = (Map<Integer, Integer>) cache.get(FQN, RELATION);
-
-				if (m == null) {
-					m = new HashMap<Integer, Integer>();
-				}
+			synchronized (forumMutex(forumId)) {
+				cache.add(FQN_FORUM, Integer.toString(forumId), new TopicSnapshot(topics));
 
+				Map<Integer, Integer> m = relation();
 				Integer fId = Integer.valueOf(forumId);
 
 				for (Iterator<Topic> iter = topics.iterator(); iter.hasNext();) {
-					Topic topic = (Topic) iter.next();
+					Topic topic = iter.next();
 
 					m.put(Integer.valueOf(topic.getId()), fId);
 				}
 
 				cache.add(FQN, RELATION, m);
 				cache.add(FQN_LOADED, Integer.toString(forumId), "1");
+				clearPageBoundaries(forumId);
 			}
 		}
 	}
@@ -262,11 +408,17 @@ public class TopicRepository implements Cacheable {
 	 *            The forum id to clear the cache
 	 */
 	public static void clearCache(int forumId) {
-		synchronized (MUTEX_FQN_FORUM) {
-			cache.add(FQN_FORUM, Integer.toString(forumId),
-					new LinkedList<Topic>());
-			cache.remove(FQN, RELATION);
+		synchronized (forumMutex(forumId)) {
+			cache.add(FQN_FORUM, Integer.toString(forumId), new TopicSnapshot(new ArrayList<Topic>()));
+			
+			synchronized (MUTEX_RELATION) {
+				cache.remove(FQN, RELATION);
+			}
+			
+			clearPageBoundaries(forumId);
 		}
+		
+		PageCacheRepository.clear();
 	}
 
 	/**
@@ -280,20 +432,22 @@ public class TopicRepository implements Cacheable {
 			return;
 		}
 
-		synchronized (MUTEX_FQN_FORUM) {
+		synchronized (forumMutex(topic.getForumId())) {
 			String forumId = Integer.toString(topic.getForumId());
-			LinkedList<Topic> forumTopicsList = (LinkedList<Topic>) cache.get(FQN_FORUM, forumId);
+			TopicSnapshot forumTopics = (TopicSnapshot) cache.get(FQN_FORUM, forumId);
+			List<Topic> forumTopicsList;
 
-			if (forumTopicsList == null) {
-				forumTopicsList = new LinkedList<Topic>();
+			if (forumTopics == null) {
+				forumTopicsList = new ArrayList<Topic>();
 				forumTopicsList.add(topic);
 			} else {
-				boolean contains = forumTopicsList.contains(topic);
+				forumTopicsList = forumTopics.copy();
+				boolean contains = forumTopics.contains(topic);
 
 				// If the cache is full, remove the eldest element
 				int topicCacheSize = SystemGlobals.getIntValue(ConfigKeys.TOPIC_CACHE_SIZE);
 				if (!contains && forumTopicsList.size() + 1 > topicCacheSize) {
-					forumTopicsList.removeLast();
+					forumTopicsList.remove(forumTopicsList.size() - 1);
 				} else if (contains) {
 					forumTopicsList.remove(topic);
 				}
@@ -303,18 +457,16 @@ public class TopicRepository implements Cacheable {
 				Collections.sort(forumTopicsList, TYPE_COMPARATOR);
 			}
 
-			cache.add(FQN_FORUM, forumId, forumTopicsList);
-
-			Map<Integer, Integer> m = (Map<Integer, Integer>) cache.get(FQN, RELATION);
-
-			if (m == null) {
-				m = new HashMap<Integer, Integer>();
-			}
-
-			m.put(Integer.valueOf(topic.getId()), Integer.valueOf(forumId));
+			cache.add(FQN_FORUM, forumId, new TopicSnapshot(forumTopicsList));
 
+			Map<Integer, Integer> m = relation();
+			m.put(Integer.valueOf(topic.getId()), Integer.valueOf(topic.getForumId()));
 			cache.add(FQN, RELATION, m);
+			
+			clearPageBoundaries(topic.getForumId());
 		}
+		
+		PageCacheRepository.clear();
 	}
 
 	/**
@@ -325,53 +477,37 @@ public class TopicRepository implements Cacheable {
 	 */
 	public static void updateTopic(Topic topic) {
 		if (SystemGlobals.getBoolValue(ConfigKeys.TOPIC_CACHE_ENABLED)) {
-			synchronized (MUTEX_FQN_FORUM) {
+			synchronized (forumMutex(topic.getForumId())) {
 				String forumId = Integer.toString(topic.getForumId());
-				List<Topic> forumTopicsList = (List<Topic>) cache.get(FQN_FORUM, forumId);
-
-				if (forumTopicsList != null) {
-					int index = forumTopicsList.indexOf(topic);
+				TopicSnapshot forumTopics = (TopicSnapshot) cache.get(FQN_FORUM, forumId);
 
-					if (index > -1) {
-						forumTopicsList.set(index, topic);
-						cache.add(FQN_FORUM, forumId, forumTopicsList);
-					}
+				if (forumTopics != null && forumTopics.contains(topic)) {
+					List<Topic> forumTopicsList = forumTopics.copy();
+					forumTopicsList.set(forumTopicsList.indexOf(topic), topic);
+					cache.add(FQN_FORUM, forumId, new TopicSnapshot(forumTopicsList));
 				}
 			}
 
 			synchronized (MUTEX_RECENT) {
-				List<Topic> latestList = (List<Topic>) cache.get(FQN, RECENT);
+				TopicSnapshot latest = (TopicSnapshot) cache.get(FQN, RECENT);
 
-				if (latestList != null) {
-					int index = latestList.indexOf(topic);
-
-					if (index > -1) {
-						latestList.set(index, topic);
-						cache.add(FQN, RECENT, latestList);
-					}
+				if (latest != null && latest.contains(topic)) {
+					List<Topic> latestList = latest.copy();
+					latestList.set(latestList.indexOf(topic), topic);
+					cache.add(FQN, RECENT, new TopicSnapshot(latestList));
 				}
 			}
 
 			synchronized (MUTEX_HOTTEST) {
-				List<Topic> hottestList = (List<Topic>) cache.get(FQN, HOTTEST);
+				TopicSnapshot hottest = (TopicSnapshot) cache.get(FQN, HOTTEST);
 
-				if (hottestList != null) {
+				if (hottest != null && hottest.contains(topic)) {
+					List<Topic> hottestList = hottest.copy();
 					int index = hottestList.indexOf(topic);
-					if (index > -1) {
-						hottestList.remove(index);
-					}
-					while (index > 0) {
-						Topic preTopic = (Topic) hottestList.get(index - 1);
-						if (preTopic.getTotalViews() < topic.getTotalViews()) {
-							index--;
-						} else {
-							break;
-						}
-					}
-					if (index > -1) {
-						hottestList.add(index, topic);
-						cache.add(FQN, HOTTEST, hottestList);
-					}
+					
+					hottestList.remove(index);
+					hottestList.add(hottestPosition(hottestList, topic, index), topic);
+					cache.add(FQN, HOTTEST, new TopicSnapshot(hottestList));
 				}
 			}
 		}
@@ -394,7 +530,7 @@ public class TopicRepository implements Cacheable {
 			Map<Integer, Integer> m = (Map<Integer, Integer>) cache.get(FQN, RELATION);
 
 			if (m != null) {
-				Integer forumId = (Integer) m.get(Integer.valueOf(topic.getId()));
+				Integer forumId = m.get(Integer.valueOf(topic.getId()));
 
 				if (forumId != null) {
 					topic.setForumId(forumId.intValue());
@@ -406,15 +542,9 @@ public class TopicRepository implements Cacheable {
 			}
 		}
 
-		List<Topic> l = (List<Topic>) cache.get(FQN_FORUM, Integer.toString(topic.getForumId()));
-
-		int index = -1;
+		TopicSnapshot forumTopics = (TopicSnapshot) cache.get(FQN_FORUM, Integer.toString(topic.getForumId()));
 
-		if (l != null) {
-			index = l.indexOf(topic);
-		}
-
-		return (index == -1 ? null : (Topic) l.get(index));
+		return (forumTopics == null ? null : forumTopics.get(topic.getId()));
 	}
 
 	/**
@@ -431,9 +561,9 @@ public class TopicRepository implements Cacheable {
 		}
 
 		String forumId = Integer.toString(topic.getForumId());
-		List<Topic> list = (List<Topic>) cache.get(FQN_FORUM, forumId);
+		TopicSnapshot forumTopics = (TopicSnapshot) cache.get(FQN_FORUM, forumId);
 
-		return list == null ? false : list.contains(topic);
+		return forumTopics == null ? false : forumTopics.contains(topic);
 	}
 
 	/**
@@ -444,17 +574,16 @@ public class TopicRepository implements Cacheable {
 	 * @return <code>ArrayList</code> with the topics.
 	 */
 	public static List<Topic> getTopics(int forumid) {
-		List<Topic> returnList = null;
+		TopicSnapshot forumTopics = null;
+		
 		if (SystemGlobals.getBoolValue(ConfigKeys.TOPIC_CACHE_ENABLED)) {
-			synchronized (MUTEX_FQN_FORUM) {
-				returnList = (List<Topic>) cache.get(FQN_FORUM,	Integer.toString(forumid));				
-			}
+			forumTopics = (TopicSnapshot) cache.get(FQN_FORUM, Integer.toString(forumid));
 		}
 
-		if (returnList == null) {
+		if (forumTopics == null) {
 			return new ArrayList<Topic>();
 		} else {
-			return new ArrayList<Topic>(returnList);
+			return new ArrayList<Topic>(forumTopics.getTopics());
 		}
 	}
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 6:05:31 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.repository;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.jforum.entities.Topic;
+
+/**
+ * Immutable, ordered list of topics with an id index, as cached
+ * by {@link TopicRepository}. Writers never change an instance, 
+ * but build a new one and publish it to the cache, so readers
+ * don't need any locking. 
+ * 
+ * @version $Id$
+ */
+final class TopicSnapshot implements Serializable
+{
+	private static final long serialVersionUID = 3387712406513127563L;
+	
+	private final List<Topic> topics;
+	private final Map<Integer, Topic> index;
+	
+	TopicSnapshot(final List<Topic> topics)
+	{
+		this.topics = Collections.unmodifiableList(new ArrayList<Topic>(topics));
+		this.index = new HashMap<Integer, Topic>(topics.size() * 2);
+		
+		for (final Iterator<Topic> iter = this.topics.iterator(); iter.hasNext(); ) {
+			final Topic topic = iter.next();
+			this.index.put(Integer.valueOf(topic.getId()), topic);
+		}
+	}
+	
+	/**
+	 * @return The topics, in the order they were given. The list is read only
+	 */
+	List<Topic> getTopics()
+	{
+		return this.topics;
+	}
+	
+	/**
+	 * @return A mutable copy of the topics, to build a new snapshot from
+	 */
+	List<Topic> copy()
+	{
+		return new ArrayList<Topic>(this.topics);
+	}
+	
+	Topic get(final int topicId)
+	{
+		return this.index.get(Integer.valueOf(topicId));
+	}
+	
+	boolean contains(final Topic topic)
+	{
+		return this.index.containsKey(Integer.valueOf(topic.getId()));
+	}
+	
+	boolean isEmpty()
+	{
+		return this.topics.isEmpty();
+	}
+	
+	int size()
+	{
+		return this.topics.size();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 6:40:22 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.repository;
+
+import java.util.Map;
+
+import net.jforum.dao.DataAccessDriver;
+import net.jforum.entities.Topic;
+import net.jforum.util.preferences.ConfigKeys;
+
+/**
+ * Accumulates topic views in memory and writes them to the database
+ * in a single batch every {@link ConfigKeys#TOPIC_VIEWS_FLUSH_INTERVAL} seconds,
+ * instead of issuing one UPDATE per page view. 
+ * When the interval is 0 (zero), views are written right away.
+ * 
+ * @version $Id$
+ */
+public final class TopicViewsRepository
+{
+	private static final BatchedCounters VIEWS = new BatchedCounters("topic views", ConfigKeys.TOPIC_VIEWS_FLUSH_INTERVAL) {
+		protected void write(final Map<Integer, Integer> views)
+		{
+			DataAccessDriver.getInstance().newTopicDAO().incrementTotalViews(views);
+		}
+	};
+	
+	private TopicViewsRepository() {}
+	
+	/**
+	 * Starts writing the views periodically, if enabled
+	 */
+	public static void start()
+	{
+		VIEWS.start();
+	}
+	
+	/**
+	 * Stops the periodic flush and writes all pending views
+	 */
+	public static void stop()
+	{
+		VIEWS.stop();
+	}
+	
+	/**
+	 * Registers a new view of a topic. The instance passed as argument 
+	 * has its total views incremented as well.
+	 * 
+	 * @param topic The topic that was viewed
+	 */
+	public static void increment(final Topic topic)
+	{
+		VIEWS.increment(topic.getId());
+		topic.setTotalViews(topic.getTotalViews() + 1);
+	}
+	
+	/**
+	 * Gets the number of views of a topic not yet written to the database
+	 * 
+	 * @param topicId The topic id
+	 * @return The number of pending views
+	 */
+	public static int pending(final int topicId)
+	{
+		return VIEWS.pending(topicId);
+	}
+	
+	/**
+	 * Writes all pending views to the database. If the write fails, 
+	 * the views are kept to be written in the next run. 
+	 */
+	public static void flush()
+	{
+		VIEWS.flush();
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 11:21:40 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.jforum.cache.CacheEngine;
+import net.jforum.cache.Cacheable;
+import net.jforum.dao.DataAccessDriver;
+import net.jforum.entities.User;
+
+/**
+ * Keeps the summary of users shown in listings: username, rank, avatar,
+ * number of posts and karma. Users missing from the cache are loaded 
+ * with a single query for all of them. 
+ * <p>
+ * The number of entries is bounded by the cache engine, through the 
+ * <code>userSummaries</code> region. The DAOs remove a user from here 
+ * every time they change any of these fields.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class UserSummaryRepository implements Cacheable
+{
+	private static final String FQN = "userSummaries";
+	private static final AtomicInteger REMOVALS = new AtomicInteger();
+	
+	private static CacheEngine cache;
+	
+	/**
+	 * @see net.jforum.cache.Cacheable#setCacheEngine(net.jforum.cache.CacheEngine)
+	 */
+	public void setCacheEngine(final CacheEngine engine)
+	{
+		UserSummaryRepository.setEngine(engine);
+	}
+	
+	private static void setEngine(final CacheEngine engine) 
+	{
+		cache = engine;
+	}
+	
+	/**
+	 * Gets the summary of some users. 
+	 * The returned instances are shared, so they must not be changed.
+	 * 
+	 * @param userIds The ids of the users. They may be repeated
+	 * @return The users found, by id
+	 */
+	public static Map<Integer, User> getUsers(final Collection<Integer> userIds)
+	{
+		final Map<Integer, User> users = new HashMap<Integer, User>();
+		final Set<Integer> missing = new HashSet<Integer>();
+		
+		for (Iterator<Integer> iter = userIds.iterator(); iter.hasNext(); ) {
+			final Integer userId = iter.next();
+			
+			if (users.containsKey(userId) || missing.contains(userId)) {
+				continue;
+			}
+			
+			final User user = (User)cache.get(FQN, userId.toString());
+			
+			if (user == null) {
+				missing.add(userId);
+			}
+			else {
+				users.put(userId, user);
+			}
+		}
+		
+		if (!missing.isEmpty()) {
+			final int removals = REMOVALS.get();
+			final Map<Integer, User> loaded = DataAccessDriver.getInstance().newUserDAO().selectSummaries(missing);
+			
+			// Some user may have changed while loading, and what was read may be old already
+			if (removals == REMOVALS.get()) {
+				for (Iterator<User> iter = loaded.values().iterator(); iter.hasNext(); ) {
+					final User user = iter.next();
+					cache.add(FQN, Integer.toString(user.getId()), user);
+				}
+			}
+			
+			users.putAll(loaded);
+		}
+		
+		return users;
+	}
+	
+	/**
+	 * Removes a user from the cache, after its username, rank, avatar, 
+	 * posts or karma changed. 
+	 * 
+	 * @param userId The user id
+	 */
+	public static void remove(final int userId)
+	{
+		REMOVALS.incrementAndGet();
+		
+		if (cache != null) {
+			cache.remove(FQN, Integer.toString(userId));
+		}
+	}
+}
@@ -45,16 +45,23 @@ package net.jforum.search;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import net.jforum.dao.DataAccessDriver;
 import net.jforum.entities.Post;
 import net.jforum.exceptions.ForumException;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
 
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -71,28 +78,53 @@ import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
  */
 public class LuceneContentCollector implements LuceneResultCollector
 {
+	private static final FieldSelector POST_ID_ONLY = new MapFieldSelector(new String[] { SearchFields.Keyword.POST_ID });
+	
 	private LuceneSettings settings;
+	private Map<String, Snippet> snippets;
 	
 	public LuceneContentCollector(LuceneSettings settings)
 	{
 		this.settings = settings;
+		
+		final int snippetCacheSize = SystemGlobals.getIntValue(ConfigKeys.SEARCH_SNIPPET_CACHE_SIZE);
+		
+		if (snippetCacheSize > 0) {
+			this.snippets = Collections.synchronizedMap(new LinkedHashMap<String, Snippet>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				protected boolean removeEldestEntry(Map.Entry<String, Snippet> eldest)
+				{
+					return this.size() > snippetCacheSize;
+				}
+			});
+		}
 	}
 
 	/**
-	 * @see net.jforum.search.LuceneResultCollector#collect(SearchArgs, org.apache.lucene.search.TopDocs, org.apache.lucene.search.Query)
+	 * @see net.jforum.search.LuceneResultCollector#collect(SearchArgs, org.apache.lucene.search.TopDocs, org.apache.lucene.search.Query, org.apache.lucene.search.IndexSearcher)
 	 */
-	public List<Post> collect(SearchArgs args, TopDocs results, Query query) {
+	public List<Post> collect(SearchArgs args, TopDocs results, Query query, IndexSearcher searcher) {
 		try {
-			int[] postIds = new int[Math.min(args.fetchCount(), results.totalHits)];
-						
-			IndexSearcher searcher = new IndexSearcher(IndexReader.open(this.settings.directory()));
 			ScoreDoc[] hits = results.scoreDocs;
-			for (int docIndex = args.startFrom(), i = 0; 
-				docIndex < args.startFrom() + args.fetchCount() && docIndex < hits.length; 
-				docIndex++, i++) {
-				ScoreDoc hit = hits[docIndex];
-		        Document doc = searcher.doc(hit.doc);
-				postIds[i] = Integer.parseInt(doc.get(SearchFields.Keyword.POST_ID));
+			int start = Math.min(args.startFrom(), hits.length);
+			int count = Math.min(args.startFrom() + args.fetchCount(), hits.length) - start;
+			
+			// Load the documents in index order, so stored fields are read sequentially,
+			// while keeping the position of each hit in the result page
+			long[] docs = new long[count];
+			
+			for (int i = 0; i < count; i++) {
+				docs[i] = ((long)hits[start + i].doc << 32) | i;
+			}
+			
+			Arrays.sort(docs);
+			
+			int[] postIds = new int[count];
+			
+			for (int i = 0; i < count; i++) {
+				Document doc = searcher.doc((int)(docs[i] >>> 32), POST_ID_ONLY);
+				postIds[(int)docs[i]] = Integer.parseInt(doc.get(SearchFields.Keyword.POST_ID));
 			}
 			
 			return this.retrieveRealPosts(postIds, query);
@@ -106,29 +138,75 @@ public class LuceneContentCollector implements LuceneResultCollector
 	private List<Post> retrieveRealPosts(int[] postIds, Query query) throws IOException, InvalidTokenOffsetsException
 	{
 		List<Post> posts = DataAccessDriver.getInstance().newLuceneDAO().getPostsData(postIds);
+		String queryKey = query.toString();
 		
 		for (Iterator<Post> iter = posts.iterator(); iter.hasNext(); ) {
 			Post post = iter.next();
 			
-			Scorer scorer = new QueryScorer(query);
-			SimpleHTMLFormatter simpleHTMLFormatter = new SimpleHTMLFormatter("<b><font color=\"red\">", "</font></b>");
-			Highlighter highlighter = new Highlighter(simpleHTMLFormatter, scorer);
+			String key = queryKey + '\u0000' + post.getId();
+			Snippet snippet = this.snippets != null ? this.snippets.get(key) : null;
 			
-			// Highlight keyword in post text
-			TokenStream tokenStream = this.settings.analyzer().tokenStream(
-				SearchFields.Indexed.CONTENTS, new StringReader(post.getText()));
-
-			String fragment = highlighter.getBestFragment(tokenStream, post.getText());
-			post.setText(fragment != null ? fragment : post.getText());
+			if (snippet == null || !snippet.matches(post)) {
+				snippet = this.highlight(post, query);
+				
+				if (this.snippets != null) {
+					this.snippets.put(key, snippet);
+				}
+			}
 			
-			// Highlight keyword in post subject
-			tokenStream = this.settings.analyzer().tokenStream(
-					SearchFields.Indexed.CONTENTS, new StringReader(post.getSubject()));
-
-			fragment = highlighter.getBestFragment(tokenStream, post.getSubject());
-			post.setSubject(fragment != null ? fragment : post.getSubject());
+			post.setText(snippet.text);
+			post.setSubject(snippet.subject);
 		}
 		
 		return posts;
 	}
+	
+	private Snippet highlight(Post post, Query query) throws IOException, InvalidTokenOffsetsException
+	{
+		Scorer scorer = new QueryScorer(query);
+		SimpleHTMLFormatter simpleHTMLFormatter = new SimpleHTMLFormatter("<b><font color=\"red\">", "</font></b>");
+		Highlighter highlighter = new Highlighter(simpleHTMLFormatter, scorer);
+		
+		// Highlight keyword in post text
+		TokenStream tokenStream = this.settings.analyzer().tokenStream(
+			SearchFields.Indexed.CONTENTS, new StringReader(post.getText()));
+
+		String text = highlighter.getBestFragment(tokenStream, post.getText());
+		
+		// Highlight keyword in post subject
+		tokenStream = this.settings.analyzer().tokenStream(
+				SearchFields.Indexed.CONTENTS, new StringReader(post.getSubject()));
+
+		String subject = highlighter.getBestFragment(tokenStream, post.getSubject());
+		
+		return new Snippet(post, 
+			subject != null ? subject : post.getSubject(), 
+			text != null ? text : post.getText());
+	}
+	
+	/**
+	 * The highlighted subject and text of a post for a given query. 
+	 * Keeps a fingerprint of the original contents, so an edited post is highlighted again.
+	 */
+	private static final class Snippet
+	{
+		private final int originalLength;
+		private final int originalHash;
+		final String subject;
+		final String text;
+		
+		Snippet(Post post, String subject, String text)
+		{
+			this.originalLength = post.getSubject().length() + post.getText().length();
+			this.originalHash = post.getSubject().hashCode() * 31 + post.getText().hashCode();
+			this.subject = subject;
+			this.text = text;
+		}
+		
+		boolean matches(Post post)
+		{
+			return this.originalLength == post.getSubject().length() + post.getText().length()
+				&& this.originalHash == post.getSubject().hashCode() * 31 + post.getText().hashCode();
+		}
+	}
 }
@@ -47,6 +47,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import net.jforum.entities.Post;
 import net.jforum.exceptions.SearchException;
@@ -73,16 +75,35 @@ public class LuceneIndexer
 	private static final Logger LOGGER = Logger.getLogger(LuceneIndexer.class);
 	private static final Object MUTEX = new Object();
 	
+	// Batch additions to the RAM writer may run concurrently, 
+	// but not while the RAM directory is being flushed
+	private static final ReadWriteLock RAM_LOCK = new ReentrantReadWriteLock();
+	
 	private LuceneSettings settings;
 	private Directory ramDirectory;
-	private IndexWriter ramWriter;
+	private volatile IndexWriter ramWriter;
 	private int ramNumDocs;
 	private List<NewDocumentAdded> newDocumentAddedList = new ArrayList<NewDocumentAdded>();
 	
+	// Near-real-time mode: a single writer is kept open for the whole application
+	// lifetime, and changes become visible through a reader opened from it
+	private final boolean nearRealTime;
+	private final boolean notifyOnChange;
+	private IndexWriter writer;
+	private volatile boolean uncommitted;
+	
 	public LuceneIndexer(final LuceneSettings settings)
 	{
 		this.settings = settings;
-		this.createRAMWriter();
+		this.nearRealTime = SystemGlobals.getBoolValue(ConfigKeys.LUCENE_INDEXER_NRT);
+		this.notifyOnChange = SystemGlobals.getIntValue(ConfigKeys.LUCENE_NRT_REFRESH_INTERVAL) <= 0;
+		
+		if (this.nearRealTime) {
+			this.openWriter();
+		}
+		else {
+			this.createRAMWriter();
+		}
 	}
 	
 	public void watchNewDocuDocumentAdded(NewDocumentAdded newDoc)
@@ -90,18 +111,61 @@ public class LuceneIndexer
 		this.newDocumentAddedList.add(newDoc);
 	}
 	
+	/**
+	 * @return true if all changes go through a single long-lived writer
+	 */
+	public boolean isNearRealTime()
+	{
+		return this.nearRealTime;
+	}
+	
+	/**
+	 * @return the shared writer, or <code>null</code> if not running in near-real-time mode
+	 */
+	IndexWriter writer()
+	{
+		return this.writer;
+	}
+	
+	private void openWriter()
+	{
+		try {
+			final IndexWriterConfig conf = new IndexWriterConfig(LuceneSettings.version, this.settings.analyzer()).setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+			this.writer = new IndexWriter(this.settings.directory(), conf);
+		}
+		catch (IOException e) {
+			throw new SearchException(e);
+		}
+	}
+	
 	public void batchCreate(final Post post)
 	{
-		synchronized (MUTEX) {
+		if (this.nearRealTime) {
 			try {
-				final Document document = this.createDocument(post);
-				this.ramWriter.addDocument(document);
-				this.flushRAMDirectoryIfNecessary();
+				this.writer.addDocument(this.createDocument(post));
+				this.uncommitted = true;
 			}
 			catch (IOException e) {
 				throw new SearchException(e);
 			}
+			
+			return;
+		}
+		
+		RAM_LOCK.readLock().lock();
+		
+		try {
+			final Document document = this.createDocument(post);
+			this.ramWriter.addDocument(document);
 		}
+		catch (IOException e) {
+			throw new SearchException(e);
+		}
+		finally {
+			RAM_LOCK.readLock().unlock();
+		}
+		
+		this.flushRAMDirectoryIfNecessary();
 	}
 	
 	private void createRAMWriter()
@@ -124,14 +188,26 @@ public class LuceneIndexer
 	private void flushRAMDirectoryIfNecessary()
 	{
 		if (this.ramWriter.maxDoc() >= this.ramNumDocs) {
-			this.flushRAMDirectory();
+			synchronized (MUTEX) {
+				if (this.ramWriter.maxDoc() >= this.ramNumDocs) {
+					this.flushRAMDirectory();
+				}
+			}
 		}
 	}
 	
 	public void flushRAMDirectory()
 	{
+		if (this.nearRealTime) {
+			this.commit();
+			this.notifyNewDocumentAdded();
+			
+			return;
+		}
+		
 		synchronized (MUTEX) {
 			IndexWriter writer = null;
+			RAM_LOCK.writeLock().lock();
 			
 			try {				
 				final IndexWriterConfig conf = new IndexWriterConfig(LuceneSettings.version, this.settings.analyzer()).setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
@@ -147,6 +223,8 @@ public class LuceneIndexer
 				throw new SearchException(e);
 			}
 			finally {
+				RAM_LOCK.writeLock().unlock();
+				
 				if (writer != null) {
 					try { 
 						writer.commit(); 
@@ -164,6 +242,23 @@ public class LuceneIndexer
 	
 	public void create(final Post post)
 	{
+		if (this.nearRealTime) {
+			try {
+				final Document document = this.createDocument(post);
+				this.writer.addDocument(document);
+				this.changed();
+				
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("Indexed " + document);
+				}
+			}
+			catch (IOException e) {
+				LOGGER.error(e.toString(), e);
+			}
+			
+			return;
+		}
+		
 		synchronized (MUTEX) {
 			IndexWriter writer = null;
 			
@@ -201,6 +296,18 @@ public class LuceneIndexer
 	
 	public void update(final Post post)
 	{
+		if (this.nearRealTime) {
+			try {
+				this.writer.updateDocument(this.postTerm(post), this.createDocument(post));
+				this.changed();
+			}
+			catch (IOException e) {
+				LOGGER.error(e.toString(), e);
+			}
+			
+			return;
+		}
+		
 		if (this.performDelete(post)) {
 			this.create(post);
 		}
@@ -246,8 +353,95 @@ public class LuceneIndexer
 		this.performDelete(post);
 	}
 	
+	/**
+	 * Removes every document from the index. Only meaningful in near-real-time mode, 
+	 * where the index directory cannot be recreated while the shared writer holds its lock.
+	 */
+	public void deleteAll()
+	{
+		try {
+			this.writer.deleteAll();
+			this.uncommitted = true;
+			this.commit();
+		}
+		catch (IOException e) {
+			throw new SearchException(e);
+		}
+	}
+	
+	/**
+	 * Makes the changes done through the shared writer durable. 
+	 * Does nothing if there is nothing to commit or if not running in near-real-time mode. 
+	 */
+	public void commit()
+	{
+		if (!this.nearRealTime || !this.uncommitted) {
+			return;
+		}
+		
+		this.uncommitted = false;
+		
+		try {
+			this.writer.commit();
+		}
+		catch (IOException e) {
+			this.uncommitted = true;
+			LOGGER.error(e.toString(), e);
+		}
+	}
+	
+	/**
+	 * Commits pending changes and releases the index lock
+	 */
+	public void close()
+	{
+		if (this.writer == null) {
+			return;
+		}
+		
+		this.commit();
+		
+		try {
+			this.writer.close();
+		}
+		catch (IOException e) {
+			LOGGER.error(e.toString(), e);
+		}
+		finally {
+			this.writer = null;
+		}
+	}
+	
+	private void changed()
+	{
+		this.uncommitted = true;
+		
+		if (this.notifyOnChange) {
+			this.notifyNewDocumentAdded();
+		}
+	}
+	
+	private Term postTerm(final Post post)
+	{
+		return new Term(SearchFields.Keyword.POST_ID, String.valueOf(post.getId()));
+	}
+	
 	private boolean performDelete(final Post post)
 	{
+		if (this.nearRealTime) {
+			try {
+				this.writer.deleteDocuments(this.postTerm(post));
+				this.changed();
+				
+				return true;
+			}
+			catch (IOException e) {
+				LOGGER.error(e.toString(), e);
+				
+				return false;
+			}
+		}
+		
 		synchronized (MUTEX) {
 			IndexWriter writer = null;
 			boolean status = false;
@@ -255,7 +449,7 @@ public class LuceneIndexer
 			try {				
 				final IndexWriterConfig conf = new IndexWriterConfig(LuceneSettings.version, this.settings.analyzer()).setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
 				writer = new IndexWriter(this.settings.directory(), conf);
-				writer.deleteDocuments(new Term(SearchFields.Keyword.POST_ID, String.valueOf(post.getId())));				
+				writer.deleteDocuments(this.postTerm(post));				
 				status = true;
 			}
 			catch (IOException e) {
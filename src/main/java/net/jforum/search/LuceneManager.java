@@ -45,12 +45,15 @@ package net.jforum.search;
 
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import net.jforum.entities.Post;
 import net.jforum.exceptions.ForumException;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
 
+import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.util.Version;
@@ -61,9 +64,12 @@ import org.apache.lucene.util.Version;
  */
 public class LuceneManager implements SearchManager
 {
+	private static final Logger LOGGER = Logger.getLogger(LuceneManager.class);
+	
 	private LuceneSearch search;
 	private LuceneSettings settings;
 	private LuceneIndexer indexer;
+	private Timer timer;
 	
 	/**
 	 * @see net.jforum.search.SearchManager#init()
@@ -86,10 +92,14 @@ public class LuceneManager implements SearchManager
 			this.indexer = new LuceneIndexer(this.settings);
 			
 			this.search = new LuceneSearch(this.settings, 
-				new LuceneContentCollector(this.settings));
+				new LuceneContentCollector(this.settings), this.indexer.writer());
 			
 			this.indexer.watchNewDocuDocumentAdded(this.search);
 			
+			if (this.indexer.isNearRealTime()) {
+				this.scheduleNearRealTimeTasks();
+			}
+			
 			SystemGlobals.setObjectValue(ConfigKeys.LUCENE_SETTINGS, this.settings);
 		}
 		
@@ -98,6 +108,69 @@ public class LuceneManager implements SearchManager
 		}
 	}
 	
+	private void scheduleNearRealTimeTasks()
+	{
+		final long refreshInterval = SystemGlobals.getIntValue(ConfigKeys.LUCENE_NRT_REFRESH_INTERVAL);
+		final long commitInterval = SystemGlobals.getIntValue(ConfigKeys.LUCENE_NRT_COMMIT_INTERVAL) * 1000L;
+		
+		this.timer = new Timer("Timer-LuceneNRT", true);
+		
+		if (refreshInterval > 0) {
+			this.timer.schedule(new TimerTask() {
+				public void run() {
+					try {
+						search.refresh();
+					}
+					catch (Exception e) {
+						LOGGER.error(e.toString(), e);
+					}
+				}
+			}, refreshInterval, refreshInterval);
+		}
+		
+		if (commitInterval > 0) {
+			this.timer.schedule(new TimerTask() {
+				public void run() {
+					indexer.commit();
+				}
+			}, commitInterval, commitInterval);
+		}
+		
+		LOGGER.info("Near-real-time indexing enabled. Refresh interval: " + refreshInterval 
+			+ " ms, commit interval: " + commitInterval + " ms");
+	}
+	
+	/**
+	 * Empties the index. Uses the shared writer in near-real-time mode, 
+	 * as the index directory is locked by it.
+	 * 
+	 * @throws IOException
+	 */
+	public void recreateIndex() throws IOException
+	{
+		if (this.indexer.isNearRealTime()) {
+			this.indexer.deleteAll();
+			this.search.refresh();
+		}
+		else {
+			this.settings.createIndexDirectory(SystemGlobals.getValue(ConfigKeys.LUCENE_INDEX_WRITE_PATH));
+		}
+	}
+	
+	/**
+	 * @see net.jforum.search.SearchManager#stop()
+	 */
+	public void stop()
+	{
+		if (this.timer != null) {
+			this.timer.cancel();
+			this.timer = null;
+		}
+		
+		this.search.close();
+		this.indexer.close();
+	}
+	
 	public LuceneSearch luceneSearch()
 	{
 		return this.search;
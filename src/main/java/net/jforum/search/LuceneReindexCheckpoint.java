@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 9:05:12 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.search;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Remembers how far an interrupted reindexing got, so the next run over 
+ * the same range can resume from there instead of starting over. 
+ * The checkpoint is kept in the index directory.
+ * 
+ * @version $Id$
+ */
+class LuceneReindexCheckpoint
+{
+	private static final Logger LOGGER = Logger.getLogger(LuceneReindexCheckpoint.class);
+	private static final String FILENAME = "reindex.checkpoint";
+	
+	private static final String FIRST_POST_ID = "firstPostId";
+	private static final String LAST_INDEXED_POST_ID = "lastIndexedPostId";
+	
+	private final File file;
+	
+	public LuceneReindexCheckpoint(final String indexDirectory)
+	{
+		this.file = new File(indexDirectory, FILENAME);
+	}
+	
+	/**
+	 * @param firstPostId the first post id of the range to index
+	 * @return the id of the last post known to be indexed by a previous run 
+	 * which started at the same post, or -1 if there is no such run
+	 */
+	public int lastIndexedPostId(final int firstPostId)
+	{
+		if (!this.file.exists()) {
+			return -1;
+		}
+		
+		final Properties p = new Properties();
+		InputStream is = null;
+		
+		try {
+			is = new FileInputStream(this.file);
+			p.load(is);
+			
+			if (Integer.parseInt(p.getProperty(FIRST_POST_ID)) != firstPostId) {
+				return -1;
+			}
+			
+			return Integer.parseInt(p.getProperty(LAST_INDEXED_POST_ID));
+		}
+		catch (Exception e) {
+			LOGGER.warn("Ignoring unreadable reindex checkpoint " + this.file + ": " + e);
+			return -1;
+		}
+		finally {
+			if (is != null) {
+				try { is.close(); }
+				catch (IOException e) { LOGGER.error(e.toString(), e); }
+			}
+		}
+	}
+	
+	/**
+	 * Records that all posts from <code>firstPostId</code> to <code>lastIndexedPostId</code> 
+	 * are durably indexed. The new checkpoint is written to a temporary file first, 
+	 * so a crash while saving does not leave a truncated one behind.
+	 */
+	public void save(final int firstPostId, final int lastIndexedPostId)
+	{
+		final Properties p = new Properties();
+		p.setProperty(FIRST_POST_ID, String.valueOf(firstPostId));
+		p.setProperty(LAST_INDEXED_POST_ID, String.valueOf(lastIndexedPostId));
+		
+		final File tmp = new File(this.file.getPath() + ".tmp");
+		OutputStream os = null;
+		
+		try {
+			os = new FileOutputStream(tmp);
+			p.store(os, "JForum reindexing checkpoint");
+			os.close();
+			os = null;
+			
+			if (!tmp.renameTo(this.file)) {
+				this.file.delete();
+				
+				if (!tmp.renameTo(this.file)) {
+					LOGGER.warn("Could not write reindex checkpoint " + this.file);
+				}
+			}
+		}
+		catch (IOException e) {
+			LOGGER.error(e.toString(), e);
+		}
+		finally {
+			if (os != null) {
+				try { os.close(); }
+				catch (IOException e) { LOGGER.error(e.toString(), e); }
+			}
+		}
+	}
+	
+	public void delete()
+	{
+		if (this.file.exists() && !this.file.delete()) {
+			LOGGER.warn("Could not delete reindex checkpoint " + this.file);
+		}
+	}
+}
@@ -44,9 +44,14 @@
 package net.jforum.search;
 
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import net.jforum.JForumExecutionContext;
 import net.jforum.dao.DataAccessDriver;
@@ -57,21 +62,53 @@ import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
 
 import org.apache.log4j.Logger;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.search.IndexSearcher;
 
 /**
+ * Rebuilds the search index from the database.
+ * <p>
+ * The post id range is split in chunks of {@link ConfigKeys#LUCENE_INDEXER_DB_FETCH_COUNT} posts. 
+ * {@link ConfigKeys#LUCENE_REINDEX_READER_THREADS} threads load chunks from the database 
+ * in parallel and hand them over a bounded queue to {@link ConfigKeys#LUCENE_REINDEX_WRITER_THREADS} 
+ * threads, which build and add the documents concurrently. 
+ * </p>
+ * <p>
+ * Every {@link ConfigKeys#LUCENE_REINDEX_CHECKPOINT_INTERVAL} seconds the index is flushed
+ * and the highest post id below which all chunks are done is saved, so a cancelled or 
+ * interrupted run can be resumed.
+ * </p>
+ * 
  * @author Rafael Steil
  * @version $Id$
  */
 public class LuceneReindexer
 {
 	private static final Logger LOGGER = Logger.getLogger(LuceneReindexer.class);
+	private static final Chunk END_OF_WORK = new Chunk(-1, null);
+	private static final long REPORT_INTERVAL = 10000;
+	
+	private static volatile LuceneReindexer current;
 	
 	private LuceneSettings settings;
 	private LuceneReindexArgs args;
 	private boolean recreate;
 	
+	private final AtomicInteger nextChunk = new AtomicInteger();
+	private final AtomicInteger indexed = new AtomicInteger();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	
+	// Chunks are completed out of order, the checkpoint can only 
+	// move past those with no unfinished chunk before them
+	private final BitSet completedChunks = new BitSet();
+	private int completedUpTo;
+	
+	private BitSet indexedPostIds;
+	private int fetchCount;
+	private int firstPostId;
+	private int lastPostId;
+	private int rangeStart;
+	private volatile long startTime;
+	
 	public LuceneReindexer(LuceneSettings settings, LuceneReindexArgs args, boolean recreate)
 	{
 		this.settings = settings;
@@ -79,6 +116,14 @@ public class LuceneReindexer
 		this.recreate = recreate;		
 	}
 	
+	/**
+	 * @return the reindexing currently running, or <code>null</code>
+	 */
+	public static LuceneReindexer current()
+	{
+		return current;
+	}
+	
 	public void startProcess()
 	{
 		this.reindex();
@@ -97,129 +142,355 @@ public class LuceneReindexer
 		Thread thread = new Thread(indexingJob);
 		thread.start();
 	}
+	
+	/**
+	 * @return the number of posts added to the index so far
+	 */
+	public int getIndexedCount()
+	{
+		return this.indexed.get();
+	}
+	
+	/**
+	 * @return the number of posts found already indexed and skipped
+	 */
+	public int getSkippedCount()
+	{
+		return this.skipped.get();
+	}
+	
+	/**
+	 * @return the number of posts indexed per second since the start
+	 */
+	public long getThroughput()
+	{
+		long elapsed = System.currentTimeMillis() - this.startTime;
+		
+		return elapsed > 0 
+			? this.indexed.get() * 1000L / elapsed
+			: 0;
+	}
+	
+	/**
+	 * @return the percentage of the post id range done so far
+	 */
+	public int getPercentDone()
+	{
+		int total = this.lastPostId - this.rangeStart + 1;
+		
+		return total > 0
+			? (int)((this.lastIndexedPostId() - this.rangeStart + 1) * 100L / total)
+			: 100;
+	}
 
 	private void reindex()
 	{
+		LuceneManager manager = (LuceneManager)SearchFacade.manager();
+		LuceneSearch luceneSearch = manager.luceneSearch();
+		LuceneIndexer luceneIndexer = manager.luceneIndexer();
+		LuceneReindexCheckpoint checkpoint = new LuceneReindexCheckpoint(
+			SystemGlobals.getValue(ConfigKeys.LUCENE_INDEX_WRITE_PATH));
+		
+		current = this;
+		this.startTime = System.currentTimeMillis();
+		this.fetchCount = Math.max(1, SystemGlobals.getIntValue(ConfigKeys.LUCENE_INDEXER_DB_FETCH_COUNT));
+		
+		boolean started = false;
+		boolean completed = false;
+		
 		try {
+			this.resolvePostRange();
+			
+			int resumeFrom = -1;
+			
 			if (recreate) {
-				this.settings.createIndexDirectory(SystemGlobals.getValue(ConfigKeys.LUCENE_INDEX_WRITE_PATH));
+				// Asked to build the index from scratch, never resume
+				checkpoint.delete();
+			}
+			else if (SystemGlobals.getBoolValue(ConfigKeys.LUCENE_REINDEX_RESUME)) {
+				resumeFrom = checkpoint.lastIndexedPostId(this.firstPostId);
 			}
+			
+			boolean checkDuplicates = !recreate && args.avoidDuplicatedRecords();
+			
+			if (resumeFrom >= this.firstPostId) {
+				LOGGER.info("Resuming the previous indexing after post " + resumeFrom);
+				this.rangeStart = resumeFrom + 1;
+				
+				// The interrupted run may have indexed some posts after its last checkpoint
+				checkDuplicates = true;
+			}
+			else {
+				this.rangeStart = this.firstPostId;
+				
+				if (recreate) {
+					manager.recreateIndex();
+				}
+			}
+			
+			if (checkDuplicates) {
+				luceneSearch.refresh();
+				this.indexedPostIds = luceneSearch.indexedPostIds();
+				LOGGER.info(this.indexedPostIds.cardinality() + " posts already in the index");
+			}
+			
+			started = true;
+			this.runPipeline(luceneIndexer, checkpoint);
+			
+			completed = !this.shouldStop();
 		}
 		catch (IOException e) {
 			throw new ForumException(e);
 		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.warn("Indexing interrupted");
+		}
+		finally {
+			SystemGlobals.setValue(ConfigKeys.LUCENE_CURRENTLY_INDEXING, "0");
+
+			luceneIndexer.flushRAMDirectory();
+			
+			if (completed) {
+				checkpoint.delete();
+			}
+			else if (started) {
+				checkpoint.save(this.firstPostId, this.lastIndexedPostId());
+			}
+			
+			current = null;
+			
+			LOGGER.info("**** Total: " + (System.currentTimeMillis() - this.startTime) + " ms, " 
+				+ this.indexed.get() + " posts indexed, " + this.skipped.get() + " skipped");
+		}
 		
-		LuceneDAO dao = DataAccessDriver.getInstance().newLuceneDAO();
-		
-		IndexSearcher searcher = null;
-		LuceneSearch luceneSearch = ((LuceneManager)SearchFacade.manager()).luceneSearch();
-		LuceneIndexer luceneIndexer = ((LuceneManager)SearchFacade.manager()).luceneIndexer();
-		
-		int fetchCount = SystemGlobals.getIntValue(ConfigKeys.LUCENE_INDEXER_DB_FETCH_COUNT);
-		
+		if (this.failure.get() != null) {
+			throw new ForumException(this.failure.get().toString(), this.failure.get());
+		}
+	}
+	
+	private void resolvePostRange()
+	{
 		try {
-			if (!recreate) {
-				searcher = new IndexSearcher(IndexReader.open(this.settings.directory()));
-			}			
+			LuceneDAO dao = DataAccessDriver.getInstance().newLuceneDAO();
 			
-			long processStart = System.currentTimeMillis();
-			
-			int firstPostId = args.filterByMessage() ? args.getFirstPostId() : dao.firstPostIdByDate(args.getFromDate());
-			LOGGER.debug("firstPostId="+firstPostId);					
-			int lastPostId = args.filterByMessage()	? args.getLastPostId() : dao.lastPostIdByDate(args.getToDate());
-			LOGGER.debug("lastPostId="+lastPostId);	
+			this.firstPostId = args.filterByMessage() ? args.getFirstPostId() : dao.firstPostIdByDate(args.getFromDate());
+			LOGGER.debug("firstPostId="+this.firstPostId);					
+			this.lastPostId = args.filterByMessage()	? args.getLastPostId() : dao.lastPostIdByDate(args.getToDate());
+			LOGGER.debug("lastPostId="+this.lastPostId);	
 
 			int dbFirstPostId = dao.firstPostIdByDate(new Date(0L));
 			int dbLastPostId = dao.lastPostIdByDate(new Date());
 			LOGGER.debug("dbFirstPostId="+dbFirstPostId);
 			LOGGER.debug("dbLastPostId="+dbLastPostId);
 			if (args.filterByMessage()) {
-				if (firstPostId < dbFirstPostId) {
-					firstPostId = dbFirstPostId;
+				if (this.firstPostId < dbFirstPostId) {
+					this.firstPostId = dbFirstPostId;
+				}
+				if (this.lastPostId > dbLastPostId) {
+					this.lastPostId = dbLastPostId;
+				}
+			}
+		}
+		finally {
+			JForumExecutionContext.finish();
+		}
+	}
+	
+	private void runPipeline(final LuceneIndexer luceneIndexer, final LuceneReindexCheckpoint checkpoint) throws InterruptedException
+	{
+		final int chunks = this.rangeStart > this.lastPostId 
+			? 0 
+			: (this.lastPostId - this.rangeStart) / this.fetchCount + 1;
+		final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<Chunk>(
+			Math.max(1, SystemGlobals.getIntValue(ConfigKeys.LUCENE_REINDEX_QUEUE_SIZE)));
+		
+		LOGGER.info("Indexing posts " + this.rangeStart + " to " + this.lastPostId + " in " + chunks + " chunks");
+		
+		Thread[] readers = new Thread[Math.max(1, SystemGlobals.getIntValue(ConfigKeys.LUCENE_REINDEX_READER_THREADS))];
+		Thread[] writers = new Thread[Math.max(1, SystemGlobals.getIntValue(ConfigKeys.LUCENE_REINDEX_WRITER_THREADS))];
+		
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread(new Runnable() {
+				public void run() {
+					readChunks(queue, chunks);
+				}
+			}, "LuceneReindexer-reader-" + i);
+		}
+		
+		for (int i = 0; i < writers.length; i++) {
+			writers[i] = new Thread(new Runnable() {
+				public void run() {
+					indexChunks(queue, luceneIndexer);
+				}
+			}, "LuceneReindexer-writer-" + i);
+		}
+		
+		startAll(readers);
+		startAll(writers);
+		
+		this.awaitAll(readers, luceneIndexer, checkpoint);
+		
+		for (int i = 0; i < writers.length; i++) {
+			queue.put(END_OF_WORK);
+		}
+		
+		this.awaitAll(writers, luceneIndexer, checkpoint);
+	}
+	
+	private static void startAll(final Thread[] threads)
+	{
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+	
+	private void awaitAll(final Thread[] threads, final LuceneIndexer luceneIndexer, 
+		final LuceneReindexCheckpoint checkpoint) throws InterruptedException
+	{
+		final long checkpointInterval = SystemGlobals.getIntValue(ConfigKeys.LUCENE_REINDEX_CHECKPOINT_INTERVAL) * 1000L;
+		long lastCheckpoint = System.currentTimeMillis();
+		long lastReport = lastCheckpoint;
+		
+		for (int i = 0; i < threads.length; i++) {
+			while (threads[i].isAlive()) {
+				threads[i].join(1000);
+				
+				long now = System.currentTimeMillis();
+				
+				if (now - lastReport >= REPORT_INTERVAL) {
+					LOGGER.info("Indexed " + this.indexed.get() + " posts (" + this.getPercentDone() + "%), " 
+						+ this.getThroughput() + " posts/s, " + this.skipped.get() + " skipped");
+					lastReport = now;
 				}
-				if (lastPostId > dbLastPostId) {
-					lastPostId = dbLastPostId;
+				
+				if (checkpointInterval > 0 && now - lastCheckpoint >= checkpointInterval && !this.shouldStop()) {
+					// Only what is flushed to the index can be recorded as done
+					int lastIndexedPostId = this.lastIndexedPostId();
+					luceneIndexer.flushRAMDirectory();
+					checkpoint.save(this.firstPostId, lastIndexedPostId);
+					lastCheckpoint = now;
 				}
 			}
-			LOGGER.debug("firstPostId="+firstPostId);
-			LOGGER.debug("lastPostId="+lastPostId);
+		}
+	}
+	
+	private void readChunks(final BlockingQueue<Chunk> queue, final int chunks)
+	{
+		LuceneDAO dao = DataAccessDriver.getInstance().newLuceneDAO();
+		
+		try {
+			int chunk;
 			
-			int counter = 0;
-			int indexTotal = 0;
-			long indexRangeStart = System.currentTimeMillis();
-			boolean hasMorePosts = true;
-			while (hasMorePosts) {
-				boolean contextFinished = false;
+			while (!this.shouldStop() && (chunk = this.nextChunk.getAndIncrement()) < chunks) {
+				int fromPostId = this.rangeStart + chunk * this.fetchCount;
+				int toPostId = Math.min(fromPostId + this.fetchCount - 1, this.lastPostId);
+				
+				List<Post> posts;
 				
-				int toPostId = firstPostId + fetchCount < lastPostId
-					? (firstPostId + fetchCount - 1)
-					: lastPostId;
-				LOGGER.debug("firstPostId="+firstPostId);
-				LOGGER.debug("toPostId="+toPostId);	
-
 				try {
-					JForumExecutionContext ex = JForumExecutionContext.get();
-					JForumExecutionContext.set(ex);
-					
-					List<Post> l = dao.getPostsToIndex(firstPostId, toPostId);
-
-					if (counter >= 5000) {
-						long end = System.currentTimeMillis();
-						LOGGER.info("Indexed ~5000 documents in " 
-							+ (end - indexRangeStart) + " ms (" + indexTotal + " so far)");
-						indexRangeStart = end;
-						counter = 0;
-					}
-					
-					JForumExecutionContext.finish();
-					contextFinished = true;
-					
-					for (Iterator<Post> iter = l.iterator(); iter.hasNext(); ) {
-						if ("0".equals(SystemGlobals.getValue(ConfigKeys.LUCENE_CURRENTLY_INDEXING))) {
-							hasMorePosts = false;							
-							break;
-						}
-						
-						Post post = iter.next();
-						
-						if (!recreate && args.avoidDuplicatedRecords()) {
-							if (luceneSearch.findDocumentByPostId(post.getId()) != null) {
-								continue;
-							}
-						}
-
-						luceneIndexer.batchCreate(post);
-						
-						counter++;
-						indexTotal++;
-					}
-
-					firstPostId += fetchCount;
-					hasMorePosts = hasMorePosts && toPostId < lastPostId;
+					posts = dao.getPostsToIndex(fromPostId, toPostId);
 				}
 				finally {
-					if (!contextFinished) {
-						JForumExecutionContext.finish();
+					JForumExecutionContext.finish();
+				}
+				
+				Chunk c = new Chunk(chunk, posts);
+				
+				while (!queue.offer(c, 1, TimeUnit.SECONDS)) {
+					if (this.shouldStop()) {
+						return;
 					}
 				}
 			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (Throwable e) {
+			this.fail(e);
+		}
+	}
+	
+	private void indexChunks(final BlockingQueue<Chunk> queue, final LuceneIndexer luceneIndexer)
+	{
+		try {
+			Chunk chunk;
 			
-			long end = System.currentTimeMillis();
-			
-			LOGGER.info("**** Total: " + (end - processStart) + " ms");
+			while ((chunk = queue.take()) != END_OF_WORK) {
+				// Keep draining after a stop, so the readers are not left blocked
+				if (this.shouldStop()) {
+					continue;
+				}
+				
+				try {
+					this.indexChunk(chunk, luceneIndexer);
+				}
+				catch (Throwable e) {
+					this.fail(e);
+				}
+			}
 		}
-		catch (IOException e) {
-			throw new ForumException(e);
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
-		finally {
-			SystemGlobals.setValue(ConfigKeys.LUCENE_CURRENTLY_INDEXING, "0");
-
-			luceneIndexer.flushRAMDirectory();
+	}
+	
+	private void indexChunk(final Chunk chunk, final LuceneIndexer luceneIndexer)
+	{
+		for (Post post : chunk.posts) {
+			if (this.shouldStop()) {
+				return;
+			}
 			
-			if (searcher != null) {
-				try { searcher.close(); }
-				catch (Exception e) { LOGGER.error(e.getMessage(), e); }
+			if (this.indexedPostIds != null && this.indexedPostIds.get(post.getId())) {
+				this.skipped.incrementAndGet();
+				continue;
 			}
+			
+			luceneIndexer.batchCreate(post);
+			this.indexed.incrementAndGet();
+		}
+		
+		this.chunkCompleted(chunk.number);
+	}
+	
+	private synchronized void chunkCompleted(final int chunk)
+	{
+		this.completedChunks.set(chunk);
+		this.completedUpTo = this.completedChunks.nextClearBit(this.completedUpTo);
+	}
+	
+	/**
+	 * @return the highest post id such as all posts from the start of the range up to it are indexed
+	 */
+	private synchronized int lastIndexedPostId()
+	{
+		return Math.min(this.rangeStart + this.completedUpTo * this.fetchCount - 1, this.lastPostId);
+	}
+	
+	private void fail(final Throwable e)
+	{
+		LOGGER.error(e.toString(), e);
+		this.failure.compareAndSet(null, e);
+	}
+	
+	private boolean shouldStop()
+	{
+		return this.failure.get() != null
+			|| "0".equals(SystemGlobals.getValue(ConfigKeys.LUCENE_CURRENTLY_INDEXING));
+	}
+	
+	private static final class Chunk
+	{
+		final int number;
+		final List<Post> posts;
+		
+		Chunk(final int number, final List<Post> posts)
+		{
+			this.number = number;
+			this.posts = posts;
 		}
 	}
 }
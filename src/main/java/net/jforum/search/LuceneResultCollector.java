@@ -47,6 +47,7 @@ import java.util.List;
 
 import net.jforum.entities.Post;
 
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TopDocs;
 
@@ -56,5 +57,9 @@ import org.apache.lucene.search.TopDocs;
  */
 public interface LuceneResultCollector
 {	
-	List<Post> collect(SearchArgs args, TopDocs results, Query query);
+	/**
+	 * @param searcher the searcher which produced <code>results</code>. Document ids
+	 * are only meaningful to it, and it is released by the caller once this method returns
+	 */
+	List<Post> collect(SearchArgs args, TopDocs results, Query query, IndexSearcher searcher);
 }
@@ -46,6 +46,7 @@ package net.jforum.search;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import net.jforum.entities.Post;
@@ -59,11 +60,15 @@ import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
@@ -77,33 +82,61 @@ import org.apache.lucene.search.TopDocs;
 public class LuceneSearch implements NewDocumentAdded
 {
 	private static final Logger LOGGER = Logger.getLogger(LuceneSearch.class);
-	private IndexSearcher searcher;
+	private SearcherManager searcherManager;
 	private LuceneSettings settings;
 	private LuceneResultCollector contentCollector;
 
 	public LuceneSearch(LuceneSettings settings,
 		LuceneResultCollector contentCollector)
+	{
+		this(settings, contentCollector, null);
+	}
+
+	/**
+	 * @param writer if not null, searchers are opened from this writer, so
+	 * uncommitted changes become visible on the next {@link #refresh()}
+	 */
+	public LuceneSearch(LuceneSettings settings,
+		LuceneResultCollector contentCollector, IndexWriter writer)
 	{
 		this.settings = settings;
 		this.contentCollector = contentCollector;
 
-		this.openSearch();
+		this.openSearch(writer);
 	}
 
 	/**
 	 * @see net.jforum.search.NewDocumentAdded#newDocumentAdded()
 	 */
 	public void newDocumentAdded()
+	{
+		this.refresh();
+	}
+
+	/**
+	 * Reopens the searcher if the index has changed. Searches still running on
+	 * the previous searcher are not affected, it is closed once all of them release it. 
+	 */
+	public void refresh()
 	{
 		try {
-			this.searcher.close();
-			this.openSearch();
+			this.searcherManager.maybeRefresh();
 		}
-		catch (Exception e) {
+		catch (IOException e) {
 			throw new SearchException(e);
 		}
 	}
 
+	public void close()
+	{
+		try {
+			this.searcherManager.close();
+		}
+		catch (IOException e) {
+			LOGGER.error(e.toString(), e);
+		}
+	}
+
 	/**
 	 * @return the search result
 	 */
@@ -115,25 +148,78 @@ public class LuceneSearch implements NewDocumentAdded
 	public Document findDocumentByPostId(int postId)
 	{
 		Document doc = null;
+		IndexSearcher searcher = this.acquire();
 
 		try {
 			TopDocs results = searcher.search(new TermQuery(
 					new Term(SearchFields.Keyword.POST_ID, String.valueOf(postId))), null, 1);
 			ScoreDoc[] hits = results.scoreDocs;
 			for (ScoreDoc hit : hits) {
-				doc = this.searcher.doc(hit.doc);
+				doc = searcher.doc(hit.doc);
 			}
 		}
 		catch (IOException e) {
 			throw new SearchException(e);
 		}
+		finally {
+			this.release(searcher);
+		}
 
 		return doc;
 	}
 
+	/**
+	 * Reads the ids of all posts present in the index in a single pass over 
+	 * the terms of the post id field, so callers can check for duplicates 
+	 * without running one query per post.
+	 * 
+	 * @return the set of indexed post ids
+	 */
+	public BitSet indexedPostIds()
+	{
+		BitSet ids = new BitSet();
+		IndexSearcher searcher = this.acquire();
+
+		try {
+			IndexReader reader = searcher.getIndexReader();
+			TermEnum terms = reader.terms(new Term(SearchFields.Keyword.POST_ID, ""));
+			TermDocs docs = reader.termDocs();
+
+			try {
+				do {
+					Term term = terms.term();
+
+					if (term == null || !SearchFields.Keyword.POST_ID.equals(term.field())) {
+						break;
+					}
+
+					// Terms of deleted documents are kept until segments are merged
+					docs.seek(terms);
+
+					if (docs.next()) {
+						ids.set(Integer.parseInt(term.text()));
+					}
+				} while (terms.next());
+			}
+			finally {
+				docs.close();
+				terms.close();
+			}
+		}
+		catch (IOException e) {
+			throw new SearchException(e);
+		}
+		finally {
+			this.release(searcher);
+		}
+
+		return ids;
+	}
+
 	private SearchResult<Post> performSearch(SearchArgs args, LuceneResultCollector resultCollector, Filter filter)
 	{
 		SearchResult<Post> result;
+		IndexSearcher searcher = this.acquire();
 
 		try {
 			StringBuffer criteria = new StringBuffer(256);
@@ -151,9 +237,9 @@ public class LuceneSearch implements NewDocumentAdded
 				Query query = new QueryParser(LuceneSettings.version, SearchFields.Indexed.CONTENTS, this.settings.analyzer()).parse(criteria.toString());
 
 				final int limit = SystemGlobals.getIntValue(ConfigKeys.SEARCH_RESULT_LIMIT);
-				TopDocs results = this.searcher.search(query, filter, limit, this.getSorter(args));
+				TopDocs results = searcher.search(query, filter, limit, this.getSorter(args));
 				if (results.totalHits > 0) {
-					result = new SearchResult<Post>(resultCollector.collect(args, results, query), results.totalHits);
+					result = new SearchResult<Post>(resultCollector.collect(args, results, query, searcher), results.totalHits);
 				}
 				else {
 					result = new SearchResult<Post>(new ArrayList<Post>(), 0);
@@ -163,6 +249,9 @@ public class LuceneSearch implements NewDocumentAdded
 		catch (Exception e) {
 			throw new SearchException(e);
 		}
+		finally {
+			this.release(searcher);
+		}
 
 		return result;
 	}
@@ -261,10 +350,27 @@ public class LuceneSearch implements NewDocumentAdded
 		}
 	}
 
-	private void openSearch()
+	private IndexSearcher acquire()
+	{
+		return this.searcherManager.acquire();
+	}
+
+	private void release(IndexSearcher searcher)
+	{
+		try {
+			this.searcherManager.release(searcher);
+		}
+		catch (IOException e) {
+			LOGGER.error(e.toString(), e);
+		}
+	}
+
+	private void openSearch(IndexWriter writer)
 	{
 		try {
-			this.searcher = new IndexSearcher(IndexReader.open(this.settings.directory()));
+			this.searcherManager = writer != null
+				? new SearcherManager(writer, true, null)
+				: new SearcherManager(this.settings.directory(), null);
 		}
 		catch (IOException e) {
 			throw new SearchException(e.toString(), e);
@@ -118,6 +118,13 @@ public final class SearchFacade
 		}
 	}
 	
+	public static void stop()
+	{
+		if (searchManager != null) {
+			searchManager.stop();
+		}
+	}
+	
 	public static SearchManager manager()
 	{
 		return searchManager;
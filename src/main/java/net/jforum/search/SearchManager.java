@@ -59,4 +59,9 @@ public interface SearchManager
 	SearchResult<Post> search(final SearchArgs args);
 
 	void delete(final Post post);
+	
+	/**
+	 * Flushes pending changes and releases the resources held by the search engine
+	 */
+	void stop();
 }
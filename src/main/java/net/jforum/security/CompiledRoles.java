@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 10:21:37 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.security;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A read only form of a {@link RoleCollection}, used to answer permission 
+ * checks without allocating anything. 
+ * <p>
+ * Role names are mapped to small numbers shared by all instances, the roles
+ * granted are kept in a <code>BitSet</code>, and the values of each role, 
+ * which are forum and category ids most of the time, in sorted int arrays. 
+ * Values that are not plain numbers are kept as strings. 
+ * </p>
+ * 
+ * @version $Id$
+ */
+public final class CompiledRoles
+{
+	private static final ConcurrentMap<String, Integer> ROLE_IDS = new ConcurrentHashMap<String, Integer>();
+	private static final AtomicInteger NEXT_ROLE_ID = new AtomicInteger();
+	private static final int[] NO_VALUES = new int[0];
+	
+	private final BitSet granted = new BitSet();
+	private final int[][] numericValues;
+	private final Set<?>[] otherValues;
+	
+	CompiledRoles(final RoleCollection roles)
+	{
+		int maxId = -1;
+		
+		for (final Iterator<Role> iter = roles.values().iterator(); iter.hasNext(); ) {
+			maxId = Math.max(maxId, internRoleId(iter.next().getName()));
+		}
+		
+		this.numericValues = new int[maxId + 1][];
+		this.otherValues = new Set<?>[maxId + 1];
+		
+		for (final Iterator<Role> iter = roles.values().iterator(); iter.hasNext(); ) {
+			final Role role = iter.next();
+			final int id = internRoleId(role.getName());
+			
+			this.granted.set(id);
+			this.compileValues(id, role.getValues());
+		}
+	}
+	
+	private void compileValues(final int id, final RoleValueCollection values)
+	{
+		int[] numbers = new int[values.size()];
+		int count = 0;
+		Set<String> others = null;
+		
+		for (final Iterator<Object> iter = values.iterator(); iter.hasNext(); ) {
+			final String value = ((RoleValue)iter.next()).getValue();
+			final long number = parse(value);
+			
+			if (number != Long.MIN_VALUE) {
+				numbers[count++] = (int)number;
+			}
+			else if (value != null) {
+				if (others == null) {
+					others = new HashSet<String>();
+				}
+				
+				others.add(value);
+			}
+		}
+		
+		if (count == 0) {
+			numbers = NO_VALUES;
+		}
+		else {
+			numbers = Arrays.copyOf(numbers, count);
+			Arrays.sort(numbers);
+		}
+		
+		this.numericValues[id] = numbers;
+		this.otherValues[id] = others;
+	}
+	
+	private static int internRoleId(final String name)
+	{
+		Integer id = ROLE_IDS.get(name);
+		
+		if (id == null) {
+			final Integer newId = Integer.valueOf(NEXT_ROLE_ID.getAndIncrement());
+			id = ROLE_IDS.putIfAbsent(name, newId);
+			
+			if (id == null) {
+				id = newId;
+			}
+		}
+		
+		return id.intValue();
+	}
+	
+	private static int roleId(final String name)
+	{
+		if (name == null) {
+			return -1;
+		}
+		
+		final Integer id = ROLE_IDS.get(name);
+		return id == null ? -1 : id.intValue();
+	}
+	
+	/**
+	 * Parses a value the way <code>Integer.toString()</code> writes it, so two values 
+	 * are equal as numbers only when they are also equal as strings. 
+	 * 
+	 * @return the number, or <code>Long.MIN_VALUE</code> if it is not a plain int
+	 */
+	private static long parse(final String value)
+	{
+		if (value == null) {
+			return Long.MIN_VALUE;
+		}
+		
+		final int length = value.length();
+		final int start = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+		
+		if (length == start || length - start > 10 
+			|| (value.charAt(start) == '0' && (length - start > 1 || start == 1))) {
+			return Long.MIN_VALUE;
+		}
+		
+		long number = 0;
+		
+		for (int i = start; i < length; i++) {
+			final char c = value.charAt(i);
+			
+			if (c < '0' || c > '9') {
+				return Long.MIN_VALUE;
+			}
+			
+			number = number * 10 + (c - '0');
+		}
+		
+		if (start == 1) {
+			number = -number;
+		}
+		
+		return number < Integer.MIN_VALUE || number > Integer.MAX_VALUE ? Long.MIN_VALUE : number;
+	}
+	
+	/**
+	 * @param roleName The role name
+	 * @return <code>true</code> if the role is granted
+	 */
+	public boolean canAccess(final String roleName)
+	{
+		final int id = roleId(roleName);
+		return id >= 0 && this.granted.get(id);
+	}
+	
+	/**
+	 * @param roleName The role name
+	 * @param roleValue The value of the role, usually a forum or category id
+	 * @return <code>true</code> if the role is granted with the value
+	 */
+	public boolean canAccess(final String roleName, final String roleValue)
+	{
+		final int id = roleId(roleName);
+		
+		if (id < 0 || !this.granted.get(id) || id >= this.numericValues.length) {
+			return false;
+		}
+		
+		final long number = parse(roleValue);
+		
+		if (number != Long.MIN_VALUE) {
+			return Arrays.binarySearch(this.numericValues[id], (int)number) >= 0;
+		}
+		
+		return this.otherValues[id] != null && this.otherValues[id].contains(roleValue);
+	}
+	
+	/**
+	 * @param roleName The role name
+	 * @param roleValue The value of the role, usually a forum or category id
+	 * @return <code>true</code> if the role is granted with the value
+	 */
+	public boolean canAccess(final String roleName, final int roleValue)
+	{
+		final int id = roleId(roleName);
+		
+		return id >= 0 && id < this.numericValues.length && this.granted.get(id)
+			&& Arrays.binarySearch(this.numericValues[id], roleValue) >= 0;
+	}
+}
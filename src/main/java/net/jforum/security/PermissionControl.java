@@ -65,6 +65,17 @@ public class PermissionControl implements Serializable
 		this.roles = roles;
 	}
 
+	/**
+	 * Gets the compiled roles. Users of the same groups share the same instance, 
+	 * so it can be used as the key of anything derived from the permissions only.
+	 * 
+	 * @return The compiled roles
+	 */
+	public CompiledRoles getCompiledRoles()
+	{
+		return this.roles.compiled();
+	}
+
 	public void setSecurityModel(GroupSecurityDAO smodel)
 	{
 		this.smodel = smodel;
@@ -111,7 +122,7 @@ public class PermissionControl implements Serializable
 	 */
 	public boolean canAccess(String roleName)
 	{
-		return this.roles.containsKey(roleName);
+		return this.roles.compiled().canAccess(roleName);
 	}
 
 	/**
@@ -124,12 +135,19 @@ public class PermissionControl implements Serializable
 	 */
 	public boolean canAccess(String roleName, String roleValue)
 	{
-		Role role = this.roles.get(roleName);
-
-		if (role == null) {
-			return false;
-		}
+		return this.roles.compiled().canAccess(roleName, roleValue);
+	}
 
-		return role.getValues().contains(new RoleValue(roleValue));
+	/**
+	 * Same as {@link #canAccess(String, String)}, for numeric values 
+	 * like forum and category ids
+	 * 
+	 * @param roleName The role name
+	 * @param roleValue The role value
+	 * @return boolean
+	 */
+	public boolean canAccess(String roleName, int roleValue)
+	{
+		return this.roles.compiled().canAccess(roleName, roleValue);
 	}
 }
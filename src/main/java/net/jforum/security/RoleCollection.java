@@ -45,6 +45,7 @@ package net.jforum.security;
 import java.io.Serializable;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Rafael Steil
@@ -53,10 +54,68 @@ import java.util.LinkedHashMap;
 public class RoleCollection extends LinkedHashMap<String, Role> implements Serializable
 {
 	private static final long serialVersionUID = 5785913253137782980L;
+	
+	private transient volatile CompiledRoles compiled;
 
 	public void add(final Role role) 
 	{
-		super.put(role.getName(), role);
+		this.put(role.getName(), role);
+	}
+	
+	/**
+	 * @see java.util.HashMap#put(java.lang.Object, java.lang.Object)
+	 */
+	public Role put(final String name, final Role role)
+	{
+		this.compiled = null;
+		return super.put(name, role);
+	}
+	
+	/**
+	 * @see java.util.HashMap#putAll(java.util.Map)
+	 */
+	public void putAll(final Map<? extends String, ? extends Role> map)
+	{
+		this.compiled = null;
+		super.putAll(map);
+	}
+	
+	/**
+	 * @see java.util.HashMap#remove(java.lang.Object)
+	 */
+	public Role remove(final Object name)
+	{
+		this.compiled = null;
+		return super.remove(name);
+	}
+	
+	/**
+	 * @see java.util.HashMap#clear()
+	 */
+	public void clear()
+	{
+		this.compiled = null;
+		super.clear();
+	}
+	
+	/**
+	 * Gets the roles in a form suited for permission checks. 
+	 * It is built on the first call and shared by everyone using 
+	 * this collection, so the roles and their values must not be 
+	 * changed after permissions start being checked. 
+	 * 
+	 * @return The compiled roles
+	 */
+	public CompiledRoles compiled()
+	{
+		CompiledRoles current = this.compiled;
+		
+		if (current == null) {
+			current = new CompiledRoles(this);
+			this.compiled = current;
+		}
+		
+		return current;
 	}
 	
 	/**
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 9:20:13 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.sso;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jforum.util.LatencyCounter;
+
+/**
+ * Call, rejection, failure and latency counters of a single 
+ * {@link SSO} or {@link LoginAuthenticator} implementation.
+ * 
+ * @version $Id$
+ * @see Authenticators#getStatistics()
+ */
+public class AuthenticatorStatistics extends LatencyCounter
+{
+	private final AtomicLong rejections = new AtomicLong();
+	private final AtomicLong cachedValidations = new AtomicLong();
+	
+	void called(final long nanos, final boolean accepted)
+	{
+		this.record(nanos, false);
+		
+		if (!accepted) {
+			this.rejections.incrementAndGet();
+		}
+	}
+	
+	void failed(final long nanos)
+	{
+		this.record(nanos, true);
+		this.rejections.incrementAndGet();
+	}
+	
+	void cachedValidation()
+	{
+		this.cachedValidations.incrementAndGet();
+	}
+	
+	/**
+	 * @return The number of calls that did not authenticate the user,
+	 * including the failed ones
+	 */
+	public long getRejections()
+	{
+		return this.rejections.get();
+	}
+	
+	/**
+	 * @return The number of session validations answered from the cache,
+	 * without calling the implementation
+	 */
+	public long getCachedValidations()
+	{
+		return this.cachedValidations.get();
+	}
+	
+	/**
+	 * @see net.jforum.util.LatencyCounter#toString()
+	 */
+	public String toString()
+	{
+		return new StringBuilder(128)
+			.append(super.toString())
+			.append(", rejections=").append(this.getRejections())
+			.append(", cachedValidations=").append(this.getCachedValidations())
+			.toString();
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 9:24:50 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.sso;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.jforum.context.RequestContext;
+import net.jforum.dao.UserDAO;
+import net.jforum.entities.User;
+import net.jforum.entities.UserSession;
+import net.jforum.exceptions.ForumException;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+/**
+ * Creates the {@link SSO} and {@link LoginAuthenticator} implementations once, 
+ * instead of on each request, and keeps call statistics for each of them.
+ * <p>
+ * A successful SSO session validation is remembered in the user session for 
+ * {@link ConfigKeys#SSO_SESSION_VALIDATION_CACHE} seconds, so requests in a row
+ * from the same user don't call the SSO implementation every time.
+ * 
+ * @version $Id$
+ */
+public final class Authenticators
+{
+	private static final ConcurrentMap<String, AuthenticatorStatistics> STATISTICS = 
+		new ConcurrentHashMap<String, AuthenticatorStatistics>();
+	
+	private static volatile MeteredSSO sso;
+	
+	private Authenticators() {}
+	
+	/**
+	 * Gets the SSO implementation configured in {@link ConfigKeys#SSO_IMPLEMENTATION}.
+	 * A new instance is only created when the configured class changes, so
+	 * the same one is used by concurrent requests and must be thread safe.
+	 * 
+	 * @return SSO
+	 */
+	public static SSO getSSO()
+	{
+		final String className = SystemGlobals.getValue(ConfigKeys.SSO_IMPLEMENTATION);
+		final MeteredSSO current = sso;
+		
+		if (current != null && current.className.equals(className)) {
+			return current;
+		}
+		
+		return createSSO(className);
+	}
+	
+	private static synchronized MeteredSSO createSSO(final String className)
+	{
+		if (sso == null || !sso.className.equals(className)) {
+			try {
+				sso = new MeteredSSO(className, (SSO)Class.forName(className).newInstance(), statisticsFor(className));
+			}
+			catch (Exception e) {
+				throw new ForumException("Error while trying to create a sso.implementation instance ("
+					+ className + "): " + e, e);
+			}
+		}
+		
+		return sso;
+	}
+	
+	/**
+	 * Creates the login authenticator. 
+	 * 
+	 * @param className The implementation of {@link LoginAuthenticator} to use
+	 * @return The authenticator, which keeps statistics of the calls made to it
+	 */
+	public static LoginAuthenticator createLoginAuthenticator(final String className)
+	{
+		try {
+			return new MeteredLoginAuthenticator((LoginAuthenticator)Class.forName(className).newInstance(), 
+				statisticsFor(className));
+		}
+		catch (Exception e) {
+			throw new ForumException("Error while trying to create a login.authenticator instance ("
+				+ className + "): " + e, e);
+		}
+	}
+	
+	/**
+	 * Checks if the SSO user of a session is still the same, using 
+	 * the previous answer while it is not older than 
+	 * {@link ConfigKeys#SSO_SESSION_VALIDATION_CACHE} seconds.
+	 * 
+	 * @param userSession The session to check
+	 * @param request The current request
+	 * @return <code>true</code> if the session is valid
+	 * @see SSO#isSessionValid(UserSession, RequestContext)
+	 */
+	public static boolean isSessionValid(final UserSession userSession, final RequestContext request)
+	{
+		final long now = System.currentTimeMillis();
+		final MeteredSSO current = (MeteredSSO)getSSO();
+		
+		if (userSession.getSsoValidUntil() > now) {
+			current.statistics.cachedValidation();
+			return true;
+		}
+		
+		final boolean valid = current.isSessionValid(userSession, request);
+		final int window = SystemGlobals.getIntValue(ConfigKeys.SSO_SESSION_VALIDATION_CACHE);
+		
+		if (valid && window > 0) {
+			userSession.setSsoValidUntil(now + window * 1000L);
+		}
+		
+		return valid;
+	}
+	
+	/**
+	 * @return The statistics of every implementation used so far, keyed by class name
+	 */
+	public static Map<String, AuthenticatorStatistics> getStatistics()
+	{
+		return new HashMap<String, AuthenticatorStatistics>(STATISTICS);
+	}
+	
+	private static AuthenticatorStatistics statisticsFor(final String className)
+	{
+		AuthenticatorStatistics statistics = STATISTICS.get(className);
+		
+		if (statistics == null) {
+			final AuthenticatorStatistics newStatistics = new AuthenticatorStatistics();
+			statistics = STATISTICS.putIfAbsent(className, newStatistics);
+			
+			if (statistics == null) {
+				statistics = newStatistics;
+			}
+		}
+		
+		return statistics;
+	}
+	
+	private static class MeteredSSO implements SSO
+	{
+		final String className;
+		final SSO sso;
+		final AuthenticatorStatistics statistics;
+		
+		MeteredSSO(final String className, final SSO sso, final AuthenticatorStatistics statistics)
+		{
+			this.className = className;
+			this.sso = sso;
+			this.statistics = statistics;
+		}
+		
+		public String authenticateUser(final RequestContext request)
+		{
+			final long start = System.nanoTime();
+			
+			try {
+				final String username = this.sso.authenticateUser(request);
+				this.statistics.called(System.nanoTime() - start, username != null && username.trim().length() > 0);
+				return username;
+			}
+			catch (RuntimeException e) {
+				this.statistics.failed(System.nanoTime() - start);
+				throw e;
+			}
+		}
+		
+		public boolean isSessionValid(final UserSession userSession, final RequestContext request)
+		{
+			final long start = System.nanoTime();
+			
+			try {
+				final boolean valid = this.sso.isSessionValid(userSession, request);
+				this.statistics.called(System.nanoTime() - start, valid);
+				return valid;
+			}
+			catch (RuntimeException e) {
+				this.statistics.failed(System.nanoTime() - start);
+				throw e;
+			}
+		}
+	}
+	
+	private static class MeteredLoginAuthenticator implements LoginAuthenticator
+	{
+		private final LoginAuthenticator authenticator;
+		private final AuthenticatorStatistics statistics;
+		
+		MeteredLoginAuthenticator(final LoginAuthenticator authenticator, final AuthenticatorStatistics statistics)
+		{
+			this.authenticator = authenticator;
+			this.statistics = statistics;
+		}
+		
+		public User validateLogin(final String username, final String password, final Map<?, ?> extraParams)
+		{
+			final long start = System.nanoTime();
+			
+			try {
+				final User user = this.authenticator.validateLogin(username, password, extraParams);
+				this.statistics.called(System.nanoTime() - start, user != null);
+				return user;
+			}
+			catch (RuntimeException e) {
+				this.statistics.failed(System.nanoTime() - start);
+				throw e;
+			}
+		}
+		
+		public void setUserModel(final UserDAO dao)
+		{
+			this.authenticator.setUserModel(dao);
+		}
+	}
+}
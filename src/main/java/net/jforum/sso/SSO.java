@@ -46,8 +46,16 @@ import net.jforum.context.RequestContext;
 import net.jforum.entities.UserSession;
 
 /**
+ * Single sign on implementation. 
+ * <p>
+ * A single instance is created and shared by all requests, so implementations
+ * must be thread safe. Keep the data of each request in local variables, 
+ * not in fields. The instance must have a public constructor without arguments.
+ * </p>
+ * 
  * @author Rafael Steil
  * @author Daniel Campagnoli
+ * @see Authenticators#getSSO()
  * @version $Id$
  */
 public interface SSO
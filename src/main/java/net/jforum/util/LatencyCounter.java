@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 10:41:07 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Call, failure and latency counters, safe to be updated by many threads 
+ * without locking.
+ * 
+ * @version $Id$
+ */
+public class LatencyCounter
+{
+	private final AtomicLong calls = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+	
+	/**
+	 * Counts a call
+	 * 
+	 * @param nanos How long the call took
+	 * @param failed Whether the call threw an exception
+	 */
+	protected void record(final long nanos, final boolean failed)
+	{
+		this.calls.incrementAndGet();
+		this.totalNanos.addAndGet(nanos);
+		
+		if (failed) {
+			this.failures.incrementAndGet();
+		}
+		
+		long max;
+		
+		do {
+			max = this.maxNanos.get();
+		} while (nanos > max && !this.maxNanos.compareAndSet(max, nanos));
+	}
+	
+	/**
+	 * @return The number of calls, including the failed ones
+	 */
+	public long getCalls()
+	{
+		return this.calls.get();
+	}
+	
+	/**
+	 * @return The number of calls that threw an exception
+	 */
+	public long getFailures()
+	{
+		return this.failures.get();
+	}
+	
+	/**
+	 * @return The average time of a call, in milliseconds, or 0 if there were no calls yet
+	 */
+	public double getAverageMillis()
+	{
+		final long c = this.getCalls();
+		return c == 0 ? 0 : this.totalNanos.get() / 1000000.0 / c;
+	}
+	
+	/**
+	 * @return The longest time of a call, in milliseconds
+	 */
+	public double getMaxMillis()
+	{
+		return this.maxNanos.get() / 1000000.0;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString()
+	{
+		return new StringBuilder(96)
+			.append("calls=").append(this.getCalls())
+			.append(", failures=").append(this.getFailures())
+			.append(", avgMillis=").append(this.getAverageMillis())
+			.append(", maxMillis=").append(this.getMaxMillis())
+			.toString();
+	}
+}
@@ -73,6 +73,7 @@ public class BBCodeHandler extends DefaultHandler implements Serializable
 	private String tagName = "";
 	private StringBuffer sb;	
 	private BBCode bb;
+	private transient volatile BBCodeRenderer renderer;
 	
 	public BBCodeHandler parse()
 	{
@@ -92,6 +93,8 @@ public class BBCodeHandler extends DefaultHandler implements Serializable
 				InputSource input = new InputSource(path);
 				parser.parse(input, bbParser);
 			}
+			
+			bbParser.getRenderer();
 
 			return bbParser;
 		}
@@ -103,6 +106,8 @@ public class BBCodeHandler extends DefaultHandler implements Serializable
 
 	public void addBb(BBCode bb)
 	{
+		this.renderer = null;
+		
 		if (bb.alwaysProcess()) {
 			this.alwaysProcessMap.put(bb.getTagName(), bb);
 		}
@@ -121,6 +126,18 @@ public class BBCodeHandler extends DefaultHandler implements Serializable
 		return this.alwaysProcessMap.values();
 	}
 	
+	/**
+	 * @return the bbcodes compiled for rendering. Built once, when first requested 
+	 */
+	public BBCodeRenderer getRenderer()
+	{
+		if (this.renderer == null) {
+			this.renderer = new BBCodeRenderer(this.getBbList(), this.getAlwaysProcessList());
+		}
+		
+		return this.renderer;
+	}
+	
 	public BBCode findByName(String tagName)
 	{
 		return this.bbMap.get(tagName);
@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 9:48:30 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.util.bbcode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies a set of bbcodes compiled once, when the configuration is loaded.
+ * <p>
+ * The output is exactly the same as running <code>String.replaceAll(bb.getRegex(), bb.getReplace())</code>
+ * for each bbcode, in the configured order, but each text is first scanned once for the
+ * tags it contains (<code>[b</code>, <code>[/quote</code>, ...), and only the expressions
+ * which can match one of those tags are run. A post using two tags runs two regular
+ * expressions, instead of all of them. Expressions not starting with a tag, like the
+ * automatic links, are skipped when the text lacks some literal they require.
+ * </p>
+ * 
+ * @version $Id$
+ */
+public class BBCodeRenderer
+{
+	private static final int MAX_BUFFER_CAPACITY = 64 * 1024;
+	
+	private static final ThreadLocal<StringBuffer> BUFFER = new ThreadLocal<StringBuffer>() {
+		protected StringBuffer initialValue()
+		{
+			return new StringBuffer(1024);
+		}
+	};
+	
+	private final CompiledBBCode[] codes;
+	private final CompiledBBCode[] codeBlocks;
+	private final CompiledBBCode[] alwaysProcess;
+	
+	public BBCodeRenderer(final Collection<BBCode> bbList, final Collection<BBCode> alwaysProcessList)
+	{
+		final List<CompiledBBCode> codes = new ArrayList<CompiledBBCode>();
+		final List<CompiledBBCode> codeBlocks = new ArrayList<CompiledBBCode>();
+		
+		for (Iterator<BBCode> iter = bbList.iterator(); iter.hasNext(); ) {
+			final BBCode bb = iter.next();
+			
+			if (bb.getTagName().startsWith("code")) {
+				codeBlocks.add(new CompiledBBCode(bb));
+			}
+			else {
+				codes.add(new CompiledBBCode(bb));
+			}
+		}
+		
+		final List<CompiledBBCode> always = new ArrayList<CompiledBBCode>();
+		
+		for (Iterator<BBCode> iter = alwaysProcessList.iterator(); iter.hasNext(); ) {
+			always.add(new CompiledBBCode(iter.next()));
+		}
+		
+		this.codes = codes.toArray(new CompiledBBCode[codes.size()]);
+		this.codeBlocks = codeBlocks.toArray(new CompiledBBCode[codeBlocks.size()]);
+		this.alwaysProcess = always.toArray(new CompiledBBCode[always.size()]);
+	}
+	
+	/**
+	 * Applies all bbcodes, except the <i>code</i> ones and those marked as <i>alwaysProcess</i>
+	 * @param text the text to process
+	 * @return the processed text
+	 */
+	public String render(final String text)
+	{
+		return apply(this.codes, text);
+	}
+	
+	/**
+	 * Applies the bbcodes whose name starts with <i>code</i>
+	 * @param text the text to process
+	 * @return the processed text
+	 */
+	public String renderCode(final String text)
+	{
+		return apply(this.codeBlocks, text);
+	}
+	
+	/**
+	 * Applies the bbcodes marked as <i>alwaysProcess</i>, like the automatic links
+	 * @param text the text to process
+	 * @return the processed text
+	 */
+	public String renderAlwaysProcess(final String text)
+	{
+		return apply(this.alwaysProcess, text);
+	}
+	
+	/**
+	 * Escapes each <code>&amp;</code> to <code>&amp;amp;</code>, except those already starting 
+	 * one of the <code>&amp;lt;</code>, <code>&amp;gt;</code>, <code>&amp;quot;</code> 
+	 * and <code>&amp;amp;</code> entities. 
+	 * Gives the same result as replacing <code>&amp;</code> by <code>&amp;amp;</code> and then 
+	 * turning each of these four entities back, in a single pass over the text.
+	 * 
+	 * @param text the text to escape
+	 * @return the escaped text
+	 */
+	public static String escapeAmpersands(final String text)
+	{
+		int pos = text.indexOf('&');
+		
+		if (pos == -1) {
+			return text;
+		}
+		
+		final StringBuffer sb = buffer();
+		int last = 0;
+		
+		for (; pos > -1; pos = text.indexOf('&', pos + 1)) {
+			if (!text.startsWith("lt;", pos + 1) && !text.startsWith("gt;", pos + 1)
+				&& !text.startsWith("quot;", pos + 1) && !text.startsWith("amp;", pos + 1)) {
+				sb.append(text, last, pos + 1).append("amp;");
+				last = pos + 1;
+			}
+		}
+		
+		return release(sb.append(text, last, text.length()));
+	}
+	
+	private static String apply(final CompiledBBCode[] list, final String origText)
+	{
+		String text = origText;
+		Set<String> tags = null;
+		
+		for (int i = 0; i < list.length; i++) {
+			final CompiledBBCode bb = list[i];
+			
+			if (bb.tag != null) {
+				if (tags == null) {
+					tags = scanTags(text);
+				}
+				
+				if (!tags.contains(bb.tag)) {
+					continue;
+				}
+			}
+			else if (!bb.mayMatch(text)) {
+				continue;
+			}
+			
+			final String result = bb.replaceAll(text);
+			
+			if (result != text) {
+				text = result;
+				
+				// The replacement may have removed tags or, depending on the configuration, added some
+				tags = null;
+			}
+		}
+		
+		return text;
+	}
+	
+	/**
+	 * Finds all tag openings in the text, in lowercase and without the closing bracket or
+	 * the parameter, so that both <code>[URL=...]</code> and <code>[url]</code> give <code>[url</code>. 
+	 */
+	private static Set<String> scanTags(final String text)
+	{
+		final Set<String> tags = new HashSet<String>();
+		final int length = text.length();
+		
+		for (int pos = text.indexOf('['); pos > -1; pos = text.indexOf('[', pos + 1)) {
+			int end = pos + 1;
+			
+			while (end < length && isTagNameChar(text.charAt(end))) {
+				end++;
+			}
+			
+			if (end > pos + 1) {
+				tags.add(text.substring(pos, end).toLowerCase(Locale.ENGLISH));
+			}
+		}
+		
+		return tags;
+	}
+	
+	static boolean isTagNameChar(final char c)
+	{
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+			|| c == '/' || c == '-' || c == '_';
+	}
+	
+	private static StringBuffer buffer()
+	{
+		final StringBuffer sb = BUFFER.get();
+		sb.setLength(0);
+		
+		return sb;
+	}
+	
+	private static String release(final StringBuffer sb)
+	{
+		final String result = sb.toString();
+		
+		if (sb.capacity() > MAX_BUFFER_CAPACITY) {
+			BUFFER.remove();
+		}
+		
+		return result;
+	}
+	
+	static final class CompiledBBCode
+	{
+		final Pattern pattern;
+		final String replace;
+		final String tag;
+		private final String literal;
+		private final boolean ignoreCase;
+		
+		CompiledBBCode(final BBCode bb)
+		{
+			this.pattern = Pattern.compile(bb.getRegex());
+			this.replace = bb.getReplace();
+			this.tag = requiredTag(bb.getRegex());
+			this.literal = this.tag == null ? RequiredLiteral.find(bb.getRegex()) : null;
+			this.ignoreCase = bb.getRegex().indexOf("(?") > -1;
+		}
+		
+		/**
+		 * @return false if the text lacks some literal text that any match would contain
+		 */
+		boolean mayMatch(final String text)
+		{
+			if (this.literal == null) {
+				return true;
+			}
+			
+			if (!this.ignoreCase) {
+				return text.indexOf(this.literal) > -1;
+			}
+			
+			for (int i = 0, last = text.length() - this.literal.length(); i <= last; i++) {
+				if (text.regionMatches(true, i, this.literal, 0, this.literal.length())) {
+					return true;
+				}
+			}
+			
+			return false;
+		}
+		
+		/**
+		 * Same as <code>String.replaceAll</code>, but returns the very same instance
+		 * when nothing matches
+		 */
+		String replaceAll(final String text)
+		{
+			final Matcher matcher = this.pattern.matcher(text);
+			
+			if (!matcher.find()) {
+				return text;
+			}
+			
+			final StringBuffer sb = buffer();
+			
+			do {
+				matcher.appendReplacement(sb, this.replace);
+			} while (matcher.find());
+			
+			return release(matcher.appendTail(sb));
+		}
+		
+		/**
+		 * Finds the tag that any match of the expression must contain, if it starts with 
+		 * a literal tag, like <code>(?i)\[quote=</code> or <code>\[/b\]</code>.
+		 * 
+		 * @return the lowercase tag opening, as produced by {@link BBCodeRenderer#scanTags(String)}, 
+		 * or <code>null</code> if the expression must always be run
+		 */
+		static String requiredTag(final String regex)
+		{
+			// Alternatives could match without the tag
+			for (int i = 0; i < regex.length(); i++) {
+				if (regex.charAt(i) == '\\') {
+					i++;
+				}
+				else if (regex.charAt(i) == '|') {
+					return null;
+				}
+			}
+			
+			int pos = 0;
+			
+			// Skip inline flags, such as (?s)(?i)
+			while (regex.startsWith("(?", pos) && regex.indexOf(')', pos) > -1
+				&& isFlags(regex.substring(pos + 2, regex.indexOf(')', pos)))) {
+				pos = regex.indexOf(')', pos) + 1;
+			}
+			
+			if (!regex.startsWith("\\[", pos)) {
+				return null;
+			}
+			
+			final StringBuffer tag = new StringBuffer("[");
+			pos += 2;
+			
+			while (pos < regex.length()) {
+				char c = regex.charAt(pos);
+				
+				if (c == '\\' && pos + 1 < regex.length() && regex.charAt(pos + 1) == '/') {
+					c = '/';
+					pos++;
+				}
+				else if (!isTagNameChar(c)) {
+					break;
+				}
+				
+				tag.append(Character.toLowerCase(c));
+				pos++;
+			}
+			
+			// The tag name must be followed by something that ends it in the text as well
+			final boolean terminated = regex.startsWith("\\]", pos) || regex.startsWith("=", pos);
+			
+			return terminated && tag.length() > 1 
+				? tag.toString() 
+				: null;
+		}
+		
+		private static boolean isFlags(final String s)
+		{
+			if (s.length() == 0) {
+				return false;
+			}
+			
+			for (int i = 0; i < s.length(); i++) {
+				if ("idmsuxU-".indexOf(s.charAt(i)) == -1) {
+					return false;
+				}
+			}
+			
+			return true;
+		}
+	}
+}
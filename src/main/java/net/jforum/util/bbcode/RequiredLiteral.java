@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 11:02:17 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.util.bbcode;
+
+/**
+ * Finds a piece of literal text that every match of a regular expression contains, 
+ * such as <code>://</code> in <code>([\w]+?://[^ ]*)</code>. A text without it
+ * cannot match, so the expression does not need to be run.
+ * <p>
+ * Only a conservative subset of the syntax is understood. Anything else, like 
+ * <code>\Q</code> quoting or hexadecimal escapes, gives no literal at all.
+ * </p>
+ * 
+ * @version $Id$
+ */
+final class RequiredLiteral
+{
+	private final String regex;
+	private int pos;
+	private boolean unsupported;
+	
+	private RequiredLiteral(final String regex)
+	{
+		this.regex = regex;
+	}
+	
+	/**
+	 * @param regex the expression to analyze
+	 * @return the longest literal text found in all matches, or <code>null</code> if none is known
+	 */
+	static String find(final String regex)
+	{
+		final RequiredLiteral parser = new RequiredLiteral(regex);
+		final String literal = parser.sequence();
+		
+		if (parser.unsupported || parser.pos != regex.length() || literal.length() == 0) {
+			return null;
+		}
+		
+		return literal;
+	}
+	
+	/**
+	 * Parses atoms up to the end of the current group
+	 * @return the longest literal required by this sequence, or an empty string
+	 */
+	private String sequence()
+	{
+		String best = "";
+		final StringBuilder run = new StringBuilder();
+		boolean alternatives = false;
+		
+		while (!this.unsupported && this.pos < this.regex.length() && this.regex.charAt(this.pos) != ')') {
+			final char c = this.regex.charAt(this.pos);
+			
+			if (c == '|') {
+				alternatives = true;
+				this.pos++;
+				continue;
+			}
+			
+			String inner = null;
+			int literal = -1;
+			
+			if (c == '(') {
+				this.pos++;
+				inner = this.group();
+			}
+			else if (c == '[') {
+				this.skipClass();
+			}
+			else if (c == '\\') {
+				literal = this.escape();
+			}
+			else if (c == '.' || c == '^' || c == '$') {
+				this.pos++;
+			}
+			else if (c == '{' || c == '}' || c == '*' || c == '+' || c == '?') {
+				this.unsupported = true;
+			}
+			else {
+				literal = c;
+				this.pos++;
+			}
+			
+			boolean optional = false;
+			boolean repeated = false;
+			
+			if (this.pos < this.regex.length()) {
+				final char q = this.regex.charAt(this.pos);
+				
+				if (q == '?' || q == '*') {
+					optional = true;
+					this.pos++;
+				}
+				else if (q == '+') {
+					repeated = true;
+					this.pos++;
+				}
+				else if (q == '{') {
+					final int end = this.regex.indexOf('}', this.pos);
+					
+					if (end == -1) {
+						this.unsupported = true;
+						break;
+					}
+					
+					optional = this.regex.charAt(this.pos + 1) == '0';
+					repeated = true;
+					this.pos = end + 1;
+				}
+				
+				// Reluctant and possessive quantifiers
+				if ((optional || repeated) && this.pos < this.regex.length() 
+					&& (this.regex.charAt(this.pos) == '?' || this.regex.charAt(this.pos) == '+')) {
+					this.pos++;
+				}
+			}
+			
+			if (literal != -1 && !optional) {
+				run.append((char)literal);
+				
+				if (repeated) {
+					best = longest(best, run.toString());
+					run.setLength(0);
+				}
+			}
+			else {
+				best = longest(best, run.toString());
+				run.setLength(0);
+				
+				if (inner != null && !optional) {
+					best = longest(best, inner);
+				}
+			}
+		}
+		
+		best = longest(best, run.toString());
+		
+		return alternatives ? "" : best;
+	}
+	
+	/**
+	 * Parses a group, just after its opening parenthesis
+	 * @return the literal required by the group, or <code>null</code> if it does not consume text
+	 */
+	private String group()
+	{
+		boolean zeroWidth = false;
+		
+		if (this.regex.startsWith("?", this.pos)) {
+			this.pos++;
+			
+			if (this.regex.startsWith("=", this.pos) || this.regex.startsWith("!", this.pos)) {
+				zeroWidth = true;
+				this.pos++;
+			}
+			else if (this.regex.startsWith("<=", this.pos) || this.regex.startsWith("<!", this.pos)) {
+				zeroWidth = true;
+				this.pos += 2;
+			}
+			else if (this.regex.startsWith(":", this.pos) || this.regex.startsWith(">", this.pos)) {
+				this.pos++;
+			}
+			else {
+				// Inline flags, either (?is) or (?i:X)
+				while (this.pos < this.regex.length() && "idmsuxU-".indexOf(this.regex.charAt(this.pos)) > -1) {
+					if (this.regex.charAt(this.pos) == 'x') {
+						// Comments mode changes the meaning of whitespace and #
+						this.unsupported = true;
+					}
+					
+					this.pos++;
+				}
+				
+				if (this.regex.startsWith(")", this.pos)) {
+					this.pos++;
+					return null;
+				}
+				
+				if (!this.regex.startsWith(":", this.pos)) {
+					this.unsupported = true;
+					return null;
+				}
+				
+				this.pos++;
+			}
+		}
+		
+		final String inner = this.sequence();
+		
+		if (!this.regex.startsWith(")", this.pos)) {
+			this.unsupported = true;
+			return null;
+		}
+		
+		this.pos++;
+		
+		return zeroWidth ? null : inner;
+	}
+	
+	/**
+	 * @return the escaped character if it is a literal, or -1
+	 */
+	private int escape()
+	{
+		if (this.pos + 1 >= this.regex.length()) {
+			this.unsupported = true;
+			return -1;
+		}
+		
+		final char c = this.regex.charAt(this.pos + 1);
+		this.pos += 2;
+		
+		if (!Character.isLetterOrDigit(c)) {
+			return c;
+		}
+		
+		// Predefined classes, boundaries and single character escapes. 
+		// Anything longer (\x41, \p{L}, \Q...\E) is not handled
+		if ("dDsSwWbBAGZzntrfae".indexOf(c) == -1) {
+			this.unsupported = true;
+		}
+		
+		return -1;
+	}
+	
+	private void skipClass()
+	{
+		int depth = 0;
+		
+		while (this.pos < this.regex.length()) {
+			final char c = this.regex.charAt(this.pos);
+			
+			if (c == '\\') {
+				this.pos += 2;
+				continue;
+			}
+			
+			if (c == '[') {
+				depth++;
+				
+				// A closing bracket right after the opening one is a literal
+				if (this.regex.startsWith("^]", this.pos + 1)) {
+					this.pos += 2;
+				}
+				else if (this.regex.startsWith("]", this.pos + 1)) {
+					this.pos++;
+				}
+			}
+			else if (c == ']') {
+				depth--;
+				
+				if (depth == 0) {
+					this.pos++;
+					return;
+				}
+			}
+			
+			this.pos++;
+		}
+		
+		this.unsupported = true;
+	}
+	
+	private static String longest(final String a, final String b)
+	{
+		return b.length() > a.length() ? b : a;
+	}
+}
@@ -53,9 +53,12 @@ import java.util.Locale;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 
 import net.jforum.exceptions.ForumException;
@@ -86,13 +89,119 @@ public class ImageUtils
 	public static BufferedImage resizeImage(String imgName, int type, int maxWidth, int maxHeight)
 	{
 		try {
-			return resizeImage(ImageIO.read(new File(imgName)), type, maxWidth, maxHeight);
+			return resizeImage(readImage(new File(imgName), maxWidth, maxHeight), type, maxWidth, maxHeight);
 		}
 		catch (IOException e) {
 			throw new ForumException(e);
 		}
 	}
 
+	/**
+	 * Gets the size of an image, reading only its header.
+	 * 
+	 * @param file The image file
+	 * @return The size of the image, or <code>null</code> if the format is not supported
+	 * @throws IOException If the file can't be read
+	 */
+	public static Dimension getImageSize(File file) throws IOException
+	{
+		ImageInputStream iis = ImageIO.createImageInputStream(file);
+
+		if (iis == null) {
+			return null;
+		}
+
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+
+			if (!readers.hasNext()) {
+				return null;
+			}
+
+			ImageReader reader = readers.next();
+
+			try {
+				reader.setInput(iis, true, true);
+				return new Dimension(reader.getWidth(0), reader.getHeight(0));
+			}
+			finally {
+				reader.dispose();
+			}
+		}
+		finally {
+			iis.close();
+		}
+	}
+
+	/**
+	 * Reads an image that is going to be resized. When the image is at least twice as big as 
+	 * the desired size, only every n-th pixel is decoded, so a large photo doesn't need
+	 * to be fully loaded in memory to create a small thumbnail.
+	 * 
+	 * @param file The image file
+	 * @param maxWidth The max width the image will be resized to
+	 * @param maxHeight The max height the image will be resized to
+	 * @return The image, or <code>null</code> if the format is not supported
+	 * @throws IOException If the file can't be read
+	 * @see #subsampling(int, int, int, int)
+	 */
+	public static BufferedImage readImage(File file, int maxWidth, int maxHeight) throws IOException
+	{
+		ImageInputStream iis = ImageIO.createImageInputStream(file);
+
+		if (iis == null) {
+			return null;
+		}
+
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+
+			if (!readers.hasNext()) {
+				return null;
+			}
+
+			ImageReader reader = readers.next();
+
+			try {
+				reader.setInput(iis, true, true);
+
+				ImageReadParam param = reader.getDefaultReadParam();
+				int step = subsampling(reader.getWidth(0), reader.getHeight(0), maxWidth, maxHeight);
+
+				if (step > 1) {
+					param.setSourceSubsampling(step, step, 0, 0);
+				}
+
+				return reader.read(0, param);
+			}
+			finally {
+				reader.dispose();
+			}
+		}
+		finally {
+			iis.close();
+		}
+	}
+
+	/**
+	 * Calculates how many pixels can be skipped when decoding an image, keeping
+	 * at least twice the desired size, so the resized image still looks smooth.
+	 * 
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param maxWidth The max width the image will be resized to
+	 * @param maxHeight The max height the image will be resized to
+	 * @return The subsampling step, 1 meaning every pixel is decoded
+	 */
+	public static int subsampling(int width, int height, int maxWidth, int maxHeight)
+	{
+		if (maxWidth <= 0 || maxHeight <= 0) {
+			return 1;
+		}
+
+		return Math.max(1, Math.min(width / (2 * maxWidth), height / (2 * maxHeight)));
+	}
+
 	/**
 	 * Resizes an image.
 	 * 
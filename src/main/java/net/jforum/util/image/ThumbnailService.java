@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 8:58:41 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.util.image;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Creates the thumbnails of image attachments in background, so uploads 
+ * don't wait for the images to be decoded and resized.
+ * <p>
+ * Thumbnails are created by a fixed number of threads, and all images being 
+ * decoded at the same time must fit in {@link ConfigKeys#ATTACHMENTS_IMAGES_MEMORY_BUDGET}
+ * megabytes. Large images are decoded with subsampling. 
+ * Each thumbnail is also kept in a cache directory, named after the 
+ * SHA-1 of the original image, so an image uploaded more than once is only resized once.
+ * It is removed when an attachment with that image is deleted.
+ * 
+ * @version $Id$
+ */
+public final class ThumbnailService
+{
+	private static final Logger LOGGER = Logger.getLogger(ThumbnailService.class);
+	private static final String CACHE_DIR = "thumbs";
+	private static final int BYTES_PER_PIXEL = 4;
+	
+	private static final ConcurrentMap<String, Boolean> PENDING = new ConcurrentHashMap<String, Boolean>();
+	
+	private static ThreadPoolExecutor executor;
+	private static Semaphore memory;
+	private static int memoryBudget;
+	
+	private ThumbnailService() {}
+	
+	private static synchronized ThreadPoolExecutor executor()
+	{
+		if (executor == null || executor.isShutdown()) {
+			final int threads = Math.max(1, SystemGlobals.getIntValue(ConfigKeys.ATTACHMENTS_IMAGES_THUMB_THREADS));
+			final int queueSize = Math.max(1, SystemGlobals.getIntValue(ConfigKeys.ATTACHMENTS_IMAGES_THUMB_QUEUE_SIZE));
+			
+			// In kilobytes, so large budgets still fit in the semaphore
+			memoryBudget = Math.max(1, SystemGlobals.getIntValue(ConfigKeys.ATTACHMENTS_IMAGES_MEMORY_BUDGET)) * 1024;
+			memory = new Semaphore(memoryBudget, true);
+			
+			executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+					private final AtomicInteger counter = new AtomicInteger();
+					
+					public Thread newThread(final Runnable runnable)
+					{
+						final Thread thread = new Thread(runnable, "ThumbnailService-" + this.counter.incrementAndGet());
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+			
+			executor.allowCoreThreadTimeOut(true);
+		}
+		
+		return executor;
+	}
+	
+	/**
+	 * Queues the creation of the thumbnail of an image. The thumbnail is saved 
+	 * as <code>path + "_thumb"</code>, and only if the image is bigger 
+	 * than the max size.
+	 * 
+	 * @param path The complete path to the image
+	 * @param maxWidth The max width of the thumbnail
+	 * @param maxHeight The max height of the thumbnail
+	 * @return <code>false</code> if the queue is full and the thumbnail won't be created
+	 */
+	public static boolean submit(final String path, final int maxWidth, final int maxHeight)
+	{
+		if (PENDING.putIfAbsent(path, Boolean.TRUE) != null) {
+			return true;
+		}
+		
+		try {
+			executor().execute(new Runnable() {
+				public void run()
+				{
+					try {
+						createThumb(path, maxWidth, maxHeight);
+					}
+					catch (Exception e) {
+						LOGGER.error("Error while creating the thumbnail of " + path + ": " + e, e);
+					}
+					finally {
+						PENDING.remove(path);
+					}
+				}
+			});
+			
+			return true;
+		}
+		catch (RejectedExecutionException e) {
+			PENDING.remove(path);
+			LOGGER.warn("Thumbnail queue is full, not creating the thumbnail of " + path);
+			return false;
+		}
+	}
+	
+	/**
+	 * Checks if the thumbnail of an image is still being created
+	 * 
+	 * @param path The complete path to the image
+	 * @return <code>true</code> if the thumbnail is queued or being created
+	 */
+	public static boolean isPending(final String path)
+	{
+		return PENDING.containsKey(path);
+	}
+	
+	/**
+	 * Stops the workers, waiting for the thumbnails being created
+	 * 
+	 * @param timeout The max time to wait, in milliseconds
+	 */
+	public static synchronized void stop(final long timeout)
+	{
+		if (executor == null) {
+			return;
+		}
+		
+		executor.shutdown();
+		
+		try {
+			if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+				LOGGER.warn("Thumbnail service stopped with " + executor.getQueue().size() + " thumbnails not created");
+				executor.shutdownNow();
+			}
+		}
+		catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		
+		executor = null;
+		PENDING.clear();
+	}
+	
+	/**
+	 * Removes the cached thumbnails of an image, of any size. Must be called 
+	 * before the image and its <code>path + "_thumb"</code> file are deleted.
+	 * Other attachments with the same image keep their own thumbnail.
+	 * 
+	 * @param path The complete path to the image
+	 */
+	public static void removeCached(final String path)
+	{
+		final File image = new File(path);
+		final File cacheDir = new File(SystemGlobals.getValue(ConfigKeys.ATTACHMENTS_STORE_DIR), CACHE_DIR);
+		
+		// Only images which got a thumbnail may have one in the cache
+		if (!image.exists() || !new File(path + "_thumb").exists() || !cacheDir.exists()) {
+			return;
+		}
+		
+		try {
+			final String prefix = hash(image) + "_";
+			final File[] files = cacheDir.listFiles(new FilenameFilter() {
+				public boolean accept(final File dir, final String name)
+				{
+					return name.startsWith(prefix);
+				}
+			});
+			
+			for (int i = 0; files != null && i < files.length; i++) {
+				if (!files[i].delete()) {
+					LOGGER.warn("Could not delete the cached thumbnail " + files[i]);
+				}
+			}
+		}
+		catch (IOException e) {
+			LOGGER.warn("Could not remove the cached thumbnails of " + path + ": " + e);
+		}
+	}
+	
+	static void createThumb(final String path, final int maxWidth, final int maxHeight) throws IOException
+	{
+		final File image = new File(path);
+		final Dimension size = ImageUtils.getImageSize(image);
+		
+		if (size == null || (size.width <= maxWidth && size.height <= maxHeight)) {
+			return;
+		}
+		
+		final File cacheDir = new File(SystemGlobals.getValue(ConfigKeys.ATTACHMENTS_STORE_DIR), CACHE_DIR);
+		final File cached = new File(cacheDir, hash(image) + "_" + maxWidth + "x" + maxHeight + ".jpg");
+		
+		if (!cached.exists()) {
+			if (!cacheDir.exists() && !cacheDir.mkdirs() && !cacheDir.exists()) {
+				throw new IOException("Could not create " + cacheDir);
+			}
+			
+			final int step = ImageUtils.subsampling(size.width, size.height, maxWidth, maxHeight);
+			final long bytes = ((long)(size.width / step) * (size.height / step) 
+				+ (long)maxWidth * maxHeight) * BYTES_PER_PIXEL;
+			final int permits = (int)Math.min(memoryBudget, bytes / 1024 + 1);
+			
+			memory.acquireUninterruptibly(permits);
+			
+			try {
+				final BufferedImage source = ImageUtils.readImage(image, maxWidth, maxHeight);
+				
+				if (source == null) {
+					return;
+				}
+				
+				final BufferedImage thumb = ImageUtils.resizeImage(source, ImageUtils.IMAGE_JPEG, maxWidth, maxHeight);
+				
+				// Written aside and renamed, so a concurrent reader never sees half a file
+				final File tmp = File.createTempFile("thumb", ".tmp", cacheDir);
+				
+				if (!ImageUtils.saveImage(thumb, tmp.getPath(), ImageUtils.IMAGE_JPEG) || !tmp.renameTo(cached)) {
+					tmp.delete();
+				}
+			}
+			finally {
+				memory.release(permits);
+			}
+		}
+		else if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Reusing thumbnail " + cached.getName() + " for " + path);
+		}
+		
+		if (cached.exists()) {
+			copy(cached, new File(path + "_thumb"));
+		}
+	}
+	
+	private static String hash(final File file) throws IOException
+	{
+		final MessageDigest digest;
+		
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.toString());
+		}
+		
+		final InputStream is = new FileInputStream(file);
+		
+		try {
+			final byte[] buffer = new byte[65536];
+			int read;
+			
+			while ((read = is.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		finally {
+			is.close();
+		}
+		
+		final byte[] bytes = digest.digest();
+		final StringBuilder sb = new StringBuilder(bytes.length * 2);
+		
+		for (int i = 0; i < bytes.length; i++) {
+			sb.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16)).append(Character.forDigit(bytes[i] & 0xF, 16));
+		}
+		
+		return sb.toString();
+	}
+	
+	private static void copy(final File from, final File to) throws IOException
+	{
+		final FileInputStream in = new FileInputStream(from);
+		
+		try {
+			final FileOutputStream out = new FileOutputStream(to);
+			
+			try {
+				final FileChannel channel = in.getChannel();
+				long position = 0;
+				final long size = channel.size();
+				
+				while (position < size) {
+					position += channel.transferTo(position, size - position, out.getChannel());
+				}
+			}
+			finally {
+				out.close();
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+}
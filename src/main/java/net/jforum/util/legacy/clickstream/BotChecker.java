@@ -1,8 +1,5 @@
 package net.jforum.util.legacy.clickstream;
 
-import java.util.Iterator;
-import java.util.List;
-
 import javax.servlet.http.HttpServletRequest;
 
 import net.jforum.util.legacy.clickstream.config.ClickstreamConfig;
@@ -31,48 +28,20 @@ public class BotChecker
 			return "Unknown (asked for robots.txt)";
 		}
 		
-		String userAgent = request.getHeader("User-Agent");
-		
 		ClickstreamConfig config = ConfigLoader.getInstance().getConfig();
 		
-		if (userAgent != null && config != null) {
-			List<String> agents = config.getBotAgents();
-			
-			userAgent = userAgent.toLowerCase();
-			
-			for (Iterator<String> iterator = agents.iterator(); iterator.hasNext(); ) {
-				String agent = (String) iterator.next();
-				
-				if (agent == null) {
-					continue;
-				}
-				
-				if (userAgent.indexOf(agent) != -1) {
-					return userAgent;
-				}
-			}
+		if (config == null) {
+			return null;
 		}
 		
-		String remoteHost = request.getRemoteHost(); // requires a DNS lookup
+		String userAgent = request.getHeader("User-Agent");
 		
-		if (remoteHost != null && remoteHost.length() > 0 && remoteHost.charAt(remoteHost.length() - 1) > 64) {
-			List<String> hosts = config.getBotHosts();
-			
-			remoteHost = remoteHost.toLowerCase();
-			
-			for (Iterator<String> iterator = hosts.iterator(); iterator.hasNext(); ) {
-				String host = (String) iterator.next();
-				
-				if (host == null) {
-					continue;
-				}
-				
-				if (remoteHost.indexOf(host) != -1) {
-					return remoteHost;
-				}
-			}
+		if (userAgent != null && config.getAgentMatcher().find(userAgent) != null) {
+			return userAgent.toLowerCase();
 		}
-
-		return null;
+		
+		// The client address is resolved in background, as 
+		// request.getRemoteHost() could block on a DNS lookup
+		return BotHostCache.check(request.getRemoteAddr(), config.getHostMatcher());
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,261 @@
+package net.jforum.util.legacy.clickstream;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Tells whether an IP address belongs to one of the bot hosts, without 
+ * making the request wait for a reverse DNS lookup. 
+ * <p>
+ * The first time an address is seen it is resolved in background and
+ * treated as not being a bot. The verdict is then kept for 
+ * {@link ConfigKeys#CLICKSTREAM_DNS_CACHE_TTL} seconds, or for 
+ * {@link ConfigKeys#CLICKSTREAM_DNS_CACHE_NEGATIVE_TTL} seconds 
+ * when the address is not a bot or has no name. 
+ * </p>
+ * <p>
+ * Lookups never block each other. When there are more than 
+ * {@link ConfigKeys#CLICKSTREAM_DNS_CACHE_SIZE} verdicts, the expired ones 
+ * are discarded and then the ones closest to expiring, until the cache 
+ * is back to 15/16 of its size. 
+ * </p>
+ * 
+ * @version $Id$
+ */
+public final class BotHostCache
+{
+	private static final Logger LOGGER = Logger.getLogger(BotHostCache.class);
+	
+	/** Marks an address whose lookup was queued but did not finish yet */
+	private static final String PENDING = "";
+	
+	private static final Comparator<Map.Entry<String, Verdict>> FIRST_TO_EXPIRE = new Comparator<Map.Entry<String, Verdict>>() {
+		public int compare(final Map.Entry<String, Verdict> e1, final Map.Entry<String, Verdict> e2)
+		{
+			final long x = e1.getValue().expiresAt;
+			final long y = e2.getValue().expiresAt;
+			
+			return x < y ? -1 : (x == y ? 0 : 1);
+		}
+	};
+	
+	private static final ConcurrentMap<String, Verdict> VERDICTS = new ConcurrentHashMap<String, Verdict>(256);
+	private static final ReentrantLock PRUNE_LOCK = new ReentrantLock();
+	
+	private static ThreadPoolExecutor executor;
+	
+	private BotHostCache() {}
+	
+	/**
+	 * Checks an address against the bot hosts
+	 * 
+	 * @param address The IP address of the client
+	 * @param hosts The bot hosts matcher
+	 * @return The host name of the address if it is a bot, or <code>null</code> 
+	 * if it is not or if the verdict is still unknown 
+	 */
+	public static String check(final String address, final MultiPatternMatcher hosts)
+	{
+		if (address == null || address.length() == 0 || hosts.size() == 0) {
+			return null;
+		}
+		
+		final long now = System.currentTimeMillis();
+		
+		final Verdict verdict = VERDICTS.get(address);
+		
+		if (verdict != null && verdict.expiresAt > now) {
+			return verdict.botHost == PENDING ? null : verdict.botHost;
+		}
+		
+		final int threads = SystemGlobals.getIntValue(ConfigKeys.CLICKSTREAM_DNS_THREADS);
+		
+		if (threads <= 0) {
+			return null;
+		}
+		
+		// Keeps other requests from the same address from queueing the lookup again
+		final Verdict pending = new Verdict(PENDING, now + negativeTtl());
+		final boolean queued = verdict == null 
+			? VERDICTS.putIfAbsent(address, pending) == null
+			: VERDICTS.replace(address, verdict, pending);
+		
+		if (!queued) {
+			return null;
+		}
+		
+		pruneIfFull();
+		
+		try {
+			executor(threads).execute(new Lookup(address, hosts));
+		}
+		catch (RejectedExecutionException e) {
+			LOGGER.debug("Reverse DNS queue is full, not checking " + address);
+		}
+		
+		return null;
+	}
+	
+	static void resolved(final String address, final String botHost)
+	{
+		final long ttl = botHost == null ? negativeTtl() : SystemGlobals.getIntValue(ConfigKeys.CLICKSTREAM_DNS_CACHE_TTL) * 1000L;
+		
+		VERDICTS.put(address, new Verdict(botHost, System.currentTimeMillis() + ttl));
+		pruneIfFull();
+	}
+	
+	static int size()
+	{
+		return VERDICTS.size();
+	}
+	
+	/**
+	 * Removes expired verdicts and then the ones closest to expiring, 
+	 * until the cache is at 15/16 of its size. Only one thread prunes 
+	 * at a time; others simply go on. 
+	 */
+	private static void pruneIfFull()
+	{
+		final int maxEntries = Math.max(1, SystemGlobals.getIntValue(ConfigKeys.CLICKSTREAM_DNS_CACHE_SIZE));
+		
+		if (VERDICTS.size() <= maxEntries || !PRUNE_LOCK.tryLock()) {
+			return;
+		}
+		
+		try {
+			final long now = System.currentTimeMillis();
+			final List<Map.Entry<String, Verdict>> candidates = new ArrayList<Map.Entry<String, Verdict>>(VERDICTS.size());
+			
+			for (final Iterator<Map.Entry<String, Verdict>> iter = VERDICTS.entrySet().iterator(); iter.hasNext(); ) {
+				final Map.Entry<String, Verdict> entry = iter.next();
+				
+				if (entry.getValue().expiresAt <= now) {
+					VERDICTS.remove(entry.getKey(), entry.getValue());
+				}
+				else {
+					candidates.add(entry);
+				}
+			}
+			
+			int excess = VERDICTS.size() - (maxEntries - (maxEntries >> 4));
+			
+			if (excess <= 0) {
+				return;
+			}
+			
+			Collections.sort(candidates, FIRST_TO_EXPIRE);
+			
+			for (int i = 0; i < candidates.size() && excess > 0; i++) {
+				final Map.Entry<String, Verdict> entry = candidates.get(i);
+				
+				if (VERDICTS.remove(entry.getKey(), entry.getValue())) {
+					excess--;
+				}
+			}
+		}
+		finally {
+			PRUNE_LOCK.unlock();
+		}
+	}
+	
+	private static long negativeTtl()
+	{
+		return SystemGlobals.getIntValue(ConfigKeys.CLICKSTREAM_DNS_CACHE_NEGATIVE_TTL) * 1000L;
+	}
+	
+	/**
+	 * Discards all verdicts, so the addresses are resolved again
+	 */
+	public static void clear()
+	{
+		VERDICTS.clear();
+	}
+	
+	private static synchronized ThreadPoolExecutor executor(final int threads)
+	{
+		if (executor == null) {
+			executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, 
+				new LinkedBlockingQueue<Runnable>(1000), new ThreadFactory() {
+					private final AtomicInteger counter = new AtomicInteger();
+					
+					public Thread newThread(final Runnable runnable)
+					{
+						final Thread thread = new Thread(runnable, "BotHostCache-" + this.counter.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			
+			executor.allowCoreThreadTimeOut(true);
+		}
+		
+		return executor;
+	}
+	
+	private static class Verdict
+	{
+		final String botHost;
+		final long expiresAt;
+		
+		Verdict(final String botHost, final long expiresAt)
+		{
+			this.botHost = botHost;
+			this.expiresAt = expiresAt;
+		}
+	}
+	
+	private static class Lookup implements Runnable
+	{
+		private final String address;
+		private final MultiPatternMatcher hosts;
+		
+		Lookup(final String address, final MultiPatternMatcher hosts)
+		{
+			this.address = address;
+			this.hosts = hosts;
+		}
+		
+		public void run()
+		{
+			String botHost = null;
+			
+			try {
+				final String host = InetAddress.getByName(this.address).getCanonicalHostName();
+				
+				// When there is no name, the address itself is returned
+				if (host != null && !host.equals(this.address) && this.hosts.find(host) != null) {
+					botHost = host.toLowerCase(Locale.ENGLISH);
+				}
+			}
+			catch (UnknownHostException e) {
+				LOGGER.debug("Could not resolve " + this.address + ": " + e);
+			}
+			catch (SecurityException e) {
+				LOGGER.debug("Could not resolve " + this.address + ": " + e);
+			}
+			
+			resolved(this.address, botHost);
+		}
+	}
+}
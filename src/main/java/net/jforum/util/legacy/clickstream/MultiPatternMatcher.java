@@ -0,0 +1,266 @@
+package net.jforum.util.legacy.clickstream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds which of a set of patterns occurs in a text, in a single pass 
+ * over the text no matter how many patterns there are. 
+ * <p>
+ * This is an Aho-Corasick automaton: the patterns are stored in a trie, 
+ * and each state knows the longest proper suffix of it that is also 
+ * in the trie, which is where the search continues after a mismatch. 
+ * Matching is case insensitive and the instances are immutable, 
+ * so they can be shared by all request threads. 
+ * </p>
+ * 
+ * @version $Id$
+ */
+public final class MultiPatternMatcher
+{
+	private static final char[] NO_CHARS = new char[0];
+	private static final int[] NO_STATES = new int[0];
+	
+	/** The characters leaving each state, sorted */
+	private final char[][] labels;
+	
+	/** The state reached for each character in {@link #labels} */
+	private final int[][] targets;
+	
+	/** Where to continue after a mismatch */
+	private final int[] failures;
+	
+	/** The index of the pattern ending in each state, or in any of its suffixes, or -1 */
+	private final int[] outputs;
+	
+	private final String[] patterns;
+	
+	/**
+	 * @param patterns The patterns to look for. <code>null</code> and empty ones are ignored
+	 */
+	public MultiPatternMatcher(final List<String> patterns)
+	{
+		final List<String> accepted = new ArrayList<String>(patterns.size());
+		
+		for (final Iterator<String> iter = patterns.iterator(); iter.hasNext(); ) {
+			final String pattern = iter.next();
+			
+			if (pattern != null && pattern.length() > 0) {
+				accepted.add(pattern.toLowerCase(Locale.ENGLISH));
+			}
+		}
+		
+		this.patterns = accepted.toArray(new String[accepted.size()]);
+		
+		final Builder builder = new Builder();
+		
+		for (int i = 0; i < this.patterns.length; i++) {
+			builder.add(this.patterns[i], i);
+		}
+		
+		final int size = builder.size();
+		
+		this.labels = new char[size][];
+		this.targets = new int[size][];
+		this.failures = new int[size];
+		this.outputs = builder.outputs(size);
+		
+		for (int state = 0; state < size; state++) {
+			this.labels[state] = builder.labels(state);
+			this.targets[state] = builder.targets(state);
+		}
+		
+		this.computeFailures(size);
+	}
+	
+	/**
+	 * Builds the failure links in breadth first order, so the links 
+	 * of shorter prefixes are always known when they are needed
+	 */
+	private void computeFailures(final int size)
+	{
+		final int[] queue = new int[size];
+		int head = 0;
+		int tail = 0;
+		
+		for (int i = 0; i < this.targets[0].length; i++) {
+			final int child = this.targets[0][i];
+			this.failures[child] = 0;
+			queue[tail++] = child;
+		}
+		
+		while (head < tail) {
+			final int state = queue[head++];
+			
+			for (int i = 0; i < this.targets[state].length; i++) {
+				final char c = this.labels[state][i];
+				final int child = this.targets[state][i];
+				
+				int fallback = this.failures[state];
+				int next;
+				
+				while ((next = this.next(fallback, c)) == -1 && fallback != 0) {
+					fallback = this.failures[fallback];
+				}
+				
+				this.failures[child] = next == -1 || next == child ? 0 : next;
+				
+				if (this.outputs[child] == -1) {
+					this.outputs[child] = this.outputs[this.failures[child]];
+				}
+				
+				queue[tail++] = child;
+			}
+		}
+	}
+	
+	private int next(final int state, final char c)
+	{
+		final int index = Arrays.binarySearch(this.labels[state], c);
+		return index < 0 ? -1 : this.targets[state][index];
+	}
+	
+	/**
+	 * Searches the text for any of the patterns
+	 * 
+	 * @param text The text to search
+	 * @return The first pattern found in the text, or <code>null</code> if there is none
+	 */
+	public String find(final String text)
+	{
+		if (text == null || this.patterns.length == 0) {
+			return null;
+		}
+		
+		int state = 0;
+		
+		for (int i = 0; i < text.length(); i++) {
+			final char c = Character.toLowerCase(text.charAt(i));
+			int next;
+			
+			while ((next = this.next(state, c)) == -1 && state != 0) {
+				state = this.failures[state];
+			}
+			
+			state = next == -1 ? 0 : next;
+			
+			if (this.outputs[state] != -1) {
+				return this.patterns[this.outputs[state]];
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @return The number of patterns in this matcher
+	 */
+	public int size()
+	{
+		return this.patterns.length;
+	}
+	
+	/**
+	 * The trie under construction, with growable per state lists
+	 */
+	private static class Builder
+	{
+		private final List<StringBuilder> labels = new ArrayList<StringBuilder>();
+		private final List<List<Integer>> targets = new ArrayList<List<Integer>>();
+		private final List<Integer> outputs = new ArrayList<Integer>();
+		
+		Builder()
+		{
+			this.newState();
+		}
+		
+		private int newState()
+		{
+			this.labels.add(new StringBuilder());
+			this.targets.add(new ArrayList<Integer>());
+			this.outputs.add(Integer.valueOf(-1));
+			return this.outputs.size() - 1;
+		}
+		
+		void add(final String pattern, final int index)
+		{
+			int state = 0;
+			
+			for (int i = 0; i < pattern.length(); i++) {
+				final char c = pattern.charAt(i);
+				final int position = this.labels.get(state).indexOf(String.valueOf(c));
+				
+				if (position == -1) {
+					final int child = this.newState();
+					this.labels.get(state).append(c);
+					this.targets.get(state).add(Integer.valueOf(child));
+					state = child;
+				}
+				else {
+					state = this.targets.get(state).get(position).intValue();
+				}
+			}
+			
+			// With duplicated patterns, the first one wins
+			if (this.outputs.get(state).intValue() == -1) {
+				this.outputs.set(state, Integer.valueOf(index));
+			}
+		}
+		
+		int size()
+		{
+			return this.outputs.size();
+		}
+		
+		int[] outputs(final int size)
+		{
+			final int[] result = new int[size];
+			
+			for (int i = 0; i < size; i++) {
+				result[i] = this.outputs.get(i).intValue();
+			}
+			
+			return result;
+		}
+		
+		/**
+		 * @return the labels of the state, sorted for binary search
+		 */
+		char[] labels(final int state)
+		{
+			final String s = this.labels.get(state).toString();
+			
+			if (s.length() == 0) {
+				return NO_CHARS;
+			}
+			
+			final char[] result = s.toCharArray();
+			Arrays.sort(result);
+			return result;
+		}
+		
+		/**
+		 * @return the targets of the state, in the same order as {@link #labels(int)}
+		 */
+		int[] targets(final int state)
+		{
+			final String s = this.labels.get(state).toString();
+			
+			if (s.length() == 0) {
+				return NO_STATES;
+			}
+			
+			final char[] sorted = this.labels(state);
+			final int[] result = new int[sorted.length];
+			
+			for (int i = 0; i < sorted.length; i++) {
+				result[i] = this.targets.get(state).get(s.indexOf(sorted[i])).intValue();
+			}
+			
+			return result;
+		}
+	}
+}
@@ -3,6 +3,8 @@ package net.jforum.util.legacy.clickstream.config;
 import java.util.ArrayList;
 import java.util.List;
 
+import net.jforum.util.legacy.clickstream.MultiPatternMatcher;
+
 /**
  * Clickstream configuration data.
  *
@@ -13,13 +15,17 @@ import java.util.List;
 public class ClickstreamConfig {
     private transient final List<String> botAgents = new ArrayList<String>();
     private transient final List<String> botHosts = new ArrayList<String>();
+    private transient volatile MultiPatternMatcher agentMatcher;
+    private transient volatile MultiPatternMatcher hostMatcher;
 
-    public void addBotAgent(final String agent) {
+    public synchronized void addBotAgent(final String agent) {
         botAgents.add(agent);
+        agentMatcher = null;
     }
 
-    public void addBotHost(final String host) {
+    public synchronized void addBotHost(final String host) {
         botHosts.add(host);
+        hostMatcher = null;
     }
 
     public List<String> getBotAgents() {
@@ -29,4 +35,44 @@ public class ClickstreamConfig {
     public List<String> getBotHosts() {
         return botHosts;
     }
+
+    /**
+     * @return a matcher compiled from the bot agents
+     */
+    public MultiPatternMatcher getAgentMatcher() {
+        MultiPatternMatcher matcher = agentMatcher;
+
+        if (matcher == null) {
+            synchronized (this) {
+                matcher = agentMatcher;
+
+                if (matcher == null) {
+                    matcher = new MultiPatternMatcher(botAgents);
+                    agentMatcher = matcher;
+                }
+            }
+        }
+
+        return matcher;
+    }
+
+    /**
+     * @return a matcher compiled from the bot hosts
+     */
+    public MultiPatternMatcher getHostMatcher() {
+        MultiPatternMatcher matcher = hostMatcher;
+
+        if (matcher == null) {
+            synchronized (this) {
+                matcher = hostMatcher;
+
+                if (matcher == null) {
+                    matcher = new MultiPatternMatcher(botHosts);
+                    hostMatcher = matcher;
+                }
+            }
+        }
+
+        return matcher;
+    }
 }
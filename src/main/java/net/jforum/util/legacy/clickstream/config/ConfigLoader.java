@@ -28,7 +28,7 @@ public class ConfigLoader
 {
 	private static final Logger LOGGER = Logger.getLogger(ConfigLoader.class);
 
-	private transient ClickstreamConfig config;
+	private transient volatile ClickstreamConfig config;
 
 	private static ConfigLoader instance = new ConfigLoader();;
 
@@ -46,7 +46,11 @@ public class ConfigLoader
 		}
 
 		synchronized (instance) {
-			this.config = new ClickstreamConfig();
+			if (this.config != null) {
+				return this.config;
+			}
+			
+			final ClickstreamConfig loading = new ClickstreamConfig();
 	
 			try {
 				final SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
@@ -61,13 +65,13 @@ public class ConfigLoader
 					final File fileInput = new File(path);
 					
 					if (fileInput.exists()) {
-						parser.parse(fileInput, new ConfigHandler());
+						parser.parse(fileInput, new ConfigHandler(loading));
 					}
 					else {
-						parser.parse(new InputSource(path), new ConfigHandler());
+						parser.parse(new InputSource(path), new ConfigHandler(loading));
 					}
 				}
-				return config;
+				return loading;
 			}
 			catch (SAXException e) {
 				LOGGER.error("Could not parse clickstream XML", e);
@@ -80,15 +84,27 @@ public class ConfigLoader
 			catch (ParserConfigurationException e) {
 				LOGGER.fatal("Could not obtain SAX parser", e);
 				throw new ConfigLoadException(e.getMessage());				
-			}						
+			}
+			finally {
+				// Only published when loaded, as other threads read it without locking
+				this.config = loading;
+			}
 		}
 	}
 
 	/**
 	 * SAX Handler implementation for handling tags in config file and building config objects.
 	 */
-	private class ConfigHandler extends DefaultHandler
+	private static class ConfigHandler extends DefaultHandler
 	{
+		private final transient ClickstreamConfig config;
+		
+		ConfigHandler(final ClickstreamConfig config)
+		{
+			super();
+			this.config = config;
+		}
+		
 		public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) throws SAXException
 		{
 			if ("bot-host".equals(qName)) {
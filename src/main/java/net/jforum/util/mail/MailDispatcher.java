@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 7:32:51 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.util.mail;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Sends emails in background. 
+ * <p>
+ * Messages are queued in a bounded queue of {@link ConfigKeys#MAIL_DISPATCH_QUEUE_SIZE}
+ * entries and consumed by {@link ConfigKeys#MAIL_DISPATCH_THREADS} workers. Each worker
+ * keeps its own SMTP connection open between messages, so a burst of notifications
+ * does not pay a connection and authentication handshake for each one. 
+ * </p>
+ * 
+ * @version $Id$
+ */
+public final class MailDispatcher
+{
+	private static final Logger LOGGER = Logger.getLogger(MailDispatcher.class);
+	
+	private static final ThreadLocal<SmtpConnection> CONNECTIONS = new ThreadLocal<SmtpConnection>() {
+		protected SmtpConnection initialValue()
+		{
+			return new SmtpConnection();
+		}
+	};
+	
+	private static final AtomicLong QUEUED = new AtomicLong();
+	private static final AtomicLong REJECTED = new AtomicLong();
+	private static final AtomicLong SENT = new AtomicLong();
+	private static final AtomicLong FAILED = new AtomicLong();
+	private static final AtomicLong RETRIED = new AtomicLong();
+	
+	private static ThreadPoolExecutor executor;
+	private static long startTime;
+	
+	private MailDispatcher() {}
+	
+	private static synchronized ThreadPoolExecutor executor()
+	{
+		if (executor == null || executor.isShutdown()) {
+			final int threads = Math.max(1, SystemGlobals.getIntValue(ConfigKeys.MAIL_DISPATCH_THREADS));
+			final int queueSize = Math.max(1, SystemGlobals.getIntValue(ConfigKeys.MAIL_DISPATCH_QUEUE_SIZE));
+			
+			executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, 
+				new LinkedBlockingQueue<Runnable>(queueSize), new DispatcherThreadFactory());
+			startTime = System.currentTimeMillis();
+			
+			LOGGER.info("Mail dispatcher started with " + threads + " connections");
+		}
+		
+		return executor;
+	}
+	
+	/**
+	 * Queues a message to be sent
+	 * 
+	 * @param spammer The message to send
+	 * @return <code>false</code> if the queue is full and the message was dropped
+	 */
+	public static boolean dispatch(final Spammer spammer)
+	{
+		try {
+			executor().execute(new Runnable() {
+				public void run()
+				{
+					send(spammer);
+				}
+			});
+			
+			QUEUED.incrementAndGet();
+			return true;
+		}
+		catch (RejectedExecutionException e) {
+			REJECTED.incrementAndGet();
+			LOGGER.error("Mail queue is full, discarding message. " + statistics());
+			return false;
+		}
+	}
+	
+	private static void send(final Spammer spammer)
+	{
+		try {
+			spammer.dispatchMessages(CONNECTIONS.get());
+		}
+		catch (Exception e) {
+			LOGGER.error("Error while dispatching the message. " + e, e);
+		}
+	}
+	
+	/**
+	 * Stops accepting new messages and waits for the queued ones to be sent
+	 * 
+	 * @param timeout The maximum time to wait, in milliseconds
+	 */
+	public static synchronized void stop(final long timeout)
+	{
+		if (executor == null) {
+			return;
+		}
+		
+		executor.shutdown();
+		
+		try {
+			if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+				LOGGER.warn("Mail dispatcher stopped with " + executor.getQueue().size() + " messages not sent");
+				executor.shutdownNow();
+			}
+		}
+		catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		
+		executor = null;
+	}
+	
+	static void messagesSent(final int count)
+	{
+		SENT.addAndGet(count);
+	}
+	
+	static void messagesFailed(final int count)
+	{
+		FAILED.addAndGet(count);
+	}
+	
+	static void messageRetried()
+	{
+		RETRIED.incrementAndGet();
+	}
+	
+	/**
+	 * @return The number of messages waiting in the queue
+	 */
+	public static synchronized int getQueueDepth()
+	{
+		return executor == null ? 0 : executor.getQueue().size();
+	}
+	
+	/**
+	 * @return The number of messages accepted in the queue
+	 */
+	public static long getQueuedCount()
+	{
+		return QUEUED.get();
+	}
+	
+	/**
+	 * @return The number of messages discarded because the queue was full
+	 */
+	public static long getRejectedCount()
+	{
+		return REJECTED.get();
+	}
+	
+	/**
+	 * @return The number of emails accepted by the SMTP server, one per recipient
+	 */
+	public static long getSentCount()
+	{
+		return SENT.get();
+	}
+	
+	/**
+	 * @return The number of emails that could not be delivered, one per recipient
+	 */
+	public static long getFailedCount()
+	{
+		return FAILED.get();
+	}
+	
+	/**
+	 * @return The number of times a delivery was retried
+	 */
+	public static long getRetryCount()
+	{
+		return RETRIED.get();
+	}
+	
+	/**
+	 * @return The average number of emails sent per second since the dispatcher started
+	 */
+	public static synchronized double getThroughput()
+	{
+		if (executor == null) {
+			return 0;
+		}
+		
+		final long elapsed = System.currentTimeMillis() - startTime;
+		return elapsed <= 0 ? 0 : SENT.get() * 1000.0 / elapsed;
+	}
+	
+	private static String statistics()
+	{
+		return new StringBuilder(128)
+			.append("queued=").append(getQueuedCount())
+			.append(", depth=").append(getQueueDepth())
+			.append(", rejected=").append(getRejectedCount())
+			.append(", sent=").append(getSentCount())
+			.append(", failed=").append(getFailedCount())
+			.append(", retried=").append(getRetryCount())
+			.toString();
+	}
+	
+	/**
+	 * Creates daemon workers that close their SMTP connection when they finish
+	 */
+	private static class DispatcherThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger counter = new AtomicInteger();
+		
+		public Thread newThread(final Runnable runnable)
+		{
+			final Thread thread = new Thread(new Runnable() {
+				public void run()
+				{
+					try {
+						runnable.run();
+					}
+					finally {
+						CONNECTIONS.get().close();
+						CONNECTIONS.remove();
+					}
+				}
+			}, "MailDispatcher-" + this.counter.incrementAndGet());
+			
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
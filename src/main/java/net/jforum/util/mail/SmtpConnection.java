@@ -36,30 +36,74 @@
  * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
  * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
  * 
- * Created on 03/03/2004 - 21:25:09
+ * Created on Oct 18, 2026 7:15:08 PM
  * The JForum Project
  * http://www.jforum.net
  */
 package net.jforum.util.mail;
 
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+
+import org.apache.log4j.Logger;
+
 /**
- * @author Rafael Steil
+ * A SMTP connection that is kept open between messages and
+ * transparently reopened when the server drops it.
+ * 
  * @version $Id$
  */
-public class EmailSenderTask implements Runnable
+class SmtpConnection
 {
-	private final transient Spammer spammer;
-
-	public EmailSenderTask(final Spammer spammer)
+	private static final Logger LOGGER = Logger.getLogger(SmtpConnection.class);
+	
+	private Transport transport;
+	private boolean verified;
+	
+	/**
+	 * Gets a connected transport, opening a new one if necessary.
+	 * 
+	 * @param spammer The spammer whose settings are used to connect
+	 * @return The transport, or <code>null</code> if the connection is not possible 
+	 * with the current settings
+	 * @throws MessagingException
+	 */
+	Transport transport(final Spammer spammer) throws MessagingException
 	{
-		this.spammer = spammer;
+		if (this.transport != null && !this.verified && !this.transport.isConnected()) {
+			this.close();
+		}
+		
+		if (this.transport == null) {
+			this.transport = spammer.openTransport();
+		}
+		
+		this.verified = true;
+		return this.transport;
 	}
-
+	
 	/**
-	 * @see java.lang.Runnable#run()
+	 * Marks the connection as possibly stale, so it is checked
+	 * before being used for the next message.
 	 */
-	public void run()
+	void release()
+	{
+		this.verified = false;
+	}
+	
+	void close()
 	{
-		this.spammer.dispatchMessages();
+		if (this.transport != null) {
+			try {
+				this.transport.close();
+			}
+			catch (Exception e) {
+				LOGGER.warn("Error while closing the SMTP connection: " + e);
+			}
+			
+			this.transport = null;
+		}
+		
+		this.verified = false;
 	}
 }
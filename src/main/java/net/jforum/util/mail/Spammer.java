@@ -53,6 +53,7 @@ import java.util.Properties;
 import javax.mail.Address;
 import javax.mail.Message;
 import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
 import javax.mail.Session;
 import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
@@ -95,6 +96,7 @@ public class Spammer
 	private String messageId;
 	private String inReplyTo;
 	private boolean needCustomization;
+	private boolean retryOnFailure = true;
 	private SimpleHash templateParams;
 	private Template template;
 	
@@ -132,85 +134,183 @@ public class Spammer
 		this.session = Session.getInstance(mailProps);
 	}
 
+	/**
+	 * Sends the message to all users, using a connection of its own.
+	 * 
+	 * @return true
+	 * @throws MailException if the message could not be sent
+	 */
 	public boolean dispatchMessages()
 	{
-        try
-        {
-            int sendDelay = SystemGlobals.getIntValue(ConfigKeys.MAIL_SMTP_DELAY);
-            
-			if (SystemGlobals.getBoolValue(ConfigKeys.MAIL_SMTP_AUTH)) {
-				if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(password)) {
-                	boolean ssl = SystemGlobals.getBoolValue(ConfigKeys.MAIL_SMTP_SSL);
-
-                    Transport transport = this.session.getTransport(ssl ? "smtps" : "smtp");
-                    
-                    try {
-	                    String host = SystemGlobals.getValue(ConfigKeys.MAIL_SMTP_HOST);
-
-	                    transport.connect(host, username, password);
+		final SmtpConnection connection = new SmtpConnection();
+		
+		try {
+			this.dispatchMessages(connection);
+		}
+		catch (MessagingException e) {
+			LOGGER.error("Error while dispatching the message. " + e, e);
+			throw new MailException(e);
+		}
+		finally {
+			connection.close();
+		}
+		
+		return true;
+	}
 	
-	                    if (transport.isConnected()) {
-	                        for (Iterator<User> userIter = this.users.iterator(); userIter.hasNext(); ) {
-	                        	User user = userIter.next();
-	                        	
-	                        	if (this.needCustomization) {
-	                        		this.defineUserMessage(user);
-	                        	}
-	                        	
-	                        	if (StringUtils.isNotEmpty(user.getEmail())) {
-	                        		Address address = new InternetAddress(user.getEmail());	                        	
-	                        		LOGGER.debug("Sending mail to: " + user.getEmail());	                        	
-	                        		this.message.setRecipient(Message.RecipientType.TO, address);	                            
-	                        		transport.sendMessage(this.message, new Address[] { address });
-	                        	}
-	                        	if (sendDelay > 0) {
-		                        	try {
-		                            	Thread.sleep(sendDelay);
-		                            } 
-		                        	catch (InterruptedException ie) {
-		                            	LOGGER.error("Error while Thread.sleep." + ie, ie);
-		                            }
-	                        	}
-	                        }
-	                    }
-                    }
-                    catch (Exception e) {
-                    	throw new MailException(e);
-                    }
-                    finally {
-                    	try { transport.close(); } catch (Exception e) { LOGGER.error(e); }
-                    }
-                }
-            }
-            else {
-            	for (Iterator<User> iter = this.users.iterator(); iter.hasNext();) {
-                	User user = iter.next();
-                	
-                	if (this.needCustomization) {
-                		this.defineUserMessage(user);
-                	}
-                	
-                	if (StringUtils.isNotEmpty(user.getEmail())) {
-                		Address address = new InternetAddress(user.getEmail());
-                		LOGGER.debug("Sending mail to: " + user.getEmail());
-                		this.message.setRecipient(Message.RecipientType.TO,address);
-                		Transport.send(this.message, new Address[] { address });
-                	}
-                    if (sendDelay > 0) {
-	                    try {
-	                    	Thread.sleep(sendDelay);
-	                    } catch (InterruptedException ie) {
-	                    	LOGGER.error("Error while Thread.sleep." + ie, ie);
-	                    }
-                    }
-                }
-            }
-        }
-        catch (MessagingException e) {
-            LOGGER.error("Error while dispatching the message. " + e, e);
-        }
-
-        return true;
+	/**
+	 * Sends the message to all users through the given connection.
+	 * When the message is the same for every user, recipients are 
+	 * grouped in chunks of {@link ConfigKeys#MAIL_BATCH_SIZE} addresses,
+	 * each chunk being sent in a single SMTP transaction. 
+	 * 
+	 * @param connection The connection to use. It is left open
+	 * @throws MessagingException if some chunk could not be sent after all retries
+	 */
+	void dispatchMessages(final SmtpConnection connection) throws MessagingException
+	{
+		final int sendDelay = SystemGlobals.getIntValue(ConfigKeys.MAIL_SMTP_DELAY);
+		final int batchSize = this.needCustomization 
+			? 1 
+			: Math.max(1, SystemGlobals.getIntValue(ConfigKeys.MAIL_BATCH_SIZE));
+		
+		final List<Address> chunk = new ArrayList<Address>(batchSize);
+		
+		try {
+			for (Iterator<User> userIter = this.users.iterator(); userIter.hasNext(); ) {
+				User user = userIter.next();
+				
+				if (StringUtils.isEmpty(user.getEmail())) {
+					continue;
+				}
+				
+				if (this.needCustomization) {
+					this.defineUserMessage(user);
+				}
+				
+				LOGGER.debug("Sending mail to: " + user.getEmail());
+				chunk.add(new InternetAddress(user.getEmail()));
+				
+				if (chunk.size() >= batchSize) {
+					this.sendChunk(connection, chunk);
+					chunk.clear();
+					this.sleep(sendDelay);
+				}
+			}
+			
+			if (!chunk.isEmpty()) {
+				this.sendChunk(connection, chunk);
+			}
+		}
+		finally {
+			connection.release();
+		}
+	}
+	
+	/**
+	 * Sends the message to a set of recipients, retrying with 
+	 * exponential backoff when the server fails. 
+	 * 
+	 * @param connection The connection to use
+	 * @param chunk The recipients
+	 * @throws MessagingException if the message could not be sent after all retries
+	 */
+	private void sendChunk(final SmtpConnection connection, final List<Address> chunk) throws MessagingException
+	{
+		final Address[] addresses = chunk.toArray(new Address[chunk.size()]);
+		
+		if (addresses.length == 1) {
+			this.message.setRecipient(Message.RecipientType.TO, addresses[0]);
+		}
+		else {
+			// Recipients go in the envelope only, like blind copies
+			this.message.setRecipient(Message.RecipientType.TO, 
+				new InternetAddress(SystemGlobals.getValue(ConfigKeys.MAIL_SENDER)));
+		}
+		
+		this.message.saveChanges();
+		
+		final int retries = this.retryOnFailure ? SystemGlobals.getIntValue(ConfigKeys.MAIL_RETRY_COUNT) : 0;
+		long delay = SystemGlobals.getIntValue(ConfigKeys.MAIL_RETRY_DELAY);
+		
+		for (int attempt = 0; ; attempt++) {
+			try {
+				final Transport transport = connection.transport(this);
+				
+				if (transport == null) {
+					return;
+				}
+				
+				transport.sendMessage(this.message, addresses);
+				MailDispatcher.messagesSent(addresses.length);
+				return;
+			}
+			catch (SendFailedException e) {
+				// Invalid addresses won't get any better by trying again
+				final Address[] sent = e.getValidSentAddresses();
+				final int sentCount = sent == null ? 0 : sent.length;
+				
+				MailDispatcher.messagesSent(sentCount);
+				MailDispatcher.messagesFailed(addresses.length - sentCount);
+				LOGGER.warn("Some recipients were rejected: " + e);
+				return;
+			}
+			catch (MessagingException e) {
+				connection.close();
+				
+				if (attempt >= retries) {
+					MailDispatcher.messagesFailed(addresses.length);
+					throw e;
+				}
+				
+				LOGGER.warn("Error while sending mail, retrying in " + delay + " ms: " + e);
+				MailDispatcher.messageRetried();
+				this.sleep(delay);
+				delay *= 2;
+			}
+		}
+	}
+	
+	private void sleep(final long delay)
+	{
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay);
+			}
+			catch (InterruptedException ie) {
+				LOGGER.error("Error while Thread.sleep." + ie, ie);
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Opens a new connection to the SMTP server
+	 * 
+	 * @return The connected transport, or <code>null</code> if SMTP
+	 * authentication is enabled but no username or password were set
+	 * @throws MessagingException
+	 */
+	Transport openTransport() throws MessagingException
+	{
+		final boolean auth = SystemGlobals.getBoolValue(ConfigKeys.MAIL_SMTP_AUTH);
+		
+		if (auth && (StringUtils.isEmpty(username) || StringUtils.isEmpty(password))) {
+			LOGGER.warn("SMTP authentication is enabled, but no username or password is set");
+			return null;
+		}
+		
+		final boolean ssl = SystemGlobals.getBoolValue(ConfigKeys.MAIL_SMTP_SSL);
+		final Transport transport = this.session.getTransport(ssl ? "smtps" : "smtp");
+		
+		if (auth) {
+			transport.connect(SystemGlobals.getValue(ConfigKeys.MAIL_SMTP_HOST), username, password);
+		}
+		else {
+			transport.connect();
+		}
+		
+		return transport;
 	}
 
 	private void defineUserMessage(final User user)
@@ -364,6 +464,15 @@ public class Spammer
 		this.inReplyTo = inReplyTo;
 	}
 	
+	/**
+	 * @param retryOnFailure If <code>false</code>, the first failure to send
+	 * the message is reported right away, without trying again
+	 */
+	protected void setRetryOnFailure(final boolean retryOnFailure)
+	{
+		this.retryOnFailure = retryOnFailure;
+	}
+	
 	protected void setUsers(final List<User> users)
 	{
 		this.users = users;
@@ -93,6 +93,7 @@ public final class ConfigKeys
 	
 	public static final String AUTHENTICATION_TYPE = "authentication.type";
 	public static final String SSO_IMPLEMENTATION = "sso.implementation";
+	public static final String SSO_SESSION_VALIDATION_CACHE = "sso.session.validation.cache";
 	public static final String LOGIN_AUTHENTICATOR = "login.authenticator";
 	public static final String LOGIN_AUTHENTICATOR_INSTANCE = "login.authenticator.instance";
 	public static final String TYPE_DEFAULT = "default";
@@ -125,11 +126,15 @@ public final class ConfigKeys
 	public static final String ANONYMOUS_USER_ID = "anonymous.userId";
 	public static final String DEFAULT_USER_GROUP = "defaultUserGroup";
 	public static final String USER_HASH_SEQUENCE = "user.hash.sequence";
-	public static final String TOPICS_READ_TIME = "topics.tracking";
-	public static final String TOPICS_READ_TIME_BY_FORUM = "topics.tracking.byforum";
+	public static final String TOPICS_READ_STATE = "topics.tracking";
 	
 	public static final String TOPIC_CACHE_ENABLED = "topic.cache.enabled";
 	public static final String TOPIC_CACHE_SIZE = "topic.cache.size";
+	public static final String TOPIC_VIEWS_FLUSH_INTERVAL = "topic.views.flush.interval";
+	public static final String BOARD_STATS_RECONCILE_INTERVAL = "board.stats.reconcile.interval";
+	public static final String SESSIONS_ONLINE_SNAPSHOT_INTERVAL = "sessions.online.snapshot.interval";
+	public static final String SESSIONS_FLUSH_INTERVAL = "sessions.flush.interval";
+	public static final String SESSIONS_FLUSH_BATCH_SIZE = "sessions.flush.batch.size";
 	public static final String SECURITY_CACHE_ENABLED = "security.cache.enabled";
 
 	public static final String VERSION = "version";
@@ -158,6 +163,12 @@ public final class ConfigKeys
 	public static final String HOTTEST_TOPICS = "topic.hottest";
 	public static final String POSTS_CACHE_SIZE = "posts.cache.size";
 	public static final String POSTS_CACHE_ENABLED = "posts.cache.enabled";
+	public static final String POSTS_RENDERED_CACHE_BYTES = "posts.rendered.cache.bytes";
+	public static final String PAGE_CACHE_ENABLED = "page.cache.enabled";
+	public static final String PAGE_CACHE_ACTIONS = "page.cache.actions";
+	public static final String PAGE_CACHE_TTL = "page.cache.ttl";
+	public static final String PAGE_CACHE_GZIP = "page.cache.gzip";
+	public static final String PAGE_CACHE_RENDER_WAIT = "page.cache.render.wait";
 	public static final String TOP_DOWNLOADS = "top.downloads";
 
 	public static final String CAPTCHA_IGNORE_CASE = "captcha.ignore.case";
@@ -207,6 +218,11 @@ public final class ConfigKeys
 	public static final String MAIL_SMTP_USERNAME = "mail.smtp.username";
 	public static final String MAIL_SMTP_PASSWORD = "mail.smtp.password";
 	public static final String MAIL_SMTP_DELAY = "mail.smtp.delay";
+	public static final String MAIL_DISPATCH_THREADS = "mail.dispatch.threads";
+	public static final String MAIL_DISPATCH_QUEUE_SIZE = "mail.dispatch.queue.size";
+	public static final String MAIL_BATCH_SIZE = "mail.batch.size";
+	public static final String MAIL_RETRY_COUNT = "mail.retry.count";
+	public static final String MAIL_RETRY_DELAY = "mail.retry.delay";
 	
 	public static final String MAIL_USER_EMAIL_AUTH = "mail.user.email.auth";
 	public static final String MAIL_ACTIVATION_KEY_MESSAGE_FILE = "mail.activationKey.messageFile";
@@ -235,16 +251,26 @@ public final class ConfigKeys
 	public static final String JBOSS_CACHE_PROPERTIES = "jboss.cache.properties";
 	public static final String EHCACHE_CACHE_PROPERTIES = "ehcache.cache.properties";
 	public static final String CACHE_IMPLEMENTATION = "cache.engine.implementation";
+	public static final String CACHE_CONCURRENT_MAX_ENTRIES = "cache.concurrent.max.entries";
+	public static final String CACHE_CONCURRENT_TTL = "cache.concurrent.ttl";
+	public static final String CACHE_CONCURRENT_REGIONS = "cache.concurrent.regions";
 	
 	public static final String ATTACHMENTS_MAX_POST = "attachments.max.post";
 	public static final String ATTACHMENTS_IMAGES_CREATE_THUMB = "attachments.images.createthumb";
 	public static final String ATTACHMENTS_IMAGES_MAX_THUMB_W = "attachments.images.thumb.maxsize.w";
 	public static final String ATTACHMENTS_IMAGES_MAX_THUMB_H = "attachments.images.thumb.maxsize.h";
 	public static final String ATTACHMENTS_IMAGES_THUMB_BOX_SHOW = "attachments.images.thumb.box.show";
+	public static final String ATTACHMENTS_IMAGES_THUMB_THREADS = "attachments.images.thumb.threads";
+	public static final String ATTACHMENTS_IMAGES_THUMB_QUEUE_SIZE = "attachments.images.thumb.queue.size";
+	public static final String ATTACHMENTS_IMAGES_THUMB_PLACEHOLDER = "attachments.images.thumb.placeholder";
+	public static final String ATTACHMENTS_IMAGES_MEMORY_BUDGET = "attachments.images.memory.budget";
 	public static final String ATTACHMENTS_ICON = "attachments.icon";
 	public static final String ATTACHMENTS_STORE_DIR = "attachments.store.dir";
 	public static final String ATTACHMENTS_UPLOAD_DIR = "attachments.upload.dir";
 	public static final String ATTACHMENTS_ANONYMOUS = "attachments.anonymous";
+	public static final String ATTACHMENTS_DOWNLOADS_FLUSH_INTERVAL = "attachments.downloads.flush.interval";
+	public static final String ATTACHMENTS_DOWNLOAD_BUFFER_SIZE = "attachments.download.buffer.size";
+	public static final String ATTACHMENTS_DOWNLOAD_SENDFILE = "attachments.download.sendfile";
 	
 	public static final String AGREEMENT_SHOW = "agreement.show";
 	public static final String AGREEMENT_ACCEPTED = "agreement.accepted";
@@ -260,6 +286,7 @@ public final class ConfigKeys
 	public static final String SEARCH_INDEXER_IMPLEMENTATION = "search.indexer.implementation";
 	public static final String SEARCH_INDEXER_CRON_EXPRESSON = "indexer.cron.expression";
 	public static final String SEARCH_RESULT_LIMIT = "search.result.limit";
+	public static final String SEARCH_SNIPPET_CACHE_SIZE = "search.snippet.cache.size";
 	public static final String EXTENSION_FIELD = "extension.field";
 	
 	public static final String LDAP_SECURITY_PROTOCOL = "ldap.security.protocol";
@@ -274,6 +301,10 @@ public final class ConfigKeys
 	
 	public static final String CLICKSTREAM_CONFIG = "clickstream.config";
 	public static final String IS_BOT = "clickstream.is.bot";
+	public static final String CLICKSTREAM_DNS_CACHE_SIZE = "clickstream.dns.cache.size";
+	public static final String CLICKSTREAM_DNS_CACHE_TTL = "clickstream.dns.cache.ttl";
+	public static final String CLICKSTREAM_DNS_CACHE_NEGATIVE_TTL = "clickstream.dns.cache.negative.ttl";
+	public static final String CLICKSTREAM_DNS_THREADS = "clickstream.dns.threads";
 
 	public static final String POSTS_NEW_DELAY = "posts.new.delay";
 	public static final String LAST_POST_TIME = "last.post.time";
@@ -302,6 +333,14 @@ public final class ConfigKeys
 	public static final String LUCENE_CURRENTLY_INDEXING = "lucene.currently.indexing";
 	public static final String LUCENE_INDEXER_RAM_NUMDOCS = "lucene.indexer.ram.numdocs";
 	public static final String LUCENE_INDEXER_DB_FETCH_COUNT = "lucene.indexer.db.fetch.count";
+	public static final String LUCENE_INDEXER_NRT = "lucene.indexer.nrt";
+	public static final String LUCENE_NRT_REFRESH_INTERVAL = "lucene.nrt.refresh.interval";
+	public static final String LUCENE_NRT_COMMIT_INTERVAL = "lucene.nrt.commit.interval";
+	public static final String LUCENE_REINDEX_READER_THREADS = "lucene.reindex.reader.threads";
+	public static final String LUCENE_REINDEX_WRITER_THREADS = "lucene.reindex.writer.threads";
+	public static final String LUCENE_REINDEX_QUEUE_SIZE = "lucene.reindex.queue.size";
+	public static final String LUCENE_REINDEX_CHECKPOINT_INTERVAL = "lucene.reindex.checkpoint.interval";
+	public static final String LUCENE_REINDEX_RESUME = "lucene.reindex.resume";
 	
 	public static final String MODERATION_LOGGING_ENABLED = "moderation.logging.enabled";
 	public static final String PROXIED_CONTEXT_PATH = "proxied.context.path";
@@ -146,6 +146,7 @@ public final class TemplateKeys
 	public static final String CACHE_LIST = "cache.list";
 	public static final String CACHE_POST_MOREINFO = "cache.post.moreinfo";
 	public static final String CACHE_TOPICS_MOREINFO = "cache.topics.moreinfo";
+	public static final String CACHE_STATISTICS = "cache.statistics";
 
 	public static final String CATEGORY_LIST = "category.list";
 	public static final String CATEGORY_INSERT = "category.insert";
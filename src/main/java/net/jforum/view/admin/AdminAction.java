@@ -54,9 +54,8 @@ import net.jforum.SessionFacade;
 import net.jforum.api.integration.mail.pop.POPListener;
 import net.jforum.context.RequestContext;
 import net.jforum.context.ResponseContext;
-import net.jforum.dao.DataAccessDriver;
-import net.jforum.dao.ForumDAO;
 import net.jforum.entities.UserSession;
+import net.jforum.repository.BoardStatsRepository;
 import net.jforum.repository.ModulesRepository;
 import net.jforum.repository.SecurityRepository;
 import net.jforum.security.PermissionControl;
@@ -124,8 +123,7 @@ public class AdminAction extends Command {
 			this.context.put("installModuleExists", ModulesRepository.getModuleClass("install") != null);
 			this.context.put("sessions", SessionFacade.getAllSessions());
 			
-			ForumDAO dao = DataAccessDriver.getInstance().newForumDAO();
-			this.context.put("stats", dao.getBoardStatus());
+			this.context.put("stats", BoardStatsRepository.getBoardStatus());
 			
 			this.checkBoardVersion();
 		}
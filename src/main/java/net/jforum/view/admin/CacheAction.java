@@ -42,8 +42,12 @@
  */
 package net.jforum.view.admin;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
 
+import net.jforum.CommandRegistry;
 import net.jforum.SessionFacade;
 import net.jforum.dao.DataAccessDriver;
 import net.jforum.repository.BBCodeRepository;
@@ -54,6 +58,7 @@ import net.jforum.repository.RankingRepository;
 import net.jforum.repository.SecurityRepository;
 import net.jforum.repository.SmiliesRepository;
 import net.jforum.repository.TopicRepository;
+import net.jforum.sso.Authenticators;
 import net.jforum.util.bbcode.BBCodeHandler;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
@@ -152,4 +157,21 @@ public class CacheAction extends AdminCommand
 		PostRepository.clearCache(topicId);
 		this.postsMoreInfo();
 	}
+	
+	/**
+	 * Shows the call and latency counters of the actions of all modules,
+	 * and of the SSO and login authenticators
+	 */
+	public void statistics()
+	{
+		this.setTemplateName(TemplateKeys.CACHE_STATISTICS);
+		
+		this.context.put("actions", sorted(CommandRegistry.getStatistics()));
+		this.context.put("authenticators", sorted(Authenticators.getStatistics()));
+	}
+	
+	private static <T> Collection<Map.Entry<String, T>> sorted(final Map<String, T> statistics)
+	{
+		return new ArrayList<Map.Entry<String, T>>(new TreeMap<String, T>(statistics).entrySet());
+	}
 }
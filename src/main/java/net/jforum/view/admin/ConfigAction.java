@@ -57,6 +57,7 @@ import net.jforum.entities.Category;
 import net.jforum.entities.Forum;
 import net.jforum.exceptions.ForumException;
 import net.jforum.repository.ForumRepository;
+import net.jforum.repository.RenderedPostRepository;
 import net.jforum.repository.TopicRepository;
 import net.jforum.util.I18n;
 import net.jforum.util.preferences.ConfigKeys;
@@ -155,6 +156,9 @@ public class ConfigAction extends AdminCommand
 		SystemGlobals.saveInstallation();
 		I18n.changeBoardDefault(SystemGlobals.getValue(ConfigKeys.I18N_DEFAULT));
 		
+		// Smilies and links in posts may depend on the settings
+		RenderedPostRepository.clear();
+		
 		// If topicsPerPage has changed, force a reload in all forums
 		if (oldTopicsPerPage != SystemGlobals.getIntValue(ConfigKeys.TOPICS_PER_PAGE)) {
 			List<Category> categories = ForumRepository.getAllCategories();
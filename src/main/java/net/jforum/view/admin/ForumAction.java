@@ -54,6 +54,7 @@ import net.jforum.dao.TopicDAO;
 import net.jforum.entities.Category;
 import net.jforum.entities.Forum;
 import net.jforum.entities.MailIntegration;
+import net.jforum.repository.BoardStatsRepository;
 import net.jforum.repository.ForumRepository;
 import net.jforum.repository.RolesRepository;
 import net.jforum.repository.SecurityRepository;
@@ -254,6 +255,7 @@ public class ForumAction extends AdminCommand
 			
 			SecurityRepository.clean();
 			RolesRepository.clear();
+			BoardStatsRepository.requestReconcile();
 		}
 		
 		this.list();
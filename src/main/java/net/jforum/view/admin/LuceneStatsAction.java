@@ -56,6 +56,7 @@ import net.jforum.search.LuceneManager;
 import net.jforum.search.LuceneReindexArgs;
 import net.jforum.search.LuceneReindexer;
 import net.jforum.search.LuceneSettings;
+import net.jforum.search.SearchFacade;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
 import net.jforum.util.preferences.TemplateKeys;
@@ -98,6 +99,12 @@ public class LuceneStatsAction extends AdminCommand
 			this.context.put("indexExists", IndexReader.indexExists(FSDirectory.open(indexDir)));
 			this.context.put("currentlyIndexing", "1".equals(SystemGlobals.getValue(ConfigKeys.LUCENE_CURRENTLY_INDEXING)));
 			
+			LuceneReindexer reindexer = LuceneReindexer.current();
+			
+			if (reindexer != null) {
+				this.context.put("reindexer", reindexer);
+			}
+			
 			if (isInformationAvailable) {
 				this.context.put("isLocked", IndexWriter.isLocked(FSDirectory.open(indexDir)));
 				this.context.put("lastModified", new Date(FSDirectory.fileModified(indexDir, "segments.gen")));
@@ -120,8 +127,14 @@ public class LuceneStatsAction extends AdminCommand
 	
 	public void createIndexDirectory() throws Exception
 	{
-		this.settings().createIndexDirectory(
-			SystemGlobals.getValue(ConfigKeys.LUCENE_INDEX_WRITE_PATH));
+		if (SearchFacade.manager() instanceof LuceneManager) {
+			((LuceneManager)SearchFacade.manager()).recreateIndex();
+		}
+		else {
+			this.settings().createIndexDirectory(
+				SystemGlobals.getValue(ConfigKeys.LUCENE_INDEX_WRITE_PATH));
+		}
+		
 		this.list();
 	}
 	
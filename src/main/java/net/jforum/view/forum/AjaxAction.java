@@ -131,6 +131,8 @@ public class AjaxAction extends Command
 				
 				this.setUsers(l);
 				
+				// The admin is waiting for the result
+				this.setRetryOnFailure(false);
 				this.setTemplateParams(new SimpleHash());
 				this.prepareMessage("JForum Test Mail", null);
 			}
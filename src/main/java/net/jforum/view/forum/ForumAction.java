@@ -43,6 +43,7 @@
 package net.jforum.view.forum;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -56,6 +57,7 @@ import net.jforum.SessionFacade;
 import net.jforum.dao.DataAccessDriver;
 import net.jforum.dao.ForumDAO;
 import net.jforum.dao.ModerationDAO;
+import net.jforum.entities.Category;
 import net.jforum.entities.Forum;
 import net.jforum.entities.MostUsersEverOnline;
 import net.jforum.entities.Topic;
@@ -87,7 +89,9 @@ public class ForumAction extends Command
 	{
 		this.setTemplateName(TemplateKeys.FORUMS_LIST);
 
-		this.context.put("allCategories", ForumCommon.getAllCategoriesAndForums(true));
+		final List<Category> allCategories = ForumCommon.getAllCategoriesAndForums();
+		this.context.put("allCategories", allCategories);
+		this.context.put("unreadForums", ForumCommon.getUnreadForums(allCategories));
 		this.context.put("topicsPerPage", Integer.valueOf(SystemGlobals.getIntValue(ConfigKeys.TOPICS_PER_PAGE)));
 		this.context.put("rssEnabled", SystemGlobals.getBoolValue(ConfigKeys.RSS_ENABLED));
 
@@ -106,7 +110,7 @@ public class ForumAction extends Command
 		this.context.put("totalOnlineUsers", Integer.valueOf(SessionFacade.size()));
 		int aid = SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID);
 
-		List<UserSession> onlineUsersList = SessionFacade.getLoggedSessions();
+		List<UserSession> onlineUsersList = SessionFacade.getOnlineSnapshot().getLoggedSessions();
 
 		// Check for an optional language parameter
 		UserSession currentUser = SessionFacade.getUserSession();
@@ -129,6 +133,7 @@ public class ForumAction extends Command
 			us.setUsername(I18n.getMessage("Guest"));
 			us.setStartTime(new Date(System.currentTimeMillis()));
 
+			onlineUsersList = new ArrayList<UserSession>(1);
 			onlineUsersList.add(us);
 		}
 
@@ -205,7 +210,7 @@ public class ForumAction extends Command
 		        || SecurityRepository.canAccess(SecurityConstants.PERM_ATTACHMENTS_DOWNLOAD));
 
 		this.context.put("topics", TopicsCommon.prepareTopics(tmpTopics));
-		this.context.put("allCategories", ForumCommon.getAllCategoriesAndForums(false));
+		this.context.put("allCategories", ForumCommon.getAllCategoriesAndForums());
 		this.context.put("forum", forum);
 		this.context.put("rssEnabled", SystemGlobals.getBoolValue(ConfigKeys.RSS_ENABLED));
 		this.context.put("pageTitle", forum.getName());
@@ -257,14 +262,7 @@ public class ForumAction extends Command
 		String forumId = this.request.getParameter("forum_id");
 		
 		if (forumId != null) {
-			Map<Integer, Long> tracking = SessionFacade.getTopicsReadTimeByForum();
-			
-			if (tracking == null) {
-				tracking = new HashMap<Integer, Long>();
-			}
-			
-			tracking.put(Integer.valueOf(forumId), Long.valueOf(System.currentTimeMillis()));
-			SessionFacade.setAttribute(ConfigKeys.TOPICS_READ_TIME_BY_FORUM, tracking);
+			SessionFacade.getReadState().markForum(Integer.parseInt(forumId), System.currentTimeMillis());
 		}
 
 		if (forumId != null) {
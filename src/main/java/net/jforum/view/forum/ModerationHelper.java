@@ -56,6 +56,7 @@ import net.jforum.dao.TopicDAO;
 import net.jforum.entities.ModerationLog;
 import net.jforum.entities.Topic;
 import net.jforum.entities.User;
+import net.jforum.repository.BoardStatsRepository;
 import net.jforum.repository.ForumRepository;
 import net.jforum.repository.PostRepository;
 import net.jforum.repository.SecurityRepository;
@@ -196,6 +197,7 @@ public class ModerationHelper
 			}
 			
 			tm.deleteTopics(topicsToDelete, false);
+			BoardStatsRepository.requestReconcile();
 			
 			ForumDAO fm = DataAccessDriver.getInstance().newForumDAO();
 			TopicRepository.loadMostRecentTopics();
@@ -248,7 +250,7 @@ public class ModerationHelper
 		SimpleHash context = JForumExecutionContext.getTemplateContext();
 		
 		context.put("persistData", JForumExecutionContext.getRequest().getParameter("persistData"));
-		context.put("allCategories", ForumCommon.getAllCategoriesAndForums(false));
+		context.put("allCategories", ForumCommon.getAllCategoriesAndForums());
 		
 		String[] topics = JForumExecutionContext.getRequest().getParameterValues("topic_id");
 		
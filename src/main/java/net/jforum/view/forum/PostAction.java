@@ -43,9 +43,7 @@
 package net.jforum.view.forum;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Collections;
 import java.util.Date;
@@ -83,12 +81,15 @@ import net.jforum.entities.User;
 import net.jforum.entities.UserSession;
 import net.jforum.exceptions.AttachmentException;
 import net.jforum.exceptions.ForumException;
+import net.jforum.repository.AttachmentDownloadsRepository;
+import net.jforum.repository.BoardStatsRepository;
 import net.jforum.repository.ForumRepository;
 import net.jforum.repository.PostRepository;
 import net.jforum.repository.RankingRepository;
 import net.jforum.repository.SecurityRepository;
 import net.jforum.repository.SmiliesRepository;
 import net.jforum.repository.TopicRepository;
+import net.jforum.repository.TopicViewsRepository;
 import net.jforum.security.PermissionControl;
 import net.jforum.security.SecurityConstants;
 import net.jforum.util.I18n;
@@ -97,6 +98,7 @@ import net.jforum.util.preferences.SystemGlobals;
 import net.jforum.util.preferences.TemplateKeys;
 import net.jforum.view.forum.common.AttachmentCommon;
 import net.jforum.view.forum.common.CommentCommon;
+import net.jforum.view.forum.common.DownloadCommon;
 import net.jforum.view.forum.common.ForumCommon;
 import net.jforum.view.forum.common.PollCommon;
 import net.jforum.view.forum.common.PostCommon;
@@ -137,6 +139,7 @@ public class PostAction extends Command
 		
 		if (topic == null) {
 			topic = topicDao.selectById(topicId);
+			topic.setTotalViews(topic.getTotalViews() + TopicViewsRepository.pending(topicId));
 		}
 
 		// The topic exists?
@@ -177,8 +180,10 @@ public class PostAction extends Command
 			return;
 		}
 
-		// Set the topic status as read
-		if (logged) {
+		boolean watching = topicDao.isUserSubscribed(topicId, us.getUserId());
+		
+		// Set the topic status as read, only kept for the users watching it
+		if (logged && watching) {
 			topicDao.updateReadStatus(topic.getId(), us.getUserId(), true);
 		}
 
@@ -194,12 +199,11 @@ public class PostAction extends Command
 			}
 		}
 		
-		topicDao.incrementTotalViews(topic.getId());
-		topic.setTotalViews(topic.getTotalViews() + 1);
+		TopicViewsRepository.increment(topic);
 
 		if (us.getUserId() != anonymousUser) {
-			SessionFacade.getTopicsReadTime().put(Integer.valueOf(topic.getId()),
-				Long.valueOf(System.currentTimeMillis()));
+			SessionFacade.getReadState().markTopic(topic.getForumId(), topic.getId(), 
+				System.currentTimeMillis(), us.getLastVisit().getTime());
 		}
 		
 		boolean karmaEnabled = SecurityRepository.canAccess(SecurityConstants.PERM_KARMA_ENABLED);
@@ -218,7 +222,7 @@ public class PostAction extends Command
 		this.context.put("rssEnabled", SystemGlobals.getBoolValue(ConfigKeys.RSS_ENABLED));
 		this.context.put("canRemove", pc.canAccess(SecurityConstants.PERM_MODERATION_POST_REMOVE));
 		this.context.put("moderatorCanEdit", moderatorCanEdit);
-		this.context.put("allCategories", ForumCommon.getAllCategoriesAndForums(false));
+		this.context.put("allCategories", ForumCommon.getAllCategoriesAndForums());
 		this.context.put("topic", topic);
 		this.context.put("poll", poll);
 		this.context.put("canVoteOnPoll", canVoteOnPoll);
@@ -241,7 +245,7 @@ public class PostAction extends Command
 		
 		this.context.put("users", topicPosters);
 		this.context.put("anonymousPosts", pc.canAccess(SecurityConstants.PERM_ANONYMOUS_POST, Integer.toString(topic.getForumId())));
-		this.context.put("watching", topicDao.isUserSubscribed(topicId, SessionFacade.getUserSession().getUserId()));
+		this.context.put("watching", watching);
 		this.context.put("pageTitle", topic.getTitle());
 		this.context.put("isAdmin", pc.canAccess(SecurityConstants.PERM_ADMINISTRATION));
 		this.context.put("readonly", !pc.canAccess(SecurityConstants.PERM_READ_ONLY_FORUMS,	Integer.toString(topic.getForumId())));
@@ -389,7 +393,7 @@ public class PostAction extends Command
 		this.context.put("canDownloadAttachments", SecurityRepository.canAccess(
 				SecurityConstants.PERM_ATTACHMENTS_DOWNLOAD));				
 		this.context.put("rssEnabled", SystemGlobals.getBoolValue(ConfigKeys.RSS_ENABLED));
-		this.context.put("allCategories", ForumCommon.getAllCategoriesAndForums(false));
+		this.context.put("allCategories", ForumCommon.getAllCategoriesAndForums());
 		this.context.put("posts", posts);
 		this.context.put("topics", topics);
 		this.context.put("forums", forums);
@@ -1138,6 +1142,9 @@ public class PostAction extends Command
 
 			if (newTopic) {
 				topic.setFirstPostId(postId);
+				
+				// Topics waiting for moderation are counted too, like the database does
+				BoardStatsRepository.incrementTotalTopics();
 			}
 			
 			if (!moderate) {
@@ -1184,8 +1191,8 @@ public class PostAction extends Command
 				int anonymousUser = SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID);
 				
 				if (user.getId() != anonymousUser) {
-					SessionFacade.getTopicsReadTime().put(Integer.valueOf(topic.getId()),
-						Long.valueOf(post.getTime().getTime()));
+					SessionFacade.getReadState().markTopic(topic.getForumId(), topic.getId(), 
+						post.getTime().getTime(), SessionFacade.getUserSession().getLastVisit().getTime());
 				}
 				
 				if (SystemGlobals.getBoolValue(ConfigKeys.POSTS_CACHE_ENABLED)) {
@@ -1343,6 +1350,10 @@ public class PostAction extends Command
 
 		postDao.delete(post);		
 		
+		if (!post.isModerationNeeded()) {
+			BoardStatsRepository.decrementTotalMessages();
+		}
+		
 		// Karma
 		KarmaDAO karmaDao = DataAccessDriver.getInstance().newKarmaDAO();
 		karmaDao.deletePostKarma(post.getId());
@@ -1502,30 +1513,27 @@ public class PostAction extends Command
 			+ "/"
 			+ a.getInfo().getPhysicalFilename();
 
-		if (!new File(filename).exists()) {
+		File file = new File(filename);
+
+		if (!file.exists()) {
 			this.setTemplateName(TemplateKeys.POSTS_ATTACH_NOTFOUND);
 			this.context.put("message", I18n.getMessage("Attachments.notFound"));
 			return;
 		}
 		
-		FileInputStream fis = null;
-		OutputStream os = null;
-
 		try {
-			a.getInfo().setDownloadCount(a.getInfo().getDownloadCount() + 1);
-			am.updateAttachment(a);
-
-			fis = new FileInputStream(filename);
-			os = response.getOutputStream();
+			String contentType;
 
 			if (am.isPhysicalDownloadMode(a.getInfo().getExtension().getExtensionGroupId())) {
-				this.response.setContentType("application/octet-stream");
+				contentType = "application/octet-stream";
 			}
 			else {
-				this.response.setContentType(a.getInfo().getMimetype());
+				contentType = a.getInfo().getMimetype();
 			}
 
-			if (this.request.getHeader("User-Agent").indexOf("Firefox") != -1) {
+			String userAgent = this.request.getHeader("User-Agent");
+
+			if (userAgent != null && userAgent.indexOf("Firefox") != -1) {
 				this.response.setHeader("Content-Disposition", "attachment; filename=\""
 					+ new String(a.getInfo().getRealFilename().getBytes(SystemGlobals.getValue(ConfigKeys.ENCODING)),
 						SystemGlobals.getValue(ConfigKeys.DEFAULT_CONTAINER_ENCODING)) + "\";");
@@ -1535,31 +1543,15 @@ public class PostAction extends Command
 					+ ViewCommon.toUtf8String(a.getInfo().getRealFilename()) + "\";");
 			}
 
-			this.response.setContentLength((int)a.getInfo().getFilesize());
+			JForumExecutionContext.enableCustomContent(true);
 
-			int c;
-			byte[] b = new byte[4096];
-			while ((c = fis.read(b)) != -1) {
-				os.write(b, 0, c);
+			if (DownloadCommon.send(this.request, this.response, file, contentType)) {
+				AttachmentDownloadsRepository.increment(a.getId());
 			}
-
-			
-			JForumExecutionContext.enableCustomContent(true);
 		}
 		catch (IOException e) {
 			throw new ForumException(e);
 		}
-		finally {
-			if (fis != null) {
-				try { fis.close(); }
-				catch (Exception e) { e.printStackTrace(); }
-			}
-			
-			if (os != null) {
-				try { os.close(); }
-				catch (Exception e) { e.printStackTrace(); }
-			}
-		}
 	}
 	
 	private void cannotEdit()
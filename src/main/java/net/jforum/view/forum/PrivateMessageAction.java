@@ -57,8 +57,7 @@ import net.jforum.entities.UserSession;
 import net.jforum.repository.SmiliesRepository;
 import net.jforum.util.I18n;
 import net.jforum.util.SafeHtml;
-import net.jforum.util.concurrent.Executor;
-import net.jforum.util.mail.EmailSenderTask;
+import net.jforum.util.mail.MailDispatcher;
 import net.jforum.util.mail.PrivateMessageSpammer;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
@@ -252,7 +251,7 @@ public class PrivateMessageAction extends Command
 			if (toUser.getEmail() != null 
 				&& toUser.getEmail().trim().length() > 0
 				&& SystemGlobals.getBoolValue(ConfigKeys.MAIL_NOTIFY_ANSWERS)) {
-				Executor.execute(new EmailSenderTask(new PrivateMessageSpammer(toUser)));
+				MailDispatcher.dispatch(new PrivateMessageSpammer(toUser));
 			}
 		}
 	}
@@ -58,6 +58,7 @@ import net.jforum.entities.Forum;
 import net.jforum.entities.Post;
 import net.jforum.entities.Topic;
 import net.jforum.repository.ForumRepository;
+import net.jforum.repository.TopicViewsRepository;
 import net.jforum.util.I18n;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
@@ -122,7 +123,7 @@ public class RSSAction extends Command
             return;
 		}
 		
-		topicDao.incrementTotalViews(topic.getId());
+		TopicViewsRepository.increment(topic);
 		
 		final List<Post> posts = postDao.selectAllByTopic(topicId);
 		
@@ -45,7 +45,6 @@ package net.jforum.view.forum;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
@@ -61,20 +60,21 @@ import net.jforum.dao.UserDAO;
 import net.jforum.dao.UserSessionDAO;
 import net.jforum.entities.Banlist;
 import net.jforum.entities.Bookmark;
+import net.jforum.entities.ReadState;
 import net.jforum.entities.User;
 import net.jforum.entities.UserSession;
 import net.jforum.repository.BanlistRepository;
 import net.jforum.repository.ForumRepository;
 import net.jforum.repository.RankingRepository;
 import net.jforum.repository.SecurityRepository;
+import net.jforum.repository.SessionFlushRepository;
 import net.jforum.security.SecurityConstants;
 import net.jforum.security.StopForumSpam;
 import net.jforum.util.I18n;
 import net.jforum.util.MD5;
-import net.jforum.util.concurrent.Executor;
 import net.jforum.util.mail.ActivationKeySpammer;
-import net.jforum.util.mail.EmailSenderTask;
 import net.jforum.util.mail.LostPasswordSpammer;
+import net.jforum.util.mail.MailDispatcher;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
 import net.jforum.util.preferences.TemplateKeys;
@@ -344,7 +344,7 @@ public class UserAction extends Command
 		int newUserId = userDao.addNew(user);
 
 		if (needMailActivation) {
-			Executor.execute(new EmailSenderTask(new ActivationKeySpammer(user)));
+			MailDispatcher.dispatch(new ActivationKeySpammer(user));
 
 			this.setTemplateName(TemplateKeys.USER_INSERT_ACTIVATE_MAIL);
 			this.context.put(MESSAGE, I18n.getMessage("User.GoActivateAccountMessage"));
@@ -474,7 +474,12 @@ public class UserAction extends Command
 					SessionFacade.remove(sessionId);
 				}
 				else {					
-					tmpUs = userSessionDao.selectById(userSession, JForumExecutionContext.getConnection());
+					// The last session may be still waiting to be written
+					tmpUs = SessionFlushRepository.get(userSession);
+					
+					if (tmpUs == null) {
+						tmpUs = userSessionDao.selectById(userSession, JForumExecutionContext.getConnection());
+					}
 				}
 
 				I18n.load(user.getLang());
@@ -511,7 +516,7 @@ public class UserAction extends Command
 				}
 				
 				SessionFacade.add(userSession);
-				SessionFacade.setAttribute(ConfigKeys.TOPICS_READ_TIME, new HashMap<Integer, Long>());
+				SessionFacade.setAttribute(ConfigKeys.TOPICS_READ_STATE, new ReadState());
 				ControllerUtils.addCookie(SystemGlobals.getValue(ConfigKeys.COOKIE_NAME_DATA), 
 					Integer.toString(user.getId()));
 
@@ -727,9 +732,8 @@ public class UserAction extends Command
 			return;
 		}
 		
-		Executor.execute(new EmailSenderTask(
-				new LostPasswordSpammer(user, 
-					SystemGlobals.getValue(ConfigKeys.MAIL_LOST_PASSWORD_SUBJECT))));
+		MailDispatcher.dispatch(new LostPasswordSpammer(user, 
+					SystemGlobals.getValue(ConfigKeys.MAIL_LOST_PASSWORD_SUBJECT)));
 
 		this.setTemplateName(TemplateKeys.USER_LOSTPASSWORD_SEND);
 		this.context.put(MESSAGE, I18n.getMessage(
@@ -42,9 +42,7 @@
  */
 package net.jforum.view.forum.common;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -54,8 +52,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import javax.imageio.ImageIO;
-
 import net.jforum.SessionFacade;
 import net.jforum.context.RequestContext;
 import net.jforum.dao.AttachmentDAO;
@@ -74,7 +70,7 @@ import net.jforum.repository.SecurityRepository;
 import net.jforum.security.SecurityConstants;
 import net.jforum.util.I18n;
 import net.jforum.util.MD5;
-import net.jforum.util.image.ImageUtils;
+import net.jforum.util.image.ThumbnailService;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
 
@@ -251,36 +247,18 @@ public class AttachmentCommon
 	
 	private boolean shouldCreateThumb(final Attachment attachment) {
 		String extension = attachment.getInfo().getExtension().getExtension().toLowerCase();
-		if (SystemGlobals.getBoolValue(ConfigKeys.ATTACHMENTS_IMAGES_CREATE_THUMB)
-            && Attachment.isPicture(extension)) {
-            String path = SystemGlobals.getValue(ConfigKeys.ATTACHMENTS_STORE_DIR)
-			     + "/" 
-			     + attachment.getInfo().getPhysicalFilename();
-		    File imageFile = new File(path);
-		    BufferedImage image = null;
-		    try {
-			    image = ImageIO.read(imageFile);
-		    } catch (IOException e) {
-		    	LOGGER.error(e.toString(), e);
-		    }
-		    int width = image.getWidth(null);
-		    int height = image.getHeight(null);
-		    return (width > SystemGlobals.getIntValue(ConfigKeys.ATTACHMENTS_IMAGES_MAX_THUMB_W) 
-		        || height > SystemGlobals.getIntValue(ConfigKeys.ATTACHMENTS_IMAGES_MAX_THUMB_H));
-        }
-        return false;
+		return SystemGlobals.getBoolValue(ConfigKeys.ATTACHMENTS_IMAGES_CREATE_THUMB)
+			&& Attachment.isPicture(extension);
 	}
 	
+	/**
+	 * Queues the thumbnail creation. The image size is only checked
+	 * in background, so the upload doesn't need to decode the image.
+	 */
 	private void createSaveThumb(final String path) {
-		try {
-			BufferedImage image = ImageUtils.resizeImage(path, ImageUtils.IMAGE_JPEG, 
-				SystemGlobals.getIntValue(ConfigKeys.ATTACHMENTS_IMAGES_MAX_THUMB_W),
-				SystemGlobals.getIntValue(ConfigKeys.ATTACHMENTS_IMAGES_MAX_THUMB_H));
-			ImageUtils.saveImage(image, path + "_thumb", ImageUtils.IMAGE_JPEG);
-		}
-		catch (Exception e) {
-			LOGGER.error(e.toString(), e);
-		}
+		ThumbnailService.submit(path, 
+			SystemGlobals.getIntValue(ConfigKeys.ATTACHMENTS_IMAGES_MAX_THUMB_W),
+			SystemGlobals.getIntValue(ConfigKeys.ATTACHMENTS_IMAGES_MAX_THUMB_H));
 	}
 	
 	public QuotaLimit getQuotaLimit(final int userId)
@@ -331,6 +309,8 @@ public class AttachmentCommon
 					String filename = SystemGlobals.getValue(ConfigKeys.ATTACHMENTS_STORE_DIR)
 						+ "/" + a.getInfo().getPhysicalFilename();
 					
+					ThumbnailService.removeCached(filename);
+					
 					File f = new File(filename);
 					
 					if (f.exists()) {
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 8:34:05 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.view.forum.common;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import net.jforum.context.RequestContext;
+import net.jforum.context.ResponseContext;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+/**
+ * Sends files to the client. Conditional requests (<code>If-None-Match</code>, 
+ * <code>If-Modified-Since</code>) are answered with 304, and single or multiple
+ * byte ranges are supported, so interrupted downloads can be resumed. 
+ * <p>
+ * The file is read through a <code>FileChannel</code> into a per thread direct buffer. 
+ * When the container supports it (Tomcat's <code>sendfile</code>), single range 
+ * transfers are left to the container, which sends the file without copying it. 
+ * 
+ * @version $Id$
+ */
+public final class DownloadCommon
+{
+	/** Requests asking for more ranges than this are answered with the whole file */
+	private static final int MAX_RANGES = 16;
+	private static final String BOUNDARY = "JFORUM_BYTERANGES";
+	private static final String CRLF = "\r\n";
+	
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+	
+	private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>() {
+		protected ByteBuffer initialValue()
+		{
+			return ByteBuffer.allocateDirect(SystemGlobals.getIntValue(ConfigKeys.ATTACHMENTS_DOWNLOAD_BUFFER_SIZE));
+		}
+	};
+	
+	private DownloadCommon() {}
+	
+	/**
+	 * Sends a file, or the requested parts of it. 
+	 * The caller is responsible for checking permissions and for 
+	 * setting any additional headers, like <code>Content-Disposition</code>.
+	 * 
+	 * @param request The request
+	 * @param response The response
+	 * @param file The file to send
+	 * @param contentType The content type of the file
+	 * @return <code>true</code> if the beginning of the file was sent, which means 
+	 * it is a new download, or <code>false</code> if the client already 
+	 * had the file or was resuming a previous download.
+	 * @throws IOException If the file can't be read or the client went away 
+	 */
+	public static boolean send(final RequestContext request, final ResponseContext response, 
+		final File file, final String contentType) throws IOException
+	{
+		final long length = file.length();
+		final long lastModified = file.lastModified() / 1000 * 1000;
+		final String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+		
+		response.setHeader("Accept-Ranges", "bytes");
+		response.setHeader("ETag", etag);
+		response.setDateHeader("Last-Modified", lastModified);
+		
+		if (isNotModified(request, etag, lastModified)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return false;
+		}
+		
+		List<long[]> ranges = null;
+		final String range = request.getHeader("Range");
+		
+		if (range != null && isRangeCurrent(request, etag, lastModified)) {
+			ranges = parseRanges(range, length);
+			
+			if (ranges != null && ranges.isEmpty()) {
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return false;
+			}
+		}
+		
+		if (ranges == null) {
+			response.setContentType(contentType);
+			response.setHeader("Content-Length", Long.toString(length));
+			sendRange(request, response, file, 0, length);
+			
+			return true;
+		}
+		
+		response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		
+		if (ranges.size() == 1) {
+			final long[] r = ranges.get(0);
+			
+			response.setContentType(contentType);
+			response.setHeader("Content-Range", contentRange(r, length));
+			response.setHeader("Content-Length", Long.toString(r[1] - r[0] + 1));
+			sendRange(request, response, file, r[0], r[1] - r[0] + 1);
+		}
+		else {
+			sendRanges(response, file, contentType, ranges, length);
+		}
+		
+		for (final Iterator<long[]> iter = ranges.iterator(); iter.hasNext(); ) {
+			if (iter.next()[0] == 0) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Parses the value of a <code>Range</code> header.
+	 * 
+	 * @param header The header value, like <code>bytes=0-99,200-</code>
+	 * @param length The length of the file
+	 * @return The satisfiable ranges, as <code>{first byte, last byte}</code> pairs.
+	 * An empty list means no range can be satisfied, and <code>null</code> means
+	 * the header is invalid or not supported and must be ignored.
+	 */
+	static List<long[]> parseRanges(final String header, final long length)
+	{
+		if (!header.startsWith("bytes=")) {
+			return null;
+		}
+		
+		final String[] specs = header.substring("bytes=".length()).split(",");
+		
+		if (specs.length > MAX_RANGES) {
+			return null;
+		}
+		
+		final List<long[]> ranges = new ArrayList<long[]>(specs.length);
+		
+		try {
+			for (int i = 0; i < specs.length; i++) {
+				final String spec = specs[i].trim();
+				final int dash = spec.indexOf('-');
+				
+				if (dash == -1) {
+					return null;
+				}
+				
+				if (dash == 0) {
+					// The last n bytes
+					final long suffix = parsePositive(spec.substring(1));
+					
+					if (suffix > 0 && length > 0) {
+						ranges.add(new long[] { Math.max(0, length - suffix), length - 1 });
+					}
+					
+					continue;
+				}
+				
+				final long start = parsePositive(spec.substring(0, dash));
+				final long end = dash == spec.length() - 1 
+					? length - 1 
+					: parsePositive(spec.substring(dash + 1));
+				
+				if (dash < spec.length() - 1 && end < start) {
+					return null;
+				}
+				
+				if (start < length) {
+					ranges.add(new long[] { start, Math.min(end, length - 1) });
+				}
+			}
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+		
+		return ranges;
+	}
+	
+	private static long parsePositive(final String value)
+	{
+		for (int i = 0; i < value.length(); i++) {
+			if (!Character.isDigit(value.charAt(i))) {
+				throw new NumberFormatException(value);
+			}
+		}
+		
+		return Long.parseLong(value);
+	}
+	
+	private static boolean isNotModified(final RequestContext request, final String etag, final long lastModified)
+	{
+		final String ifNoneMatch = request.getHeader("If-None-Match");
+		
+		if (ifNoneMatch != null) {
+			return matchesETag(ifNoneMatch, etag);
+		}
+		
+		final long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+		return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+	}
+	
+	private static boolean isRangeCurrent(final RequestContext request, final String etag, final long lastModified)
+	{
+		final String ifRange = request.getHeader("If-Range");
+		
+		if (ifRange == null) {
+			return true;
+		}
+		
+		if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/")) {
+			return etag.equals(ifRange.trim());
+		}
+		
+		return getDateHeader(request, "If-Range") == lastModified;
+	}
+	
+	private static boolean matchesETag(final String header, final String etag)
+	{
+		final String[] tags = header.split(",");
+		
+		for (int i = 0; i < tags.length; i++) {
+			String tag = tags[i].trim();
+			
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			
+			if ("*".equals(tag) || etag.equals(tag)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private static long getDateHeader(final RequestContext request, final String name)
+	{
+		try {
+			return request.getDateHeader(name);
+		}
+		catch (IllegalArgumentException e) {
+			return -1;
+		}
+	}
+	
+	private static String contentRange(final long[] range, final long length)
+	{
+		return "bytes " + range[0] + "-" + range[1] + "/" + length;
+	}
+	
+	private static void sendRange(final RequestContext request, final ResponseContext response, 
+		final File file, final long start, final long count) throws IOException
+	{
+		if (SystemGlobals.getBoolValue(ConfigKeys.ATTACHMENTS_DOWNLOAD_SENDFILE)
+			&& Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+			request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+			request.setAttribute(SENDFILE_START, Long.valueOf(start));
+			request.setAttribute(SENDFILE_END, Long.valueOf(start + count));
+			return;
+		}
+		
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		
+		try {
+			transfer(raf.getChannel(), start, count, Channels.newChannel(response.getOutputStream()));
+		}
+		finally {
+			raf.close();
+		}
+	}
+	
+	private static void sendRanges(final ResponseContext response, final File file, final String contentType, 
+		final List<long[]> ranges, final long length) throws IOException
+	{
+		final byte[][] partHeaders = new byte[ranges.size()][];
+		final byte[] end = (CRLF + "--" + BOUNDARY + "--" + CRLF).getBytes("ISO-8859-1");
+		long total = end.length;
+		
+		for (int i = 0; i < partHeaders.length; i++) {
+			final long[] r = ranges.get(i);
+			
+			partHeaders[i] = new StringBuilder(128)
+				.append(CRLF).append("--").append(BOUNDARY).append(CRLF)
+				.append("Content-Type: ").append(contentType).append(CRLF)
+				.append("Content-Range: ").append(contentRange(r, length)).append(CRLF)
+				.append(CRLF)
+				.toString().getBytes("ISO-8859-1");
+			
+			total += partHeaders[i].length + r[1] - r[0] + 1;
+		}
+		
+		response.setContentType("multipart/byteranges; boundary=" + BOUNDARY);
+		response.setHeader("Content-Length", Long.toString(total));
+		
+		final WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		
+		try {
+			for (int i = 0; i < partHeaders.length; i++) {
+				final long[] r = ranges.get(i);
+				
+				write(out, ByteBuffer.wrap(partHeaders[i]));
+				transfer(raf.getChannel(), r[0], r[1] - r[0] + 1, out);
+			}
+			
+			write(out, ByteBuffer.wrap(end));
+		}
+		finally {
+			raf.close();
+		}
+	}
+	
+	private static void transfer(final FileChannel in, final long start, final long count, 
+		final WritableByteChannel out) throws IOException
+	{
+		final ByteBuffer buffer = BUFFER.get();
+		long position = start;
+		long remaining = count;
+		
+		while (remaining > 0) {
+			buffer.clear();
+			
+			if (remaining < buffer.capacity()) {
+				buffer.limit((int)remaining);
+			}
+			
+			final int read = in.read(buffer, position);
+			
+			if (read == -1) {
+				throw new EOFException("File truncated at " + position + " bytes while sending it");
+			}
+			
+			buffer.flip();
+			write(out, buffer);
+			
+			position += read;
+			remaining -= read;
+		}
+	}
+	
+	private static void write(final WritableByteChannel out, final ByteBuffer buffer) throws IOException
+	{
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+}
@@ -42,10 +42,11 @@
  */
 package net.jforum.view.forum.common;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import net.jforum.SessionFacade;
 import net.jforum.dao.DataAccessDriver;
@@ -54,13 +55,13 @@ import net.jforum.entities.Category;
 import net.jforum.entities.Forum;
 import net.jforum.entities.LastPostInfo;
 import net.jforum.entities.Post;
+import net.jforum.entities.ReadState;
 import net.jforum.entities.Topic;
 import net.jforum.entities.User;
 import net.jforum.entities.UserSession;
 import net.jforum.repository.ForumRepository;
-import net.jforum.util.concurrent.Executor;
-import net.jforum.util.mail.EmailSenderTask;
 import net.jforum.util.mail.ForumNewTopicSpammer;
+import net.jforum.util.mail.MailDispatcher;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
 
@@ -76,100 +77,96 @@ public final class ForumCommon
 	/**
 	 * Check if some forum has unread messages.
 	 * @param forum The forum to search for unread messages 
-	 * @param tracking Tracking of the topics read by the user
+	 * @param readState What the user has read in the forums
 	 * @param lastVisit The last visit time of the current user
+	 * @return <code>true</code> if the last message of the forum was not read yet
 	 */
-	public static void checkUnreadPosts(final Forum forum, final Map<Integer, Long> tracking, final long lastVisit) 
+	public static boolean isUnread(final Forum forum, final ReadState readState, final long lastVisit) 
 	{
 		final LastPostInfo lpi = forum.getLastPostInfo();
 		
 		if (lpi == null) {
-			return;
+			return false;
 		}
 
-		final Integer topicId = Integer.valueOf(lpi.getTopicId());
-		
-		if (tracking != null && tracking.containsKey(topicId)) {
-			final long readTime = tracking.get(topicId).longValue();
-		
-			forum.setUnread(readTime > 0 && lpi.getPostTimeMillis() > readTime);
-		}
-		else {
-			forum.setUnread(lpi.getPostTimeMillis() > lastVisit);
+		if (readState == null) {
+			return lpi.getPostTimeMillis() > lastVisit;
 		}
+		
+		return !readState.isRead(forum.getId(), lpi.getTopicId(), lpi.getPostTimeMillis(), lastVisit);
 	}
 	
 	/**
 	 * Gets all forums available to the user.
+	 * The list is shared by all users with the same permissions, 
+	 * so it must not be changed. 
 	 * 
 	 * @param userSession A <code>UserSession</code> instance with user information
 	 * @param anonymousUserId The id which represents the anonymous user
-	 * @param tracking <code>Map</code> instance with information 
-	 * about the topics read by the user
-	 * @param origCheckUnreadPosts <code>true</code> if is to search for unread topics inside the forums, 
-	 * or <code>false</code> if this action is not needed. 
 	 * @return A <code>List</code> instance where each record is an instance of a <code>Category</code>
 	 * object
+	 * @see ForumRepository#getCategoryTree(int)
 	 */
-	public static List<Category> getAllCategoriesAndForums(final UserSession userSession, final int anonymousUserId, 
-			final Map<Integer, Long> tracking, boolean origCheckUnreadPosts)
+	public static List<Category> getAllCategoriesAndForums(final UserSession userSession, final int anonymousUserId)
 	{
-		boolean checkUnreadPosts = origCheckUnreadPosts;
-		long lastVisit = 0;
-		int userId = anonymousUserId;
-		
-		if (userSession != null) {
-			lastVisit = userSession.getLastVisit().getTime();
-			userId = userSession.getUserId();
+		return ForumRepository.getCategoryTree(userSession == null 
+			? anonymousUserId 
+			: userSession.getUserId());
+	}
+	
+	/**
+	 * @see #getAllCategoriesAndForums(UserSession, int)
+     * @return List
+	 */
+	public static List<Category> getAllCategoriesAndForums()
+	{
+		return getAllCategoriesAndForums(SessionFacade.getUserSession(), 
+				SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID));
+	}
+	
+	/**
+	 * Gets the forums with messages the user has not read yet.
+	 * 
+	 * @param categories The categories to search, as returned by {@link #getAllCategoriesAndForums(UserSession, int)}
+	 * @param userSession A <code>UserSession</code> instance with user information
+	 * @param anonymousUserId The id which represents the anonymous user
+	 * @param readState What the user has read in the forums
+	 * @return The id of the unread forums. It is always empty for anonymous users
+	 */
+	public static Set<Integer> getUnreadForums(final List<Category> categories, final UserSession userSession, 
+			final int anonymousUserId, final ReadState readState)
+	{
+		// Do not check for unread posts if the user is not logged in
+		if (userSession == null || userSession.getUserId() == anonymousUserId) {
+			return Collections.emptySet();
 		}
-
-        // Do not check for unread posts if the user is not logged in
-		checkUnreadPosts = checkUnreadPosts && (userId != anonymousUserId);
-
-		final List<Category> categories = ForumRepository.getAllCategories(userId);
 		
-		if (!checkUnreadPosts) {
-			return categories;
-		}
-
-		final List<Category> returnCategories = new ArrayList<Category>();
+		final long lastVisit = userSession.getLastVisit().getTime();
+		final Set<Integer> unread = new HashSet<Integer>();
+		
 		for (Iterator<Category> iter = categories.iterator(); iter.hasNext(); ) {
-			Category category = new Category(iter.next());
-			
-			for (Iterator<Forum> tmpIterator = category.getForums().iterator(); tmpIterator.hasNext(); ) {
+			for (Iterator<Forum> tmpIterator = iter.next().getForums().iterator(); tmpIterator.hasNext(); ) {
 				Forum forum = tmpIterator.next();
-				ForumCommon.checkUnreadPosts(forum, tracking, lastVisit);
+				
+				if (ForumCommon.isUnread(forum, readState, lastVisit)) {
+					unread.add(Integer.valueOf(forum.getId()));
+				}
 			}
-			
-			returnCategories.add(category);
 		}
 		
-		return returnCategories;
+		return unread;
 	}
 	
 	/**
-	 * @see #getAllCategoriesAndForums(UserSession, int, Map, boolean)
-     * @return List
-     * @param checkUnreadPosts boolean
+	 * @see #getUnreadForums(List, UserSession, int, ReadState)
+	 * @param categories The categories to search
+	 * @return Set
 	 */
-	public static List<Category> getAllCategoriesAndForums(boolean checkUnreadPosts)
+	public static Set<Integer> getUnreadForums(final List<Category> categories)
 	{
-		return getAllCategoriesAndForums(SessionFacade.getUserSession(), 
+		return getUnreadForums(categories, SessionFacade.getUserSession(), 
 				SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID), 
-				SessionFacade.getTopicsReadTime(), 
-				checkUnreadPosts);
-	}
-	
-	/**
-	 * @see #getAllCategoriesAndForums(boolean)
-     * @return List
-	 */
-	public static List<Category> getAllCategoriesAndForums()
-	{
-		UserSession userSession = SessionFacade.getUserSession();
-		boolean checkUnread = (userSession != null && userSession.getUserId() 
-			!= SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID));
-		return getAllCategoriesAndForums(checkUnread);
+				SessionFacade.getReadState());
 	}
 	
 	/**
@@ -189,9 +186,7 @@ public final class ForumCommon
 				// we only have to send an email if there are users
 				// subscribed to the topic
 				if (usersToNotify != null && !usersToNotify.isEmpty()) {
-					Executor.execute(
-						new EmailSenderTask(
-							new ForumNewTopicSpammer(forum, topic, post, usersToNotify)));
+					MailDispatcher.dispatch(new ForumNewTopicSpammer(forum, topic, post, usersToNotify));
 				}
 			}
 			catch (Exception e) {
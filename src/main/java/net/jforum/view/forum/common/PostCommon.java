@@ -43,7 +43,6 @@
 package net.jforum.view.forum.common;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -61,11 +60,12 @@ import net.jforum.entities.PostComments;
 import net.jforum.entities.Smilie;
 import net.jforum.repository.BBCodeRepository;
 import net.jforum.repository.PostRepository;
+import net.jforum.repository.RenderedPostRepository;
 import net.jforum.repository.SecurityRepository;
 import net.jforum.repository.SmiliesRepository;
 import net.jforum.security.SecurityConstants;
 import net.jforum.util.SafeHtml;
-import net.jforum.util.bbcode.BBCode;
+import net.jforum.util.bbcode.BBCodeRenderer;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
 
@@ -81,7 +81,17 @@ public class PostCommon
 			return post;
 		}		
 		
-		String text = post.getText();
+		RenderedPostRepository.Rendered rendered = RenderedPostRepository.get(post);
+		
+		if (rendered != null) {
+			post.setText(rendered.getText());
+			JForumExecutionContext.getTemplateContext().put("hasCodeBlock", rendered.hasCodeBlock());
+			return post;
+		}
+		
+		int version = RenderedPostRepository.version();
+		String source = post.getText();
+		String text = source;
 		
 		if (!post.isHtmlEnabled()) {			
 			text = text.replaceAll("<", "&lt;");
@@ -95,12 +105,14 @@ public class PostCommon
 		SafeHtml safeHtml = new SafeHtml();
 		
 		post.setText(safeHtml.makeSafe(text));
-		processText(post);
+		boolean hasCodeBlock = processText(post);
 		post.setText(safeHtml.ensureAllAttributesAreSafe(post.getText()));
+		
+		RenderedPostRepository.add(post, source, post.getText(), hasCodeBlock, version);
 		return post;
 	}
 	
-	private static void processText(Post post)
+	private static boolean processText(Post post)
 	{
 		int codeIndex = post.getText().indexOf("[code");
 		int codeEndIndex = codeIndex > -1 ? post.getText().indexOf("[/code]") : -1;
@@ -148,6 +160,7 @@ public class PostCommon
 		}
 		
 		JForumExecutionContext.getTemplateContext().put("hasCodeBlock", hasCodeBlock);		
+		return hasCodeBlock;
 	}
 	
 	private static String parseCode(String origText)
@@ -171,23 +184,10 @@ public class PostCommon
 			return origText; 
 		}
 		// now apply the regular expressions from the xml-config
-		String text = processed.toString();
-		for (Iterator<BBCode> iter = BBCodeRepository.getBBCollection().getBbList().iterator(); iter.hasNext();) {
-			BBCode bb = iter.next();
-			
-			if (bb.getTagName().startsWith("code")) {
-				text = text.replaceAll(bb.getRegex(), bb.getReplace());
-			}
-		}
+		String text = BBCodeRepository.getBBCollection().getRenderer().renderCode(processed.toString());
 		
 		// Escape & to &amp;
-		text = text.replaceAll("&", "&amp;");
-		text = text.replaceAll("&amp;lt;", "&lt;");
-		text = text.replaceAll("&amp;gt;", "&gt;");
-		text = text.replaceAll("&amp;quot;", "&quot;");
-		text = text.replaceAll("&amp;amp;", "&amp;");
-		
-		return text;
+		return BBCodeRenderer.escapeAmpersands(text);
 	}
 	
 	public static String prepareTextForDisplayExceptCodeTag(String origText, boolean isBBCodeEnabled, boolean isSmilesEnabled)
@@ -202,38 +202,18 @@ public class PostCommon
 		}
 		
 		if (isBBCodeEnabled && text.indexOf('[') > -1 && text.indexOf(']') > -1) {
-			for (Iterator<BBCode> iter = BBCodeRepository.getBBCollection().getBbList().iterator(); iter.hasNext();) {
-				BBCode bb = iter.next();
-				
-				if (!bb.getTagName().startsWith("code")) {
-					text = text.replaceAll(bb.getRegex(), bb.getReplace());
-				}
-			}
+			text = BBCodeRepository.getBBCollection().getRenderer().render(text);
 		}
 		
 		text = parseDefaultRequiredBBCode(text);
 		
 		// Escape & to &amp;
-		text = text.replaceAll("&", "&amp;");
-		text = text.replaceAll("&amp;lt;", "&lt;");
-		text = text.replaceAll("&amp;gt;", "&gt;");
-		text = text.replaceAll("&amp;quot;", "&quot;");
-		text = text.replaceAll("&amp;amp;", "&amp;");
-		
-		return text;
+		return BBCodeRenderer.escapeAmpersands(text);
 	}
 	
 	public static String parseDefaultRequiredBBCode(String origText)
 	{
-		String text = origText;
-		Collection<BBCode> list = BBCodeRepository.getBBCollection().getAlwaysProcessList();
-		
-		for (Iterator<BBCode> iter = list.iterator(); iter.hasNext(); ) {
-			BBCode bb = iter.next();
-			text = text.replaceAll(bb.getRegex(), bb.getReplace());
-		}
-		
-		return text;
+		return BBCodeRepository.getBBCollection().getRenderer().renderAlwaysProcess(origText);
 	}
 
 	/**
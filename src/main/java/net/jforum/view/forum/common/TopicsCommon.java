@@ -45,7 +45,6 @@ package net.jforum.view.forum.common;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 import net.jforum.JForumExecutionContext;
 import net.jforum.SessionFacade;
@@ -54,9 +53,11 @@ import net.jforum.dao.ForumDAO;
 import net.jforum.dao.TopicDAO;
 import net.jforum.entities.Forum;
 import net.jforum.entities.Post;
+import net.jforum.entities.ReadState;
 import net.jforum.entities.Topic;
 import net.jforum.entities.User;
 import net.jforum.entities.UserSession;
+import net.jforum.repository.BoardStatsRepository;
 import net.jforum.repository.ForumRepository;
 import net.jforum.repository.PostRepository;
 import net.jforum.repository.SecurityRepository;
@@ -64,8 +65,7 @@ import net.jforum.repository.TopicRepository;
 import net.jforum.security.PermissionControl;
 import net.jforum.security.SecurityConstants;
 import net.jforum.util.I18n;
-import net.jforum.util.concurrent.Executor;
-import net.jforum.util.mail.EmailSenderTask;
+import net.jforum.util.mail.MailDispatcher;
 import net.jforum.util.mail.TopicReplySpammer;
 import net.jforum.util.preferences.ConfigKeys;
 import net.jforum.util.preferences.SystemGlobals;
@@ -80,12 +80,11 @@ import freemarker.template.SimpleHash;
  */
 public class TopicsCommon 
 {
-	private static final Object MUTEXT = new Object();
-	
 	/**
 	 * List all first 'n' topics of a given forum.
 	 * This method returns no more than <code>ConfigKeys.TOPICS_PER_PAGE</code>
-	 * topics for the forum. 
+	 * topics for the forum. The first <code>ConfigKeys.TOPIC_CACHE_SIZE</code>
+	 * topics come from the cache, and the pages after them from the database.
 	 * 
 	 * @param forumId The forum id to which the topics belongs to
 	 * @param start The start fetching index
@@ -102,13 +101,12 @@ public class TopicsCommon
 			int topicCacheSize = SystemGlobals.getIntValue(ConfigKeys.TOPIC_CACHE_SIZE);
 			topics = TopicRepository.getTopics(forumId);
 
-			if (topics.isEmpty() || !TopicRepository.isLoaded(forumId) || start+topicsPerPage >= topicCacheSize) {
-				synchronized (MUTEXT) {
-					if (topics.isEmpty() || !TopicRepository.isLoaded(forumId) || start+topicsPerPage >= topicCacheSize) {
-						topics = tm.selectAllByForum(forumId);
-						TopicRepository.addAll(forumId, topics);
-					}
-				}
+			if (topics.isEmpty() || !TopicRepository.isLoaded(forumId)) {
+				topics = TopicRepository.loadTopics(forumId);
+			}
+			
+			if (start > 0 && start + topicsPerPage > topics.size() && topics.size() >= topicCacheSize) {
+				return topicsAfterCache(tm, forumId, start, topicsPerPage, topics);
 			}
 		}
 		else {
@@ -127,6 +125,29 @@ public class TopicsCommon
 		return topics.subList(start, (size < start + topicsPerPage) ? size : start + topicsPerPage);
 	}
 	
+	/**
+	 * Selects a page of topics past the cached ones. When the last topic of the 
+	 * previous page is known, the page is selected right after it, instead of
+	 * making the database skip all the topics before.
+	 */
+	private static List<Topic> topicsAfterCache(TopicDAO tm, int forumId, int start, int topicsPerPage, 
+		List<Topic> cachedTopics)
+	{
+		Topic last = start <= cachedTopics.size()
+			? cachedTopics.get(start - 1)
+			: TopicRepository.getPageBoundary(forumId, start);
+		
+		List<Topic> topics = last == null
+			? tm.selectAllByForumByLimit(forumId, start, topicsPerPage)
+			: tm.selectAllByForumAfter(forumId, last, topicsPerPage);
+		
+		if (!topics.isEmpty()) {
+			TopicRepository.setPageBoundary(forumId, start + topicsPerPage, topics.get(topics.size() - 1));
+		}
+		
+		return topics;
+	}
+	
 	/**
 	 * Prepare the topics for listing.
 	 * This method does some preparation for a set ot <code>net.jforum.entities.Topic</code>
@@ -145,37 +166,17 @@ public class TopicsCommon
 		int postsPerPage = SystemGlobals.getIntValue(ConfigKeys.POSTS_PER_PAGE);
 		
 		List<Topic> newTopics = new ArrayList<Topic>(topics.size());
-		Map<Integer, Long> topicsReadTime = SessionFacade.getTopicsReadTime();
-		Map<Integer, Long> topicReadTimeByForum = SessionFacade.getTopicsReadTimeByForum();
 		
 		boolean checkUnread = (userSession.getUserId() 
 			!= SystemGlobals.getIntValue(ConfigKeys.ANONYMOUS_USER_ID));
 		
+		ReadState readState = checkUnread ? SessionFacade.getReadState() : null;
+		
 		for (Iterator<Topic> iter = topics.iterator(); iter.hasNext(); ) {
 			Topic topic = (Topic)iter.next();
 			
-			boolean read = false;
-			boolean isReadByForum = false;
-			long lastPostTime = topic.getLastPostDate().getTime();
-			
-			if (topicReadTimeByForum != null) {
-				Long currentForumTime = topicReadTimeByForum.get(Integer.valueOf(topic.getForumId()));
-				isReadByForum = currentForumTime != null && lastPostTime < currentForumTime.longValue();
-			}
-			
-			boolean isTopicTimeOlder = !isReadByForum && lastPostTime <= lastVisit;
-			
-			if (!checkUnread || isReadByForum || isTopicTimeOlder) {
-				read = true;
-			}
-			else {
-				Integer topicId = Integer.valueOf(topic.getId());
-				Long currentTopicTime = topicsReadTime.get(topicId);
-				
-				if (currentTopicTime != null) {
-					read = currentTopicTime.longValue() > lastPostTime;
-				}
-			}
+			boolean read = !checkUnread || readState.isRead(topic.getForumId(), topic.getId(), 
+				topic.getLastPostDate().getTime(), lastVisit);
 
 			if (topic.getTotalReplies() + 1 > postsPerPage) {
 				topic.setPaginate(true);
@@ -275,7 +276,7 @@ public class TopicsCommon
 			// We only have to send an email if there are users
 			// subscribed to the topic
 			if (usersToNotify != null && !usersToNotify.isEmpty()) {
-				Executor.execute(new EmailSenderTask(new TopicReplySpammer(topic, post, usersToNotify)));
+				MailDispatcher.dispatch(new TopicReplySpammer(topic, post, usersToNotify));
 			}
 		}
 	}
@@ -331,6 +332,7 @@ public class TopicsCommon
 		topic.setForumId(forumId);
 
 		topicDao.delete(topic, fromModeration);
+		BoardStatsRepository.decrementTotalTopics();
 
 		if (!fromModeration) {
 			// Updates the Recent Topics if it contains this topic
@@ -0,0 +1,149 @@
+/*
+ * Created on Oct 18, 2026 11:58:40 PM
+ */
+package net.jforum;
+
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import net.jforum.exceptions.ForumException;
+
+/**
+ * Tests {@link CommandRegistry} and {@link ActionStatistics}
+ *
+ * @version $Id$
+ */
+public class CommandRegistryTest extends TestCase
+{
+	private static final String DUMMY = DummyCommand.class.getName();
+	
+	protected void setUp() throws Exception
+	{
+		// Start without the statistics of the other tests
+		CommandRegistry.init(new Properties());
+		CommandRegistry.init(modules());
+	}
+	
+	public void testActionLookup()
+	{
+		DummyCommand command = (DummyCommand)CommandRegistry.newCommand(DUMMY);
+		CommandRegistry.dispatch(command, "show");
+		
+		assertEquals("show", command.called);
+		assertEquals(1, statistics("dummy.show").getCalls());
+		assertEquals(0, statistics("dummy.show").getFailures());
+	}
+	
+	public void testUnknownActionRunsList()
+	{
+		DummyCommand command = (DummyCommand)CommandRegistry.newCommand(DUMMY);
+		
+		CommandRegistry.dispatch(command, "nothing");
+		assertEquals("list", command.called);
+		
+		command.called = null;
+		CommandRegistry.dispatch(command, null);
+		assertEquals("list", command.called);
+		
+		// Methods of Object, static ones and the ones with arguments are not actions
+		command.called = null;
+		CommandRegistry.dispatch(command, "hashCode");
+		assertEquals("list", command.called);
+		
+		command.called = null;
+		CommandRegistry.dispatch(command, "helper");
+		assertEquals("list", command.called);
+		
+		assertEquals(4, statistics("dummy.list").getCalls());
+		assertNull(CommandRegistry.getStatistics().get("dummy.nothing"));
+	}
+	
+	public void testFailureCounted()
+	{
+		try {
+			CommandRegistry.dispatch(CommandRegistry.newCommand(DUMMY), "fail");
+			fail("Should have thrown ForumException");
+		}
+		catch (ForumException e) {
+			// ok
+		}
+		
+		assertEquals(1, statistics("dummy.fail").getCalls());
+		assertEquals(1, statistics("dummy.fail").getFailures());
+	}
+	
+	public void testReloadKeepsStatistics()
+	{
+		CommandRegistry.dispatch(CommandRegistry.newCommand(DUMMY), "show");
+		long calls = statistics("dummy.show").getCalls();
+		
+		CommandRegistry.init(modules());
+		
+		assertEquals(calls, statistics("dummy.show").getCalls());
+	}
+	
+	public void testHistogramBuckets()
+	{
+		ActionStatistics s = new ActionStatistics();
+		
+		s.called(500000L, false);
+		s.called(1500000L, false);
+		s.called(5000000L, false);
+		s.called(10000000000L, true);
+		
+		long[] histogram = s.getHistogram();
+		
+		assertEquals(ActionStatistics.getBucketLimits().length + 1, histogram.length);
+		assertEquals(1, histogram[0]);
+		assertEquals(1, histogram[1]);
+		assertEquals(0, histogram[2]);
+		assertEquals(1, histogram[3]);
+		assertEquals(1, histogram[histogram.length - 1]);
+		
+		assertEquals(4, s.getCalls());
+		assertEquals(1, s.getFailures());
+		assertEquals(10000.0, s.getMaxMillis(), 0.001);
+		assertEquals(10007.0 / 4, s.getAverageMillis(), 0.001);
+	}
+	
+	private static Properties modules()
+	{
+		Properties modules = new Properties();
+		modules.setProperty("dummy", DUMMY);
+		
+		return modules;
+	}
+	
+	private static ActionStatistics statistics(String action)
+	{
+		ActionStatistics s = CommandRegistry.getStatistics().get(action);
+		assertNotNull(action, s);
+		
+		return s;
+	}
+	
+	public static class DummyCommand extends Command
+	{
+		String called;
+		
+		public void list()
+		{
+			this.called = "list";
+		}
+		
+		public void show()
+		{
+			this.called = "show";
+		}
+		
+		public void fail()
+		{
+			throw new IllegalStateException("fail");
+		}
+		
+		public static void helper()
+		{
+			throw new IllegalStateException("helper");
+		}
+	}
+}
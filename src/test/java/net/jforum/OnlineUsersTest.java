@@ -158,6 +158,97 @@ public class OnlineUsersTest extends TestCase
 		}		
 	}
 	
+	/**
+	 * Check if logged users are found by id and username, and only while online
+	 */
+	public void testLoggedLookup()
+	{
+		SessionFacade.setAttribute("logged", "1");
+		String sessionId = "lookup_" + System.currentTimeMillis();
+		this.createUserSession(5, sessionId);
+		
+		String username = SessionFacade.getUserSession(sessionId).getUsername();
+		
+		assertEquals(sessionId, SessionFacade.isUserInSession(5));
+		assertEquals(sessionId, SessionFacade.isUserInSession(username));
+		
+		SessionFacade.remove(sessionId);
+		
+		assertNull(SessionFacade.isUserInSession(5));
+		assertNull(SessionFacade.isUserInSession(username));
+		assertEquals(0, SessionFacade.registeredSize());
+	}
+	
+	/**
+	 * Add and remove the same sessions from many threads, and check nothing
+	 * is left behind in the counters or in the indexes of logged users
+	 */
+	public void testConcurrentAddRemove() throws Exception
+	{
+		SessionFacade.setAttribute("logged", "1");
+		
+		final ForumContext forumContext = JForumExecutionContext.getForumContext();
+		final String[] sessionId = { "race1_" + System.currentTimeMillis(), "race2_" + System.currentTimeMillis() };
+		final Throwable[] failure = new Throwable[1];
+		final Thread[] threads = new Thread[8];
+		
+		for (int i = 0; i < threads.length; i++) {
+			final int userId = i + 10;
+			
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						JForumExecutionContext.get().setForumContext(forumContext);
+						
+						for (int j = 0; j < 500; j++) {
+							String id = sessionId[j % sessionId.length];
+							
+							if (j % 3 == 2) {
+								SessionFacade.remove(id);
+							}
+							else {
+								createUserSession(userId, id);
+							}
+						}
+					}
+					catch (Throwable t) {
+						failure[0] = t;
+					}
+				}
+			};
+			
+			threads[i].start();
+		}
+		
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		
+		assertNull(failure[0]);
+		
+		int registered = 0;
+		
+		for (int i = 0; i < sessionId.length; i++) {
+			if (SessionFacade.getUserSession(sessionId[i]) != null) {
+				registered++;
+			}
+		}
+		
+		assertEquals(registered, SessionFacade.registeredSize());
+		assertEquals(registered, SessionFacade.getLoggedSessions().size());
+		
+		for (int i = 0; i < sessionId.length; i++) {
+			SessionFacade.remove(sessionId[i]);
+		}
+		
+		assertEquals(0, SessionFacade.registeredSize());
+		assertEquals(0, SessionFacade.getLoggedSessions().size());
+		
+		for (int i = 0; i < threads.length; i++) {
+			assertNull(SessionFacade.isUserInSession(i + 10));
+		}
+	}
+	
 	private void createUserSession(int userId, String sessionId)
 	{
 		UserSession us = new UserSession();
@@ -0,0 +1,110 @@
+/*
+ * Created on Oct 18, 2026 5:48:10 PM
+ */
+package net.jforum.cache;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+/**
+ * @version $Id$
+ */
+public class ConcurrentCacheEngineTest extends TestCase
+{
+	private ConcurrentCacheEngine engine;
+	
+	protected void setUp() throws Exception
+	{
+		SystemGlobals.setValue(ConfigKeys.CACHE_CONCURRENT_MAX_ENTRIES, "0");
+		SystemGlobals.setValue(ConfigKeys.CACHE_CONCURRENT_TTL, "0");
+		SystemGlobals.setValue(ConfigKeys.CACHE_CONCURRENT_REGIONS, "bounded:32, expiring:0:1");
+		
+		this.engine = new ConcurrentCacheEngine();
+		this.engine.init();
+	}
+	
+	public void testAddAndGet()
+	{
+		this.engine.add("fqn", "key", "value");
+		this.engine.add("dummy", "dummy value");
+		
+		assertEquals("value", this.engine.get("fqn", "key"));
+		assertEquals("dummy value", this.engine.get(CacheEngine.DUMMY_FQN, "dummy"));
+		assertNull(this.engine.get("fqn", "other"));
+		assertNull(this.engine.get("unknown", "key"));
+		
+		assertEquals(1, this.engine.getStatistics("fqn").getHits());
+		assertEquals(1, this.engine.getStatistics("fqn").getMisses());
+	}
+	
+	public void testGetFqnReturnsAllEntries()
+	{
+		this.engine.add("fqn", "k1", "v1");
+		this.engine.add("fqn", "k2", "v2");
+		
+		Map<?, ?> m = (Map<?, ?>)this.engine.get("fqn");
+		assertEquals(2, m.size());
+		assertEquals("v2", m.get("k2"));
+		assertEquals(2, this.engine.getValues("fqn").size());
+		assertNull(this.engine.get("unknown"));
+		assertTrue(this.engine.getValues("unknown").isEmpty());
+	}
+	
+	public void testRemove()
+	{
+		this.engine.add("fqn", "k1", "v1");
+		this.engine.add("fqn", "k2", "v2");
+		
+		this.engine.remove("fqn", "k1");
+		assertNull(this.engine.get("fqn", "k1"));
+		assertEquals("v2", this.engine.get("fqn", "k2"));
+		
+		this.engine.remove("fqn");
+		assertNull(this.engine.get("fqn", "k2"));
+	}
+	
+	public void testBoundedRegionEvictsLeastRecentlyUsed() throws Exception
+	{
+		this.engine.add("bounded", "hot", "hot");
+		Thread.sleep(5);
+		
+		for (int i = 0; i < 31; i++) {
+			this.engine.add("bounded", Integer.toString(i), Integer.valueOf(i));
+		}
+		
+		Thread.sleep(5);
+		assertEquals("hot", this.engine.get("bounded", "hot"));
+		
+		this.engine.add("bounded", "overflow", "overflow");
+		
+		assertEquals(30, this.engine.size("bounded"));
+		assertEquals(3, this.engine.getStatistics("bounded").getEvictions());
+		assertEquals("hot", this.engine.get("bounded", "hot"));
+		assertEquals("overflow", this.engine.get("bounded", "overflow"));
+	}
+	
+	public void testUnboundedRegionKeepsEverything()
+	{
+		for (int i = 0; i < 1000; i++) {
+			this.engine.add("fqn", Integer.toString(i), Integer.valueOf(i));
+		}
+		
+		assertEquals(1000, this.engine.size("fqn"));
+		assertEquals(0, this.engine.getStatistics("fqn").getEvictions());
+	}
+	
+	public void testExpiredEntriesAreNotReturned() throws Exception
+	{
+		this.engine.add("expiring", "key", "value");
+		assertEquals("value", this.engine.get("expiring", "key"));
+		
+		Thread.sleep(1100);
+		
+		assertNull(this.engine.get("expiring", "key"));
+		assertTrue(this.engine.getValues("expiring").isEmpty());
+		assertEquals(1, this.engine.getStatistics("expiring").getExpirations());
+	}
+}
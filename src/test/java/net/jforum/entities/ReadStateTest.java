@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 10:32:05 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.entities;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class ReadStateTest extends TestCase
+{
+	private static final long LAST_VISIT = 1000000;
+	
+	public void testPostsBeforeLastVisitAreRead()
+	{
+		ReadState state = new ReadState();
+		
+		assertTrue(state.isRead(1, 10, LAST_VISIT - 1, LAST_VISIT));
+		assertFalse(state.isRead(1, 10, LAST_VISIT + 1, LAST_VISIT));
+	}
+	
+	public void testReadTopicBecomesUnreadWithNewPost()
+	{
+		ReadState state = new ReadState();
+		state.markTopic(1, 10, LAST_VISIT + 100, LAST_VISIT);
+		
+		assertTrue(state.isRead(1, 10, LAST_VISIT + 50, LAST_VISIT));
+		assertFalse(state.isRead(1, 10, LAST_VISIT + 200, LAST_VISIT));
+		assertFalse(state.isRead(1, 11, LAST_VISIT + 50, LAST_VISIT));
+		assertFalse(state.isRead(2, 10, LAST_VISIT + 50, LAST_VISIT));
+	}
+	
+	public void testMarkForumAsRead()
+	{
+		ReadState state = new ReadState();
+		state.markForum(1, LAST_VISIT + 500);
+		
+		assertTrue(state.isRead(1, 10, LAST_VISIT + 400, LAST_VISIT));
+		assertFalse(state.isRead(1, 10, LAST_VISIT + 600, LAST_VISIT));
+		assertFalse(state.isRead(2, 10, LAST_VISIT + 400, LAST_VISIT));
+	}
+	
+	public void testTopicsKeptSortedAndDroppedBelowMark()
+	{
+		ForumReadState forum = new ForumReadState();
+		
+		for (int i = 100; i > 0; i--) {
+			forum.markTopic(i * 7, i * 10);
+		}
+		
+		assertEquals(100, forum.size());
+		
+		for (int i = 1; i <= 100; i++) {
+			assertTrue(forum.isRead(i * 7, i * 10 - 1));
+			assertFalse(forum.isRead(i * 7, i * 10));
+			assertFalse(forum.isRead(i * 7 + 1, i * 10 - 1));
+		}
+		
+		forum.raiseMark(500);
+		
+		assertEquals(50, forum.size());
+		assertEquals(500, forum.getMark());
+		assertTrue(forum.isRead(3, 499));
+		assertTrue(forum.isRead(70 * 7, 699));
+		assertFalse(forum.isRead(70 * 7, 700));
+	}
+}
@@ -0,0 +1,122 @@
+package net.jforum.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import net.jforum.entities.Banlist;
+
+/**
+ * @version $Id$
+ */
+public class BanlistIndexTest extends TestCase
+{
+	public void testUserIdAndEmail()
+	{
+		BanlistIndex index = new BanlistIndex(Arrays.asList(newBanlist(2, null, null), newBanlist(0, "email@2", null)));
+		
+		assertTrue(index.matches(newBanlist(2, null, null)));
+		assertTrue(index.matches(newBanlist(5, "email@2", "10.0.0.1")));
+		assertFalse(index.matches(newBanlist(1, "email@1", "10.0.0.1")));
+		assertFalse(index.matches(newBanlist(0, null, null)));
+	}
+	
+	public void testWildcards()
+	{
+		BanlistIndex index = new BanlistIndex(Arrays.asList(newBanlist(0, null, "192.168.*.*"), 
+			newBanlist(0, null, "10.1.2.*"), newBanlist(0, null, "172.*.0.1"), newBanlist(0, null, "*.*.*.*")));
+		
+		assertTrue(index.matches(newBanlist(0, null, "192.168.10.20")));
+		assertTrue(index.matches(newBanlist(0, null, "10.1.2.255")));
+		assertTrue(index.matches(newBanlist(0, null, "172.16.0.1")));
+		assertFalse(index.matches(newBanlist(0, null, "10.1.3.1")));
+		assertFalse(index.matches(newBanlist(0, null, "172.16.0.2")));
+		assertFalse(index.matches(newBanlist(0, null, "192.169.1.1")));
+	}
+	
+	public void testCidr()
+	{
+		BanlistIndex index = new BanlistIndex(Arrays.asList(newBanlist(0, null, "10.0.0.0/8"), 
+			newBanlist(0, null, "192.168.100.0/22"), newBanlist(0, null, "2001:db8::/32")));
+		
+		assertTrue(index.matches(newBanlist(0, null, "10.200.3.4")));
+		assertTrue(index.matches(newBanlist(0, null, "192.168.103.255")));
+		assertFalse(index.matches(newBanlist(0, null, "192.168.104.0")));
+		assertFalse(index.matches(newBanlist(0, null, "11.0.0.1")));
+		assertTrue(index.matches(newBanlist(0, null, "2001:DB8:0:0:0:0:0:1")));
+		assertFalse(index.matches(newBanlist(0, null, "2001:db9::1")));
+	}
+	
+	public void testIpv6DifferentNotation()
+	{
+		BanlistIndex index = new BanlistIndex(Arrays.asList(newBanlist(0, null, "::1")));
+		
+		assertTrue(index.matches(newBanlist(0, null, "0:0:0:0:0:0:0:1")));
+		assertFalse(index.matches(newBanlist(0, null, "0:0:0:0:0:0:0:2")));
+	}
+	
+	public void testNeverResolvesHostNames()
+	{
+		assertNull(BanlistIndex.parseAddress("localhost"));
+		assertNull(BanlistIndex.parseAddress("some.host:80"));
+		assertNull(BanlistIndex.parseAddress("192.168.01.1"));
+		assertNull(BanlistIndex.parseAddress("192.168.1.256"));
+		assertEquals(4, BanlistIndex.parseAddress("192.168.1.1").length);
+	}
+	
+	public void testSameResultAsBanlistMatches()
+	{
+		Random random = new Random(11);
+		List<Banlist> entries = new ArrayList<Banlist>();
+		
+		for (int i = 0; i < 300; i++) {
+			entries.add(newBanlist(0, null, randomIp(random, true)));
+		}
+		
+		BanlistIndex index = new BanlistIndex(entries);
+		
+		for (int i = 0; i < 5000; i++) {
+			Banlist request = newBanlist(0, null, randomIp(random, false));
+			boolean expected = false;
+			
+			for (int j = 0; j < entries.size() && !expected; j++) {
+				expected = entries.get(j).matches(request);
+			}
+			
+			assertEquals(request.getIp(), expected, index.matches(request));
+		}
+	}
+	
+	private static String randomIp(Random random, boolean wildcards)
+	{
+		StringBuilder sb = new StringBuilder();
+		
+		for (int i = 0; i < 4; i++) {
+			if (i > 0) {
+				sb.append('.');
+			}
+			
+			if (wildcards && random.nextInt(3) == 0) {
+				sb.append('*');
+			}
+			else {
+				sb.append(random.nextInt(3));
+			}
+		}
+		
+		return sb.toString();
+	}
+	
+	private static Banlist newBanlist(int userId, String email, String ip)
+	{
+		Banlist b = new Banlist();
+		
+		b.setUserId(userId);
+		b.setEmail(email);
+		b.setIp(ip);
+		
+		return b;
+	}
+}
@@ -0,0 +1,122 @@
+package net.jforum.repository;
+
+import java.util.Date;
+
+import junit.framework.TestCase;
+import net.jforum.entities.ForumStats;
+
+/**
+ * @version $Id$
+ */
+public class BoardStatsRepositoryTest extends TestCase
+{
+	protected void setUp() throws Exception
+	{
+		BoardStatsRepository.install(null, newStats(10, 5, 100));
+	}
+	
+	public void testIncrementAndDecrement()
+	{
+		BoardStatsRepository.incrementTotalUsers();
+		BoardStatsRepository.incrementTotalTopics();
+		BoardStatsRepository.incrementTotalMessages();
+		BoardStatsRepository.incrementTotalMessages();
+		BoardStatsRepository.decrementTotalMessages();
+		
+		assertEquals(11, BoardStatsRepository.getTotalUsers());
+		assertEquals(6, BoardStatsRepository.getTotalTopics());
+		assertEquals(101, BoardStatsRepository.getTotalMessages());
+		
+		BoardStatsRepository.decrementTotalTopics();
+		
+		ForumStats stats = BoardStatsRepository.getBoardStatus();
+		
+		assertEquals(11, stats.getUsers());
+		assertEquals(5, stats.getTopics());
+		assertEquals(101, stats.getPosts());
+	}
+	
+	public void testNeverBelowZero()
+	{
+		BoardStatsRepository.install(null, newStats(0, 0, 0));
+		BoardStatsRepository.decrementTotalMessages();
+		BoardStatsRepository.decrementTotalTopics();
+		
+		assertEquals(0, BoardStatsRepository.getTotalMessages());
+		assertEquals(0, BoardStatsRepository.getTotalTopics());
+	}
+	
+	public void testConcurrentIncrements() throws Exception
+	{
+		Thread[] threads = new Thread[8];
+		
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						BoardStatsRepository.incrementTotalMessages();
+					}
+				}
+			};
+			
+			threads[i].start();
+		}
+		
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		
+		assertEquals(100 + threads.length * 1000, BoardStatsRepository.getTotalMessages());
+	}
+	
+	public void testReconcileReplacesCounts()
+	{
+		BoardStatsRepository.incrementTotalMessages();
+		BoardStatsRepository.install(BoardStatsRepository.current(), newStats(20, 7, 250));
+		
+		assertEquals(20, BoardStatsRepository.getTotalUsers());
+		assertEquals(7, BoardStatsRepository.getTotalTopics());
+		assertEquals(250, BoardStatsRepository.getTotalMessages());
+	}
+	
+	public void testReconcileKeepsChangesMadeWhileLoading()
+	{
+		BoardStatsRepository.Snapshot before = BoardStatsRepository.current();
+		
+		// Counted while the database was being queried
+		BoardStatsRepository.incrementTotalMessages();
+		BoardStatsRepository.incrementTotalMessages();
+		BoardStatsRepository.incrementTotalTopics();
+		
+		BoardStatsRepository.install(before, newStats(20, 7, 250));
+		
+		assertEquals(20, BoardStatsRepository.getTotalUsers());
+		assertEquals(8, BoardStatsRepository.getTotalTopics());
+		assertEquals(252, BoardStatsRepository.getTotalMessages());
+	}
+	
+	public void testChangesIgnoredWhileNotLoaded()
+	{
+		BoardStatsRepository.requestReconcile();
+		
+		assertNull(BoardStatsRepository.current());
+		
+		BoardStatsRepository.incrementTotalMessages();
+		BoardStatsRepository.install(null, newStats(10, 5, 100));
+		
+		assertEquals(100, BoardStatsRepository.getTotalMessages());
+	}
+	
+	private static ForumStats newStats(int users, int topics, int posts)
+	{
+		ForumStats stats = new ForumStats();
+		
+		stats.setUsers(users);
+		stats.setTopics(topics);
+		stats.setPosts(posts);
+		stats.setFirstPostTime(new Date(System.currentTimeMillis() - 10 * 24 * 60 * 60 * 1000L));
+		stats.setFirstUserTime(new Date(System.currentTimeMillis() - 20 * 24 * 60 * 60 * 1000L));
+		
+		return stats;
+	}
+}
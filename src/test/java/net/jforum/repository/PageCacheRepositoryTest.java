@@ -0,0 +1,144 @@
+/*
+ * Created on Oct 18, 2026 11:47:21 PM
+ */
+package net.jforum.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+import net.jforum.cache.ConcurrentCacheEngine;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+/**
+ * @version $Id$
+ */
+public class PageCacheRepositoryTest extends TestCase
+{
+	private static final String TEXT_HTML = "text/html; charset=UTF-8";
+	
+	protected void setUp() throws Exception
+	{
+		SystemGlobals.setValue(ConfigKeys.CACHE_CONCURRENT_MAX_ENTRIES, "0");
+		SystemGlobals.setValue(ConfigKeys.CACHE_CONCURRENT_TTL, "0");
+		SystemGlobals.setValue(ConfigKeys.CACHE_CONCURRENT_REGIONS, "");
+		SystemGlobals.setValue(ConfigKeys.PAGE_CACHE_ENABLED, "true");
+		SystemGlobals.setValue(ConfigKeys.PAGE_CACHE_ACTIONS, "forums.list, posts.list,");
+		SystemGlobals.setValue(ConfigKeys.PAGE_CACHE_TTL, "30");
+		SystemGlobals.setValue(ConfigKeys.PAGE_CACHE_GZIP, "false");
+		SystemGlobals.setValue(ConfigKeys.PAGE_CACHE_RENDER_WAIT, "5000");
+		
+		ConcurrentCacheEngine engine = new ConcurrentCacheEngine();
+		engine.init();
+		
+		new PageCacheRepository().setCacheEngine(engine);
+	}
+	
+	public void testKey()
+	{
+		assertEquals("en_US /jforum/forums/list.page",
+			PageCacheRepository.key("forums", "list", "/jforum/forums/list.page", null, "en_US"));
+		assertEquals("pt_BR /jforum/posts/list/10/3.page?x=1",
+			PageCacheRepository.key("posts", "list", "/jforum/posts/list/10/3.page", "x=1", "pt_BR"));
+		assertNull(PageCacheRepository.key("forums", "show", "/jforum/forums/show/1.page", null, "en_US"));
+		assertNull(PageCacheRepository.key(null, null, "/jforum/", null, "en_US"));
+	}
+	
+	public void testActionsChangedOrDisabled()
+	{
+		SystemGlobals.setValue(ConfigKeys.PAGE_CACHE_ACTIONS, "forums.show");
+		
+		assertNull(PageCacheRepository.key("forums", "list", "/jforum/forums/list.page", null, "en_US"));
+		assertNotNull(PageCacheRepository.key("forums", "show", "/jforum/forums/show/1.page", null, "en_US"));
+		
+		SystemGlobals.setValue(ConfigKeys.PAGE_CACHE_ENABLED, "false");
+		
+		assertNull(PageCacheRepository.key("forums", "show", "/jforum/forums/show/1.page", null, "en_US"));
+	}
+	
+	public void testAddAndGet() throws Exception
+	{
+		SystemGlobals.setValue(ConfigKeys.PAGE_CACHE_GZIP, "true");
+		
+		byte[] content = "<html>page</html>".getBytes("UTF-8");
+		PageCacheRepository.add("k1", TEXT_HTML, content, PageCacheRepository.version());
+		
+		PageCacheRepository.Page page = PageCacheRepository.get("k1");
+		
+		assertNotNull(page);
+		assertEquals(TEXT_HTML, page.getContentType());
+		assertTrue(Arrays.equals(content, page.getContent()));
+		assertTrue(Arrays.equals(content, gunzip(page.getGzippedContent())));
+		assertNull(PageCacheRepository.get("k2"));
+	}
+	
+	public void testClear() throws Exception
+	{
+		PageCacheRepository.add("k1", TEXT_HTML, new byte[] { 1 }, PageCacheRepository.version());
+		PageCacheRepository.clear();
+		
+		assertNull(PageCacheRepository.get("k1"));
+	}
+	
+	public void testPageRenderedBeforeChangeIsNotStored()
+	{
+		int version = PageCacheRepository.version();
+		
+		// Some post changed while the page was being rendered
+		PageCacheRepository.clear();
+		PageCacheRepository.add("k1", TEXT_HTML, new byte[] { 1 }, version);
+		
+		assertNull(PageCacheRepository.get("k1"));
+		
+		PageCacheRepository.add("k1", TEXT_HTML, new byte[] { 1 }, PageCacheRepository.version());
+		
+		assertNotNull(PageCacheRepository.get("k1"));
+	}
+	
+	public void testOnlyOneRequestRenders() throws Exception
+	{
+		final String key = "coalesced";
+		final boolean[] rendered = new boolean[1];
+		final PageCacheRepository.Page[] found = new PageCacheRepository.Page[1];
+		
+		assertTrue(PageCacheRepository.startRendering(key));
+		
+		Thread other = new Thread() {
+			public void run() {
+				rendered[0] = PageCacheRepository.startRendering(key);
+				found[0] = PageCacheRepository.get(key);
+			}
+		};
+		
+		other.start();
+		Thread.sleep(100);
+		
+		PageCacheRepository.add(key, TEXT_HTML, new byte[] { 1 }, PageCacheRepository.version());
+		PageCacheRepository.endRendering(key);
+		other.join(5000);
+		
+		assertFalse(rendered[0]);
+		assertNotNull(found[0]);
+		
+		// Once rendered, the next miss renders again
+		assertTrue(PageCacheRepository.startRendering(key));
+		PageCacheRepository.endRendering(key);
+	}
+	
+	private static byte[] gunzip(byte[] data) throws Exception
+	{
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		int n;
+		
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+		
+		return out.toByteArray();
+	}
+}
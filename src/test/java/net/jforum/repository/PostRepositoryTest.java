@@ -0,0 +1,84 @@
+/*
+ * Created on Oct 18, 2026 10:52:36 PM
+ */
+package net.jforum.repository;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.jforum.entities.Post;
+
+/**
+ * Tests the pages of a topic kept by {@link PostRepository}
+ * 
+ * @version $Id$
+ */
+public class PostRepositoryTest extends TestCase
+{
+	private static final int PAGE_SIZE = 3;
+	
+	private PostRepository.TopicPages topicPages;
+	
+	protected void setUp() throws Exception
+	{
+		// Two full pages, with posts sent every minute
+		this.topicPages = new PostRepository.TopicPages(PAGE_SIZE);
+		this.topicPages.putPage(0, posts(1, 3));
+		this.topicPages.putPage(1, posts(4, 6));
+	}
+	
+	public void testNewPostKeepsFullPages()
+	{
+		this.topicPages.append(newPost(7, 7));
+		
+		assertEquals(6, this.topicPages.size());
+	}
+	
+	public void testNewPostDropsLastPage()
+	{
+		this.topicPages.putPage(2, posts(7, 8));
+		this.topicPages.append(newPost(9, 9));
+		
+		assertEquals(6, this.topicPages.size());
+		assertEquals(-1, this.topicPages.pageOf(newPost(7, 7)));
+	}
+	
+	public void testOlderPostDropsPagesAfterIt()
+	{
+		// A post approved by a moderator, sent before the last post of the first page
+		this.topicPages.append(newPost(10, 2));
+		
+		assertEquals(0, this.topicPages.size());
+	}
+	
+	public void testOlderPostKeepsPagesBeforeIt()
+	{
+		this.topicPages.append(newPost(10, 5));
+		
+		assertEquals(3, this.topicPages.size());
+		assertEquals(0, this.topicPages.pageOf(newPost(3, 3)));
+		assertEquals(-1, this.topicPages.pageOf(newPost(4, 4)));
+	}
+	
+	private static List<Post> posts(int first, int last)
+	{
+		List<Post> posts = new ArrayList<Post>();
+		
+		for (int i = first; i <= last; i++) {
+			posts.add(newPost(i, i));
+		}
+		
+		return posts;
+	}
+	
+	private static Post newPost(int id, int minute)
+	{
+		Post post = new Post();
+		post.setId(id);
+		post.setTime(new Date(minute * 60 * 1000L));
+		
+		return post;
+	}
+}
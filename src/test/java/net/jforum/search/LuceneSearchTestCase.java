@@ -54,6 +54,7 @@ import net.jforum.entities.Post;
 
 import org.apache.log4j.xml.DOMConfigurator;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
@@ -244,7 +245,7 @@ public class LuceneSearchTestCase extends TestCase
 	
 	private static class FakeResultCollector implements LuceneResultCollector
 	{
-		public List<Post> collect(SearchArgs args, TopDocs results, Query query)
+		public List<Post> collect(SearchArgs args, TopDocs results, Query query, IndexSearcher searcher)
 		{
 			List<Post> l = new ArrayList<Post>();
 			ScoreDoc[] hits = results.scoreDocs;
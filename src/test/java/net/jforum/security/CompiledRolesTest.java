@@ -0,0 +1,70 @@
+package net.jforum.security;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class CompiledRolesTest extends TestCase
+{
+	private PermissionControl pc;
+	
+	protected void setUp() throws Exception
+	{
+		RoleCollection roles = new RoleCollection();
+		roles.add(this.newRole("perm_administration"));
+		roles.add(this.newRole("perm_forum", "1", "5", "30"));
+		roles.add(this.newRole("perm_custom", "abc", "007"));
+		
+		this.pc = new PermissionControl();
+		this.pc.setRoles(roles);
+	}
+	
+	public void testRoleWithoutValue()
+	{
+		assertTrue(this.pc.canAccess("perm_administration"));
+		assertFalse(this.pc.canAccess("perm_administration", "1"));
+		assertFalse(this.pc.canAccess("perm_unknown"));
+		assertFalse(this.pc.canAccess(null));
+	}
+	
+	public void testNumericValues()
+	{
+		assertTrue(this.pc.canAccess("perm_forum", "5"));
+		assertTrue(this.pc.canAccess("perm_forum", 30));
+		assertFalse(this.pc.canAccess("perm_forum", "2"));
+		assertFalse(this.pc.canAccess("perm_forum", 31));
+		assertFalse(this.pc.canAccess("perm_forum", "05"));
+		assertFalse(this.pc.canAccess("perm_unknown", 5));
+	}
+	
+	public void testValuesAreComparedAsStrings()
+	{
+		assertTrue(this.pc.canAccess("perm_custom", "abc"));
+		assertTrue(this.pc.canAccess("perm_custom", "007"));
+		assertFalse(this.pc.canAccess("perm_custom", "7"));
+		assertFalse(this.pc.canAccess("perm_custom", 7));
+	}
+	
+	public void testChangesAreSeenAfterCompiling()
+	{
+		RoleCollection roles = new RoleCollection();
+		this.pc.setRoles(roles);
+		
+		assertFalse(this.pc.canAccess("perm_vote"));
+		roles.add(this.newRole("perm_vote"));
+		assertTrue(this.pc.canAccess("perm_vote"));
+	}
+	
+	private Role newRole(String name, String... values)
+	{
+		Role role = new Role();
+		role.setName(name);
+		
+		for (int i = 0; i < values.length; i++) {
+			role.getValues().add(new RoleValue(values[i]));
+		}
+		
+		return role;
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 10:40:44 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.util.bbcode;
+
+/**
+ * Compares the time taken to render a long post with <code>String.replaceAll</code>, 
+ * as <code>PostCommon</code> used to, and with {@link BBCodeRenderer}. 
+ * Not run with the unit tests, start it by hand from the project directory:
+ * <pre>java net.jforum.util.bbcode.BBCodeRendererBenchmark [iterations]</pre>
+ * 
+ * @version $Id$
+ */
+public class BBCodeRendererBenchmark
+{
+	private static final int WARMUP_ROUNDS = 3;
+	
+	public static void main(String[] args) throws Exception
+	{
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		
+		BBCodeHandler handler = BBCodeRendererTest.parseConfig();
+		BBCodeRenderer renderer = handler.getRenderer();
+		
+		StringBuilder sb = new StringBuilder();
+		
+		for (int i = 0; i < 20; i++) {
+			for (int j = 0; j < BBCodeRendererTest.SAMPLES.length; j++) {
+				sb.append(BBCodeRendererTest.SAMPLES[j]).append("<br /> ");
+			}
+		}
+		
+		run("All tags", sb.toString(), handler, renderer, iterations);
+		
+		sb = new StringBuilder("[quote=\"someone\"]Lorem ipsum dolor sit amet[/quote]<br /> ");
+		
+		for (int i = 0; i < 40; i++) {
+			sb.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor ")
+				.append("incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam.<br /> ");
+		}
+		
+		sb.append("[b]Thanks[/b]");
+		
+		run("Typical post", sb.toString(), handler, renderer, iterations);
+	}
+	
+	private static void run(String name, String post, BBCodeHandler handler, BBCodeRenderer renderer, int iterations)
+	{
+		if (!legacy(handler, post).equals(current(renderer, post))) {
+			throw new IllegalStateException("Both implementations should give the same output");
+		}
+		
+		long checksum = 0;
+		
+		for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+			long start = System.nanoTime();
+			
+			for (int i = 0; i < iterations; i++) {
+				checksum += legacy(handler, post).length();
+			}
+			
+			long legacyTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			
+			for (int i = 0; i < iterations; i++) {
+				checksum += current(renderer, post).length();
+			}
+			
+			long rendererTime = System.nanoTime() - start;
+			
+			if (round == WARMUP_ROUNDS) {
+				System.out.println(name + ": " + post.length() + " chars, " + iterations + " iterations");
+				System.out.println("  replaceAll:     " + (legacyTime / iterations / 1000) + " us/op");
+				System.out.println("  BBCodeRenderer: " + (rendererTime / iterations / 1000) + " us/op");
+				System.out.println("  (checksum " + checksum + ")");
+			}
+		}
+	}
+	
+	private static String legacy(BBCodeHandler handler, String text)
+	{
+		String result = BBCodeRendererTest.legacyRender(handler, text, false);
+		result = BBCodeRendererTest.legacyAlwaysProcess(handler, result);
+		
+		return BBCodeRendererTest.legacyEscape(result);
+	}
+	
+	private static String current(BBCodeRenderer renderer, String text)
+	{
+		return BBCodeRenderer.escapeAmpersands(renderer.renderAlwaysProcess(renderer.render(text)));
+	}
+}
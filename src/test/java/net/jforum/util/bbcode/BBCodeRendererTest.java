@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) JForum Team
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, 
+ * with or without modification, are permitted provided 
+ * that the following conditions are met:
+ * 
+ * 1) Redistributions of source code must retain the above 
+ * copyright notice, this list of conditions and the 
+ * following disclaimer.
+ * 2) Redistributions in binary form must reproduce the 
+ * above copyright notice, this list of conditions and 
+ * the following disclaimer in the documentation and/or 
+ * other materials provided with the distribution.
+ * 3) Neither the name of "Rafael Steil" nor 
+ * the names of its contributors may be used to endorse 
+ * or promote products derived from this software without 
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT 
+ * HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, 
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL 
+ * THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE 
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, 
+ * OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER 
+ * IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN 
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+ * 
+ * Created on Oct 18, 2026 10:21:05 PM
+ * The JForum Project
+ * http://www.jforum.net
+ */
+package net.jforum.util.bbcode;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Locale;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link BBCodeRenderer} gives exactly the same output as applying 
+ * each bbcode of <code>bb_config.xml</code> with <code>String.replaceAll</code>.
+ * 
+ * @version $Id$
+ */
+public class BBCodeRendererTest extends TestCase
+{
+	static final String[] SAMPLES = {
+		"no tags at all",
+		"[b]bold[/b] and [i]italic[/i] and [u]underline[/u]",
+		"[B]upper case[/B] [I]mixed[/i]",
+		"[b][i]nested[/i][/b] [b][i]crossed[/b][/i]",
+		"[b]unclosed [i]tags",
+		"[quote]simple[/quote] [quote=\"someone\"]named[/quote] [quote=other]x[/quote]",
+		"[url]http://www.jforum.net[/url] [url=http://www.jforum.net]JForum[/url] [URL='http://a.b']q[/URL]",
+		"[img]http://host/image.png[/img] [img]\"http://host/quoted.png\"[/img]",
+		"[color=red]red[/color] [size=18]big[/size] [color='#ff0000']hex[/color]",
+		"[list][*]one[*]two[/list]",
+		"[youtube]http://www.youtube.com/watch?v=abc123[/youtube] [google]jforum[/google]",
+		"visit http://www.jforum.net or www.jforum.net, mail someone@example.com",
+		"(http://in.parenthesis/path) ftp.example.com",
+		"[bold]not a tag[/bold] [b ]spaced[/b] [[b]]double[[/b]] []",
+		"a & b &amp; c &lt; d &gt; e &quot; f &&lt; g &amp;lt; h &nbsp;",
+		"[url=http://a.b/?x=1&y=2]amp in url[/url]",
+		"<br /> [b]line[/b]<br /> [/quote] dangling",
+	};
+	
+	static final String[] CODE_SAMPLES = {
+		"[code]int a = 1 &lt; 2;<br /> return a;[/code]",
+		"[code=java]if (a &amp;&amp; b) {}[/code]",
+		"[code='xml']&lt;tag attr=\"x\"&gt;[/code]",
+	};
+	
+	private BBCodeHandler handler;
+	
+	protected void setUp() throws Exception
+	{
+		this.handler = parseConfig();
+	}
+	
+	static BBCodeHandler parseConfig() throws Exception
+	{
+		BBCodeHandler handler = new BBCodeHandler();
+		SAXParserFactory.newInstance().newSAXParser().parse(new File("src/main/config/bb_config.xml"), handler);
+		
+		return handler;
+	}
+	
+	public void testRenderMatchesReplaceAll()
+	{
+		for (int i = 0; i < SAMPLES.length; i++) {
+			assertEquals(SAMPLES[i], legacyRender(this.handler, SAMPLES[i], false), 
+				this.handler.getRenderer().render(SAMPLES[i]));
+		}
+	}
+	
+	public void testRenderCodeMatchesReplaceAll()
+	{
+		for (int i = 0; i < CODE_SAMPLES.length; i++) {
+			assertEquals(CODE_SAMPLES[i], legacyRender(this.handler, CODE_SAMPLES[i], true), 
+				this.handler.getRenderer().renderCode(CODE_SAMPLES[i]));
+		}
+	}
+	
+	public void testRenderAlwaysProcessMatchesReplaceAll()
+	{
+		for (int i = 0; i < SAMPLES.length; i++) {
+			assertEquals(SAMPLES[i], legacyAlwaysProcess(this.handler, SAMPLES[i]), 
+				this.handler.getRenderer().renderAlwaysProcess(SAMPLES[i]));
+		}
+	}
+	
+	public void testEscapeAmpersandsMatchesReplaceAll()
+	{
+		for (int i = 0; i < SAMPLES.length; i++) {
+			assertEquals(SAMPLES[i], legacyEscape(SAMPLES[i]), BBCodeRenderer.escapeAmpersands(SAMPLES[i]));
+		}
+		
+		assertEquals("&amp;amp;lt;", BBCodeRenderer.escapeAmpersands("&amp;amp;lt;"));
+		assertEquals("&amp;", BBCodeRenderer.escapeAmpersands("&"));
+		assertEquals("&amp;&amp;l", BBCodeRenderer.escapeAmpersands("&&l"));
+	}
+	
+	public void testUppercaseTagsWithTurkishLocale()
+	{
+		Locale original = Locale.getDefault();
+		
+		try {
+			Locale.setDefault(new Locale("tr", "TR"));
+			
+			String text = "[I]italic[/I] [LIST][*]item[/LIST]";
+			assertEquals(legacyRender(this.handler, text, false), this.handler.getRenderer().render(text));
+		}
+		finally {
+			Locale.setDefault(original);
+		}
+	}
+	
+	public void testTagRequiredByExpression()
+	{
+		assertEquals("[b", BBCodeRenderer.CompiledBBCode.requiredTag("(?s)(?i)\\[b\\](.*?)\\[/b\\]"));
+		assertEquals("[/quote", BBCodeRenderer.CompiledBBCode.requiredTag("(?i)\\[/quote\\]"));
+		assertEquals("[url", BBCodeRenderer.CompiledBBCode.requiredTag("(?i)\\[url=['\"]?(.*?[^'\"])['\"]?\\](.*?)\\[/url\\]"));
+		assertEquals("[code", BBCodeRenderer.CompiledBBCode.requiredTag("(?s)\\[code\\](.*?)\\[/code\\]"));
+		assertNull(BBCodeRenderer.CompiledBBCode.requiredTag("(^|[\\n ]|\\()([\\w]+?://[^ \\\"\\n\\r\\t<\\)\\[]*)"));
+		assertNull(BBCodeRenderer.CompiledBBCode.requiredTag("\\[b.*\\]"));
+		assertNull(BBCodeRenderer.CompiledBBCode.requiredTag("\\[b\\]|\\[strong\\]"));
+	}
+	
+	public void testLiteralRequiredByExpression()
+	{
+		assertEquals("://", RequiredLiteral.find("(^|[\\n ]|\\()([\\w]+?://[^ \\\"\\n\\r\\t<\\)\\[]*)"));
+		assertEquals("www.", RequiredLiteral.find("(^|[\\n ]\\()(www\\.[^ \\\"\\t\\n\\r<\\)\\[]*)"));
+		assertEquals("@", RequiredLiteral.find("(^|[\\n ])([a-z0-9&\\-_.]+?)@([\\w\\-]+\\.([\\w\\-\\.]+\\.)*[\\w]+)"));
+		assertEquals("[/b]", RequiredLiteral.find("(?s)(?i)\\[b\\](.*?)\\[/b\\]"));
+		assertEquals("ab", RequiredLiteral.find("x?ab+c*"));
+		assertNull(RequiredLiteral.find("a|b"));
+		assertNull(RequiredLiteral.find("(?=abc)."));
+		assertNull(RequiredLiteral.find("\\x41"));
+		assertNull(RequiredLiteral.find("(abc)?"));
+	}
+	
+	static String legacyRender(BBCodeHandler handler, String origText, boolean codeTags)
+	{
+		String text = origText;
+		
+		for (Iterator<BBCode> iter = handler.getBbList().iterator(); iter.hasNext(); ) {
+			BBCode bb = iter.next();
+			
+			if (bb.getTagName().startsWith("code") == codeTags) {
+				text = text.replaceAll(bb.getRegex(), bb.getReplace());
+			}
+		}
+		
+		return text;
+	}
+	
+	static String legacyAlwaysProcess(BBCodeHandler handler, String origText)
+	{
+		String text = origText;
+		
+		for (Iterator<BBCode> iter = handler.getAlwaysProcessList().iterator(); iter.hasNext(); ) {
+			BBCode bb = iter.next();
+			text = text.replaceAll(bb.getRegex(), bb.getReplace());
+		}
+		
+		return text;
+	}
+	
+	static String legacyEscape(String origText)
+	{
+		String text = origText.replaceAll("&", "&amp;");
+		text = text.replaceAll("&amp;lt;", "&lt;");
+		text = text.replaceAll("&amp;gt;", "&gt;");
+		text = text.replaceAll("&amp;quot;", "&quot;");
+		text = text.replaceAll("&amp;amp;", "&amp;");
+		
+		return text;
+	}
+}
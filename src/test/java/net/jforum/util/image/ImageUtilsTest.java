@@ -0,0 +1,59 @@
+package net.jforum.util.image;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class ImageUtilsTest extends TestCase
+{
+	public void testSubsampling()
+	{
+		assertEquals(1, ImageUtils.subsampling(400, 300, 400, 400));
+		assertEquals(1, ImageUtils.subsampling(1000, 1000, 400, 400));
+		assertEquals(5, ImageUtils.subsampling(4000, 4000, 400, 400));
+		assertEquals(2, ImageUtils.subsampling(6000, 1600, 400, 400));
+		assertEquals(1, ImageUtils.subsampling(6000, 1600, 0, 400));
+	}
+	
+	public void testReadsSubsampledImage() throws Exception
+	{
+		File file = File.createTempFile("jforum", ".png");
+		
+		try {
+			ImageIO.write(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB), "png", file);
+			
+			assertEquals(new Dimension(2000, 1000), ImageUtils.getImageSize(file));
+			
+			BufferedImage image = ImageUtils.readImage(file, 200, 200);
+			assertEquals(1000, image.getWidth());
+			assertEquals(500, image.getHeight());
+			
+			BufferedImage thumb = ImageUtils.resizeImage(image, ImageUtils.IMAGE_JPEG, 200, 200);
+			assertEquals(200, thumb.getWidth());
+			assertEquals(100, thumb.getHeight());
+		}
+		finally {
+			file.delete();
+		}
+	}
+	
+	public void testUnknownFormat() throws Exception
+	{
+		File file = File.createTempFile("jforum", ".txt");
+		
+		try {
+			assertNull(ImageUtils.getImageSize(file));
+			assertNull(ImageUtils.readImage(file, 100, 100));
+		}
+		finally {
+			file.delete();
+		}
+	}
+}
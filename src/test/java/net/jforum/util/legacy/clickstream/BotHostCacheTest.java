@@ -0,0 +1,54 @@
+package net.jforum.util.legacy.clickstream;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+/**
+ * @version $Id$
+ */
+public class BotHostCacheTest extends TestCase
+{
+	private static final MultiPatternMatcher HOSTS = new MultiPatternMatcher(Arrays.asList("googlebot.com"));
+	
+	protected void setUp() throws Exception
+	{
+		SystemGlobals.setValue(ConfigKeys.CLICKSTREAM_DNS_CACHE_SIZE, "16");
+		SystemGlobals.setValue(ConfigKeys.CLICKSTREAM_DNS_CACHE_TTL, "3600");
+		SystemGlobals.setValue(ConfigKeys.CLICKSTREAM_DNS_CACHE_NEGATIVE_TTL, "600");
+		SystemGlobals.setValue(ConfigKeys.CLICKSTREAM_DNS_THREADS, "0");
+		
+		BotHostCache.clear();
+	}
+	
+	public void testResolvedVerdictIsReturned()
+	{
+		assertNull(BotHostCache.check("10.0.0.1", HOSTS));
+		
+		BotHostCache.resolved("10.0.0.1", "crawl-1.googlebot.com");
+		BotHostCache.resolved("10.0.0.2", null);
+		
+		assertEquals("crawl-1.googlebot.com", BotHostCache.check("10.0.0.1", HOSTS));
+		assertNull(BotHostCache.check("10.0.0.2", HOSTS));
+	}
+	
+	public void testPrunedWhenFull()
+	{
+		// Bots are kept longer than the other addresses
+		for (int i = 0; i < 8; i++) {
+			BotHostCache.resolved("10.0.0." + i, "crawl-" + i + ".googlebot.com");
+		}
+		
+		for (int i = 0; i < 9; i++) {
+			BotHostCache.resolved("10.0.1." + i, null);
+		}
+		
+		assertEquals(15, BotHostCache.size());
+		
+		for (int i = 0; i < 8; i++) {
+			assertEquals("crawl-" + i + ".googlebot.com", BotHostCache.check("10.0.0." + i, HOSTS));
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package net.jforum.util.legacy.clickstream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class MultiPatternMatcherTest extends TestCase
+{
+	public void testFindsPatternInTheMiddle()
+	{
+		MultiPatternMatcher matcher = new MultiPatternMatcher(Arrays.asList("googlebot", "slurp", "baiduspider"));
+		
+		assertEquals("googlebot", matcher.find("Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)"));
+		assertEquals("slurp", matcher.find("Mozilla/5.0 (compatible; Yahoo! Slurp)"));
+		assertNull(matcher.find("Mozilla/5.0 (Windows NT 10.0; Win64; x64) Firefox/120.0"));
+	}
+	
+	public void testFollowsFailureLinks()
+	{
+		MultiPatternMatcher matcher = new MultiPatternMatcher(Arrays.asList("abcd", "bce", "cf"));
+		
+		assertEquals("bce", matcher.find("xxabcexx"));
+		assertEquals("cf", matcher.find("abcf"));
+		assertNull(matcher.find("abcbcd"));
+	}
+	
+	public void testPatternInsideAnotherOne()
+	{
+		MultiPatternMatcher matcher = new MultiPatternMatcher(Arrays.asList("spider", "pi"));
+		
+		assertEquals("pi", matcher.find("aspi"));
+		assertEquals("pi", matcher.find("bspider"));
+	}
+	
+	public void testIgnoresNullAndEmptyPatterns()
+	{
+		MultiPatternMatcher matcher = new MultiPatternMatcher(Arrays.asList(null, "", "bot"));
+		
+		assertEquals(1, matcher.size());
+		assertNull(matcher.find("anything"));
+		assertNull(matcher.find(null));
+		assertEquals("bot", matcher.find("ROBOT"));
+	}
+	
+	public void testUppercasePatternsWithTurkishLocale()
+	{
+		Locale original = Locale.getDefault();
+		
+		try {
+			Locale.setDefault(new Locale("tr", "TR"));
+			
+			MultiPatternMatcher matcher = new MultiPatternMatcher(Arrays.asList("BINGBOT"));
+			
+			assertEquals("bingbot", matcher.find("Mozilla/5.0 (compatible; bingbot/2.0)"));
+		}
+		finally {
+			Locale.setDefault(original);
+		}
+	}
+	
+	public void testSameResultAsIndexOf()
+	{
+		Random random = new Random(7);
+		List<String> patterns = new ArrayList<String>();
+		
+		for (int i = 0; i < 200; i++) {
+			patterns.add(randomText(random, 2 + random.nextInt(5)));
+		}
+		
+		MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+		
+		for (int i = 0; i < 2000; i++) {
+			String text = randomText(random, random.nextInt(40));
+			boolean expected = false;
+			
+			for (int j = 0; j < patterns.size() && !expected; j++) {
+				expected = text.indexOf(patterns.get(j)) != -1;
+			}
+			
+			String found = matcher.find(text);
+			
+			assertEquals(text, expected, found != null);
+			
+			if (found != null) {
+				assertTrue(text, text.indexOf(found) != -1);
+			}
+		}
+	}
+	
+	private static String randomText(Random random, int length)
+	{
+		StringBuilder sb = new StringBuilder(length);
+		
+		for (int i = 0; i < length; i++) {
+			sb.append((char)('a' + random.nextInt(4)));
+		}
+		
+		return sb.toString();
+	}
+}
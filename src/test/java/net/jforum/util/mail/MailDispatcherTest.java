@@ -0,0 +1,109 @@
+/*
+ * Created on Oct 18, 2026 7:58:14 PM
+ */
+package net.jforum.util.mail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.jforum.entities.User;
+import net.jforum.util.preferences.ConfigKeys;
+import net.jforum.util.preferences.SystemGlobals;
+
+import com.dumbster.smtp.SimpleSmtpServer;
+
+import freemarker.template.SimpleHash;
+
+/**
+ * Sends emails to the dumbster fake SMTP server.
+ * 
+ * @version $Id$
+ */
+public class MailDispatcherTest extends TestCase
+{
+	private static final int PORT = 25250;
+	private SimpleSmtpServer server;
+	
+	protected void setUp() throws Exception
+	{
+		SystemGlobals.setValue(ConfigKeys.MAIL_SMTP_SSL, "false");
+		SystemGlobals.setValue(ConfigKeys.MAIL_SMTP_HOST, "localhost");
+		SystemGlobals.setValue(ConfigKeys.MAIL_SMTP_PORT, Integer.toString(PORT));
+		SystemGlobals.setValue(ConfigKeys.MAIL_SMTP_LOCALHOST, "");
+		SystemGlobals.setValue(ConfigKeys.MAIL_SMTP_AUTH, "false");
+		SystemGlobals.setValue(ConfigKeys.MAIL_SMTP_USERNAME, "");
+		SystemGlobals.setValue(ConfigKeys.MAIL_SMTP_PASSWORD, "");
+		SystemGlobals.setValue(ConfigKeys.MAIL_CHARSET, "UTF-8");
+		SystemGlobals.setValue(ConfigKeys.MAIL_MESSSAGE_FORMAT, "text");
+		SystemGlobals.setValue(ConfigKeys.MAIL_SENDER, "forum@localhost");
+		SystemGlobals.setValue(ConfigKeys.FORUM_NAME, "Test forum");
+		SystemGlobals.setValue(ConfigKeys.MAIL_SMTP_DELAY, "0");
+		SystemGlobals.setValue(ConfigKeys.MAIL_BATCH_SIZE, "1");
+		SystemGlobals.setValue(ConfigKeys.MAIL_RETRY_COUNT, "0");
+		SystemGlobals.setValue(ConfigKeys.MAIL_RETRY_DELAY, "0");
+		SystemGlobals.setValue(ConfigKeys.MAIL_DISPATCH_THREADS, "2");
+		SystemGlobals.setValue(ConfigKeys.MAIL_DISPATCH_QUEUE_SIZE, "10");
+		
+		this.server = SimpleSmtpServer.start(PORT);
+	}
+	
+	protected void tearDown() throws Exception
+	{
+		this.server.stop();
+	}
+	
+	public void testOneMessagePerRecipient()
+	{
+		new TestSpammer(3).dispatchMessages();
+		assertEquals(3, this.server.getReceivedEmailSize());
+	}
+	
+	public void testRecipientsAreBatched()
+	{
+		SystemGlobals.setValue(ConfigKeys.MAIL_BATCH_SIZE, "2");
+		
+		new TestSpammer(3).dispatchMessages();
+		assertEquals(2, this.server.getReceivedEmailSize());
+	}
+	
+	public void testDispatchInBackground()
+	{
+		long sent = MailDispatcher.getSentCount();
+		
+		for (int i = 0; i < 4; i++) {
+			assertTrue(MailDispatcher.dispatch(new TestSpammer(2)));
+		}
+		
+		MailDispatcher.stop(10000);
+		
+		assertEquals(8, this.server.getReceivedEmailSize());
+		assertEquals(sent + 8, MailDispatcher.getSentCount());
+		assertEquals(0, MailDispatcher.getQueueDepth());
+	}
+	
+	private static class TestSpammer extends Spammer
+	{
+		public TestSpammer(int recipients)
+		{
+			List<User> l = new ArrayList<User>();
+			
+			for (int i = 0; i < recipients; i++) {
+				User user = new User();
+				user.setEmail("user" + i + "@localhost");
+				l.add(user);
+			}
+			
+			this.setUsers(l);
+			this.setTemplateParams(new SimpleHash());
+			this.prepareMessage("Test Mail", null);
+		}
+		
+		protected String processTemplate()
+		{
+			return "Test mail";
+		}
+		
+		protected void createTemplate(String messageFile) {}
+	}
+}
@@ -0,0 +1,63 @@
+package net.jforum.view.forum.common;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class DownloadCommonTest extends TestCase
+{
+	public void testSingleRanges()
+	{
+		assertRanges(DownloadCommon.parseRanges("bytes=0-99", 1000), new long[][] { { 0, 99 } });
+		assertRanges(DownloadCommon.parseRanges("bytes=500-", 1000), new long[][] { { 500, 999 } });
+		assertRanges(DownloadCommon.parseRanges("bytes=-100", 1000), new long[][] { { 900, 999 } });
+		assertRanges(DownloadCommon.parseRanges("bytes=900-5000", 1000), new long[][] { { 900, 999 } });
+		assertRanges(DownloadCommon.parseRanges("bytes=-5000", 1000), new long[][] { { 0, 999 } });
+	}
+	
+	public void testMultipleRanges()
+	{
+		assertRanges(DownloadCommon.parseRanges("bytes=0-0, 10-19,-1", 1000), 
+			new long[][] { { 0, 0 }, { 10, 19 }, { 999, 999 } });
+	}
+	
+	public void testUnsatisfiable()
+	{
+		assertTrue(DownloadCommon.parseRanges("bytes=1000-", 1000).isEmpty());
+		assertTrue(DownloadCommon.parseRanges("bytes=-0", 1000).isEmpty());
+		assertTrue(DownloadCommon.parseRanges("bytes=0-", 0).isEmpty());
+		assertRanges(DownloadCommon.parseRanges("bytes=2000-3000,0-9", 1000), new long[][] { { 0, 9 } });
+	}
+	
+	public void testInvalidIsIgnored()
+	{
+		assertNull(DownloadCommon.parseRanges("items=0-10", 1000));
+		assertNull(DownloadCommon.parseRanges("bytes=", 1000));
+		assertNull(DownloadCommon.parseRanges("bytes=10-5", 1000));
+		assertNull(DownloadCommon.parseRanges("bytes=a-5", 1000));
+		assertNull(DownloadCommon.parseRanges("bytes=+1-5", 1000));
+		assertNull(DownloadCommon.parseRanges("bytes=1--5", 1000));
+		
+		StringBuilder sb = new StringBuilder("bytes=0-0");
+		
+		for (int i = 1; i <= 16; i++) {
+			sb.append(',').append(i).append('-').append(i);
+		}
+		
+		assertNull(DownloadCommon.parseRanges(sb.toString(), 1000));
+	}
+	
+	private static void assertRanges(List<long[]> ranges, long[][] expected)
+	{
+		assertNotNull(ranges);
+		assertEquals(expected.length, ranges.size());
+		
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i][0], ranges.get(i)[0]);
+			assertEquals(expected[i][1], ranges.get(i)[1]);
+		}
+	}
+}